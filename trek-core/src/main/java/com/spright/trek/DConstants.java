@@ -54,12 +54,44 @@ public final class DConstants {
           = "trek.json.buffer.limit";
   public static final int DEFAULT_JSON_BUFFER_LIMIT
           = DEFAULT_DATA_BUFFER_INITIAL_SIZE;
+  public static final String BUFFER_CHUNK_SIZE
+          = "trek.buffer.chunk.size";
+  public static final int DEFAULT_BUFFER_CHUNK_SIZE
+          = 64 * 1024;
+  public static final String BUFFER_POOL_MAX_SIZE
+          = "trek.buffer.pool.max.size";
+  public static final long DEFAULT_BUFFER_POOL_MAX_SIZE
+          = 64L * 1024L * 1024L;
+  public static final String BUFFER_CHUNK_DIRECT
+          = "trek.buffer.chunk.direct";
+  public static final boolean DEFAULT_BUFFER_CHUNK_DIRECT
+          = false;
+  public static final String BUFFER_MEMORY_LIMIT
+          = "trek.buffer.memory.limit";
+  public static final long DEFAULT_BUFFER_MEMORY_LIMIT
+          = Runtime.getRuntime().maxMemory() / 4;
+  public static final String BUFFER_SPILL_DIRS
+          = "trek.buffer.spill.dirs";
+  public static final String DEFAULT_BUFFER_SPILL_DIRS
+          = System.getProperty("java.io.tmpdir");
+  public static final String BUFFER_SPILL_ORPHAN_TIME
+          = "trek.buffer.spill.orphan.time";
+  public static final long DEFAULT_BUFFER_SPILL_ORPHAN_TIME
+          = 60 * 60 * 1000;
+  public static final String BUFFER_SPILL_JANITOR_PERIOD
+          = "trek.buffer.spill.janitor.period";
+  public static final long DEFAULT_BUFFER_SPILL_JANITOR_PERIOD
+          = 10 * 60 * 1000;
   public static final byte[] DEFAULT_FAMILY = Bytes.toBytes("f");
   public static final byte[] HDS_TABLE_FAMILY = DEFAULT_FAMILY;
   public static final byte[] HDS_DATA_UPLOAD_TIME_QUALIFIER = Bytes.toBytes("t");
   public static final byte[] HDS_DATA_SIZE_QUALIFIER = Bytes.toBytes("s");
   public static final byte[] HDS_DATA_CONTENT_QUALIFIER = Bytes.toBytes("v");
   public static final byte[] HDS_DATA_LINK_QUALIFIER = Bytes.toBytes("k");
+  public static final byte[] HDS_DATA_CHUNK_COUNT_QUALIFIER = Bytes.toBytes("n");
+  public static final byte[] HDS_DATA_CHUNK_SIZE_QUALIFIER = Bytes.toBytes("z");
+  public static final byte[] HDS_DATA_CHUNK_QUALIFIER_PREFIX = Bytes.toBytes("c");
+  public static final byte[] HDS_DATA_CHUNK_ID_QUALIFIER = Bytes.toBytes("i");
 
   public static final String LOCK_NAME = "LOCK";
 
@@ -87,6 +119,14 @@ public final class DConstants {
   public static final byte[] TASK_ELAPSED_QUALIFIER = Bytes.toBytes("e");
   public static final byte[] TASK_EXPECTED_SIZE_QUALIFIER = Bytes.toBytes("es");
   public static final byte[] TASK_TRANSFERRED_SIZE_QUALIFIER = Bytes.toBytes("ts");
+  public static final byte[] TASK_CHECKPOINT_QUALIFIER = Bytes.toBytes("cp");
+  public static final byte[] TASK_TMP_PATH_QUALIFIER = Bytes.toBytes("tp");
+  public static final byte[] TASK_BUFFER_SIZE_QUALIFIER = Bytes.toBytes("bs");
+  public static final byte[] TASK_QUEUE_TIME_QUALIFIER = Bytes.toBytes("qt");
+  public static final byte[] TASK_DESTINATIONS_QUALIFIER = Bytes.toBytes("ds");
+  public static final byte[] TASK_SUBTASKS_QUALIFIER = Bytes.toBytes("sn");
+  public static final byte[] TASK_FAILED_SUBTASKS_QUALIFIER = Bytes.toBytes("fn");
+  public static final byte[] TASK_CLAIM_QUALIFIER = Bytes.toBytes("cl");
 
   public static final String URI_MAPPING_ID = "id";
   public static final String URI_MAPPING_DOMAIN = "domain";
@@ -100,15 +140,185 @@ public final class DConstants {
           = "trek.hds.root.path";
   public static final String DEFAULT_HDS_ROOT_PATH
           = "/trek";
+  public static final String HDS_LOCALITY_CACHE_TIME
+          = "trek.hds.locality.cache.time";
+  public static final long DEFAULT_HDS_LOCALITY_CACHE_TIME
+          = 60 * 1000;
+  public static final String HDS_LOCALITY_BULK_THRESHOLD
+          = "trek.hds.locality.bulk.threshold";
+  public static final int DEFAULT_HDS_LOCALITY_BULK_THRESHOLD
+          = 8;
+  public static final String HDS_LAYOUT_SHARD_NUMBER
+          = "trek.hds.layout.shard.number";
+  public static final int DEFAULT_HDS_LAYOUT_SHARD_NUMBER
+          = 256;
+  public static final String HDS_LAYOUT_DATE_PARTITION
+          = "trek.hds.layout.date.partition";
+  public static final boolean DEFAULT_HDS_LAYOUT_DATE_PARTITION
+          = true;
+  public static final String HDS_CHUNK_SIZE
+          = "trek.hds.chunk.size";
+  public static final int DEFAULT_HDS_CHUNK_SIZE
+          = 1024 * 1024;
+  public static final String HDS_CHUNK_MAX_DATA_SIZE
+          = "trek.hds.chunk.max.data.size";
+  public static final long DEFAULT_HDS_CHUNK_MAX_DATA_SIZE
+          = 64 * 1024 * 1024;
+  public static final String HDS_CHUNK_PREFETCH
+          = "trek.hds.chunk.prefetch";
+  public static final int DEFAULT_HDS_CHUNK_PREFETCH
+          = 2;
+  public static final String HDS_CHUNK_HANDLER_NUMBER
+          = "trek.hds.chunk.handler.number";
+  public static final int DEFAULT_HDS_CHUNK_HANDLER_NUMBER
+          = 8;
+  public static final String HDS_INGEST_ENABLE
+          = "trek.hds.ingest.enable";
+  public static final boolean DEFAULT_HDS_INGEST_ENABLE
+          = true;
+  public static final String HDS_INGEST_BUFFER_SIZE
+          = "trek.hds.ingest.buffer.size";
+  public static final long DEFAULT_HDS_INGEST_BUFFER_SIZE
+          = 2 * 1024 * 1024;
+  public static final String HDS_INGEST_FLUSH_INTERVAL
+          = "trek.hds.ingest.flush.interval";
+  public static final long DEFAULT_HDS_INGEST_FLUSH_INTERVAL
+          = 100;
   public static final String DATA_TMP_EXTENSION = ".part";
   public static final String ACCESS_HANDLER_NUMBER
           = "trek.access.handler.number";
   public static final int DEFAULT_ACCESS_HANDLER_NUMBER
           = 10;
+  public static final String ACCESS_SCHEDULER_CLASS
+          = "trek.access.scheduler.class";
+  public static final String ACCESS_SCHEDULER_FAIR_ENABLE
+          = "trek.access.scheduler.fair.enable";
+  public static final boolean DEFAULT_ACCESS_SCHEDULER_FAIR_ENABLE
+          = true;
+  public static final String ACCESS_SCHEDULER_QUEUE_SIZE
+          = "trek.access.scheduler.queue.size";
+  public static final int DEFAULT_ACCESS_SCHEDULER_QUEUE_SIZE
+          = 1000;
+  public static final String ACCESS_SCHEDULER_CLIENT_WEIGHT
+          = "trek.access.scheduler.weight.client";
+  public static final String ACCESS_SCHEDULER_PROTOCOL_WEIGHT
+          = "trek.access.scheduler.weight.protocol";
+  public static final String ACCESS_PIPELINE_ENABLE
+          = "trek.access.pipeline.enable";
+  public static final boolean DEFAULT_ACCESS_PIPELINE_ENABLE
+          = true;
+  public static final String ACCESS_PIPELINE_BUFFER_NUMBER
+          = "trek.access.pipeline.buffer.number";
+  public static final int DEFAULT_ACCESS_PIPELINE_BUFFER_NUMBER
+          = 4;
+  public static final String ACCESS_PIPELINE_BUFFER_SIZE
+          = "trek.access.pipeline.buffer.size";
+  public static final int DEFAULT_ACCESS_PIPELINE_BUFFER_SIZE
+          = -1;
+  public static final String ACCESS_WORKER_NUMBER
+          = "trek.access.worker.number";
+  public static final int DEFAULT_ACCESS_WORKER_NUMBER
+          = 256;
+  public static final String ACCESS_SEGMENT_THRESHOLD
+          = "trek.access.segment.threshold";
+  public static final long DEFAULT_ACCESS_SEGMENT_THRESHOLD
+          = 256L * 1024L * 1024L;
+  public static final String ACCESS_SEGMENT_NUMBER
+          = "trek.access.segment.number";
+  public static final int DEFAULT_ACCESS_SEGMENT_NUMBER
+          = 4;
+  public static final String ACCESS_BUFFER_SIZE
+          = "trek.access.buffer.size";
+  public static final int DEFAULT_ACCESS_BUFFER_SIZE
+          = 64 * 1024;
+  public static final int DEFAULT_ACCESS_BULK_BUFFER_SIZE
+          = 256 * 1024;
+  public static final String ACCESS_BUFFER_MAX_SIZE
+          = "trek.access.buffer.max.size";
+  public static final int DEFAULT_ACCESS_BUFFER_MAX_SIZE
+          = 4 * 1024 * 1024;
+  public static final String ACCESS_BUFFER_ADAPTIVE_ENABLE
+          = "trek.access.buffer.adaptive.enable";
+  public static final boolean DEFAULT_ACCESS_BUFFER_ADAPTIVE_ENABLE
+          = true;
+  public static final String ACCESS_RESUME_ENABLE
+          = "trek.access.resume.enable";
+  public static final boolean DEFAULT_ACCESS_RESUME_ENABLE
+          = true;
+  public static final String ACCESS_CHECKPOINT_INTERVAL
+          = "trek.access.checkpoint.interval";
+  public static final long DEFAULT_ACCESS_CHECKPOINT_INTERVAL
+          = 64L * 1024L * 1024L;
+  public static final String ACCESS_BATCH_PARALLELISM
+          = "trek.access.batch.parallelism";
+  public static final int DEFAULT_ACCESS_BATCH_PARALLELISM
+          = 4;
+  public static final String ACCESS_BATCH_NUMBER
+          = "trek.access.batch.number";
+  public static final int DEFAULT_ACCESS_BATCH_NUMBER
+          = 16;
+  public static final String ACCESS_PROGRESS_INTERVAL
+          = "trek.access.progress.interval";
+  public static final long DEFAULT_ACCESS_PROGRESS_INTERVAL
+          = 1000;
+  public static final String ACCESS_BANDWIDTH_GLOBAL
+          = "trek.access.bandwidth.global";
+  public static final String ACCESS_BANDWIDTH_HOST
+          = "trek.access.bandwidth.host";
+  public static final String ACCESS_BANDWIDTH_CLIENT
+          = "trek.access.bandwidth.client";
+  public static final String ACCESS_BANDWIDTH_TASK
+          = "trek.access.bandwidth.task";
+  public static final long DEFAULT_ACCESS_BANDWIDTH
+          = -1;
+  public static final String ACCESS_BANDWIDTH_BURST_TIME
+          = "trek.access.bandwidth.burst.time";
+  public static final long DEFAULT_ACCESS_BANDWIDTH_BURST_TIME
+          = 1000;
+  public static final String FTP_POOL_MAX_SIZE
+          = "trek.ftp.pool.max.size";
+  public static final int DEFAULT_FTP_POOL_MAX_SIZE
+          = 64;
+  public static final String FTP_POOL_MAX_PER_HOST
+          = "trek.ftp.pool.max.per.host";
+  public static final int DEFAULT_FTP_POOL_MAX_PER_HOST
+          = 8;
+  public static final String FTP_POOL_IDLE_TIME
+          = "trek.ftp.pool.idle.time";
+  public static final long DEFAULT_FTP_POOL_IDLE_TIME
+          = 60 * 1000;
+  public static final String FTP_POOL_WAIT_TIME
+          = "trek.ftp.pool.wait.time";
+  public static final long DEFAULT_FTP_POOL_WAIT_TIME
+          = 60 * 1000;
+  public static final String FTP_CONNECT_TIMEOUT
+          = "trek.ftp.connect.timeout";
+  public static final int DEFAULT_FTP_CONNECT_TIMEOUT
+          = 30 * 1000;
+  public static final String FTP_SOCKET_TIMEOUT
+          = "trek.ftp.socket.timeout";
+  public static final int DEFAULT_FTP_SOCKET_TIMEOUT
+          = 60 * 1000;
+  public static final String HTTP_MAX_PER_HOST
+          = "trek.http.max.per.host";
+  public static final int DEFAULT_HTTP_MAX_PER_HOST
+          = 16;
+  public static final String HTTP_WAIT_TIME
+          = "trek.http.wait.time";
+  public static final long DEFAULT_HTTP_WAIT_TIME
+          = 60 * 1000;
+  public static final String HTTP_DRAIN_LIMIT
+          = "trek.http.drain.limit";
+  public static final long DEFAULT_HTTP_DRAIN_LIMIT
+          = 64 * 1024;
   public static final String RESTFUL_SERVER_CONNECTION_NUMBER
           = "trek.restful.server.connection.number";
   public static final int DEFAULT_RESTFUL_SERVER_CONNECTION_NUMBER
           = DEFAULT_ACCESS_HANDLER_NUMBER;
+  public static final String RESTFUL_SERVER_METADATA_HANDLER_NUMBER
+          = "trek.restful.server.metadata.handler.number";
+  public static final int DEFAULT_RESTFUL_SERVER_METADATA_HANDLER_NUMBER
+          = 4;
   public static final String LOCK_DISABLE
           = "trek.lock.disable";
   public static final boolean DEFAULT_LOCK_DISABLE
@@ -127,10 +337,40 @@ public final class DConstants {
           = "async";
   public static final boolean DEFAULT_URI_DATA_ASYNC
           = false;
+  public static final String URI_LIST_FORMAT
+          = "format";
+  public static final String URI_DATA_RESUME
+          = "resume";
+  public static final String URI_DATA_PRIORITY
+          = "priority";
+  public static final int DEFAULT_URI_DATA_PRIORITY
+          = 0;
+  public static final int DEFAULT_URI_DATA_SYNC_PRIORITY
+          = 1;
+  /**
+   * The max priority a client can request. The async requests can't run ahead
+   * of the interactive requests by default.
+   */
+  public static final String ACCESS_PRIORITY_MAX
+          = "trek.access.priority.max";
+  public static final int DEFAULT_ACCESS_PRIORITY_MAX
+          = DEFAULT_URI_DATA_SYNC_PRIORITY;
+  public static final String URI_DATA_BANDWIDTH
+          = "bandwidth";
+  public static final String URI_DATA_FAN_OUT_MODE
+          = "fanoutmode";
+  public static final String URI_DATA_RECURSIVE
+          = "recursive";
+  public static final boolean DEFAULT_URI_DATA_RECURSIVE
+          = false;
+  public static final String URI_DATA_PARALLELISM
+          = "parallelism";
   public static final String URI_DATA_FROM
           = "from";
   public static final String URI_DATA_ENABLE_WILDCARD
           = "enablewildcard";
+  public static final boolean DEFAULT_URI_DATA_ENABLE_WILDCARD
+          = false;
   public static final String URI_DATA_TO
           = "to";
   public static final String URI_DATA_KEEP
@@ -143,6 +383,10 @@ public final class DConstants {
           = "directory";
   public static final boolean DEFAULT_URI_DATA_NEED_DIRECTORY
           = false;
+  public static final String URI_DATA_NEED_OWNER
+          = "owner";
+  public static final boolean DEFAULT_URI_DATA_NEED_OWNER
+          = true;
   public static final String URI_DATA_UPLOAD_TIME
           = "time";
   public static final String URI_DATA_SIZE
@@ -194,4 +438,8 @@ public final class DConstants {
           = "trek.restful.server.binding.port";
   public static final short DEFAULT_RESTFUL_SERVER_BINDING_PORT
           = 7777;
+  public static final String RESTFUL_STREAM_FLUSH_INTERVAL
+          = "trek.restful.stream.flush.interval";
+  public static final int DEFAULT_RESTFUL_STREAM_FLUSH_INTERVAL
+          = 100;
 }
@@ -21,9 +21,13 @@ import com.spright.trek.loadbalancer.UndealtMetrics;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import com.spright.trek.lock.LockManager;
 import com.spright.trek.lock.LockManagerFactory;
 import com.spright.trek.query.CloseableIterator;
@@ -49,7 +53,10 @@ public abstract class DataSystem {
   }
 
   public static DataSystem getInstance(final UriRequest request, final Configuration config) throws Exception {
-    Protocol protocol = request.getScheme();
+    return getInstance(request.getScheme(), config);
+  }
+
+  public static DataSystem getInstance(final Protocol protocol, final Configuration config) throws Exception {
     DataSystem ds = DATA_SYSTEM.computeIfAbsent(protocol, (p) -> {
       try {
         switch (p) {
@@ -128,6 +135,11 @@ public abstract class DataSystem {
     Lock lock = lockMa.getReadLock(request.toString(false));
     try {
       InputChannel channel = internalOpen(request);
+      if (channel.getOffset() != request.getOffset()) {
+        TrekUtils.closeWithLog(channel, LOG);
+        throw new UriParseIOException(getScheme()
+                + " is unsupported to read from offset " + request.getOffset());
+      }
       return new MetricableInputChannel(lock, channel,
               metricsGroup.newMetrics(Operation.READ, channel.getInfo().getSize()));
     } catch (IOException e) {
@@ -170,9 +182,10 @@ public abstract class DataSystem {
   }
 
   /**
-   * Lists the remote data.
+   * Lists the remote data. The catalog of query path is the directory to
+   * list, and the name of query path is the pattern of data name.
    *
-   * @param query The remote directory
+   * @param query The remote directory and the name pattern
    * @return
    * @throws IOException If failed to list remote data
    */
@@ -263,6 +276,11 @@ public abstract class DataSystem {
     private final Lock lock;
     private final UndealtMetrics metrics;
     private final AtomicBoolean closed = new AtomicBoolean(false);
+    /**
+     * The bytes counted by the stream. The bytes moved by the file channel are
+     * counted on closing by comparing with the channel position.
+     */
+    private final AtomicLong countedBytes = new AtomicLong(0);
 
     MetricableOutputChannel(final Lock lock, final OutputChannel output,
             final UndealtMetrics metrics) {
@@ -271,6 +289,11 @@ public abstract class DataSystem {
       this.metrics = metrics;
     }
 
+    private void addBytes(final long v) {
+      countedBytes.addAndGet(v);
+      metrics.addBytes(v);
+    }
+
     @Override
     public WriteDataRequest getRequest() {
       return output.getRequest();
@@ -281,26 +304,108 @@ public abstract class DataSystem {
       return new OutputStreamAdapter(output.getOutputStream()) {
         @Override
         public void write(int v) throws IOException {
-          metrics.addBytes(1);
+          addBytes(1);
           super.write(v);
         }
 
         @Override
         public void write(byte[] b, int off, int len) throws IOException {
-          metrics.addBytes(len);
+          addBytes(len);
           super.write(b, off, len);
         }
       };
     }
 
+    @Override
+    public Optional<WritableByteChannel> getWritableChannel() {
+      return output.getWritableChannel().map(channel -> {
+        if (channel instanceof FileChannel) {
+          //Don't wrap the file channel, otherwise the transferTo will lose the fast path
+          return channel;
+        }
+        return new WritableByteChannel() {
+          @Override
+          public int write(ByteBuffer src) throws IOException {
+            int rval = channel.write(src);
+            addBytes(rval);
+            return rval;
+          }
+
+          @Override
+          public boolean isOpen() {
+            return channel.isOpen();
+          }
+
+          @Override
+          public void close() throws IOException {
+            channel.close();
+          }
+        };
+      });
+    }
+
+    @Override
+    public Optional<RangeWriter> getRangeWriter() {
+      return output.getRangeWriter().map(writer -> new RangeWriter() {
+        @Override
+        public long getAlignment() {
+          return writer.getAlignment();
+        }
+
+        @Override
+        public OutputStream create(final long offset, final long length) throws IOException {
+          return new OutputStreamAdapter(writer.create(offset, length)) {
+            @Override
+            public void write(int v) throws IOException {
+              addBytes(1);
+              super.write(v);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+              addBytes(len);
+              super.write(b, off, len);
+            }
+          };
+        }
+      });
+    }
+
     @Override
     public void recover() throws IOException {
       output.recover();
     }
 
+    @Override
+    public Optional<String> getTmpPath() {
+      return output.getTmpPath();
+    }
+
+    @Override
+    public long getOffset() {
+      return output.getOffset();
+    }
+
+    @Override
+    public void suspend() throws Exception {
+      if (closed.compareAndSet(false, true)) {
+        try {
+          output.suspend();
+        } finally {
+          TrekUtils.closeWithLog(metrics, LOG);
+          TrekUtils.closeWithLog(lock, LOG);
+        }
+      }
+    }
+
     @Override
     public void close() throws Exception {
       if (closed.compareAndSet(false, true)) {
+        output.getWritableChannel()
+                .filter(v -> v instanceof FileChannel && v.isOpen())
+                .ifPresent(v -> TrekUtils.closeWithLog(() -> addBytes(Math.max(0,
+                        ((FileChannel) v).position() - output.getOffset()
+                        - countedBytes.get())), LOG));
         TrekUtils.closeWithLog(output, LOG);
         TrekUtils.closeWithLog(metrics, LOG);
         TrekUtils.closeWithLog(lock, LOG);
@@ -314,6 +419,11 @@ public abstract class DataSystem {
     private final Lock lock;
     private final UndealtMetrics metrics;
     private final AtomicBoolean closed = new AtomicBoolean(false);
+    /**
+     * The bytes counted by the stream. The bytes moved by the file channel are
+     * counted on closing by comparing with the channel position.
+     */
+    private final AtomicLong countedBytes = new AtomicLong(0);
 
     MetricableInputChannel(final Lock lock, final InputChannel input,
             final UndealtMetrics metrics) {
@@ -322,6 +432,11 @@ public abstract class DataSystem {
       this.metrics = metrics;
     }
 
+    private void addBytes(final long v) {
+      countedBytes.addAndGet(v);
+      metrics.addBytes(v);
+    }
+
     @Override
     public DataInfo getInfo() {
       return input.getInfo();
@@ -334,7 +449,7 @@ public abstract class DataSystem {
         public int read() throws IOException {
           int rval = super.read();
           if (rval != -1) {
-            metrics.addBytes(1);
+            addBytes(1);
           }
           return rval;
         }
@@ -343,16 +458,54 @@ public abstract class DataSystem {
         public int read(byte[] b, int off, int len) throws IOException {
           int rval = super.read(b, off, len);
           if (rval != -1) {
-            metrics.addBytes(rval);
+            addBytes(rval);
           }
           return rval;
         }
       };
     }
 
+    @Override
+    public long getOffset() {
+      return input.getOffset();
+    }
+
+    @Override
+    public Optional<FileChannel> getFileChannel() {
+      return input.getFileChannel();
+    }
+
+    @Override
+    public Optional<RangeReader> getRangeReader() {
+      return input.getRangeReader().map(reader -> (offset, length)
+              -> new InputStreamAdapter(reader.open(offset, length)) {
+        @Override
+        public int read() throws IOException {
+          int rval = super.read();
+          if (rval != -1) {
+            addBytes(1);
+          }
+          return rval;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          int rval = super.read(b, off, len);
+          if (rval != -1) {
+            addBytes(rval);
+          }
+          return rval;
+        }
+      });
+    }
+
     @Override
     public void close() throws Exception {
       if (closed.compareAndSet(false, true)) {
+        input.getFileChannel()
+                .filter(v -> v.isOpen())
+                .ifPresent(v -> TrekUtils.closeWithLog(() -> addBytes(Math.max(0,
+                        v.position() - input.getOffset() - countedBytes.get())), LOG));
         TrekUtils.closeWithLog(input, LOG);
         TrekUtils.closeWithLog(metrics, LOG);
         TrekUtils.closeWithLog(lock, LOG);
@@ -14,12 +14,21 @@ import com.spright.trek.query.CloseableIterator;
 import com.spright.trek.query.IteratorUtils;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.hadoop.conf.Configuration;
 import java.io.IOException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Optional;
 
 public class FileDataSystem extends DataSystem {
@@ -38,14 +47,24 @@ public class FileDataSystem extends DataSystem {
     checkDataExisted(request, file.exists());
     DataInfo info = toDataInfo(request, file);
     checkDataType(info.getType(), DataType.FILE);
+    FileInputStream input = new FileInputStream(file);
+    try {
+      input.getChannel().position(request.getOffset());
+    } catch (IOException e) {
+      input.close();
+      throw e;
+    }
     return new InputChannel() {
-      private final InputStream input = new FileInputStream(file);
-
       @Override
       public void close() throws IOException {
         input.close();
       }
 
+      @Override
+      public long getOffset() {
+        return request.getOffset();
+      }
+
       @Override
       public DataInfo getInfo() {
         return info;
@@ -55,18 +74,69 @@ public class FileDataSystem extends DataSystem {
       public InputStream getInputStream() {
         return input;
       }
+
+      @Override
+      public Optional<FileChannel> getFileChannel() {
+        return Optional.of(input.getChannel());
+      }
+
+      @Override
+      public Optional<RangeReader> getRangeReader() {
+        return Optional.of((offset, length) -> {
+          FileInputStream range = new FileInputStream(file);
+          try {
+            range.getChannel().position(offset);
+          } catch (IOException e) {
+            range.close();
+            throw e;
+          }
+          return new BoundedInputStream(range, length);
+        });
+      }
     };
   }
 
   @Override
   protected OutputChannel internalCreate(final WriteDataRequest request) throws IOException {
     File realFile = new File(request.getPath().toString());
-    File tmpFile = new File(createTmpPath(realFile.getCanonicalPath()));
+    //the batch access may write the data to a new sub-directory
+    realFile.getParentFile().mkdirs();
+    final File tmpFile = request.getTmpPath()
+            .map(v -> new File(v))
+            .filter(v -> v.isFile())
+            .orElse(new File(createTmpPath(realFile.getCanonicalPath())));
+    final FileChannel channel = FileChannel.open(tmpFile.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    final long offset;
+    try {
+      //drop the bytes written after the last checkpoint
+      channel.truncate(request.getOffset());
+      offset = channel.size();
+      channel.position(offset);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    final OutputStream output = Channels.newOutputStream(channel);
     return new OutputChannel() {
       private final Optional<Long> ts = request.getExpectedTime();
-      private final OutputStream output = new FileOutputStream(tmpFile);
       private boolean hasMove = false;
 
+      @Override
+      public Optional<String> getTmpPath() {
+        return Optional.of(tmpFile.getAbsolutePath());
+      }
+
+      @Override
+      public long getOffset() {
+        return offset;
+      }
+
+      @Override
+      public void suspend() throws IOException {
+        output.close();
+      }
+
       @Override
       public WriteDataRequest getRequest() {
         return request;
@@ -98,6 +168,32 @@ public class FileDataSystem extends DataSystem {
         return output;
       }
 
+      @Override
+      public Optional<WritableByteChannel> getWritableChannel() {
+        return Optional.of(channel);
+      }
+
+      @Override
+      public Optional<RangeWriter> getRangeWriter() {
+        return Optional.of((offset, length) -> new OutputStream() {
+          private long position = offset;
+
+          @Override
+          public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+          }
+
+          @Override
+          public void write(byte[] b, int off, int len) throws IOException {
+            //positional write is safe for concurrent ranges
+            ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+            while (buf.hasRemaining()) {
+              position += channel.write(buf, position);
+            }
+          }
+        });
+      }
+
       @Override
       public void recover() throws IOException {
         if (hasMove) {
@@ -115,13 +211,50 @@ public class FileDataSystem extends DataSystem {
 
   @Override
   protected CloseableIterator<DataInfo> internalList(final DataInfoQuery request) throws IOException {
-    final String host = TrekUtils.getHostname();
-    File file = new File(request.getPath().toString());
-    checkDataExisted(request, file.exists());
-    checkDataType(toDataInfo(request, file).getType(), DataType.FILE);
-    return IteratorUtils.wrap(
-            IteratorUtils.wrap(Arrays.asList(file.listFiles()).iterator()),
-            (File f) -> toDataInfo(request.appendName(f.getName()), f));
+    Path dir = Paths.get(request.getPath().getCatalog());
+    checkDataExisted(request, Files.isDirectory(dir));
+    return list(request, Files.newDirectoryStream(dir));
+  }
+
+  /**
+   * Reads the entries from the directory as the iterator is advanced. The
+   * entry deleted after it is listed is skipped.
+   *
+   * @param request The query of directory
+   * @param stream The entries of directory. It is closed by the iterator
+   * @return The data infos of entries
+   */
+  static CloseableIterator<DataInfo> list(final DataInfoQuery request,
+          final DirectoryStream<Path> stream) {
+    return IteratorUtils.wrap(IteratorUtils.wrap(stream.iterator(), stream),
+            (Path p) -> {
+              try {
+                return toDataInfo(request.replaceName(p.getFileName().toString()),
+                        Files.readAttributes(p, BasicFileAttributes.class));
+              } catch (IOException e) {
+                //the entry may be deleted after it is listed
+                return null;
+              }
+            });
+  }
+
+  private static DataInfo toDataInfo(final UriRequest request,
+          final BasicFileAttributes attrs) {
+    DataInfo.Builder builder = DataInfo.newBuilder();
+    if (attrs.isRegularFile()) {
+      builder.setType(DataType.FILE)
+              .setSize(attrs.size());
+    } else if (attrs.isDirectory()) {
+      builder.setType(DataType.DIRECTORY)
+              .setSize(0);
+    } else {
+      builder.setType(DataType.OTHERS)
+              .setSize(attrs.size());
+    }
+    return builder.setOwner(DataOwner.newSingleOwner(TrekUtils.getHostname()))
+            .setRequest(request)
+            .setUploadTime(attrs.lastModifiedTime().toMillis())
+            .build();
   }
 
   private static DataInfo toDataInfo(final UriRequest request, final File file) {
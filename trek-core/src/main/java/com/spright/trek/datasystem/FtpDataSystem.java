@@ -23,9 +23,19 @@ import com.spright.trek.datasystem.request.WriteDataRequest;
 import com.spright.trek.exception.FtpIOException;
 import com.spright.trek.query.CloseableIterator;
 import com.spright.trek.query.IteratorUtils;
+import com.spright.trek.thread.RestrictedListMap;
 import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.io.FilenameUtils;
 
 /**
@@ -34,18 +44,105 @@ import org.apache.commons.io.FilenameUtils;
 public class FtpDataSystem extends DataSystem {
 
   private static final Log LOG = LogFactory.getLog(FtpDataSystem.class);
+  private final RestrictedListMap<String, PooledClient> pool;
+  /**
+   * Limits the borrowed connections of each host and port.
+   */
+  private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+  /**
+   * The result of HELP is cached by host and port since it is unchanged
+   * between the connections.
+   */
+  private final Map<String, Capability> capabilities = new ConcurrentHashMap<>();
+  private final int maxPerHost;
+  private final long idleTime;
+  private final long waitTime;
+  private final int connectTimeout;
+  private final int socketTimeout;
 
   public FtpDataSystem(final Configuration config) throws Exception {
     super(config, Protocol.FTP);
+    maxPerHost = Math.max(1, config.getInt(DConstants.FTP_POOL_MAX_PER_HOST,
+            DConstants.DEFAULT_FTP_POOL_MAX_PER_HOST));
+    idleTime = config.getLong(DConstants.FTP_POOL_IDLE_TIME,
+            DConstants.DEFAULT_FTP_POOL_IDLE_TIME);
+    waitTime = config.getLong(DConstants.FTP_POOL_WAIT_TIME,
+            DConstants.DEFAULT_FTP_POOL_WAIT_TIME);
+    connectTimeout = config.getInt(DConstants.FTP_CONNECT_TIMEOUT,
+            DConstants.DEFAULT_FTP_CONNECT_TIMEOUT);
+    socketTimeout = config.getInt(DConstants.FTP_SOCKET_TIMEOUT,
+            DConstants.DEFAULT_FTP_SOCKET_TIMEOUT);
+    pool = new RestrictedListMap<>(config.getInt(DConstants.FTP_POOL_MAX_SIZE,
+            DConstants.DEFAULT_FTP_POOL_MAX_SIZE),
+            (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(idleTime) / 2));
+  }
+
+  /**
+   * Borrows a connection from pool. The caller is blocked if the server has
+   * too many borrowed connections. The permits and the pool are both keyed by
+   * the host and port.
+   *
+   * @param request The remote data
+   * @return A logged-in connection
+   * @throws IOException If failed to connect the server
+   */
+  private FtpConnection connect(final UriRequest request) throws IOException {
+    final AccountInfo info = request.getAccountInfo();
+    final String host = DataSystem.getHostOrThrow(request);
+    final int port = info.getPort().filter(v -> v > 0).orElse(FTP.DEFAULT_PORT);
+    final String server = host + ":" + port;
+    final Semaphore permits = hostPermits.computeIfAbsent(server,
+            h -> new Semaphore(maxPerHost));
+    try {
+      if (!permits.tryAcquire(waitTime, TimeUnit.MILLISECONDS)) {
+        throw new FtpIOException("No available connection for " + server
+                + ", the max number is " + maxPerHost);
+      }
+    } catch (InterruptedException e) {
+      throw new FtpIOException("Interrupted while waiting for connection", e);
+    }
+    try {
+      PooledClient pooled = pool.get(getPoolKey(server, info),
+              () -> new PooledClient(info, host, port, server));
+      return new FtpConnection(pooled, permits);
+    } catch (IOException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * The connection is logged in by the credentials, so it is reused by the
+   * same domain, user and password only. The credentials are hashed to keep
+   * the password out of the key.
+   *
+   * @param server The host and port
+   * @param info The credentials
+   * @return The key of pooled connection
+   * @throws FtpIOException If no digest algorithm is available
+   */
+  static String getPoolKey(final String server, final AccountInfo info) throws FtpIOException {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (Optional<String> v : Arrays.asList(info.getDomain(), info.getUser(), info.getPassword())) {
+        //the length prefix keeps the boundary of values
+        byte[] b = v.orElse("").getBytes(StandardCharsets.UTF_8);
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(b.length).array());
+        digest.update(b);
+      }
+      return server + ":" + Base64.getEncoder().encodeToString(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new FtpIOException("Failed to hash the credentials", e);
+    }
   }
 
   @Override
   public InputChannel internalOpen(final ReadDataRequest request) throws IOException {
-    FtpConnection ftp = new FtpConnection(request);
+    FtpConnection ftp = connect(request);
     try {
       DataInfo info = ftp.getDataInfo(request);
       checkDataType(info.getType(), DataType.FILE);
-      InputStream input = ftp.open(request.getPath().toString());
+      InputStream input = ftp.open(request.getPath().toString(), request.getOffset());
       int reply = ftp.getReplyCode();
       if (reply != 150 && !FTPReply.isPositiveCompletion(reply)) {
         LOG.info("error reply");
@@ -64,6 +161,11 @@ public class FtpDataSystem extends DataSystem {
           }
         }
 
+        @Override
+        public long getOffset() {
+          return request.getOffset();
+        }
+
         @Override
         public DataInfo getInfo() {
           return info;
@@ -82,18 +184,49 @@ public class FtpDataSystem extends DataSystem {
 
   @Override
   public OutputChannel internalCreate(final WriteDataRequest request) throws IOException {
-    FtpConnection ftp = new FtpConnection(request);
+    FtpConnection ftp = connect(request);
     try {
       if (!ftp.supportMFMT() && request.getExpectedTime().isPresent()) {
         throw new FtpIOException("The ftp server does not support MFMT command");
       }
       final String path = request.getPath().toString();
-      String tmpPath = createTmpPath(path);
-      OutputStream output = ftp.create(tmpPath);
+      Optional<String> resumedPath = request.getTmpPath()
+              .filter(v -> ftp.supportMLST());
+      //ftp can't truncate the file, but the extra bytes are still valid
+      //since the data is written sequentially
+      final long offset = resumedPath.isPresent() ? ftp.size(resumedPath.get()) : -1;
+      if (offset < 0) {
+        resumedPath = Optional.empty();
+      }
+      final String tmpPath = resumedPath.orElse(createTmpPath(path));
+      OutputStream output = resumedPath.isPresent()
+              ? ftp.append(tmpPath) : ftp.create(tmpPath);
       return new OutputChannel() {
         private final Optional<Long> ts = request.getExpectedTime();
         private boolean hasMove = false;
 
+        @Override
+        public Optional<String> getTmpPath() {
+          return Optional.of(tmpPath);
+        }
+
+        @Override
+        public long getOffset() {
+          return Math.max(0, offset);
+        }
+
+        @Override
+        public void suspend() throws IOException {
+          try {
+            output.close();
+            if (!ftp.completePendingCommand()) {
+              throw new FtpIOException("Failed to complete write ftp file");
+            }
+          } finally {
+            ftp.close();
+          }
+        }
+
         @Override
         public WriteDataRequest getRequest() {
           return request;
@@ -101,14 +234,13 @@ public class FtpDataSystem extends DataSystem {
 
         @Override
         public void recover() throws IOException {
-          try {
+          //the connection has been released if the data is committed
+          try (FtpConnection conn = ftp.isClosed() ? connect(request) : ftp) {
             if (hasMove) {
-              ftp.deleteFile(path);
+              conn.deleteFile(path);
             } else {
-              ftp.deleteFile(tmpPath);
+              conn.deleteFile(tmpPath);
             }
-          } finally {
-            ftp.close();
           }
         }
 
@@ -148,20 +280,18 @@ public class FtpDataSystem extends DataSystem {
 
   @Override
   protected CloseableIterator<DataInfo> internalList(final DataInfoQuery request) throws IOException {
-    try (FtpConnection ftp = new FtpConnection(request)) {
-      String path = request.getPath().toString();
+    try (FtpConnection ftp = connect(request)) {
+      String path = request.getPath().getCatalog();
       String host = DataSystem.getHostOrThrow(request);
-      DataInfo info = ftp.getDataInfo(request);
-      checkDataType(info.getType(), DataType.DIRECTORY);
       return IteratorUtils.wrap(
               IteratorUtils.wrap(Arrays.asList(ftp.list(path)).iterator()),
-              (FTPFile f) -> toDataInfo(request.appendName(f.getName()), host, f));
+              (FTPFile f) -> toDataInfo(request.replaceName(f.getName()), host, f));
     }
   }
 
   @Override
   protected void internalDelete(final DataInfo info) throws IOException {
-    try (FtpConnection ftp = new FtpConnection(info.getUriRequest())) {
+    try (FtpConnection ftp = connect(info.getUriRequest())) {
       String path = info.getUriRequest().getPath().toString();
       switch (info.getType()) {
         case DIRECTORY:
@@ -183,24 +313,43 @@ public class FtpDataSystem extends DataSystem {
 
   @Override
   protected void close() throws Exception {
+    pool.close();
   }
 
-  private static class FtpConnection implements Closeable {
+  /**
+   * The commands supported by the server.
+   */
+  private static final class Capability {
 
-    private final FTPClient client;
     private final boolean supportMFMT;
     private final boolean supportMLST;
 
-    FtpConnection(final UriRequest request) throws IOException {
-      AccountInfo info = request.getAccountInfo();
-      String host = DataSystem.getHostOrThrow(request);
-      client = new FTPClient();
+    Capability(final String helps) {
+      supportMFMT = helps.contains("MFMT");
+      supportMLST = helps.contains("MLST");
+    }
+  }
+
+  /**
+   * A logged-in client kept by the pool.
+   */
+  private final class PooledClient extends RestrictedListMap.Value {
+
+    private final FTPClient client = new FTPClient();
+    private final Capability capability;
+
+    PooledClient(final AccountInfo info, final String host, final int port,
+            final String server) throws IOException {
+      super(idleTime);
       try {
         client.setControlKeepAliveTimeout(Long.MAX_VALUE);
-        client.connect(host);
+        //the dead server must not block the caller forever
+        client.setConnectTimeout(connectTimeout);
+        client.setDefaultTimeout(socketTimeout);
+        client.setDataTimeout(socketTimeout);
+        client.connect(host, port);
         int reply = client.getReplyCode();
         if (!FTPReply.isPositiveCompletion(reply)) {
-          client.disconnect();
           throw new IOException("FTP server refused connection");
         }
         if (info.getUser().isPresent() && info.getPassword().isPresent()) {
@@ -211,15 +360,54 @@ public class FtpDataSystem extends DataSystem {
          * We must change the file type here.
          */
         client.setFileType(FTP.BINARY_FILE_TYPE);
-        String helps = client.listHelp();
-        supportMFMT = helps.contains("MFMT");
-        supportMLST = helps.contains("MLST");
+        Capability cap = capabilities.get(server);
+        if (cap == null) {
+          cap = new Capability(client.listHelp());
+          capabilities.put(server, cap);
+        }
+        capability = cap;
       } catch (IOException e) {
         client.disconnect();
         throw e;
       }
     }
 
+    @Override
+    protected boolean isAlive() {
+      try {
+        return client.isConnected() && client.sendNoOp();
+      } catch (IOException e) {
+        return false;
+      }
+    }
+
+    @Override
+    protected void clean() throws IOException {
+      client.disconnect();
+    }
+  }
+
+  private final class FtpConnection implements Closeable {
+
+    private final PooledClient pooled;
+    private final Semaphore permits;
+    private final FTPClient client;
+    private final boolean supportMFMT;
+    private final boolean supportMLST;
+    private boolean closed = false;
+
+    FtpConnection(final PooledClient pooled, final Semaphore permits) {
+      this.pooled = pooled;
+      this.permits = permits;
+      this.client = pooled.client;
+      this.supportMFMT = pooled.capability.supportMFMT;
+      this.supportMLST = pooled.capability.supportMLST;
+    }
+
+    boolean isClosed() {
+      return closed;
+    }
+
     void deleteFile(final String path) throws IOException {
       if (!client.deleteFile(path)) {
         throw new FtpIOException("Failed to delete:" + path);
@@ -268,7 +456,7 @@ public class FtpDataSystem extends DataSystem {
     }
 
     FTPFile[] list(final String path) throws IOException {
-      return client.listFiles();
+      return client.listFiles(path);
     }
 
     boolean exist(final String path) throws IOException {
@@ -314,7 +502,9 @@ public class FtpDataSystem extends DataSystem {
       return supportMFMT;
     }
 
-    InputStream open(final String path) throws IOException {
+    InputStream open(final String path, final long offset) throws IOException {
+      //send REST before RETR
+      client.setRestartOffset(offset);
       return client.retrieveFileStream(path);
     }
 
@@ -322,9 +512,41 @@ public class FtpDataSystem extends DataSystem {
       return client.storeFileStream(path);
     }
 
+    OutputStream append(final String path) throws IOException {
+      return client.appendFileStream(path);
+    }
+
+    /**
+     * @param path The file path
+     * @return The size of file, or -1 if the file doesn't exist
+     * @throws IOException If failed to get the file info
+     */
+    long size(final String path) throws IOException {
+      FTPFile f = client.mlistFile(path);
+      return f == null || !f.isFile() ? -1 : f.getSize();
+    }
+
+    /**
+     * Returns the connection to pool if the last command succeeded. The
+     * connection in unknown state, such as a broken transfer, is discarded.
+     */
     @Override
     public void close() throws IOException {
-      client.disconnect();
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        if (!pool.isClosed() && FTPReply.isPositiveCompletion(client.getReplyCode())) {
+          pooled.free();
+        } else {
+          pooled.close();
+        }
+      } catch (Exception e) {
+        throw new FtpIOException("Failed to release ftp connection", e);
+      } finally {
+        permits.release();
+      }
     }
 
   }
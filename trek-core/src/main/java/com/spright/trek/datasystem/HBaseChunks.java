@@ -0,0 +1,328 @@
+package com.spright.trek.datasystem;
+
+import com.spright.trek.DConstants;
+import com.spright.trek.exception.HdsIOException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * Stores the data as fixed-size chunks in the cells of its row. The chunk i
+ * of an upload is saved in the qualifier "c" + long(id) + int(i) with the
+ * upload time as timestamp. The id is unique to the upload, so the chunks of
+ * an overwrite never replace the committed chunks, and a chunk of another
+ * version is reported as missing rather than mixed into the data. The chunks
+ * are put as soon as they are filled, and they are read one by one with a few
+ * chunks fetched ahead.
+ */
+final class HBaseChunks {
+
+  /**
+   * @return A new id of upload
+   */
+  static long newId() {
+    return ThreadLocalRandom.current().nextLong();
+  }
+
+  static byte[] toQualifier(final long id, final int index) {
+    return Bytes.add(DConstants.HDS_DATA_CHUNK_QUALIFIER_PREFIX,
+            Bytes.toBytes(id), Bytes.toBytes(index));
+  }
+
+  /**
+   * @param row The row of data
+   * @param id The id of upload
+   * @param chunkCount The number of chunks
+   * @return The delete for all versions of the chunks, or null if there is
+   * no chunk
+   */
+  static Delete newDelete(final byte[] row, final long id, final int chunkCount) {
+    if (chunkCount <= 0) {
+      return null;
+    }
+    Delete delete = new Delete(row);
+    for (int i = 0; i != chunkCount; ++i) {
+      delete.addColumns(DConstants.HDS_TABLE_FAMILY, toQualifier(id, i));
+    }
+    return delete;
+  }
+
+  static Cell createCell(final byte[] row, final byte[] qualifier,
+          final long ts, final byte[] buf, final int offset, final int len) {
+    return new KeyValue(
+            row, 0, row.length,
+            DConstants.HDS_TABLE_FAMILY, 0, DConstants.HDS_TABLE_FAMILY.length,
+            qualifier, 0, qualifier.length,
+            ts, KeyValue.Type.Put,
+            buf, offset, len);
+  }
+
+  /**
+   * Copies the value from the views into the cell without an intermediate
+   * array.
+   */
+  static Cell createCell(final byte[] row, final byte[] qualifier,
+          final long ts, final ByteBuffer[] values) {
+    long len = 0;
+    for (ByteBuffer value : values) {
+      len += value.remaining();
+    }
+    if (len > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The value is too large: " + len);
+    }
+    KeyValue kv = new KeyValue(row.length, DConstants.HDS_TABLE_FAMILY.length,
+            qualifier.length, ts, KeyValue.Type.Put, (int) len);
+    System.arraycopy(row, 0, kv.getRowArray(), kv.getRowOffset(), row.length);
+    System.arraycopy(DConstants.HDS_TABLE_FAMILY, 0, kv.getFamilyArray(),
+            kv.getFamilyOffset(), DConstants.HDS_TABLE_FAMILY.length);
+    System.arraycopy(qualifier, 0, kv.getQualifierArray(),
+            kv.getQualifierOffset(), qualifier.length);
+    int offset = kv.getValueOffset();
+    for (ByteBuffer value : values) {
+      int size = value.remaining();
+      value.duplicate().get(kv.getValueArray(), offset, size);
+      offset += size;
+    }
+    return kv;
+  }
+
+  /**
+   * Puts a chunk once it is filled. The table is closed with the stream.
+   */
+  static final class ChunkOutputStream extends OutputStream {
+
+    private final Table table;
+    private final byte[] row;
+    private final long ts;
+    private final long id;
+    private final byte[] buf;
+    private int count = 0;
+    private int chunks = 0;
+    private long size = 0;
+    private boolean closed = false;
+
+    ChunkOutputStream(final Table table, final byte[] row, final long ts,
+            final long id, final int chunkSize) {
+      this.table = table;
+      this.row = row;
+      this.ts = ts;
+      this.id = id;
+      this.buf = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      buf[count++] = (byte) b;
+      if (count == buf.length) {
+        flushChunk();
+      }
+    }
+
+    @Override
+    public void write(final byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        final int n = Math.min(len, buf.length - count);
+        System.arraycopy(b, off, buf, count, n);
+        count += n;
+        off += n;
+        len -= n;
+        if (count == buf.length) {
+          flushChunk();
+        }
+      }
+    }
+
+    private void flushChunk() throws IOException {
+      if (count == 0) {
+        return;
+      }
+      Put put = new Put(row);
+      put.add(createCell(row, toQualifier(id, chunks), ts, buf, 0, count));
+      //the put is sent before it returns, so the buffer can be reused
+      table.put(put);
+      size += count;
+      ++chunks;
+      count = 0;
+    }
+
+    /**
+     * @return The id of upload
+     */
+    long getId() {
+      return id;
+    }
+
+    /**
+     * @return The number of chunks which have been put
+     */
+    int getChunkCount() {
+      return chunks;
+    }
+
+    /**
+     * @return The number of bytes which have been put
+     */
+    long getSize() {
+      return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        flushChunk();
+      } finally {
+        table.close();
+      }
+    }
+  }
+
+  /**
+   * Reads the chunks in order. The next chunks are fetched by the executor
+   * while the current chunk is consumed.
+   */
+  static final class ChunkInputStream extends InputStream {
+
+    private final Connection conn;
+    private final TableName tableName;
+    private final byte[] row;
+    private final long ts;
+    private final long id;
+    private final int chunkCount;
+    private final int prefetch;
+    private final ExecutorService executor;
+    private final Deque<Future<ByteBuffer>> pending = new LinkedList<>();
+    private int nextChunk;
+    private ByteBuffer current;
+    private long skip;
+
+    /**
+     * @param conn The hbase connection
+     * @param tableName The table
+     * @param row The row of data
+     * @param ts The upload time of data
+     * @param id The id of upload
+     * @param chunkCount The number of chunks
+     * @param chunkSize The size of chunk
+     * @param offset The position to start
+     * @param prefetch The number of chunks to fetch ahead
+     * @param executor Fetches the chunks
+     */
+    ChunkInputStream(final Connection conn, final TableName tableName,
+            final byte[] row, final long ts, final long id, final int chunkCount,
+            final int chunkSize, final long offset, final int prefetch,
+            final ExecutorService executor) {
+      this.conn = conn;
+      this.tableName = tableName;
+      this.row = row;
+      this.ts = ts;
+      this.id = id;
+      this.chunkCount = chunkCount;
+      this.prefetch = Math.max(0, prefetch);
+      this.executor = executor;
+      this.nextChunk = (int) (offset / chunkSize);
+      this.skip = offset % chunkSize;
+    }
+
+    private ByteBuffer fetch(final int index) throws IOException {
+      final byte[] qualifier = toQualifier(id, index);
+      Get get = new Get(row);
+      get.addColumn(DConstants.HDS_TABLE_FAMILY, qualifier);
+      get.setTimeStamp(ts);
+      try (Table table = conn.getTable(tableName)) {
+        Result result = table.get(get);
+        Cell cell = result.getColumnLatestCell(DConstants.HDS_TABLE_FAMILY, qualifier);
+        if (cell == null) {
+          throw new HdsIOException("No found of chunk " + index + " of "
+                  + Bytes.toString(row) + ", the data may be changed");
+        }
+        return ByteBuffer.wrap(cell.getValueArray(), cell.getValueOffset(),
+                cell.getValueLength());
+      }
+    }
+
+    private boolean fill() throws IOException {
+      while (current == null || !current.hasRemaining()) {
+        while (pending.size() <= prefetch && nextChunk < chunkCount) {
+          final int index = nextChunk++;
+          pending.add(executor.submit(() -> fetch(index)));
+        }
+        if (pending.isEmpty()) {
+          return false;
+        }
+        try {
+          current = pending.poll().get();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException("Interrupted while fetching chunk");
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof IOException) {
+            throw (IOException) e.getCause();
+          }
+          throw new IOException(e.getCause());
+        }
+        if (skip != 0) {
+          current.position(current.position() + (int) Math.min(skip, current.remaining()));
+          skip = 0;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!fill()) {
+        return -1;
+      }
+      return current.get() & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!fill()) {
+        return -1;
+      }
+      final int n = Math.min(len, current.remaining());
+      current.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return current == null ? 0 : current.remaining();
+    }
+
+    @Override
+    public void close() {
+      pending.forEach(f -> f.cancel(true));
+      pending.clear();
+      current = null;
+    }
+  }
+
+  private HBaseChunks() {
+  }
+}
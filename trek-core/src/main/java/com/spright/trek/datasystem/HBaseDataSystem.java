@@ -8,23 +8,29 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.Cell;
-import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Admin;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.RowMutations;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.filter.CompareFilter;
@@ -37,6 +43,7 @@ import org.apache.hadoop.hbase.filter.RowFilter;
 import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
 import com.spright.trek.datasystem.request.DataInfoQuery;
+import com.spright.trek.datasystem.request.DataOwner;
 import com.spright.trek.datasystem.request.DataPath;
 import com.spright.trek.datasystem.request.ReadDataRequest;
 import com.spright.trek.datasystem.request.WriteDataRequest;
@@ -45,6 +52,7 @@ import com.spright.trek.exception.UriParseIOException;
 import com.spright.trek.DConstants;
 import com.spright.trek.utils.HBaseUtils;
 import com.spright.trek.utils.TrekUtils;
+import com.spright.trek.io.BufferPool;
 import com.spright.trek.io.InfiniteAccesser;
 import com.spright.trek.mapping.AccountInfo;
 import com.spright.trek.thread.ShareableObject;
@@ -62,12 +70,19 @@ public class HBaseDataSystem extends DataSystem {
 
   private static final Log LOG = LogFactory.getLog(HBaseDataSystem.class);
   private static final Set<TableName> TABLENAME_CACHE = new TreeSet<>();
-  private final Path rootPath;
+  private final HdsLayout layout;
   private final FileSystem fs;
   private final int limit;
   private final int initialCap;
+  private final BufferPool bufferPool;
   private final String namespace;
   private final ShareableObject<Connection> conn;
+  private final LocalityResolver locality;
+  private final int chunkSize;
+  private final long chunkMaxDataSize;
+  private final int chunkPrefetch;
+  private final ExecutorService chunkFetcher;
+  private final HBaseIngester ingester;
 
   public HBaseDataSystem(final Configuration conf) throws Exception {
     super(conf, Protocol.HBASE);
@@ -93,8 +108,21 @@ public class HBaseDataSystem extends DataSystem {
     initialCap = conf.getInt(DConstants.DATA_BUFFER_INITIAL_SIZE,
             DConstants.DEFAULT_DATA_BUFFER_INITIAL_SIZE);
     InfiniteAccesser.checkMemorySetting(limit, initialCap);
-    rootPath = new Path(conf.get(DConstants.HDS_ROOT_PATH,
-            DConstants.DEFAULT_HDS_ROOT_PATH));
+    bufferPool = BufferPool.getInstance(conf);
+    layout = new HdsLayout(conf);
+    locality = new LocalityResolver(conf, fs);
+    chunkSize = Math.min(limit, conf.getInt(DConstants.HDS_CHUNK_SIZE,
+            DConstants.DEFAULT_HDS_CHUNK_SIZE));
+    chunkMaxDataSize = conf.getLong(DConstants.HDS_CHUNK_MAX_DATA_SIZE,
+            DConstants.DEFAULT_HDS_CHUNK_MAX_DATA_SIZE);
+    chunkPrefetch = conf.getInt(DConstants.HDS_CHUNK_PREFETCH,
+            DConstants.DEFAULT_HDS_CHUNK_PREFETCH);
+    chunkFetcher = Executors.newFixedThreadPool(Math.max(1,
+            conf.getInt(DConstants.HDS_CHUNK_HANDLER_NUMBER,
+                    DConstants.DEFAULT_HDS_CHUNK_HANDLER_NUMBER)));
+    ingester = conf.getBoolean(DConstants.HDS_INGEST_ENABLE,
+            DConstants.DEFAULT_HDS_INGEST_ENABLE)
+            ? new HBaseIngester(conf, conn.get(), fs) : null;
   }
 
   @Override
@@ -108,6 +136,7 @@ public class HBaseDataSystem extends DataSystem {
         return;
       }
       try (Admin admin = conn.get().getAdmin()) {
+        locality.invalidate(name);
         if (admin.tableExists(name)) {
           TABLENAME_CACHE.add(name);
         } else {
@@ -129,8 +158,8 @@ public class HBaseDataSystem extends DataSystem {
   }
 
   private static Get newGetWithAllQualifier(final UriRequest request) throws IOException {
-    Get get = new Get(Bytes.toBytes(request.getPath().getName()));
-    get.addFamily(DConstants.HDS_TABLE_FAMILY);
+    Get get = newGetWithoutHBaseValue(Bytes.toBytes(request.getPath().getName()));
+    get.addColumn(DConstants.HDS_TABLE_FAMILY, DConstants.HDS_DATA_CONTENT_QUALIFIER);
     return get;
   }
 
@@ -138,15 +167,24 @@ public class HBaseDataSystem extends DataSystem {
   public InputChannel internalOpen(final ReadDataRequest request) throws IOException {
     final TableName tableName = checkLegalCatalog(namespace, request.getPath().getCatalog());
     try (Table table = conn.get().getTable(tableName)) {
-      Record record = Record.valueOf(this, tableName, table.get(newGetWithAllQualifier(request)));
+      Result result = table.get(newGetWithAllQualifier(request));
+      if (result.isEmpty()) {
+        throw new HdsIOException("No found of " + request.getPath());
+      }
+      Record record = Record.valueOf(this, tableName, result, locality.newSession());
       return new InputChannel() {
-        private final InputStream input = record.getInputStream();
+        private final InputStream input = record.getInputStream(request.getOffset());
 
         @Override
         public void close() throws IOException {
           input.close();
         }
 
+        @Override
+        public long getOffset() {
+          return request.getOffset();
+        }
+
         @Override
         public DataInfo getInfo() {
           return record;
@@ -156,17 +194,29 @@ public class HBaseDataSystem extends DataSystem {
         public InputStream getInputStream() {
           return input;
         }
+
+        @Override
+        public Optional<RangeReader> getRangeReader() {
+          if (!record.isChunked() && record.hdfsPath == null) {
+            return Optional.empty();
+          }
+          return Optional.of((offset, length)
+                  -> new BoundedInputStream(record.getInputStream(offset), length));
+        }
       };
     } catch (TableNotFoundException e) {
       throw new HdsIOException("No found of table: " + tableName);
     }
   }
 
-  private static Get newGetWithoutHBaseValue(final byte[] key) {
+  static Get newGetWithoutHBaseValue(final byte[] key) {
     Get get = new Get(key);
     get.addColumn(DConstants.HDS_TABLE_FAMILY, DConstants.HDS_DATA_UPLOAD_TIME_QUALIFIER);
     get.addColumn(DConstants.HDS_TABLE_FAMILY, DConstants.HDS_DATA_SIZE_QUALIFIER);
     get.addColumn(DConstants.HDS_TABLE_FAMILY, DConstants.HDS_DATA_LINK_QUALIFIER);
+    get.addColumn(DConstants.HDS_TABLE_FAMILY, DConstants.HDS_DATA_CHUNK_COUNT_QUALIFIER);
+    get.addColumn(DConstants.HDS_TABLE_FAMILY, DConstants.HDS_DATA_CHUNK_SIZE_QUALIFIER);
+    get.addColumn(DConstants.HDS_TABLE_FAMILY, DConstants.HDS_DATA_CHUNK_ID_QUALIFIER);
     return get;
   }
 
@@ -201,27 +251,6 @@ public class HBaseDataSystem extends DataSystem {
     }
   }
 
-  private static Path createPath(final Path rootPath, final String catalog,
-          final String name) throws IOException {
-    Calendar cal = Calendar.getInstance();
-    cal.setTimeInMillis(System.currentTimeMillis());
-    int year = cal.get(Calendar.YEAR);
-    String month;
-    if (cal.get(Calendar.MONTH) < 10) {
-      month = "0" + cal.get(Calendar.MONTH);
-    } else {
-      month = String.valueOf(Calendar.MONTH);
-    }
-    StringBuilder str = new StringBuilder();
-    str.append(catalog)
-            .append("/")
-            .append(year)
-            .append(month)
-            .append("/")
-            .append(name);
-    return new Path(rootPath, str.toString());
-  }
-
   private static Path getTmpPath(final FileSystem fs, final Path realPath)
           throws IOException {
     if (realPath == null) {
@@ -240,15 +269,35 @@ public class HBaseDataSystem extends DataSystem {
     final TableName tableName = checkLegalCatalog(namespace, request.getPath().getCatalog());
     checkTableExisted(tableName);
     final long ts = request.getExpectedTime().orElse(System.currentTimeMillis());
-    Path realPath = createPath(rootPath, tableName.getQualifierAsString(), request.getPath().getName());
+    final long expectedSize = request.getExpectedSize().orElse(-1L);
+    if (chunkSize > 0 && expectedSize > limit && expectedSize <= chunkMaxDataSize) {
+      return createChunked(request, tableName, ts);
+    }
+    Path realPath = layout.getPath(tableName.getQualifierAsString(),
+            request.getPath().getName(), ts);
     Path tmpPath = new Path(createTmpPath(realPath.toString()));
     InfiniteAccesser infiniteAccess = new InfiniteAccesser(limit, initialCap,
-            new InfiniteAccesser.HdfsIOFactory(fs, tmpPath));
+            new InfiniteAccesser.HdfsIOFactory(fs, tmpPath), bufferPool);
+    final boolean ingest = request.isBulk() && ingester != null;
+    if (ingest) {
+      ingester.register();
+    }
     return new OutputChannel() {
       private final OutputStream output = infiniteAccess.getOutputStream();
       private final byte[] rowKey = Bytes.toBytes(request.getPath().getName());
       private boolean hasPutToHBase = false;
       private boolean hasMove = false;
+      private boolean registered = ingest;
+
+      /**
+       * Lets the ingester flush without waiting for this channel.
+       */
+      private void unregister() {
+        if (registered) {
+          registered = false;
+          ingester.unregister();
+        }
+      }
 
       @Override
       public WriteDataRequest getRequest() {
@@ -257,6 +306,14 @@ public class HBaseDataSystem extends DataSystem {
 
       @Override
       public void close() throws IOException {
+        try {
+          commit();
+        } finally {
+          unregister();
+        }
+      }
+
+      private void commit() throws IOException {
         output.close();
         Put put = new Put(rowKey);
         put.addColumn(DConstants.HDS_TABLE_FAMILY,
@@ -268,10 +325,10 @@ public class HBaseDataSystem extends DataSystem {
                         ts,
                         Bytes.toBytes(infiniteAccess.getSize()));
         if (infiniteAccess.isInMemory()) {
-          put.add(createHBaseValueCell(put.getRow(), ts,
-                  infiniteAccess.getBuffer(),
-                  infiniteAccess.getBufferOffset(),
-                  infiniteAccess.getBufferLength()));
+          put.add(HBaseChunks.createCell(put.getRow(),
+                  DConstants.HDS_DATA_CONTENT_QUALIFIER, ts,
+                  infiniteAccess.getByteBuffers()));
+          infiniteAccess.release();
         } else {
           boolean exist = fs.exists(realPath);
           if (exist && !fs.isFile(realPath)) {
@@ -290,21 +347,21 @@ public class HBaseDataSystem extends DataSystem {
                   ts,
                   Bytes.toBytes(realPath.toString()));
         }
-        try (Table t = conn.get().getTable(tableName)) {
-          Result result = t.get(newGetWithoutHBaseValue(put.getRow()));
-          byte[] link = result.getValue(DConstants.HDS_TABLE_FAMILY,
-                  DConstants.HDS_DATA_LINK_QUALIFIER);
-          if (link != null) {
-            Path previousPath = new Path(Bytes.toString(link));
-            fs.delete(previousPath, false);
+        if (ingest && infiniteAccess.isInMemory()) {
+          ingester.write(tableName, put);
+        } else {
+          unregister();
+          try (Table t = conn.get().getTable(tableName)) {
+            replace(t, put, hasMove ? realPath : null);
           }
-          t.put(put);
         }
         hasPutToHBase = true;
       }
 
       @Override
       public void recover() throws IOException {
+        unregister();
+        infiniteAccess.release();
         if (!infiniteAccess.isInMemory()) {
           if (hasMove) {
             TrekUtils.closeWithLog(() -> fs.delete(realPath, true), LOG);
@@ -326,18 +383,194 @@ public class HBaseDataSystem extends DataSystem {
     };
   }
 
-  private static Cell createHBaseValueCell(final byte[] row, final long ts,
-          final byte[] buf, final int offset, final int len) {
-    return new KeyValue(
-            row, 0, row.length,
-            DConstants.HDS_TABLE_FAMILY, 0, DConstants.HDS_TABLE_FAMILY.length,
-            DConstants.HDS_DATA_CONTENT_QUALIFIER, 0, DConstants.HDS_DATA_CONTENT_QUALIFIER.length,
-            ts, KeyValue.Type.Put,
-            buf, offset, len);
+  /**
+   * Puts the data and removes the columns of previous data which aren't
+   * overwritten in a single row mutation. The previous chunks and linked file
+   * are deleted after the mutation unless they are reused by the new data.
+   *
+   * @param t The table
+   * @param put The columns of new data
+   * @param realPath The linked file of new data, or null
+   * @throws IOException If failed to update the row
+   */
+  private void replace(final Table t, final Put put, final Path realPath) throws IOException {
+    final byte[] row = put.getRow();
+    Result previous = t.get(newGetWithoutHBaseValue(row));
+    Delete delete = newStaleDelete(put, previous);
+    if (delete == null) {
+      t.put(put);
+    } else {
+      RowMutations mutations = new RowMutations(row);
+      mutations.add(put);
+      mutations.add(delete);
+      t.mutateRow(mutations);
+    }
+    //the new data has been committed, so the garbage is just logged
+    final Delete chunks = newStaleChunkDelete(put, previous);
+    if (chunks != null) {
+      TrekUtils.closeWithLog(() -> t.delete(chunks), LOG);
+    }
+    deleteStaleLink(fs, previous, realPath);
+  }
+
+  /**
+   * @param put The columns of new data
+   * @param previous The row of previous data. It is fetched by
+   * {@link #newGetWithoutHBaseValue(byte[])}
+   * @return The delete for the columns of previous data which aren't
+   * overwritten by the put, or null if there is no previous data
+   */
+  static Delete newStaleDelete(final Put put, final Result previous) {
+    if (previous == null || previous.isEmpty()) {
+      return null;
+    }
+    Delete delete = new Delete(put.getRow());
+    for (byte[] qualifier : Arrays.asList(DConstants.HDS_DATA_CONTENT_QUALIFIER,
+            DConstants.HDS_DATA_LINK_QUALIFIER,
+            DConstants.HDS_DATA_CHUNK_COUNT_QUALIFIER,
+            DConstants.HDS_DATA_CHUNK_SIZE_QUALIFIER,
+            DConstants.HDS_DATA_CHUNK_ID_QUALIFIER)) {
+      if (!put.has(DConstants.HDS_TABLE_FAMILY, qualifier)) {
+        delete.addColumns(DConstants.HDS_TABLE_FAMILY, qualifier);
+      }
+    }
+    return delete.isEmpty() ? null : delete;
+  }
+
+  /**
+   * @param put The columns of new data
+   * @param previous The row of previous data. It is fetched by
+   * {@link #newGetWithoutHBaseValue(byte[])}
+   * @return The delete for the chunks of previous data, or null if the
+   * previous data has no chunk or its chunks are reused by the put
+   */
+  static Delete newStaleChunkDelete(final Put put, final Result previous) {
+    if (previous == null || previous.isEmpty()) {
+      return null;
+    }
+    final Optional<Long> previousId = getChunkId(previous);
+    if (!previousId.isPresent() || previousId.equals(getChunkId(put))) {
+      return null;
+    }
+    return HBaseChunks.newDelete(put.getRow(), previousId.get(), getChunkCount(previous));
+  }
+
+  /**
+   * Deletes the linked file of previous data after it is replaced.
+   *
+   * @param fs The file system of linked file
+   * @param previous The row of previous data
+   * @param realPath The linked file of new data, or null
+   * @throws IOException If failed to delete the file
+   */
+  static void deleteStaleLink(final FileSystem fs, final Result previous,
+          final Path realPath) throws IOException {
+    if (previous == null) {
+      return;
+    }
+    byte[] link = previous.getValue(DConstants.HDS_TABLE_FAMILY,
+            DConstants.HDS_DATA_LINK_QUALIFIER);
+    if (link != null) {
+      Path previousPath = new Path(Bytes.toString(link));
+      if (!previousPath.equals(realPath)) {
+        fs.delete(previousPath, false);
+      }
+    }
+  }
+
+  private static int getChunkCount(final Result result) {
+    return HBaseUtils.getAndCheckInt(result.getValue(DConstants.HDS_TABLE_FAMILY,
+            DConstants.HDS_DATA_CHUNK_COUNT_QUALIFIER)).map(v -> Bytes.toInt(v)).orElse(0);
+  }
+
+  private static Optional<Long> getChunkId(final Result result) {
+    return HBaseUtils.getAndCheckLong(result.getValue(DConstants.HDS_TABLE_FAMILY,
+            DConstants.HDS_DATA_CHUNK_ID_QUALIFIER)).map(v -> Bytes.toLong(v));
+  }
+
+  private static Optional<Long> getChunkId(final Put put) {
+    List<Cell> cells = put.get(DConstants.HDS_TABLE_FAMILY,
+            DConstants.HDS_DATA_CHUNK_ID_QUALIFIER);
+    return cells.isEmpty() ? Optional.empty()
+            : Optional.of(Bytes.toLong(CellUtil.cloneValue(cells.get(0))));
+  }
+
+  /**
+   * Writes the data as chunks. The chunks are put under the id of this upload
+   * while the data is written, so the committed chunks of same row are kept
+   * until the metadata is switched to this upload on close.
+   */
+  private OutputChannel createChunked(final WriteDataRequest request,
+          final TableName tableName, final long ts) throws IOException {
+    final byte[] rowKey = Bytes.toBytes(request.getPath().getName());
+    final HBaseChunks.ChunkOutputStream output = new HBaseChunks.ChunkOutputStream(
+            conn.get().getTable(tableName), rowKey, ts, HBaseChunks.newId(), chunkSize);
+    return new OutputChannel() {
+      private boolean hasPutToHBase = false;
+
+      @Override
+      public WriteDataRequest getRequest() {
+        return request;
+      }
+
+      @Override
+      public void close() throws IOException {
+        output.close();
+        Put put = new Put(rowKey);
+        put.addColumn(DConstants.HDS_TABLE_FAMILY,
+                DConstants.HDS_DATA_UPLOAD_TIME_QUALIFIER,
+                ts,
+                Bytes.toBytes(ts))
+                .addColumn(DConstants.HDS_TABLE_FAMILY,
+                        DConstants.HDS_DATA_SIZE_QUALIFIER,
+                        ts,
+                        Bytes.toBytes(output.getSize()))
+                .addColumn(DConstants.HDS_TABLE_FAMILY,
+                        DConstants.HDS_DATA_CHUNK_COUNT_QUALIFIER,
+                        ts,
+                        Bytes.toBytes(output.getChunkCount()))
+                .addColumn(DConstants.HDS_TABLE_FAMILY,
+                        DConstants.HDS_DATA_CHUNK_SIZE_QUALIFIER,
+                        ts,
+                        Bytes.toBytes(chunkSize))
+                .addColumn(DConstants.HDS_TABLE_FAMILY,
+                        DConstants.HDS_DATA_CHUNK_ID_QUALIFIER,
+                        ts,
+                        Bytes.toBytes(output.getId()));
+        try (Table t = conn.get().getTable(tableName)) {
+          replace(t, put, null);
+        }
+        hasPutToHBase = true;
+      }
+
+      @Override
+      public void recover() throws IOException {
+        TrekUtils.closeWithLog(output, LOG);
+        try (Table t = conn.get().getTable(tableName)) {
+          if (hasPutToHBase) {
+            t.delete(new Delete(rowKey));
+            return;
+          }
+          //only the chunks of this upload are deleted
+          Delete delete = HBaseChunks.newDelete(rowKey, output.getId(),
+                  output.getChunkCount());
+          if (delete != null) {
+            t.delete(delete);
+          }
+        }
+      }
+
+      @Override
+      public OutputStream getOutputStream() {
+        return output;
+      }
+    };
   }
 
   @Override
   protected void close() throws Exception {
+    TrekUtils.closeWithLog(ingester, LOG);
+    chunkFetcher.shutdownNow();
     conn.close();
   }
 
@@ -347,6 +580,8 @@ public class HBaseDataSystem extends DataSystem {
     if (!request.getTypes().stream().anyMatch(v -> v == DataType.FILE)) {
       return IteratorUtils.wrap(new ArrayList<DataInfo>(0).iterator());
     }
+    final LocalityResolver.Session session = request.getNeedOwner()
+            ? locality.newSession() : null;
     FilterList filters = new FilterList(FilterList.Operator.MUST_PASS_ALL);
     request.getTime().ifPresent(v -> {
       filters.addFilter(new SingleColumnValueFilter(
@@ -382,13 +617,16 @@ public class HBaseDataSystem extends DataSystem {
               CompareFilter.CompareOp.EQUAL,
               new RegexStringComparator(TrekUtils.wildcardToRegular(
                       request.getPath().getName()))));
+      HBaseUtils.setRowRange(scan, filters, request.getPath().getName());
       scan.setCaching(DConstants.SCANNER_CACHING);
       scan.addColumn(DConstants.HDS_TABLE_FAMILY,
               DConstants.HDS_DATA_UPLOAD_TIME_QUALIFIER)
               .addColumn(DConstants.HDS_TABLE_FAMILY,
                       DConstants.HDS_DATA_SIZE_QUALIFIER)
               .addColumn(DConstants.HDS_TABLE_FAMILY,
-                      DConstants.HDS_DATA_LINK_QUALIFIER);
+                      DConstants.HDS_DATA_LINK_QUALIFIER)
+              .addColumn(DConstants.HDS_TABLE_FAMILY,
+                      DConstants.HDS_DATA_CHUNK_COUNT_QUALIFIER);
       if (!filters.getFilters().isEmpty()) {
         scan.setFilter(filters);
       }
@@ -396,7 +634,7 @@ public class HBaseDataSystem extends DataSystem {
               (Result result) -> {
                 DataInfo info = null;
                 try {
-                  info = Record.valueOf(HBaseDataSystem.this, tableName, result);
+                  info = Record.valueOf(HBaseDataSystem.this, tableName, result, session);
                 } catch (IOException e) {
                   LOG.error(e);
                 }
@@ -417,70 +655,88 @@ public class HBaseDataSystem extends DataSystem {
         Result result = rable.get(get);
         List<DataInfo> rval = new ArrayList<>(1);
         if (!result.isEmpty()) {
-          rval.add(Record.valueOf(HBaseDataSystem.this, tableName, result));
+          rval.add(Record.valueOf(HBaseDataSystem.this, tableName, result, session));
         }
         return IteratorUtils.wrap(rval.iterator());
       }
     }
   }
 
-  private static DataInfo toDataInfo(final HBaseDataSystem ds, final TableName tableName, final Result result) throws IOException {
-    DataInfo.Builder builder = DataInfo.newBuilder()
-            .setRequest(new UriRequest(Protocol.HBASE,
-                    AccountInfo.EMPTY,
-                    new DataPath("/" + tableName.getQualifierAsString(), Bytes.toString(result.getRow()))))
-            .setType(DataType.FILE);
-    Path hdfsPath = HBaseUtils.getAndCheckString(result.getValue(DConstants.HDS_TABLE_FAMILY,
-            DConstants.HDS_DATA_LINK_QUALIFIER)).map(v -> new Path(Bytes.toString(v))).orElse(null);
-    if (hdfsPath != null) {
-      builder.setOwners(TrekUtils.findOwners(ds.fs, hdfsPath));
-    } else {
-      builder.setOwners(TrekUtils.findOwners(ds.conn.get(), tableName, result.getRow()));
-      hdfsPath = null;
-    }
-    builder.setSize(HBaseUtils.getAndCheckLong(result.getValue(DConstants.HDS_TABLE_FAMILY,
-            DConstants.HDS_DATA_SIZE_QUALIFIER)).map(v -> Bytes.toLong(v))
-            .orElseThrow(() -> new HdsIOException("No found of size parameter")))
-            .setUploadTime(HBaseUtils.getAndCheckLong(result.getValue(DConstants.HDS_TABLE_FAMILY,
-                    DConstants.HDS_DATA_UPLOAD_TIME_QUALIFIER)).map(v -> Bytes.toLong(v))
-                    .orElseThrow(() -> new HdsIOException("No found of timestamp parameter")));
-    return builder.build();
-  }
-
-  private static class Record extends DataInfo {
+  /**
+   * The row of data. The owners are resolved when they are first requested,
+   * so a listing doesn't look up the locality for the records which are
+   * filtered out or deleted.
+   */
+  static class Record extends DataInfo {
 
+    private final HBaseDataSystem ds;
+    private final TableName tableName;
+    private final LocalityResolver.Session session;
     private final Path hdfsPath;
     private final Result result;
     private final FileSystem fs;
-
-    public static Record valueOf(final HBaseDataSystem ds, final TableName tableName, final Result result) throws HdsIOException, IOException {
+    private final int chunkCount;
+    private final long chunkId;
+    private List<DataOwner> owners;
+
+    /**
+     * @param ds The hbase data system
+     * @param tableName The table of data
+     * @param result The row of data
+     * @param session Resolves the linked files. Null if the owners are
+     * useless to client
+     * @return The record
+     */
+    public static Record valueOf(final HBaseDataSystem ds, final TableName tableName,
+            final Result result, final LocalityResolver.Session session) throws HdsIOException, IOException {
       DataInfo.Builder builder = DataInfo.newBuilder()
               .setRequest(new UriRequest(Protocol.HBASE,
                       AccountInfo.EMPTY,
                       new DataPath("/" + tableName.getQualifierAsString(), Bytes.toString(result.getRow()))))
-              .setType(DataType.FILE);
+              .setType(DataType.FILE)
+              .setOwners(Collections.emptyList());
       Path hdfsPath = HBaseUtils.getAndCheckString(result.getValue(DConstants.HDS_TABLE_FAMILY,
               DConstants.HDS_DATA_LINK_QUALIFIER)).map(v -> new Path(Bytes.toString(v))).orElse(null);
-      if (hdfsPath != null) {
-        builder.setOwners(TrekUtils.findOwners(ds.fs, hdfsPath));
-      } else {
-        builder.setOwners(TrekUtils.findOwners(ds.conn.get(), tableName, result.getRow()));
-        hdfsPath = null;
-      }
       builder.setSize(HBaseUtils.getAndCheckLong(result.getValue(DConstants.HDS_TABLE_FAMILY,
               DConstants.HDS_DATA_SIZE_QUALIFIER)).map(v -> Bytes.toLong(v))
               .orElseThrow(() -> new HdsIOException("No found of size parameter")))
               .setUploadTime(HBaseUtils.getAndCheckLong(result.getValue(DConstants.HDS_TABLE_FAMILY,
                       DConstants.HDS_DATA_UPLOAD_TIME_QUALIFIER)).map(v -> Bytes.toLong(v))
                       .orElseThrow(() -> new HdsIOException("No found of timestamp parameter")));
-      return new Record(builder.build(), hdfsPath, result, ds.fs);
+      return new Record(builder.build(), ds, tableName, session, hdfsPath, result);
     }
 
-    Record(final DataInfo info, final Path hdfsPath, final Result result, final FileSystem fs) {
+    Record(final DataInfo info, final HBaseDataSystem ds, final TableName tableName,
+            final LocalityResolver.Session session, final Path hdfsPath, final Result result) {
       super(info);
+      this.ds = ds;
+      this.tableName = tableName;
+      this.session = session;
       this.result = result;
       this.hdfsPath = hdfsPath;
-      this.fs = fs;
+      this.fs = ds.fs;
+      this.chunkCount = getChunkCount(result);
+      this.chunkId = getChunkId(result).orElse(0L);
+    }
+
+    boolean isChunked() {
+      return chunkCount != 0;
+    }
+
+    @Override
+    public synchronized List<DataOwner> getDataOwners() {
+      if (owners == null) {
+        owners = Collections.emptyList();
+        if (session != null) {
+          try {
+            owners = hdfsPath != null ? session.findOwners(hdfsPath)
+                    : ds.locality.findOwners(ds.conn.get(), tableName, result.getRow());
+          } catch (IOException e) {
+            LOG.error("Failed to find the owners of " + getUriRequest(), e);
+          }
+        }
+      }
+      return new ArrayList<>(owners);
     }
 
     void delete(final Table table) throws IOException {
@@ -490,16 +746,34 @@ public class HBaseDataSystem extends DataSystem {
       table.delete(new Delete(result.getRow()));
     }
 
-    InputStream getInputStream() throws IOException {
+    InputStream getInputStream(final long offset) throws IOException {
+      if (offset < 0 || offset > getSize()) {
+        throw new HdsIOException("Invalid offset " + offset + " of " + getUriRequest());
+      }
       if (hdfsPath != null) {
-        return fs.open(hdfsPath);
+        FSDataInputStream input = fs.open(hdfsPath);
+        try {
+          input.seek(offset);
+        } catch (IOException e) {
+          input.close();
+          throw e;
+        }
+        return input;
+      } else if (isChunked()) {
+        final int size = HBaseUtils.getAndCheckInt(result.getValue(DConstants.HDS_TABLE_FAMILY,
+                DConstants.HDS_DATA_CHUNK_SIZE_QUALIFIER)).map(v -> Bytes.toInt(v))
+                .orElseThrow(() -> new HdsIOException("No found of chunk size"));
+        return new HBaseChunks.ChunkInputStream(ds.conn.get(), tableName,
+                result.getRow(), getUploadTime(), chunkId, chunkCount, size, offset,
+                ds.chunkPrefetch, ds.chunkFetcher);
       } else {
         Cell cell = result.getColumnLatestCell(DConstants.HDS_TABLE_FAMILY,
                 DConstants.HDS_DATA_CONTENT_QUALIFIER);
         if (cell == null) {
           throw new HdsIOException("No found of data in hbase cell");
         }
-        return new ByteArrayInputStream(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+        return new ByteArrayInputStream(cell.getValueArray(),
+                cell.getValueOffset() + (int) offset, cell.getValueLength() - (int) offset);
       }
     }
   }
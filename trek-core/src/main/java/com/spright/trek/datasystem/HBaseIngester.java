@@ -0,0 +1,272 @@
+package com.spright.trek.datasystem;
+
+import com.spright.trek.DConstants;
+import com.spright.trek.utils.TrekUtils;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * Writes the small data of batch jobs by {@link BufferedMutator}. The puts of
+ * concurrent writers are flushed together when the buffered bytes reach
+ * {@link DConstants#HDS_INGEST_BUFFER_SIZE} or every
+ * {@link DConstants#HDS_INGEST_FLUSH_INTERVAL} milliseconds. The previous rows
+ * are read by a single multi-get per flush, so the stale columns and linked
+ * files are still cleaned. A writer waits for the flush of its own put, hence
+ * the failure is reported to its task. The writers are registered when their
+ * outputs are created, and the puts are flushed as soon as all registered
+ * writers are waiting, since no more put will arrive to fill the buffer.
+ */
+final class HBaseIngester implements AutoCloseable {
+
+  private static final Log LOG = LogFactory.getLog(HBaseIngester.class);
+  private final Connection conn;
+  private final FileSystem fs;
+  private final long bufferSize;
+  private final ScheduledExecutorService flusher;
+  private final Map<TableName, Buffer> buffers = new HashMap<>();
+  /**
+   * The writers which may put data. It is guarded by the buffers.
+   */
+  private int writers = 0;
+  /**
+   * The puts which are not taken by a flush. It is guarded by the buffers.
+   */
+  private int waiting = 0;
+
+  HBaseIngester(final Configuration conf, final Connection conn, final FileSystem fs) {
+    this.conn = conn;
+    this.fs = fs;
+    this.bufferSize = conf.getLong(DConstants.HDS_INGEST_BUFFER_SIZE,
+            DConstants.DEFAULT_HDS_INGEST_BUFFER_SIZE);
+    final long interval = Math.max(1, conf.getLong(DConstants.HDS_INGEST_FLUSH_INTERVAL,
+            DConstants.DEFAULT_HDS_INGEST_FLUSH_INTERVAL));
+    flusher = Executors.newSingleThreadScheduledExecutor();
+    flusher.scheduleWithFixedDelay(this::flushAll, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Registers a writer which may call {@link #write(TableName, Put)} later.
+   * The writer must be unregistered after it is done.
+   */
+  void register() {
+    synchronized (buffers) {
+      ++writers;
+    }
+  }
+
+  /**
+   * Unregisters a writer. The waiting puts are flushed if the other writers
+   * are all waiting.
+   */
+  void unregister() {
+    boolean flush;
+    synchronized (buffers) {
+      --writers;
+      flush = waiting > 0 && waiting >= writers && writers > 0;
+    }
+    if (flush) {
+      flusher.execute(this::flushAll);
+    }
+  }
+
+  /**
+   * Buffers the put and waits for it to be flushed.
+   *
+   * @param tableName The table
+   * @param put The data
+   * @throws IOException If failed to write the put
+   */
+  void write(final TableName tableName, final Put put) throws IOException {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    Buffer buffer;
+    boolean full;
+    boolean idle;
+    synchronized (buffers) {
+      buffer = buffers.computeIfAbsent(tableName, Buffer::new);
+      full = buffer.add(put, future);
+      //the unregistered writes are flushed by size or time only
+      idle = ++waiting >= writers && writers > 0;
+    }
+    if (full) {
+      buffer.flush();
+    } else if (idle) {
+      flushAll();
+    }
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while waiting for the flush");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private void flushAll() {
+    List<Buffer> all;
+    synchronized (buffers) {
+      all = new ArrayList<>(buffers.values());
+    }
+    all.forEach(Buffer::flush);
+  }
+
+  @Override
+  public void close() throws Exception {
+    flusher.shutdownNow();
+    flusher.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    flushAll();
+    synchronized (buffers) {
+      buffers.values().forEach(b -> TrekUtils.closeWithLog(b.mutator, LOG));
+      buffers.clear();
+    }
+  }
+
+  private static final class Entry {
+
+    private final Put put;
+    private final CompletableFuture<Void> future;
+
+    Entry(final Put put, final CompletableFuture<Void> future) {
+      this.put = put;
+      this.future = future;
+    }
+  }
+
+  /**
+   * Collects the puts of a table. The flushes of a table are serialized.
+   */
+  private final class Buffer {
+
+    private final TableName tableName;
+    private final Object flushLock = new Object();
+    private List<Entry> pending = new LinkedList<>();
+    private long pendingSize = 0;
+    private BufferedMutator mutator;
+
+    Buffer(final TableName tableName) {
+      this.tableName = tableName;
+    }
+
+    /**
+     * @return True if the buffer is full
+     */
+    synchronized boolean add(final Put put, final CompletableFuture<Void> future) {
+      pending.add(new Entry(put, future));
+      pendingSize += put.heapSize();
+      return pendingSize >= bufferSize;
+    }
+
+    private synchronized List<Entry> take() {
+      List<Entry> entries = new ArrayList<>();
+      List<Entry> deferred = new LinkedList<>();
+      Set<byte[]> rows = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+      for (Entry entry : pending) {
+        //the order of mutations on the same row isn't kept in a flush
+        if (rows.add(entry.put.getRow())) {
+          entries.add(entry);
+        } else {
+          deferred.add(entry);
+        }
+      }
+      pending = deferred;
+      pendingSize = deferred.stream().mapToLong(e -> e.put.heapSize()).sum();
+      return entries;
+    }
+
+    void flush() {
+      synchronized (flushLock) {
+        List<Entry> entries = take();
+        if (entries.isEmpty()) {
+          return;
+        }
+        synchronized (buffers) {
+          waiting -= entries.size();
+        }
+        try {
+          flush(entries);
+        } catch (Throwable e) {
+          entries.forEach(entry -> entry.future.completeExceptionally(e));
+        }
+      }
+    }
+
+    private void flush(final List<Entry> entries) throws IOException {
+      List<Get> gets = new ArrayList<>(entries.size());
+      entries.forEach(entry
+              -> gets.add(HBaseDataSystem.newGetWithoutHBaseValue(entry.put.getRow())));
+      Result[] previous;
+      try (Table table = conn.getTable(tableName)) {
+        previous = table.get(gets);
+      }
+      List<Mutation> mutations = new ArrayList<>(entries.size() * 2);
+      for (int i = 0; i != entries.size(); ++i) {
+        Put put = entries.get(i).put;
+        mutations.add(put);
+        Delete delete = HBaseDataSystem.newStaleDelete(put, previous[i]);
+        if (delete != null) {
+          mutations.add(delete);
+        }
+        Delete chunks = HBaseDataSystem.newStaleChunkDelete(put, previous[i]);
+        if (chunks != null) {
+          mutations.add(chunks);
+        }
+      }
+      Map<byte[], Throwable> failures = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      if (mutator == null) {
+        mutator = conn.getBufferedMutator(new BufferedMutatorParams(tableName)
+                .writeBufferSize(bufferSize));
+      }
+      try {
+        mutator.mutate(mutations);
+        mutator.flush();
+      } catch (RetriesExhaustedWithDetailsException e) {
+        for (int i = 0; i != e.getNumExceptions(); ++i) {
+          failures.put(e.getRow(i).getRow(), e.getCause(i));
+        }
+      }
+      for (int i = 0; i != entries.size(); ++i) {
+        Entry entry = entries.get(i);
+        Throwable failure = failures.get(entry.put.getRow());
+        if (failure != null) {
+          entry.future.completeExceptionally(failure instanceof IOException
+                  ? failure : new IOException(failure));
+          continue;
+        }
+        final Result old = previous[i];
+        TrekUtils.closeWithLog(() -> HBaseDataSystem.deleteStaleLink(fs, old, null), LOG);
+        entry.future.complete(null);
+      }
+    }
+  }
+}
@@ -6,26 +6,40 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.io.IOUtils;
 import java.util.Optional;
 import com.spright.trek.datasystem.request.DataInfoQuery;
 import com.spright.trek.datasystem.request.ReadDataRequest;
 import com.spright.trek.datasystem.request.WriteDataRequest;
 import com.spright.trek.exception.HdfsIOException;
+import com.spright.trek.io.OutputStreamAdapter;
 import com.spright.trek.datasystem.request.UriRequest;
 import com.spright.trek.query.CloseableIterator;
 import com.spright.trek.query.IteratorUtils;
 import com.spright.trek.utils.TrekUtils;
-import java.util.LinkedList;
+import com.spright.trek.datasystem.request.DataOwner;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 public class HdfsDataSystem extends DataSystem {
 
   private static final Log LOG = LogFactory.getLog(HdfsDataSystem.class);
+  private static final String SEGMENT_EXTENSION = ".seg";
+  private static final int APPEND_BUFFER_SIZE = 64 * 1024;
   private final FileSystem fs;
 
   public HdfsDataSystem(final Configuration config) throws Exception {
@@ -43,14 +57,24 @@ public class HdfsDataSystem extends DataSystem {
     checkDataExisted(request, fs.exists(path));
     DataInfo info = toDataInfo(request, fs.getFileLinkStatus(path), fs);
     checkDataType(info.getType(), DataType.FILE);
+    FSDataInputStream input = fs.open(path);
+    try {
+      input.seek(request.getOffset());
+    } catch (IOException e) {
+      input.close();
+      throw e;
+    }
     return new InputChannel() {
-      private final InputStream input = fs.open(path);
-
       @Override
       public void close() throws IOException {
         input.close();
       }
 
+      @Override
+      public long getOffset() {
+        return request.getOffset();
+      }
+
       @Override
       public DataInfo getInfo() {
         return info;
@@ -60,6 +84,20 @@ public class HdfsDataSystem extends DataSystem {
       public InputStream getInputStream() {
         return input;
       }
+
+      @Override
+      public Optional<RangeReader> getRangeReader() {
+        return Optional.of((offset, length) -> {
+          FSDataInputStream range = fs.open(path);
+          try {
+            range.seek(offset);
+          } catch (IOException e) {
+            range.close();
+            throw e;
+          }
+          return new BoundedInputStream(range, length);
+        });
+      }
     };
   }
 
@@ -75,11 +113,32 @@ public class HdfsDataSystem extends DataSystem {
   @Override
   protected OutputChannel internalCreate(final WriteDataRequest request) throws IOException {
     Path realPath = new Path(request.getPath().toString());
-    Path tmpPath = new Path(createTmpPath(realPath.toString()));
+    Optional<Path> resumedPath = request.getTmpPath()
+            .map(v -> new Path(v));
+    if (resumedPath.isPresent() && !fs.isFile(resumedPath.get())) {
+      resumedPath = Optional.empty();
+    }
+    Path tmpPath = resumedPath.orElse(new Path(createTmpPath(realPath.toString())));
+    //hdfs can't truncate the file, but the extra bytes are still valid
+    //since the data is written sequentially
+    final long offset = resumedPath.isPresent() ? fs.getFileStatus(tmpPath).getLen() : 0;
+    final FSDataOutputStream stream = resumedPath.isPresent()
+            ? fs.append(tmpPath) : fs.create(tmpPath);
     return new OutputChannel() {
       private boolean hasMove = false;
       private final Optional<Long> ts = request.getExpectedTime();
-      private final OutputStream output = fs.create(tmpPath);
+      private final OutputStream output = new OutputStreamAdapter(stream) {
+        @Override
+        public void flush() throws IOException {
+          //make the data visible for the checkpoint
+          stream.hflush();
+        }
+      };
+      /**
+       * The ranges except the first one are written to the part files, and
+       * they are concatenated to the tmp path on closing.
+       */
+      private final Map<Long, Path> parts = new ConcurrentSkipListMap<>();
 
       @Override
       public WriteDataRequest getRequest() {
@@ -91,9 +150,74 @@ public class HdfsDataSystem extends DataSystem {
         return output;
       }
 
+      @Override
+      public Optional<RangeWriter> getRangeWriter() {
+        return Optional.of(new RangeWriter() {
+          @Override
+          public long getAlignment() {
+            //the concat requires the full blocks
+            return fs.getDefaultBlockSize(tmpPath);
+          }
+
+          @Override
+          public OutputStream create(final long offset, final long length) throws IOException {
+            if (offset == getOffset()) {
+              return new OutputStreamAdapter(output) {
+                @Override
+                public void close() throws IOException {
+                  flush();
+                }
+              };
+            }
+            Path part = new Path(tmpPath.toString() + SEGMENT_EXTENSION + offset);
+            parts.put(offset, part);
+            return fs.create(part);
+          }
+        });
+      }
+
+      private void concatParts() throws IOException {
+        if (parts.isEmpty()) {
+          return;
+        }
+        try {
+          fs.concat(tmpPath, parts.values().toArray(new Path[parts.size()]));
+        } catch (IOException | UnsupportedOperationException e) {
+          LOG.info("Failed to concat the parts of " + tmpPath + ", try to append them", e);
+          try (OutputStream append = fs.append(tmpPath)) {
+            for (Path part : parts.values()) {
+              try (InputStream input = fs.open(part)) {
+                IOUtils.copyBytes(input, append, APPEND_BUFFER_SIZE);
+              }
+              fs.delete(part, false);
+            }
+          }
+        }
+        parts.clear();
+      }
+
+      @Override
+      public Optional<String> getTmpPath() {
+        return Optional.of(tmpPath.toString());
+      }
+
+      @Override
+      public long getOffset() {
+        return offset;
+      }
+
+      @Override
+      public void suspend() throws IOException {
+        output.close();
+        for (Path part : parts.values()) {
+          TrekUtils.closeWithLog(() -> fs.delete(part, false), LOG);
+        }
+      }
+
       @Override
       public void close() throws IOException {
         output.close();
+        concatParts();
         boolean exist = fs.exists(realPath);
         if (exist && !fs.isFile(realPath)) {
           throw new IOException("The dst is existed and it is not file");
@@ -113,6 +237,9 @@ public class HdfsDataSystem extends DataSystem {
 
       @Override
       public void recover() throws IOException {
+        for (Path part : parts.values()) {
+          TrekUtils.closeWithLog(() -> fs.delete(part, false), LOG);
+        }
         if (hasMove) {
           fs.delete(realPath, true);
         } else {
@@ -124,18 +251,46 @@ public class HdfsDataSystem extends DataSystem {
 
   @Override
   protected CloseableIterator<DataInfo> internalList(final DataInfoQuery request) throws IOException {
-    final Path path = new Path(request.getPath().toString());
-    FileStatus status = fs.getFileStatus(path);
-    checkDataType(toDataInfo(request, status, fs).getType(), DataType.DIRECTORY);
-    List<DataInfo> infos = new LinkedList<>();
-    for (FileStatus s : fs.listStatus(path)) {
-      infos.add(toDataInfo(request.appendName(s.getPath().getName()), s, fs));
-    }
-    return IteratorUtils.wrap(infos.iterator());
+    final Path path = new Path(request.getPath().getCatalog());
+    checkDataExisted(request, fs.isDirectory(path));
+    //the block locations arrive with the listing, and the entries are
+    //fetched from namenode page by page as the iterator is advanced
+    RemoteIterator<LocatedFileStatus> statuses = fs.listLocatedStatus(path);
+    //fetch the first page here, so the failure of listing is thrown as
+    //IOException. The failures of later pages are thrown as UncheckedIOException
+    statuses.hasNext();
+    return IteratorUtils.wrap(new Iterator<DataInfo>() {
+      @Override
+      public boolean hasNext() {
+        try {
+          return statuses.hasNext();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      @Override
+      public DataInfo next() {
+        try {
+          LocatedFileStatus status = statuses.next();
+          return toDataInfo(request.replaceName(status.getPath().getName()), status,
+                  request.getNeedOwner()
+                          ? TrekUtils.findOwners(status.getBlockLocations())
+                          : Collections.emptyList());
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    });
   }
 
   private static DataInfo toDataInfo(final UriRequest request,
           final FileStatus status, final FileSystem fs) throws IOException {
+    return toDataInfo(request, status, TrekUtils.findOwners(fs, status));
+  }
+
+  private static DataInfo toDataInfo(final UriRequest request,
+          final FileStatus status, final List<DataOwner> owners) {
     DataInfo.Builder builder = DataInfo.newBuilder();
     if (status.isFile()) {
       builder.setType(DataType.FILE)
@@ -147,7 +302,7 @@ public class HdfsDataSystem extends DataSystem {
       builder.setType(DataType.OTHERS)
               .setSize(status.getLen());
     }
-    return builder.setOwners(TrekUtils.findOwners(fs, status))
+    return builder.setOwners(owners)
             .setRequest(request)
             .setUploadTime(status.getModificationTime())
             .build();
@@ -0,0 +1,71 @@
+package com.spright.trek.datasystem;
+
+import com.spright.trek.DConstants;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.MD5Hash;
+
+/**
+ * Decides where the large data of hbase storage is saved in HDFS. The path is
+ * [root]/[catalog]/[yyyyMM]/[shard]/[name]. The shard is the hex bucket of the
+ * name hash, so the files of a busy catalog are spread over
+ * {@link DConstants#HDS_LAYOUT_SHARD_NUMBER} directories. The date partition
+ * is skipped if {@link DConstants#HDS_LAYOUT_DATE_PARTITION} is false, and the
+ * shard is skipped if the shard number is not positive.
+ */
+public final class HdsLayout {
+
+  private static final String DATE_FORMAT = "yyyyMM";
+  private final Path rootPath;
+  private final int shardNumber;
+  private final int shardWidth;
+  private final boolean datePartition;
+
+  public HdsLayout(final Configuration conf) {
+    rootPath = new Path(conf.get(DConstants.HDS_ROOT_PATH,
+            DConstants.DEFAULT_HDS_ROOT_PATH));
+    shardNumber = conf.getInt(DConstants.HDS_LAYOUT_SHARD_NUMBER,
+            DConstants.DEFAULT_HDS_LAYOUT_SHARD_NUMBER);
+    shardWidth = shardNumber > 0 ? Integer.toHexString(shardNumber - 1).length() : 0;
+    datePartition = conf.getBoolean(DConstants.HDS_LAYOUT_DATE_PARTITION,
+            DConstants.DEFAULT_HDS_LAYOUT_DATE_PARTITION);
+  }
+
+  /**
+   * @param name The data name
+   * @return The shard directory of name, or null if the shard is disabled
+   */
+  String getShard(final String name) {
+    if (shardNumber <= 0) {
+      return null;
+    }
+    String shard = Integer.toHexString(Math.floorMod(
+            MD5Hash.digest(name).quarterDigest(), shardNumber));
+    StringBuilder buf = new StringBuilder(shardWidth);
+    for (int i = shard.length(); i < shardWidth; ++i) {
+      buf.append('0');
+    }
+    return buf.append(shard).toString();
+  }
+
+  /**
+   * @param catalog The catalog of data
+   * @param name The data name
+   * @param ts The upload time of data
+   * @return The HDFS path of data
+   */
+  public Path getPath(final String catalog, final String name, final long ts) {
+    StringBuilder str = new StringBuilder(catalog);
+    if (datePartition) {
+      str.append("/").append(new SimpleDateFormat(DATE_FORMAT).format(new Date(ts)));
+    }
+    String shard = getShard(name);
+    if (shard != null) {
+      str.append("/").append(shard);
+    }
+    str.append("/").append(name);
+    return new Path(rootPath, str.toString());
+  }
+}
@@ -0,0 +1,122 @@
+package com.spright.trek.datasystem;
+
+import com.spright.trek.DConstants;
+import com.spright.trek.exception.HdsIOException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * Moves the linked files of hbase storage to the current {@link HdsLayout}
+ * and rewrites the links in bulk. A file is unreachable between its move and
+ * the flush of its new link, so it should be run while the catalogs aren't
+ * accessed. It is safe to run again after a failure.
+ * <pre>
+ * trek migrate_layout [catalog ...]
+ * </pre>
+ * All catalogs of the trek namespace are migrated if no catalog is given.
+ */
+public final class HdsLayoutMigration {
+
+  private static final Log LOG = LogFactory.getLog(HdsLayoutMigration.class);
+
+  public static void main(final String[] args) throws Exception {
+    Configuration conf = HBaseConfiguration.create();
+    final String namespace = conf.get(DConstants.TREK_NAMESPACE,
+            DConstants.DEFAULT_TREK_NAMESPACE);
+    try (Connection conn = ConnectionFactory.createConnection(conf)) {
+      List<TableName> tableNames = new ArrayList<>();
+      if (args.length == 0) {
+        try (Admin admin = conn.getAdmin()) {
+          tableNames.addAll(Arrays.asList(admin.listTableNamesByNamespace(namespace)));
+        }
+      } else {
+        for (String catalog : args) {
+          tableNames.add(TableName.valueOf(namespace, catalog));
+        }
+      }
+      HdsLayoutMigration migration = new HdsLayoutMigration(
+              new HdsLayout(conf), conn, FileSystem.get(conf));
+      for (TableName tableName : tableNames) {
+        LOG.info("Migrate " + migration.migrate(tableName) + " files of " + tableName);
+      }
+    }
+  }
+  private final HdsLayout layout;
+  private final Connection conn;
+  private final FileSystem fs;
+
+  public HdsLayoutMigration(final HdsLayout layout, final Connection conn,
+          final FileSystem fs) {
+    this.layout = layout;
+    this.conn = conn;
+    this.fs = fs;
+  }
+
+  /**
+   * @param tableName The catalog table
+   * @return The number of moved files
+   * @throws IOException If failed to move a file or update the links
+   */
+  public long migrate(final TableName tableName) throws IOException {
+    Scan scan = new Scan();
+    scan.addColumn(DConstants.HDS_TABLE_FAMILY, DConstants.HDS_DATA_LINK_QUALIFIER);
+    scan.setCaching(DConstants.SCANNER_CACHING);
+    long moved = 0;
+    try (Table table = conn.getTable(tableName);
+            ResultScanner scanner = table.getScanner(scan);
+            BufferedMutator mutator = conn.getBufferedMutator(tableName)) {
+      for (Result result : scanner) {
+        Cell cell = result.getColumnLatestCell(DConstants.HDS_TABLE_FAMILY,
+                DConstants.HDS_DATA_LINK_QUALIFIER);
+        if (cell == null) {
+          continue;
+        }
+        //the link is put with the upload time
+        final long ts = cell.getTimestamp();
+        Path oldPath = new Path(Bytes.toString(CellUtil.cloneValue(cell)));
+        Path newPath = layout.getPath(tableName.getQualifierAsString(),
+                Bytes.toString(result.getRow()), ts);
+        if (oldPath.equals(newPath)) {
+          continue;
+        }
+        if (fs.exists(oldPath)) {
+          fs.mkdirs(newPath.getParent());
+          if (!fs.rename(oldPath, newPath)) {
+            throw new HdsIOException("Failed to move " + oldPath + " to " + newPath);
+          }
+        } else if (!fs.exists(newPath)) {
+          LOG.warn("No found of " + oldPath + " linked by "
+                  + Bytes.toString(result.getRow()) + " of " + tableName);
+          continue;
+        }
+        //the original timestamp can't overwrite a newer link
+        mutator.mutate(new Put(result.getRow()).addColumn(DConstants.HDS_TABLE_FAMILY,
+                DConstants.HDS_DATA_LINK_QUALIFIER, ts, Bytes.toBytes(newPath.toString())));
+        ++moved;
+      }
+      mutator.flush();
+    }
+    return moved;
+  }
+}
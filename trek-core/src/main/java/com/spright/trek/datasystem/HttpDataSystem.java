@@ -3,19 +3,30 @@ package com.spright.trek.datasystem;
 import com.spright.trek.datasystem.request.DataType;
 import com.spright.trek.datasystem.request.DataOwner;
 import com.spright.trek.datasystem.request.DataInfo;
-import java.io.DataOutputStream;
+import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import com.spright.trek.datasystem.request.DataInfoQuery;
+import com.spright.trek.DConstants;
 import com.spright.trek.datasystem.request.ReadDataRequest;
+import com.spright.trek.datasystem.request.UriRequest;
 import com.spright.trek.datasystem.request.WriteDataRequest;
 import com.spright.trek.exception.HttpIOException;
 import com.spright.trek.mapping.AccountInfo;
@@ -28,9 +39,157 @@ public class HttpDataSystem extends DataSystem {
   private static final Base64 ENCODER = new Base64();
   private static final String BOUNDARY = "--------";
   private static final String LINE_END = "\r\n";
+  private static final int DEFAULT_PORT = 80;
+  private static final byte[] PART_TRAILER = (LINE_END + "--" + BOUNDARY + "--" + LINE_END)
+          .getBytes(StandardCharsets.UTF_8);
+
+  /**
+   * Limits the in-flight connections of each host and port.
+   */
+  private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+  private final AtomicLong reusedCount = new AtomicLong(0);
+  private final AtomicLong discardedCount = new AtomicLong(0);
+  private final AtomicLong waitedCount = new AtomicLong(0);
+  private final int maxPerHost;
+  private final long waitTime;
+  private final long drainLimit;
+
+  public static void write(final JsonWriter writer, final HttpDataSystem ds) throws IOException {
+    writer.beginObject()
+            .name("maxPerHost").value(ds.maxPerHost)
+            .name("hosts").value(ds.hostPermits.size())
+            .name("reused").value(ds.getReusedCount())
+            .name("discarded").value(ds.getDiscardedCount())
+            .name("waited").value(ds.getWaitedCount())
+            .endObject();
+  }
 
   public HttpDataSystem(final Configuration config) throws Exception {
     super(config, Protocol.HTTP);
+    maxPerHost = Math.max(1, config.getInt(DConstants.HTTP_MAX_PER_HOST,
+            DConstants.DEFAULT_HTTP_MAX_PER_HOST));
+    waitTime = config.getLong(DConstants.HTTP_WAIT_TIME,
+            DConstants.DEFAULT_HTTP_WAIT_TIME);
+    drainLimit = config.getLong(DConstants.HTTP_DRAIN_LIMIT,
+            DConstants.DEFAULT_HTTP_DRAIN_LIMIT);
+  }
+
+  /**
+   * @return The number of released connections whose socket is kept alive
+   */
+  public long getReusedCount() {
+    return reusedCount.get();
+  }
+
+  /**
+   * @return The number of released connections whose socket is closed
+   */
+  public long getDiscardedCount() {
+    return discardedCount.get();
+  }
+
+  /**
+   * @return The number of requests which waited for the limit of host
+   */
+  public long getWaitedCount() {
+    return waitedCount.get();
+  }
+
+  /**
+   * Creates a connection holding a permit of its host and port. The caller
+   * is blocked if the server has too many in-flight connections.
+   */
+  private PooledConnection connect(final UriRequest request) throws IOException {
+    final String server = DataSystem.getHostOrThrow(request)
+            + ":" + request.getAccountInfo().getPort().filter(v -> v > 0).orElse(DEFAULT_PORT);
+    final Semaphore permits = hostPermits.computeIfAbsent(server,
+            h -> new Semaphore(maxPerHost));
+    if (!permits.tryAcquire()) {
+      waitedCount.incrementAndGet();
+      try {
+        if (!permits.tryAcquire(waitTime, TimeUnit.MILLISECONDS)) {
+          throw new HttpIOException("No available connection for " + server
+                  + ", the max number is " + maxPerHost);
+        }
+      } catch (InterruptedException e) {
+        throw new HttpIOException("Interrupted while waiting for connection", e);
+      }
+    }
+    try {
+      return new PooledConnection(creatHttpURLConnection(
+              request.getAccountInfo(), request.getPath().getCatalog()), permits);
+    } catch (IOException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * @return True if the stream reaches the end before the limit
+   */
+  private static boolean drain(final InputStream input, final long limit) throws IOException {
+    byte[] buf = new byte[8 * 1024];
+    long remaining = limit;
+    while (remaining >= 0) {
+      int rval = input.read(buf);
+      if (rval == -1) {
+        return true;
+      }
+      remaining -= rval;
+    }
+    return false;
+  }
+
+  /**
+   * The JDK keeps the socket alive for the next request to the same host only
+   * if the response body is consumed and the connection is not disconnected.
+   * The number of idle sockets and their idle time are decided by the JDK
+   * (see the system property http.maxConnections).
+   */
+  private final class PooledConnection {
+
+    private final HttpURLConnection conn;
+    private final Semaphore permits;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    PooledConnection(final HttpURLConnection conn, final Semaphore permits) {
+      this.conn = conn;
+      this.permits = permits;
+    }
+
+    /**
+     * Releases the connection once. The small remaining body is drained so
+     * that the socket is able to be reused.
+     *
+     * @param body The response body, or null if it is not opened
+     * @param reusable False if the connection is in unknown state
+     */
+    void release(final InputStream body, final boolean reusable) {
+      if (!released.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        boolean keepAlive = reusable;
+        if (keepAlive && body != null) {
+          try {
+            keepAlive = drain(body, drainLimit);
+          } catch (IOException e) {
+            keepAlive = false;
+          }
+        }
+        if (body != null) {
+          TrekUtils.closeWithLog(body, LOG);
+        }
+        if (keepAlive) {
+          reusedCount.incrementAndGet();
+        } else {
+          conn.disconnect();
+          discardedCount.incrementAndGet();
+        }
+      } finally {
+        permits.release();
+      }
+    }
   }
 
   private static HttpURLConnection creatHttpURLConnection(
@@ -54,49 +213,27 @@ public class HttpDataSystem extends DataSystem {
 
   @Override
   protected InputChannel internalOpen(final ReadDataRequest request) throws IOException {
-    String host = DataSystem.getHostOrThrow(request);
-    HttpURLConnection httpConn = creatHttpURLConnection(
-            request.getAccountInfo(), request.getPath().getCatalog());
-    httpConn.setDoInput(true);
-    httpConn.setRequestMethod("GET");
-    httpConn.setInstanceFollowRedirects(true);
-    httpConn.connect();
-    int responseCode = httpConn.getResponseCode();
-    if (responseCode != HttpURLConnection.HTTP_OK) {
-      throw new IOException("Failed to connection http server with erro"
-              + " code " + responseCode);
+    final String host = DataSystem.getHostOrThrow(request);
+    final long offset = request.getOffset();
+    Optional<Resource> head = head(request);
+    if (!head.isPresent()) {
+      return openByGet(request, host, offset);
     }
-    String fileName = request.getPath().getName();
-    String disposition = httpConn.getHeaderField("Content-Disposition");
-    final long ts = httpConn.getLastModified();
-    final int contentLength = httpConn.getContentLength();
-    if (disposition != null) {
-      for (String s : disposition.split(";")) {
-        int index = s.indexOf("=");
-        if (index != -1) {
-          fileName = s.substring(index + 1).replaceAll("\"", "");
-          break;
-        }
-      }
-    }
-    if (fileName == null || fileName.length() == 0) {
-      throw new IOException("Failed to find the file name");
-    }
-    final String name = fileName;
-    DataInfo info = DataInfo.newBuilder()
-            .setRequest(request)
-            .setType(DataType.FILE)
-            .setOwner(DataOwner.newSingleOwner(host))
-            .setSize(contentLength)
-            .setUploadTime(ts)
-            .build();
+    final Resource resource = head.get();
+    final DataInfo info = resource.toDataInfo(request, host, resource.size);
     return new InputChannel() {
-      private final InputStream input = httpConn.getInputStream();
+      //The body is opened only if it is read, so the segmented transfer
+      //doesn't waste a connection on it
+      private final LazyBody input = new LazyBody(request, offset, resource);
 
       @Override
       public void close() throws IOException {
-        TrekUtils.closeWithLog(input, LOG);
-        httpConn.disconnect();
+        input.close();
+      }
+
+      @Override
+      public long getOffset() {
+        return offset;
       }
 
       @Override
@@ -108,40 +245,380 @@ public class HttpDataSystem extends DataSystem {
       public InputStream getInputStream() {
         return input;
       }
+
+      @Override
+      public Optional<RangeReader> getRangeReader() {
+        if (!resource.acceptRanges || resource.size <= 0) {
+          return Optional.empty();
+        }
+        return Optional.of((start, length) -> openRange(request, start, length, resource));
+      }
     };
+  }
+
+  /**
+   * Discovers the size, the version and the support of range by HEAD.
+   *
+   * @return The resource, or empty if the server doesn't support HEAD
+   */
+  private Optional<Resource> head(final ReadDataRequest request) throws IOException {
+    PooledConnection pooled = connect(request);
+    try {
+      final HttpURLConnection httpConn = pooled.conn;
+      httpConn.setRequestMethod("HEAD");
+      httpConn.setInstanceFollowRedirects(true);
+      httpConn.connect();
+      int responseCode = httpConn.getResponseCode();
+      if (responseCode == HttpURLConnection.HTTP_BAD_METHOD
+              || responseCode == HttpURLConnection.HTTP_NOT_IMPLEMENTED) {
+        pooled.release(httpConn.getErrorStream(), true);
+        return Optional.empty();
+      }
+      if (responseCode != HttpURLConnection.HTTP_OK) {
+        pooled.release(httpConn.getErrorStream(), true);
+        throw new HttpIOException("Failed to connection http server with erro"
+                + " code " + responseCode);
+      }
+      Resource resource = new Resource(request, httpConn, httpConn.getContentLengthLong());
+      pooled.release(null, true);
+      return Optional.of(resource);
+    } catch (IOException e) {
+      pooled.release(null, false);
+      throw e;
+    }
+  }
 
+  /**
+   * Opens the data by a single GET. It is used if the server doesn't support
+   * HEAD.
+   */
+  private InputChannel openByGet(final ReadDataRequest request, final String host,
+          final long offset) throws IOException {
+    PooledConnection pooled = connect(request);
+    try {
+      final InputStream input = openBody(pooled, offset, null);
+      final HttpURLConnection httpConn = pooled.conn;
+      final long contentLength = httpConn.getContentLengthLong();
+      final Resource resource = new Resource(request, httpConn,
+              contentLength < 0 ? -1 : offset + contentLength);
+      final DataInfo info = resource.toDataInfo(request, host, offset + contentLength);
+      return new InputChannel() {
+        @Override
+        public void close() throws IOException {
+          pooled.release(input, true);
+        }
+
+        @Override
+        public long getOffset() {
+          return offset;
+        }
+
+        @Override
+        public DataInfo getInfo() {
+          return info;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+          return input;
+        }
+
+        @Override
+        public Optional<RangeReader> getRangeReader() {
+          if (!resource.acceptRanges || contentLength <= 0 || offset > 0) {
+            return Optional.empty();
+          }
+          //The ranges need the permits of same host, so the body, which isn't
+          //read by the segmented transfer, is released first
+          return Optional.of((start, length) -> {
+            pooled.release(input, false);
+            return openRange(request, start, length, resource);
+          });
+        }
+      };
+    } catch (IOException e) {
+      pooled.release(null, false);
+      throw e;
+    }
+  }
+
+  /**
+   * Sends GET from the offset to the end of data.
+   *
+   * @param pooled The connection
+   * @param offset The offset of first byte
+   * @param expected The resource found by HEAD, or null if it is unknown
+   * @return The response body
+   * @throws IOException If failed to get data or the data has been changed
+   */
+  private static InputStream openBody(final PooledConnection pooled, final long offset,
+          final Resource expected) throws IOException {
+    final HttpURLConnection httpConn = pooled.conn;
+    httpConn.setDoInput(true);
+    httpConn.setRequestMethod("GET");
+    httpConn.setInstanceFollowRedirects(true);
+    if (offset > 0) {
+      httpConn.setRequestProperty("Range", "bytes=" + offset + "-");
+      if (expected != null) {
+        expected.getValidator().ifPresent(v -> httpConn.setRequestProperty("If-Range", v));
+      }
+    }
+    httpConn.connect();
+    int responseCode = httpConn.getResponseCode();
+    if (responseCode != (offset > 0 ? HttpURLConnection.HTTP_PARTIAL : HttpURLConnection.HTTP_OK)) {
+      pooled.release(httpConn.getErrorStream(), true);
+      throw new HttpIOException("Failed to connection http server with erro"
+              + " code " + responseCode);
+    }
+    if (expected != null) {
+      expected.checkVersion(httpConn);
+    }
+    return httpConn.getInputStream();
+  }
+
+  private InputStream openRange(final ReadDataRequest request, final long offset,
+          final long length, final Resource expected) throws IOException {
+    PooledConnection pooled = connect(request);
+    try {
+      HttpURLConnection rangeConn = pooled.conn;
+      rangeConn.setDoInput(true);
+      rangeConn.setRequestMethod("GET");
+      rangeConn.setInstanceFollowRedirects(true);
+      rangeConn.setRequestProperty("Range", "bytes=" + offset + "-" + (offset + length - 1));
+      //The server returns the whole data rather than the range if the data
+      //is changed, so the segments never mix two versions
+      expected.getValidator().ifPresent(v -> rangeConn.setRequestProperty("If-Range", v));
+      rangeConn.connect();
+      int responseCode = rangeConn.getResponseCode();
+      if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+        //the whole data may be returned, so don't drain it
+        pooled.release(rangeConn.getErrorStream(), responseCode != HttpURLConnection.HTTP_OK);
+        throw new HttpIOException("Failed to get the range " + offset
+                + "-" + (offset + length - 1) + " with code " + responseCode);
+      }
+      expected.checkVersion(rangeConn);
+      expected.checkRange(rangeConn, offset);
+      final InputStream input = rangeConn.getInputStream();
+      return new BoundedInputStream(input, length) {
+        @Override
+        public void close() throws IOException {
+          pooled.release(input, true);
+        }
+      };
+    } catch (IOException e) {
+      pooled.release(null, false);
+      throw e;
+    }
+  }
+
+  /**
+   * The metadata of remote data.
+   */
+  private static final class Resource {
+
+    private final String name;
+    private final long size;
+    private final long lastModified;
+    private final boolean acceptRanges;
+    private final String etag;
+    private final String lastModifiedString;
+
+    /**
+     * @param size The size of whole data, or -1 if it is unknown
+     */
+    Resource(final UriRequest request, final HttpURLConnection conn,
+            final long size) throws IOException {
+      this.name = findName(request, conn);
+      this.size = size;
+      this.lastModified = conn.getLastModified();
+      this.acceptRanges = "bytes".equalsIgnoreCase(conn.getHeaderField("Accept-Ranges"));
+      this.etag = conn.getHeaderField("ETag");
+      this.lastModifiedString = conn.getHeaderField("Last-Modified");
+    }
+
+    private static String findName(final UriRequest request,
+            final HttpURLConnection conn) throws IOException {
+      String fileName = request.getPath().getName();
+      String disposition = conn.getHeaderField("Content-Disposition");
+      if (disposition != null) {
+        for (String s : disposition.split(";")) {
+          int index = s.indexOf("=");
+          if (index != -1) {
+            fileName = s.substring(index + 1).replaceAll("\"", "");
+            break;
+          }
+        }
+      }
+      if (fileName == null || fileName.length() == 0) {
+        throw new IOException("Failed to find the file name");
+      }
+      return fileName;
+    }
+
+    DataInfo toDataInfo(final UriRequest request, final String host, final long infoSize) {
+      return DataInfo.newBuilder()
+              .setRequest(request)
+              .setType(DataType.FILE)
+              .setOwner(DataOwner.newSingleOwner(host))
+              .setSize(infoSize)
+              .setUploadTime(lastModified)
+              .build();
+    }
+
+    /**
+     * @return The strong ETag, or the Last-Modified if the ETag is weak or
+     * absent. The weak ETag can't be used by If-Range
+     */
+    Optional<String> getValidator() {
+      if (etag != null && !etag.startsWith("W/")) {
+        return Optional.of(etag);
+      }
+      return Optional.ofNullable(lastModifiedString);
+    }
+
+    /**
+     * @param conn The response of GET
+     * @throws IOException If the response is from another version
+     */
+    void checkVersion(final HttpURLConnection conn) throws IOException {
+      String currentTag = conn.getHeaderField("ETag");
+      String currentTime = conn.getHeaderField("Last-Modified");
+      if ((etag != null && currentTag != null && !etag.equals(currentTag))
+              || (etag == null && lastModifiedString != null && currentTime != null
+              && !lastModifiedString.equals(currentTime))) {
+        throw new HttpIOException("The data:" + name + " has been changed");
+      }
+    }
+
+    /**
+     * Checks the Content-Range, such as "bytes 0-99/1234".
+     *
+     * @param conn The response of ranged GET
+     * @param offset The expected first byte
+     * @throws IOException If the range is unexpected
+     */
+    void checkRange(final HttpURLConnection conn, final long offset) throws IOException {
+      String contentRange = conn.getHeaderField("Content-Range");
+      if (contentRange == null) {
+        return;
+      }
+      try {
+        String range = contentRange.trim().substring("bytes ".length());
+        long start = Long.valueOf(range.substring(0, range.indexOf("-")));
+        String total = range.substring(range.indexOf("/") + 1);
+        if (start != offset || (size > 0 && !total.equals("*") && Long.valueOf(total) != size)) {
+          throw new HttpIOException("Unexpected range:" + contentRange
+                  + " for the data:" + name);
+        }
+      } catch (IndexOutOfBoundsException | NumberFormatException e) {
+        throw new HttpIOException("Invalid range:" + contentRange, e);
+      }
+    }
+  }
+
+  /**
+   * Sends GET on the first read.
+   */
+  private final class LazyBody extends InputStream {
+
+    private final ReadDataRequest request;
+    private final long offset;
+    private final Resource resource;
+    private PooledConnection pooled;
+    private InputStream input;
+    private boolean closed = false;
+
+    LazyBody(final ReadDataRequest request, final long offset, final Resource resource) {
+      this.request = request;
+      this.offset = offset;
+      this.resource = resource;
+    }
+
+    private InputStream get() throws IOException {
+      if (closed) {
+        throw new IOException("The stream is closed");
+      }
+      if (input == null) {
+        PooledConnection conn = connect(request);
+        try {
+          input = openBody(conn, offset, resource);
+          pooled = conn;
+        } catch (IOException e) {
+          conn.release(null, false);
+          throw e;
+        }
+      }
+      return input;
+    }
+
+    @Override
+    public int read() throws IOException {
+      return get().read();
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      return get().read(b, off, len);
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+      return get().skip(n);
+    }
+
+    @Override
+    public int available() throws IOException {
+      return input == null ? 0 : input.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+      closed = true;
+      if (pooled != null) {
+        pooled.release(input, true);
+      }
+    }
+  }
+
+  /**
+   * @param name The file name
+   * @param expectedSize The size of data, or null if it is unknown
+   * @return The multipart header written before the data
+   */
+  private static byte[] createPartHeader(final String name, final Long expectedSize) {
+    StringBuilder header = new StringBuilder()
+            .append("--")
+            .append(BOUNDARY)
+            .append(LINE_END)
+            .append("Content-Disposition: form-data; filename=\"")
+            .append(name)
+            .append("\";")
+            .append(LINE_END)
+            .append("Content-Type: application/octet-stream;")
+            .append(LINE_END);
+    if (expectedSize != null) {
+      header.append("Content-length: ")
+              .append(expectedSize)
+              .append(LINE_END);
+    }
+    return header.append(LINE_END)
+            .toString()
+            .getBytes(StandardCharsets.UTF_8);
   }
 
   @Override
   protected OutputChannel internalCreate(final WriteDataRequest request) throws IOException {
     DataSystem.getHostOrThrow(request);
     final String name = request.getPath().getName();
-    final long expectedSize = DataSystem.getInputSizeOrThrow(request);
-    HttpURLConnection httpConn = creatHttpURLConnection(
-            request.getAccountInfo(), request.getPath().getCatalog());
-    httpConn.setDoOutput(true);
-    httpConn.setInstanceFollowRedirects(true);
-    httpConn.setRequestMethod("POST");
-    httpConn.setRequestProperty("User-Agent", "CodeJava Agent");
-    httpConn.setRequestProperty("Content-Type",
-            "multipart/form-data; boundary=" + BOUNDARY);
-    httpConn.connect();
-    final DataOutputStream output = new DataOutputStream(httpConn.getOutputStream());
+    final Optional<Long> expectedSize = request.getExpectedSize();
+    final byte[] header = createPartHeader(name, expectedSize.orElse(null));
+    final PooledConnection pooled = connect(request);
+    final HttpURLConnection httpConn = pooled.conn;
+    final OutputStream output;
     try {
-      output.writeBytes("--");
-      output.writeBytes(BOUNDARY);
-      output.writeBytes(LINE_END);
-      output.writeBytes("Content-Disposition: form-data; filename=\""
-              + name + "\";");
-      output.writeBytes(LINE_END);
-      output.writeBytes("Content-Type: application/octet-stream;");
-      output.writeBytes(LINE_END);
-      output.writeBytes("Content-length: " + String.valueOf(expectedSize));
-      output.writeBytes(LINE_END);
-      output.writeBytes(LINE_END);
+      output = openUpload(httpConn, expectedSize, header);
     } catch (IOException e) {
-      TrekUtils.closeWithLog(output, LOG);
-      httpConn.disconnect();
+      pooled.release(null, false);
       throw e;
     }
     return new OutputChannel() {
@@ -153,19 +630,18 @@ public class HttpDataSystem extends DataSystem {
       @Override
       public void close() throws IOException {
         try {
-          output.writeBytes(LINE_END);
-          output.writeBytes("--");
-          output.writeBytes(BOUNDARY);
-          output.writeBytes("--");
-          output.writeBytes(LINE_END);
+          output.write(PART_TRAILER);
           output.close();
           int status = httpConn.getResponseCode();
           if (status != HttpURLConnection.HTTP_OK) {
+            pooled.release(httpConn.getErrorStream(), true);
             throw new IOException("Failed to upload data to"
                     + " http server with error code " + status);
           }
-        } finally {
-          httpConn.disconnect();
+          pooled.release(httpConn.getInputStream(), true);
+        } catch (IOException e) {
+          pooled.release(null, false);
+          throw e;
         }
       }
 
@@ -180,6 +656,28 @@ public class HttpDataSystem extends DataSystem {
     };
   }
 
+  private static OutputStream openUpload(final HttpURLConnection httpConn,
+          final Optional<Long> expectedSize, final byte[] header) throws IOException {
+    httpConn.setDoOutput(true);
+    httpConn.setInstanceFollowRedirects(true);
+    httpConn.setRequestMethod("POST");
+    httpConn.setRequestProperty("User-Agent", "CodeJava Agent");
+    httpConn.setRequestProperty("Content-Type",
+            "multipart/form-data; boundary=" + BOUNDARY);
+    //Don't buffer the body in heap. The connection also checks that the
+    //number of written bytes is equal to the fixed length
+    if (expectedSize.isPresent()) {
+      httpConn.setFixedLengthStreamingMode(header.length
+              + expectedSize.get() + PART_TRAILER.length);
+    } else {
+      httpConn.setChunkedStreamingMode(0);
+    }
+    httpConn.connect();
+    final OutputStream output = httpConn.getOutputStream();
+    output.write(header);
+    return output;
+  }
+
   @Override
   protected void close() throws Exception {
   }
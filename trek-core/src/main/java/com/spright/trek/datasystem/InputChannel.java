@@ -2,10 +2,40 @@ package com.spright.trek.datasystem;
 
 import com.spright.trek.datasystem.request.DataInfo;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.Optional;
 
 public interface InputChannel extends AutoCloseable {
 
   DataInfo getInfo();
 
   InputStream getInputStream();
+
+  /**
+   * @return The position where the input starts. It must be equal with
+   * {@link com.spright.trek.datasystem.request.ReadDataRequest#getOffset()}
+   */
+  default long getOffset() {
+    return 0;
+  }
+
+  /**
+   * Exposes the file channel if the data is backed by a local file. The
+   * channel must share the position with {@link #getInputStream()}, so the
+   * caller should advance the position after transferring data by the
+   * positional methods.
+   *
+   * @return The file channel, or empty if the data is not backed by file
+   */
+  default Optional<FileChannel> getFileChannel() {
+    return Optional.empty();
+  }
+
+  /**
+   * @return The reader for reading ranges concurrently, or empty if the data
+   * system doesn't support positioned read
+   */
+  default Optional<RangeReader> getRangeReader() {
+    return Optional.empty();
+  }
 }
@@ -6,6 +6,9 @@ import com.sun.net.httpserver.HttpExchange;
 import com.spright.trek.web.HttpStatusCode;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Optional;
 import org.apache.hadoop.conf.Configuration;
 import com.spright.trek.datasystem.request.DataInfoQuery;
 import com.spright.trek.datasystem.request.ReadDataRequest;
@@ -52,6 +55,8 @@ public class LocalDataSystem extends DataSystem {
     he.sendResponseHeaders(HttpStatusCode.OK.get(), size);
     OutputStream output = he.getResponseBody();
     return new OutputChannel() {
+      private final WritableByteChannel channel = Channels.newChannel(output);
+
       @Override
       public WriteDataRequest getRequest() {
         return request;
@@ -62,6 +67,11 @@ public class LocalDataSystem extends DataSystem {
         return output;
       }
 
+      @Override
+      public Optional<WritableByteChannel> getWritableChannel() {
+        return Optional.of(channel);
+      }
+
       @Override
       public void recover() throws IOException {
       }
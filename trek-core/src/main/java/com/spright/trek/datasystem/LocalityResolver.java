@@ -0,0 +1,216 @@
+package com.spright.trek.datasystem;
+
+import com.spright.trek.DConstants;
+import com.spright.trek.datasystem.request.DataOwner;
+import com.spright.trek.utils.TrekUtils;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * Resolves the data owners for the hbase storage. The region locations of a
+ * table are loaded by a single meta scan and cached for
+ * {@link DConstants#HDS_LOCALITY_CACHE_TIME}. The cache of table is reloaded
+ * if a row isn't covered by any cached region, and the concurrent reloads of
+ * a table share a single meta scan. The unassigned regions are cached too, so
+ * their rows have no owner until the cache expires. The block locations of
+ * linked files are resolved by {@link Session}, which lists the parent
+ * directory with located status once it has seen enough files of the same
+ * directory.
+ */
+final class LocalityResolver {
+
+  private static final Log LOG = LogFactory.getLog(LocalityResolver.class);
+  private final Map<TableName, Regions> regions = new ConcurrentHashMap<>();
+  private final Map<TableName, CompletableFuture<Regions>> loads = new ConcurrentHashMap<>();
+  private final FileSystem fs;
+  private final long cacheTime;
+  private final int bulkThreshold;
+
+  LocalityResolver(final Configuration conf, final FileSystem fs) {
+    this.fs = fs;
+    this.cacheTime = conf.getLong(DConstants.HDS_LOCALITY_CACHE_TIME,
+            DConstants.DEFAULT_HDS_LOCALITY_CACHE_TIME);
+    this.bulkThreshold = conf.getInt(DConstants.HDS_LOCALITY_BULK_THRESHOLD,
+            DConstants.DEFAULT_HDS_LOCALITY_BULK_THRESHOLD);
+  }
+
+  /**
+   * @param conn The hbase connection
+   * @param tableName The table
+   * @param row The row key
+   * @return The host of region which has the row
+   * @throws IOException If failed to load the region locations
+   */
+  List<DataOwner> findOwners(final Connection conn, final TableName tableName,
+          final byte[] row) throws IOException {
+    Regions cached = getRegions(conn, tableName, null);
+    HRegionLocation loc = cached.find(row);
+    if (loc == null) {
+      //the region may be split or moved after we cached it
+      loc = getRegions(conn, tableName, cached).find(row);
+    }
+    if (loc == null || loc.getServerName() == null) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList(DataOwner.newSingleOwner(loc.getHostname()));
+  }
+
+  /**
+   * Drops the cached region locations of table.
+   *
+   * @param tableName The table
+   */
+  void invalidate(final TableName tableName) {
+    regions.remove(tableName);
+  }
+
+  /**
+   * @param stale The cached regions which don't cover a row, or null
+   * @return The cached regions. They are reloaded if they are expired or
+   * stale
+   */
+  private Regions getRegions(final Connection conn, final TableName tableName,
+          final Regions stale) throws IOException {
+    final long now = System.currentTimeMillis();
+    Regions cached = regions.get(tableName);
+    if (cached != null && cached != stale && now - cached.loadTime < cacheTime) {
+      return cached;
+    }
+    CompletableFuture<Regions> load = new CompletableFuture<>();
+    CompletableFuture<Regions> running = loads.putIfAbsent(tableName, load);
+    if (running != null) {
+      return await(running);
+    }
+    try {
+      try (RegionLocator locator = conn.getRegionLocator(tableName)) {
+        cached = new Regions(locator.getAllRegionLocations(), now);
+      }
+      regions.put(tableName, cached);
+      load.complete(cached);
+      return cached;
+    } catch (IOException | RuntimeException e) {
+      load.completeExceptionally(e);
+      throw e;
+    } finally {
+      loads.remove(tableName, load);
+    }
+  }
+
+  private static Regions await(final CompletableFuture<Regions> load) throws IOException {
+    try {
+      return load.get();
+    } catch (InterruptedException e) {
+      throw (IOException) new InterruptedIOException("Interrupted while loading the regions")
+              .initCause(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Failed to load the regions", e.getCause());
+    }
+  }
+
+  /**
+   * @return A session for resolving the linked files of a listing
+   */
+  Session newSession() {
+    return new Session();
+  }
+
+  /**
+   * Resolves the block locations of linked files. The files of a listing are
+   * often in the same directory, so the directory is listed with the located
+   * status after {@link DConstants#HDS_LOCALITY_BULK_THRESHOLD} files of it
+   * have been resolved one by one. The listed locations are kept until the
+   * session is discarded.
+   */
+  final class Session {
+
+    private final Map<Path, Integer> misses = new HashMap<>();
+    private final Map<Path, Map<String, List<DataOwner>>> directories = new HashMap<>();
+
+    private Session() {
+    }
+
+    /**
+     * @param path The linked file
+     * @return The hosts ordered by the number of blocks they have
+     * @throws IOException If failed to get the block locations
+     */
+    synchronized List<DataOwner> findOwners(final Path path) throws IOException {
+      final Path parent = path.getParent();
+      Map<String, List<DataOwner>> owners = directories.get(parent);
+      if (owners == null && parent != null
+              && misses.merge(parent, 1, Integer::sum) > bulkThreshold) {
+        owners = listOwners(parent);
+        directories.put(parent, owners);
+        misses.remove(parent);
+      }
+      List<DataOwner> rval = owners == null ? null : owners.get(path.getName());
+      //the file may be created after the directory is listed
+      return rval == null ? TrekUtils.findOwners(fs, path) : rval;
+    }
+
+    private Map<String, List<DataOwner>> listOwners(final Path dir) throws IOException {
+      Map<String, List<DataOwner>> owners = new HashMap<>();
+      RemoteIterator<LocatedFileStatus> iter = fs.listLocatedStatus(dir);
+      while (iter.hasNext()) {
+        LocatedFileStatus status = iter.next();
+        if (status.isFile()) {
+          owners.put(status.getPath().getName(),
+                  TrekUtils.findOwners(status.getBlockLocations()));
+        }
+      }
+      LOG.debug("Resolve " + owners.size() + " files of " + dir + " in bulk");
+      return owners;
+    }
+  }
+
+  private static final class Regions {
+
+    private final NavigableMap<byte[], HRegionLocation> locations
+            = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    private final long loadTime;
+
+    Regions(final List<HRegionLocation> locs, final long loadTime) {
+      this.loadTime = loadTime;
+      //the unassigned region is kept so that its rows don't cause reloads
+      locs.stream()
+              .filter(loc -> loc != null && loc.getRegionInfo() != null)
+              .forEach(loc -> locations.put(loc.getRegionInfo().getStartKey(), loc));
+    }
+
+    /**
+     * @return The region which has the row, or null if no region covers the
+     * row. The server of region is null if it is unassigned
+     */
+    HRegionLocation find(final byte[] row) {
+      Map.Entry<byte[], HRegionLocation> entry = locations.floorEntry(row);
+      if (entry == null || !entry.getValue().getRegionInfo().containsRow(row)) {
+        return null;
+      }
+      return entry.getValue();
+    }
+  }
+}
@@ -3,6 +3,8 @@ package com.spright.trek.datasystem;
 import com.spright.trek.datasystem.request.WriteDataRequest;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.Optional;
 
 public interface OutputChannel extends AutoCloseable {
 
@@ -11,4 +13,53 @@ public interface OutputChannel extends AutoCloseable {
   OutputStream getOutputStream();
 
   void recover() throws IOException;
+
+  /**
+   * Stops writing without committing the data, so that the transfer can be
+   * resumed from the tmp path later. The default discards the data as the
+   * channel doesn't support resume.
+   *
+   * @throws Exception If failed to close the channel
+   */
+  default void suspend() throws Exception {
+    try {
+      close();
+    } finally {
+      recover();
+    }
+  }
+
+  /**
+   * @return The tmp destination which is able to be resumed, or empty if the
+   * channel doesn't support resume
+   */
+  default Optional<String> getTmpPath() {
+    return Optional.empty();
+  }
+
+  /**
+   * @return The number of bytes which are already in the destination. It is
+   * greater than zero if the channel resumes a tmp destination
+   */
+  default long getOffset() {
+    return 0;
+  }
+
+  /**
+   * Exposes the channel of sink. It is used by the executor to move data by
+   * {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}.
+   *
+   * @return The writable channel, or empty if the sink supports stream only
+   */
+  default Optional<WritableByteChannel> getWritableChannel() {
+    return Optional.empty();
+  }
+
+  /**
+   * @return The writer for writing ranges concurrently, or empty if the data
+   * system doesn't support positioned write
+   */
+  default Optional<RangeWriter> getRangeWriter() {
+    return Optional.empty();
+  }
 }
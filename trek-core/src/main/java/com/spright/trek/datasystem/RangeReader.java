@@ -0,0 +1,19 @@
+package com.spright.trek.datasystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the specified range of data. The ranges can be read concurrently.
+ */
+@FunctionalInterface
+public interface RangeReader {
+
+  /**
+   * @param offset The offset of first byte
+   * @param length The number of bytes to read
+   * @return A input stream which reaches the end after reading the length
+   * @throws IOException If failed to open the range
+   */
+  InputStream open(final long offset, final long length) throws IOException;
+}
@@ -0,0 +1,29 @@
+package com.spright.trek.datasystem;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the specified range of data. The ranges can be written concurrently,
+ * and they are assembled by {@link OutputChannel#close()}.
+ */
+@FunctionalInterface
+public interface RangeWriter {
+
+  /**
+   * The offset of each range should be a multiple of alignment.
+   *
+   * @return The alignment of range in bytes
+   */
+  default long getAlignment() {
+    return 1;
+  }
+
+  /**
+   * @param offset The offset of first byte
+   * @param length The number of bytes to write
+   * @return A output stream to write the range
+   * @throws IOException If failed to create the range
+   */
+  OutputStream create(final long offset, final long length) throws IOException;
+}
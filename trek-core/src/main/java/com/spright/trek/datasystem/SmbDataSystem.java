@@ -128,15 +128,17 @@ public class SmbDataSystem extends DataSystem {
 
   @Override
   protected CloseableIterator<DataInfo> internalList(DataInfoQuery request) throws IOException {
-    String path = toUrlStringPath(request);
-    if (!path.endsWith("/")) {
-      path = path + "/";
-    }
+    String path = "smb://" + DataSystem.getHostOrThrow(request)
+            + request.getPath().getCatalog();
     SmbFile smbFile = new SmbFile(path, toAuth(request));
-    checkDataType(toDataInfo(request, smbFile).getType(), DataType.DIRECTORY);
+    checkDataExisted(request, smbFile.isDirectory());
     List<DataInfo> infos = new LinkedList<>();
     for (SmbFile f : smbFile.listFiles()) {
-      infos.add(toDataInfo(request.appendName(f.getName()), f));
+      //The name of directory is end with slash
+      String name = f.getName().endsWith("/")
+              ? f.getName().substring(0, f.getName().length() - 1)
+              : f.getName();
+      infos.add(toDataInfo(request.replaceName(name), f));
     }
     return IteratorUtils.wrap(infos.iterator());
   }
@@ -192,8 +192,12 @@ public class DataInfo {
       return this;
     }
 
+    /**
+     * @param v The owners. An empty list means the owners are unknown
+     * @return This builder
+     */
     public Builder setOwners(final List<DataOwner> v) {
-      if (isValid(v)) {
+      if (v != null) {
         owners = v;
       }
       return this;
@@ -217,7 +221,7 @@ public class DataInfo {
       checkNull(request, "request");
       checkNull(size, "size");
       checkNull(ts, "ts");
-      checkNull(owners, "owner");
+      checkNotNull(owners, "owner");
       checkNull(type, "type");
       return new DataInfo(request, size, ts, type, owners);
     }
@@ -64,6 +64,8 @@ public final class DataInfoQuery extends UriRequest implements ListQuery<Field,
             .setTypes(parseDataTypes(rawQuery))
             .setKeep(QueryUtils.parseBoolean(rawQuery.get(DConstants.URI_DATA_KEEP),
                     DConstants.DEFAULT_URI_DATA_KEEP))
+            .setNeedOwner(QueryUtils.parseBoolean(rawQuery.get(DConstants.URI_DATA_NEED_OWNER),
+                    DConstants.DEFAULT_URI_DATA_NEED_OWNER))
             .build();
   }
   private final int offset;
@@ -73,6 +75,7 @@ public final class DataInfoQuery extends UriRequest implements ListQuery<Field,
   private final RangeLong uploadTime;
   private final RangeLong size;
   private final boolean keep;
+  private final boolean needOwner;
   private final Predicate<DataInfo> predicate;
   private final Comparator<DataInfo> comparator;
 
@@ -80,6 +83,15 @@ public final class DataInfoQuery extends UriRequest implements ListQuery<Field,
           final Set<OrderKey<Field>> orderKeys, final UriRequest request,
           final RangeLong uploadTime, final RangeLong size,
           final List<DataType> types, final boolean keep) {
+    this(offset, limit, orderKeys, request, uploadTime, size, types, keep,
+            DConstants.DEFAULT_URI_DATA_NEED_OWNER);
+  }
+
+  public DataInfoQuery(final int offset, final int limit,
+          final Set<OrderKey<Field>> orderKeys, final UriRequest request,
+          final RangeLong uploadTime, final RangeLong size,
+          final List<DataType> types, final boolean keep,
+          final boolean needOwner) {
     super(request);
     this.offset = offset;
     this.limit = limit;
@@ -88,6 +100,7 @@ public final class DataInfoQuery extends UriRequest implements ListQuery<Field,
     this.size = size;
     this.types = types;
     this.keep = keep;
+    this.needOwner = needOwner;
     this.comparator = createComparator(orderKeys);
     List<Predicate<DataInfo>> predicates = new LinkedList<>();
     predicates.add(PredicateUtils.newPredicate(v -> v.getUriRequest().getPath().getName(),
@@ -112,6 +125,14 @@ public final class DataInfoQuery extends UriRequest implements ListQuery<Field,
     return keep;
   }
 
+  /**
+   * @return False if the data owners are useless to client, so the data
+   * system can skip the locality lookup
+   */
+  public boolean getNeedOwner() {
+    return needOwner;
+  }
+
   public List<DataType> getTypes() {
     return new ArrayList<>(types);
   }
@@ -192,6 +213,7 @@ public final class DataInfoQuery extends UriRequest implements ListQuery<Field,
     private int offset = DConstants.DEFAULT_URI_DATA_OFFSET;
     private int limit = DConstants.DEFAULT_URI_DATA_LIMIT;
     private boolean keep = DConstants.DEFAULT_URI_DATA_KEEP;
+    private boolean needOwner = DConstants.DEFAULT_URI_DATA_NEED_OWNER;
     private Set<OrderKey<Field>> orderKeys;
     private UriRequest request;
     private List<DataType> types;
@@ -203,6 +225,11 @@ public final class DataInfoQuery extends UriRequest implements ListQuery<Field,
       return this;
     }
 
+    public Builder setNeedOwner(final boolean v) {
+      needOwner = v;
+      return this;
+    }
+
     public Builder setOffset(final int v) {
       if (isValid(v)) {
         offset = v;
@@ -262,7 +289,8 @@ public final class DataInfoQuery extends UriRequest implements ListQuery<Field,
               uploadTime,
               size,
               types == null ? Arrays.asList(DataType.FILE) : new ArrayList<>(types),
-              keep
+              keep,
+              needOwner
       );
     }
   }
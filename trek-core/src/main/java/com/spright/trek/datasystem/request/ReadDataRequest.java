@@ -16,16 +16,30 @@ public class ReadDataRequest extends UriRequest {
                     DConstants.DEFAULT_URI_DATA_KEEP));
   }
   private final boolean keep;
+  private final long offset;
 
   public ReadDataRequest(final UriRequest request, final boolean keep) {
+    this(request, keep, 0);
+  }
+
+  public ReadDataRequest(final UriRequest request, final boolean keep,
+          final long offset) {
     super(request);
     this.keep = keep;
+    this.offset = offset;
   }
 
   public final boolean isKeep() {
     return keep;
   }
 
+  /**
+   * @return The position to start reading. It is used to resume the transfer
+   */
+  public final long getOffset() {
+    return offset;
+  }
+
   @Override
   public String toString() {
     return super.toString();
@@ -181,6 +181,14 @@ public class UriRequest {
     return new UriRequest(scheme, account, path.append(name));
   }
 
+  /**
+   * @param name The new name
+   * @return A request pointing to the data which has the same catalog
+   */
+  public UriRequest replaceName(final String name) {
+    return new UriRequest(scheme, account, new DataPath(path.getCatalog(), name));
+  }
+
   public boolean hasAttach() {
     return attach != null;
   }
@@ -28,15 +28,54 @@ public class WriteDataRequest extends UriRequest {
   }
   private final long uploadTime;
   private final long size;
+  private final String tmpPath;
+  private final long offset;
+  private final boolean bulk;
 
   public WriteDataRequest(final UriRequest request) {
     this(request, -1, -1);
   }
 
   public WriteDataRequest(final UriRequest request, final long uploadTime, final long size) {
+    this(request, uploadTime, size, null, 0);
+  }
+
+  public WriteDataRequest(final UriRequest request, final long uploadTime,
+          final long size, final String tmpPath, final long offset) {
+    this(request, uploadTime, size, tmpPath, offset, false);
+  }
+
+  public WriteDataRequest(final UriRequest request, final long uploadTime,
+          final long size, final String tmpPath, final long offset,
+          final boolean bulk) {
     super(request);
     this.uploadTime = uploadTime;
     this.size = size;
+    this.tmpPath = tmpPath;
+    this.offset = offset;
+    this.bulk = bulk;
+  }
+
+  /**
+   * @return The tmp destination kept by the failed transfer
+   */
+  public final Optional<String> getTmpPath() {
+    return Optional.ofNullable(tmpPath);
+  }
+
+  /**
+   * @return The committed offset of the tmp destination
+   */
+  public final long getOffset() {
+    return offset;
+  }
+
+  /**
+   * @return True if the data is one of many data written by a batch job, so
+   * the data system may buffer the write with others
+   */
+  public final boolean isBulk() {
+    return bulk;
   }
 
   public final Optional<Long> getExpectedSize() {
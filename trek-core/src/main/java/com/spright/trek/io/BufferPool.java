@@ -0,0 +1,201 @@
+package com.spright.trek.io;
+
+import com.google.gson.stream.JsonWriter;
+import com.spright.trek.DConstants;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Shares the fixed-size chunks among the in-memory buffers and manages the
+ * memory budget of them. The released chunks are kept for reuse up to
+ * {@link DConstants#BUFFER_POOL_MAX_SIZE} bytes, and the others are left to
+ * gc. The chunks in use are limited by
+ * {@link DConstants#BUFFER_MEMORY_LIMIT}, so the buffers which can't reserve
+ * more chunks spill to their persistent storage earlier.
+ */
+public final class BufferPool {
+
+  public static void write(final JsonWriter writer, final BufferPool pool) throws IOException {
+    writer.beginObject()
+            .name("chunkSize").value(pool.getChunkSize())
+            .name("budget").value(pool.getBudget())
+            .name("reserved").value(pool.getReservedBytes())
+            .name("used").value(pool.getUsedBytes())
+            .name("spilled").value(pool.getSpilledBytes())
+            .name("pooled").value(pool.getPooledCount())
+            .endObject();
+  }
+  private static BufferPool instance;
+
+  /**
+   * Creates the shared pool by the first configuration.
+   *
+   * @param conf The configuration
+   * @return The shared pool
+   */
+  public static synchronized BufferPool getInstance(final Configuration conf) {
+    if (instance == null) {
+      instance = new BufferPool(
+              conf.getInt(DConstants.BUFFER_CHUNK_SIZE,
+                      DConstants.DEFAULT_BUFFER_CHUNK_SIZE),
+              conf.getLong(DConstants.BUFFER_POOL_MAX_SIZE,
+                      DConstants.DEFAULT_BUFFER_POOL_MAX_SIZE),
+              conf.getBoolean(DConstants.BUFFER_CHUNK_DIRECT,
+                      DConstants.DEFAULT_BUFFER_CHUNK_DIRECT),
+              conf.getLong(DConstants.BUFFER_MEMORY_LIMIT,
+                      DConstants.DEFAULT_BUFFER_MEMORY_LIMIT));
+    }
+    return instance;
+  }
+
+  /**
+   * @return The shared pool. It is created by the default configuration if
+   * no pool has been created
+   */
+  public static BufferPool getInstance() {
+    return getInstance(new Configuration(false));
+  }
+  private final Queue<ByteBuffer> chunks = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pooled = new AtomicInteger(0);
+  private final AtomicLong reserved = new AtomicLong(0);
+  private final AtomicLong used = new AtomicLong(0);
+  private final AtomicLong spilled = new AtomicLong(0);
+  private final int chunkSize;
+  private final int maxChunks;
+  private final boolean direct;
+  private final long budget;
+
+  /**
+   * @param chunkSize The chunk size
+   * @param maxSize The max bytes of the pooled chunks
+   * @param direct True if the chunks are allocated outside the heap
+   */
+  public BufferPool(final int chunkSize, final long maxSize, final boolean direct) {
+    this(chunkSize, maxSize, direct, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param chunkSize The chunk size
+   * @param maxSize The max bytes of the pooled chunks
+   * @param direct True if the chunks are allocated outside the heap
+   * @param budget The max bytes of the chunks in use
+   */
+  public BufferPool(final int chunkSize, final long maxSize, final boolean direct,
+          final long budget) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("The chunk size must be positive: " + chunkSize);
+    }
+    this.chunkSize = chunkSize;
+    this.maxChunks = (int) Math.min(Integer.MAX_VALUE, Math.max(0, maxSize / chunkSize));
+    this.direct = direct;
+    this.budget = budget;
+  }
+
+  /**
+   * @return The chunk size
+   */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * @return The max bytes of the chunks in use
+   */
+  public long getBudget() {
+    return budget;
+  }
+
+  /**
+   * @return The bytes of the chunks in use
+   */
+  public long getReservedBytes() {
+    return reserved.get();
+  }
+
+  /**
+   * @return The bytes written to the chunks in use
+   */
+  public long getUsedBytes() {
+    return used.get();
+  }
+
+  /**
+   * @return The total bytes written to the persistent storage by the buffers
+   * which ran out of memory
+   */
+  public long getSpilledBytes() {
+    return spilled.get();
+  }
+
+  /**
+   * @return The number of chunks waiting for reuse
+   */
+  public int getPooledCount() {
+    return pooled.get();
+  }
+
+  void addUsedBytes(final long delta) {
+    used.addAndGet(delta);
+  }
+
+  void addSpilledBytes(final long delta) {
+    spilled.addAndGet(delta);
+  }
+
+  /**
+   * Takes a chunk even if the budget is exhausted.
+   *
+   * @return A cleared chunk
+   */
+  public ByteBuffer take() {
+    reserved.addAndGet(chunkSize);
+    return poll();
+  }
+
+  /**
+   * @return A cleared chunk, or null if the budget is exhausted
+   */
+  public ByteBuffer tryTake() {
+    long current;
+    do {
+      current = reserved.get();
+      if (current + chunkSize > budget) {
+        return null;
+      }
+    } while (!reserved.compareAndSet(current, current + chunkSize));
+    return poll();
+  }
+
+  private ByteBuffer poll() {
+    ByteBuffer chunk = chunks.poll();
+    if (chunk == null) {
+      return direct ? ByteBuffer.allocateDirect(chunkSize) : ByteBuffer.allocate(chunkSize);
+    }
+    pooled.decrementAndGet();
+    chunk.clear();
+    return chunk;
+  }
+
+  /**
+   * Returns the chunk for reuse. The chunk mustn't be accessed after it is
+   * released.
+   *
+   * @param chunk The chunk taken from this pool
+   */
+  public void release(final ByteBuffer chunk) {
+    if (chunk.capacity() != chunkSize || chunk.isDirect() != direct) {
+      return;
+    }
+    reserved.addAndGet(-chunkSize);
+    if (pooled.incrementAndGet() <= maxChunks) {
+      chunks.offer(chunk);
+    } else {
+      pooled.decrementAndGet();
+    }
+  }
+}
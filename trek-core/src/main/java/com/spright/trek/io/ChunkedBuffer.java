@@ -0,0 +1,223 @@
+package com.spright.trek.io;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The in-memory buffer consisting of the chunks of {@link BufferPool}. It never
+ * copies the written data for growing, and the data is read through the views
+ * of chunks. The chunks are reserved from the budget of pool before writing,
+ * and they are returned to the pool by {@link #close()}. It is not
+ * thread-safe.
+ */
+public final class ChunkedBuffer implements Closeable {
+
+  private final BufferPool pool;
+  private final long limit;
+  private final List<ByteBuffer> chunks = new ArrayList<>();
+  private int writeIndex = 0;
+  private long length = 0;
+  private boolean closed = false;
+
+  /**
+   * @param pool The chunk supplier
+   * @param limit The max size
+   */
+  public ChunkedBuffer(final BufferPool pool, final long limit) {
+    this.pool = pool;
+    this.limit = limit;
+  }
+
+  /**
+   * @param incrementBytes The bytes to add
+   * @return True if the bytes don't exceed the limit of this buffer
+   */
+  public boolean isWithinLimit(final int incrementBytes) {
+    return limit - (length + incrementBytes) >= 0;
+  }
+
+  /**
+   * Reserves the chunks for the bytes to add.
+   *
+   * @param incrementBytes The bytes to add
+   * @return True if there are enough capacity. False if the bytes exceed the
+   * limit or the budget of pool is exhausted
+   */
+  public boolean ensureCapacity(final int incrementBytes) {
+    if (!isWithinLimit(incrementBytes)) {
+      return false;
+    }
+    while ((long) chunks.size() * pool.getChunkSize() - length < incrementBytes) {
+      ByteBuffer chunk = pool.tryTake();
+      if (chunk == null) {
+        return false;
+      }
+      chunks.add(chunk);
+    }
+    return true;
+  }
+
+  /**
+   * @return The written bytes
+   */
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * @return The chunk to write. A chunk is taken if no reserved chunk is left
+   */
+  private ByteBuffer writableChunk() throws IOException {
+    if (closed) {
+      throw new IOException("The buffer is closed");
+    }
+    while (writeIndex < chunks.size() && !chunks.get(writeIndex).hasRemaining()) {
+      ++writeIndex;
+    }
+    if (writeIndex == chunks.size()) {
+      chunks.add(pool.take());
+    }
+    return chunks.get(writeIndex);
+  }
+
+  public void write(final int b) throws IOException {
+    writableChunk().put((byte) b);
+    ++length;
+    pool.addUsedBytes(1);
+  }
+
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    int offset = off;
+    int remaining = len;
+    while (remaining > 0) {
+      ByteBuffer chunk = writableChunk();
+      int size = Math.min(remaining, chunk.remaining());
+      chunk.put(b, offset, size);
+      offset += size;
+      remaining -= size;
+    }
+    length += len;
+    pool.addUsedBytes(len);
+  }
+
+  /**
+   * @return The read-only views of written data
+   */
+  public ByteBuffer[] getByteBuffers() {
+    //the reserved chunks which are not written are excluded
+    ByteBuffer[] views = new ByteBuffer[Math.min(chunks.size(), writeIndex + 1)];
+    for (int i = 0; i != views.length; ++i) {
+      ByteBuffer view = chunks.get(i).asReadOnlyBuffer();
+      view.flip();
+      views[i] = view;
+    }
+    return views;
+  }
+
+  /**
+   * Writes all data to the output. The chunks are gathered to a single write
+   * if the output is a {@link FileOutputStream}.
+   *
+   * @param output The output
+   * @throws IOException If failed to write
+   */
+  public void writeTo(final OutputStream output) throws IOException {
+    ByteBuffer[] views = getByteBuffers();
+    if (output instanceof FileOutputStream) {
+      FileChannel channel = ((FileOutputStream) output).getChannel();
+      long remaining = length;
+      while (remaining > 0) {
+        remaining -= channel.write(views);
+      }
+      return;
+    }
+    WritableByteChannel channel = null;
+    for (int i = 0; i != views.length; ++i) {
+      ByteBuffer chunk = chunks.get(i);
+      if (chunk.hasArray()) {
+        output.write(chunk.array(), chunk.arrayOffset(), views[i].remaining());
+        continue;
+      }
+      if (channel == null) {
+        channel = Channels.newChannel(output);
+      }
+      while (views[i].hasRemaining()) {
+        channel.write(views[i]);
+      }
+    }
+  }
+
+  /**
+   * @return A stream reading the written data without copy
+   */
+  public InputStream getInputStream() {
+    final ByteBuffer[] views = getByteBuffers();
+    return new InputStream() {
+      private int index = 0;
+
+      private ByteBuffer current() {
+        while (index < views.length && !views[index].hasRemaining()) {
+          ++index;
+        }
+        return index < views.length ? views[index] : null;
+      }
+
+      @Override
+      public int read() throws IOException {
+        ByteBuffer view = current();
+        return view == null ? -1 : (view.get() & 0xff);
+      }
+
+      @Override
+      public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+          return 0;
+        }
+        ByteBuffer view = current();
+        if (view == null) {
+          return -1;
+        }
+        int size = Math.min(len, view.remaining());
+        view.get(b, off, size);
+        return size;
+      }
+
+      @Override
+      public int available() throws IOException {
+        long remaining = 0;
+        for (int i = index; i < views.length; ++i) {
+          remaining += views[i].remaining();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, remaining);
+      }
+
+      @Override
+      public void close() throws IOException {
+        ChunkedBuffer.this.close();
+      }
+    };
+  }
+
+  /**
+   * Returns the chunks to the pool. The views of this buffer become invalid.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    pool.addUsedBytes(-length);
+    chunks.forEach(pool::release);
+    chunks.clear();
+  }
+}
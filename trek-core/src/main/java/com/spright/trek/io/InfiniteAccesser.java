@@ -1,14 +1,12 @@
 package com.spright.trek.io;
 
-import com.spright.trek.utils.TrekUtils;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.fs.FSDataOutputStream;
@@ -17,7 +15,10 @@ import org.apache.hadoop.fs.Path;
 
 /**
  * Outputs data to memory if there are enough space. Otherwise, the output will
- * introduced to a infinite output created by {@link IOFactory}. The example is
+ * introduced to a infinite output created by {@link IOFactory}. The memory is
+ * allocated by the chunks of {@link BufferPool}, so the initial capacity is
+ * only checked for the setting. The output spills before reaching the limit
+ * if the memory budget of pool is exhausted. The example is
  * as following: 1) get output stream 2) close output stream 3) get input stream
  * 4) close input stream The input stream is valid only if the output stream is
  * clsoed correctly Don't REUSE!!
@@ -31,7 +32,11 @@ public final class InfiniteAccesser {
   /**
    * In-memory buffer.
    */
-  private final ByteArrayOutput byteOutput;
+  private final ChunkedBuffer byteOutput;
+  /**
+   * Supplies the in-memory chunks.
+   */
+  private final BufferPool pool;
   /**
    * Supplies the infinite output.
    */
@@ -73,13 +78,15 @@ public final class InfiniteAccesser {
     this.inMemory = false;
     this.infiniteOutput = factory.createOutputStream();
     this.byteOutput = null;
+    this.pool = null;
   }
 
   public InfiniteAccesser(final int capacity) {
     checkMemorySetting(Integer.MAX_VALUE, capacity);
     this.factory = null;
     this.inMemory = true;
-    this.byteOutput = new ByteArrayOutput(Integer.MAX_VALUE, capacity);
+    this.pool = BufferPool.getInstance();
+    this.byteOutput = new ChunkedBuffer(pool, Integer.MAX_VALUE);
     this.infiniteOutput = null;
   }
 
@@ -92,10 +99,24 @@ public final class InfiniteAccesser {
    */
   public InfiniteAccesser(final int limit, final int capacity,
           final IOFactory factory) throws IOException {
+    this(limit, capacity, factory, BufferPool.getInstance());
+  }
+
+  /**
+   * @param limit limit
+   * @param capacity Iniitial capacity
+   * @param factory To create infinite output
+   * @param pool To supply the in-memory chunks
+   * @throws java.io.IOException Filed to create output stream by
+   * {@link IOFactory}
+   */
+  public InfiniteAccesser(final int limit, final int capacity,
+          final IOFactory factory, final BufferPool pool) throws IOException {
     checkMemorySetting(limit, capacity);
     this.factory = factory;
     this.inMemory = true;
-    this.byteOutput = new ByteArrayOutput(limit, capacity);
+    this.pool = pool;
+    this.byteOutput = new ChunkedBuffer(pool, limit);
     this.infiniteOutput = null;
   }
 
@@ -125,23 +146,29 @@ public final class InfiniteAccesser {
 
   /**
    * @param incrementBytes The bytes will be writed
-   * @return Vaild output
+   * @return True if the bytes should be written to the in-memory buffer
    * @throws IOException If failed to switch in-memory buffer to infinite
    * output.
    */
-  private OutputStream getValidOutputStream(final int incrementBytes)
+  private boolean keepInMemory(final int incrementBytes)
           throws IOException {
     if (!inMemory) {
-      return infiniteOutput;
+      if (pool != null) {
+        pool.addSpilledBytes(incrementBytes);
+      }
+      return false;
     } else if (byteOutput.ensureCapacity(incrementBytes)) {
-      return byteOutput;
+      return true;
+    } else if (factory == null && byteOutput.isWithinLimit(incrementBytes)) {
+      //nowhere to spill, so the budget is exceeded
+      return true;
     } else {
       infiniteOutput = checkIOFactory().createOutputStream();
-      infiniteOutput.write(byteOutput.getBuffer(),
-              byteOutput.getOffset(), byteOutput.getLength());
+      byteOutput.writeTo(infiniteOutput);
+      pool.addSpilledBytes(byteOutput.getLength() + incrementBytes);
       byteOutput.close();
       inMemory = false;
-      return infiniteOutput;
+      return false;
     }
   }
 
@@ -196,8 +223,7 @@ public final class InfiniteAccesser {
       return rvalInput;
     }
     if (inMemory) {
-      rvalInput = new ByteArrayInputStream(byteOutput.getBuffer(),
-              byteOutput.getOffset(), byteOutput.getLength());
+      rvalInput = byteOutput.getInputStream();
     } else {
       rvalInput = checkIOFactory().createInputStream();
     }
@@ -212,30 +238,22 @@ public final class InfiniteAccesser {
   }
 
   /**
-   * @return The input buffer
+   * @return The read-only views of the in-memory data
    * @throws IOException If the data in not in-memory
    */
-  public byte[] getBuffer() throws IOException {
+  public ByteBuffer[] getByteBuffers() throws IOException {
     checkInMemory();
-    return byteOutput.getBuffer();
+    return byteOutput.getByteBuffers();
   }
 
   /**
-   * @return The offset in the buffer of the first byte to read
-   * @throws IOException If the data in not in-memory
+   * Returns the in-memory chunks to the pool. The data can't be read after
+   * it.
    */
-  public int getBufferOffset() throws IOException {
-    checkInMemory();
-    return byteOutput.getOffset();
-  }
-
-  /**
-   * @return The maximum number of bytes to read from the buffer
-   * @throws IOException If the data in not in-memory
-   */
-  public int getBufferLength() throws IOException {
-    checkInMemory();
-    return byteOutput.getLength();
+  public void release() {
+    if (byteOutput != null) {
+      byteOutput.close();
+    }
   }
 
   /**
@@ -267,16 +285,18 @@ public final class InfiniteAccesser {
       @Override
       public void write(final int b) throws IOException {
         checkOutputStatus();
-        getValidOutputStream(1).write(b);
+        if (keepInMemory(1)) {
+          byteOutput.write(b);
+        } else {
+          infiniteOutput.write(b);
+        }
         ++hasWrite;
       }
 
       @Override
       public void flush() throws IOException {
         checkOutputStatus();
-        if (inMemory) {
-          byteOutput.flush();
-        } else {
+        if (!inMemory) {
           infiniteOutput.flush();
         }
       }
@@ -285,15 +305,17 @@ public final class InfiniteAccesser {
       public void write(final byte[] b, final int off, final int len)
               throws IOException {
         checkOutputStatus();
-        getValidOutputStream(len).write(b, off, len);
+        if (keepInMemory(len)) {
+          byteOutput.write(b, off, len);
+        } else {
+          infiniteOutput.write(b, off, len);
+        }
         hasWrite += len;
       }
 
       @Override
       public void close() throws IOException {
-        if (inMemory) {
-          byteOutput.close();
-        } else {
+        if (!inMemory) {
           infiniteOutput.close();
         }
         outputIsClosed = true;
@@ -358,21 +380,26 @@ public final class InfiniteAccesser {
     /**
      * Buffer file.
      */
-    private final File file;
+    private File file;
+    /**
+     * Creates the tmp file lazily and deletes it after closing input stream.
+     */
+    private final SpillFiles spill;
+
     /**
-     * Deletes the tmp file after closing input stream.
+     * Constructs a FileIOFactory with random tmp file. The file is created by
+     * the shared {@link SpillFiles} when the output is created.
      */
-    private final boolean autoDelete;
+    public FileIOFactory() {
+      this(SpillFiles.getInstance());
+    }
 
     /**
-     * Constructs a FileIOFactory with random tmp file.
-     *
-     * @throws IOException If a file could not be created
+     * @param spill To create the tmp file when the output is created
      */
-    public FileIOFactory() throws IOException {
-      file = File.createTempFile(this.getClass().getName(),
-              String.valueOf(System.currentTimeMillis()));
-      autoDelete = true;
+    public FileIOFactory(final SpillFiles spill) {
+      this.file = null;
+      this.spill = spill;
     }
 
     /**
@@ -380,11 +407,11 @@ public final class InfiniteAccesser {
      */
     public FileIOFactory(final File f) {
       file = f;
-      autoDelete = false;
+      spill = null;
     }
 
     /**
-     * @return The buffer file
+     * @return The buffer file, or null if the output has not been created
      */
     public File getFile() {
       return file;
@@ -392,12 +419,18 @@ public final class InfiniteAccesser {
 
     @Override
     public OutputStream createOutputStream() throws IOException {
+      if (file == null) {
+        file = spill.create();
+      }
       return new FileOutputStream(file);
     }
 
     @Override
     public InputStream createInputStream()
             throws IOException {
+      if (file == null) {
+        throw new IOException("The output has not been created");
+      }
       final InputStream innerInput = new FileInputStream(file);
       return new InputStream() {
         @Override
@@ -424,8 +457,8 @@ public final class InfiniteAccesser {
         @Override
         public void close() throws IOException {
           innerInput.close();
-          if (autoDelete) {
-            TrekUtils.closeWithLog(() -> file.delete(), null);
+          if (spill != null) {
+            spill.delete(file);
           }
         }
 
@@ -465,61 +498,4 @@ public final class InfiniteAccesser {
      */
     InputStream createInputStream() throws IOException;
   }
-
-  /**
-   * Expose the private members which consists of buffer and count to public. It
-   * is not thread-safe, so DON'T fucking use this object in multi-thread.
-   */
-  public static final class ByteArrayOutput extends ByteArrayOutputStream {
-
-    /**
-     * The memory size limit.
-     */
-    private final int limit;
-
-    /**
-     * Creates a new byte array output stream, with a buffer capacity of the
-     * specified size, in bytes.
-     *
-     * @param limit The max size
-     * @param capacity the initial size.
-     * @exception IllegalArgumentException if size is negative.
-     */
-    public ByteArrayOutput(final int limit, final int capacity) {
-      super(capacity);
-      this.limit = limit;
-    }
-
-    /**
-     * Ensures that it can hold at least the number of elements specified by the
-     * minimum capacity argument.
-     *
-     * @param incremetBytes the desired bytes to add
-     * @return True if there are enough capacity
-     */
-    boolean ensureCapacity(final int incremetBytes) {
-      return limit - (count + incremetBytes) >= 0;
-    }
-
-    /**
-     * @return Internal buffer
-     */
-    public byte[] getBuffer() {
-      return buf;
-    }
-
-    /**
-     * @return buffer length
-     */
-    public int getLength() {
-      return count;
-    }
-
-    /**
-     * @return buffer offset
-     */
-    public int getOffset() {
-      return 0;
-    }
-  }
 }
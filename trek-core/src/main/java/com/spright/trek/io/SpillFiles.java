@@ -0,0 +1,177 @@
+package com.spright.trek.io;
+
+import com.spright.trek.DConstants;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Creates the spill files of in-memory buffers. The files are striped over
+ * the directories of {@link DConstants#BUFFER_SPILL_DIRS}, so the directories
+ * can be put on different disks. A janitor removes the spill files which are
+ * not modified over {@link DConstants#BUFFER_SPILL_ORPHAN_TIME}, for example
+ * the files left by a crashed server. The files in use are kept unless they
+ * are created before the orphan time, so the files which are never deleted by
+ * the owners are reclaimed too.
+ */
+public final class SpillFiles implements AutoCloseable {
+
+  private static final Log LOG = LogFactory.getLog(SpillFiles.class);
+  private static final String PREFIX = "trek-spill-";
+  private static final String SUFFIX = ".tmp";
+  private static SpillFiles instance;
+
+  /**
+   * Creates the shared spill files by the first configuration.
+   *
+   * @param conf The configuration
+   * @return The shared spill files
+   */
+  public static synchronized SpillFiles getInstance(final Configuration conf) {
+    if (instance == null) {
+      String[] paths = conf.getTrimmedStrings(DConstants.BUFFER_SPILL_DIRS,
+              DConstants.DEFAULT_BUFFER_SPILL_DIRS);
+      File[] dirs = new File[paths.length];
+      for (int i = 0; i != paths.length; ++i) {
+        dirs[i] = new File(paths[i]);
+      }
+      instance = new SpillFiles(dirs,
+              conf.getLong(DConstants.BUFFER_SPILL_ORPHAN_TIME,
+                      DConstants.DEFAULT_BUFFER_SPILL_ORPHAN_TIME),
+              conf.getLong(DConstants.BUFFER_SPILL_JANITOR_PERIOD,
+                      DConstants.DEFAULT_BUFFER_SPILL_JANITOR_PERIOD));
+    }
+    return instance;
+  }
+
+  /**
+   * @return The shared spill files. It is created by the default
+   * configuration if no instance has been created
+   */
+  public static SpillFiles getInstance() {
+    return getInstance(new Configuration(false));
+  }
+  /**
+   * The files in use. The value is the creation time.
+   */
+  private final Map<File, Long> activeFiles = new ConcurrentHashMap<>();
+  private final AtomicInteger index = new AtomicInteger(0);
+  private final File[] dirs;
+  private final long orphanTime;
+  private final ScheduledExecutorService janitor;
+
+  /**
+   * @param dirs The directories to save the spill files
+   * @param orphanTime The time to keep the spill files which are not in use
+   * @param janitorPeriod The period to remove the orphans. The janitor is
+   * disabled if it is not positive
+   */
+  public SpillFiles(final File[] dirs, final long orphanTime, final long janitorPeriod) {
+    if (dirs.length == 0) {
+      throw new IllegalArgumentException("No spill directory is specified");
+    }
+    this.dirs = dirs.clone();
+    this.orphanTime = orphanTime;
+    if (janitorPeriod > 0) {
+      janitor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "spill-janitor");
+        t.setDaemon(true);
+        return t;
+      });
+      janitor.scheduleWithFixedDelay(this::clean, 0, janitorPeriod, TimeUnit.MILLISECONDS);
+    } else {
+      janitor = null;
+    }
+  }
+
+  /**
+   * Creates a empty file in the next directory.
+   *
+   * @return The spill file
+   * @throws IOException If failed to create the file
+   */
+  public File create() throws IOException {
+    File dir = dirs[Math.floorMod(index.getAndIncrement(), dirs.length)];
+    if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+      throw new IOException("Failed to create the spill directory " + dir);
+    }
+    File file = File.createTempFile(PREFIX, SUFFIX, dir);
+    activeFiles.put(file, System.currentTimeMillis());
+    return file;
+  }
+
+  /**
+   * Deletes the spill file.
+   *
+   * @param file The file created by this
+   */
+  public void delete(final File file) {
+    activeFiles.remove(file);
+    if (file.exists() && !file.delete()) {
+      LOG.warn("Failed to delete the spill file " + file);
+    }
+  }
+
+  /**
+   * @return The number of spill files in use
+   */
+  public int getActiveCount() {
+    return activeFiles.size();
+  }
+
+  /**
+   * Removes the orphan spill files. The file in use is removed if both the
+   * creation time and the modification time are older than the orphan time.
+   *
+   * @return The number of removed files
+   */
+  int clean() {
+    final long expired = System.currentTimeMillis() - orphanTime;
+    int count = 0;
+    int leaked = 0;
+    for (File dir : dirs) {
+      File[] files = dir.listFiles((d, name)
+              -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+      if (files == null) {
+        continue;
+      }
+      for (File file : files) {
+        Long created = activeFiles.get(file);
+        if (created != null && created >= expired) {
+          continue;
+        }
+        if (file.lastModified() < expired && file.delete()) {
+          ++count;
+          if (created != null && activeFiles.remove(file) != null) {
+            ++leaked;
+          }
+        }
+      }
+    }
+    //the files which are removed by others
+    activeFiles.entrySet().removeIf(entry
+            -> entry.getValue() < expired && !entry.getKey().exists());
+    if (leaked != 0) {
+      LOG.warn("Reclaim " + leaked + " spill files which are never deleted");
+    }
+    if (count != 0) {
+      LOG.info("Remove " + count + " orphan spill files");
+    }
+    return count;
+  }
+
+  @Override
+  public void close() {
+    if (janitor != null) {
+      janitor.shutdownNow();
+    }
+  }
+}
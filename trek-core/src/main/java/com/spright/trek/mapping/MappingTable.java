@@ -9,6 +9,7 @@ import com.spright.trek.query.OrderKey;
 import com.spright.trek.thread.ShareableObject;
 import com.spright.trek.DConstants;
 import com.spright.trek.query.TableIterator;
+import com.spright.trek.utils.HBaseUtils;
 import com.spright.trek.utils.TrekUtils;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -157,6 +158,7 @@ public class MappingTable extends AtomicCloseable implements Mapping {
       if (orderKeys.stream().allMatch(v -> v.getKey() == Field.ID)) {
         scan.setReversed(!orderKeys.stream().findFirst().get().getAsc());
       }
+      query.getId().ifPresent(v -> HBaseUtils.setRowRange(scan, filters, v));
       scan.setCaching(DConstants.SCANNER_CACHING);
       if (!filters.getFilters().isEmpty()) {
         scan.setFilter(filters);
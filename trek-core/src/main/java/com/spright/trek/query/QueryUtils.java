@@ -21,6 +21,20 @@ public final class QueryUtils {
             DConstants.DEFAULT_URI_DATA_LIMIT);
   }
 
+  /**
+   * @param rawQuery The query
+   * @param async True if the request is async
+   * @param maxPriority The max priority
+   * @return The requested priority which is no more than the max priority
+   */
+  public static int getPriority(final Map<String, String> rawQuery,
+          final boolean async, final int maxPriority) {
+    return Math.min(maxPriority, QueryUtils.parsePositiveValue(
+            rawQuery.get(DConstants.URI_DATA_PRIORITY),
+            async ? DConstants.DEFAULT_URI_DATA_PRIORITY
+                    : DConstants.DEFAULT_URI_DATA_SYNC_PRIORITY));
+  }
+
   public static int getOffset(final Map<String, String> rawQuery) {
     return QueryUtils.parsePositiveValue(
             rawQuery.get(DConstants.URI_DATA_OFFSET),
@@ -7,7 +7,10 @@ import com.spright.trek.DConstants;
 import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -28,7 +31,17 @@ public class AccessStatus {
             .name(Field.ELAPSED.getDescription()).value(sdf.format(new Date(info.getElapsed())))
             .name(Field.EXPECTED_SIZE.getDescription()).value(info.getExpectedSize())
             .name(Field.TRANSFERRED_SIZE.getDescription()).value(info.getTransferredSize())
-            .endObject();
+            .name(Field.CHECKPOINT.getDescription()).value(info.getCheckpoint())
+            .name(Field.TMP_PATH.getDescription()).value(info.getTmpPath().orElse(""))
+            .name(Field.BUFFER_SIZE.getDescription()).value(info.getBufferSize())
+            .name(Field.QUEUE_TIME.getDescription()).value(info.getQueueTime())
+            .name(Field.SUBTASKS.getDescription()).value(info.getSubtasks())
+            .name(Field.FAILED_SUBTASKS.getDescription()).value(info.getFailedSubtasks())
+            .name(Field.DESTINATIONS.getDescription()).beginArray();
+    for (Destination d : info.getDestinations()) {
+      Destination.write(writer, d);
+    }
+    writer.endArray().endObject();
   }
 
   public static AccessStatus read(final JsonReader reader) throws IOException, ParseException {
@@ -61,6 +74,26 @@ public class AccessStatus {
         builder.setExpectedSize(reader.nextLong());
       } else if (name.equalsIgnoreCase(Field.TRANSFERRED_SIZE.getDescription())) {
         builder.setTransferredSize(reader.nextLong());
+      } else if (name.equalsIgnoreCase(Field.CHECKPOINT.getDescription())) {
+        builder.setCheckpoint(reader.nextLong());
+      } else if (name.equalsIgnoreCase(Field.TMP_PATH.getDescription())) {
+        builder.setTmpPath(reader.nextString());
+      } else if (name.equalsIgnoreCase(Field.BUFFER_SIZE.getDescription())) {
+        builder.setBufferSize(reader.nextInt());
+      } else if (name.equalsIgnoreCase(Field.QUEUE_TIME.getDescription())) {
+        builder.setQueueTime(reader.nextLong());
+      } else if (name.equalsIgnoreCase(Field.SUBTASKS.getDescription())) {
+        builder.setSubtasks(reader.nextInt());
+      } else if (name.equalsIgnoreCase(Field.FAILED_SUBTASKS.getDescription())) {
+        builder.setFailedSubtasks(reader.nextInt());
+      } else if (name.equalsIgnoreCase(Field.DESTINATIONS.getDescription())) {
+        List<Destination> destinations = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          destinations.add(Destination.read(reader));
+        }
+        reader.endArray();
+        builder.setDestinations(destinations);
       } else {
         reader.skipValue();
       }
@@ -89,7 +122,14 @@ public class AccessStatus {
     START_TIME("starttime"),
     ELAPSED("elapsed"),
     EXPECTED_SIZE("expectedsize"),
-    TRANSFERRED_SIZE("transferredsize");
+    TRANSFERRED_SIZE("transferredsize"),
+    CHECKPOINT("checkpoint"),
+    TMP_PATH("tmppath"),
+    BUFFER_SIZE("buffersize"),
+    QUEUE_TIME("queuetime"),
+    DESTINATIONS("destinations"),
+    SUBTASKS("subtasks"),
+    FAILED_SUBTASKS("failedsubtasks");
     private final String desc;
 
     Field(final String desc) {
@@ -122,12 +162,22 @@ public class AccessStatus {
   private final long elapsed;
   private final long expectedSize;
   private final long transferredSize;
+  private final long checkpoint;
+  private final String tmpPath;
+  private final int bufferSize;
+  private final long queueTime;
+  private final List<Destination> destinations;
+  private final int subtasks;
+  private final int failedSubtasks;
 
   public AccessStatus(final AccessStatus ref) {
     this(ref.getId(), ref.getRedirectFrom(), ref.getServerName(),
             ref.getClientName(), ref.getFrom(), ref.getTo(),
             ref.getState(), ref.getProgress(), ref.getStartTime(),
-            ref.getElapsed(), ref.getExpectedSize(), ref.getTransferredSize());
+            ref.getElapsed(), ref.getExpectedSize(), ref.getTransferredSize(),
+            ref.getCheckpoint(), ref.getTmpPath().orElse(null),
+            ref.getBufferSize(), ref.getQueueTime(), ref.getDestinations(),
+            ref.getSubtasks(), ref.getFailedSubtasks());
   }
 
   public AccessStatus(final String id, final String redirectFrom,
@@ -136,6 +186,44 @@ public class AccessStatus {
           final double progress, final long startTime,
           final long elapsed, final long expectedSize,
           final long transferredSize) {
+    this(id, redirectFrom, serverName, clientName, from, to, state,
+            progress, startTime, elapsed, expectedSize, transferredSize, 0, null, 0, 0);
+  }
+
+  public AccessStatus(final String id, final String redirectFrom,
+          final String serverName, final String clientName,
+          final String from, final String to, final TaskState state,
+          final double progress, final long startTime,
+          final long elapsed, final long expectedSize,
+          final long transferredSize, final long checkpoint,
+          final String tmpPath, final int bufferSize, final long queueTime) {
+    this(id, redirectFrom, serverName, clientName, from, to, state,
+            progress, startTime, elapsed, expectedSize, transferredSize,
+            checkpoint, tmpPath, bufferSize, queueTime, Collections.emptyList());
+  }
+
+  public AccessStatus(final String id, final String redirectFrom,
+          final String serverName, final String clientName,
+          final String from, final String to, final TaskState state,
+          final double progress, final long startTime,
+          final long elapsed, final long expectedSize,
+          final long transferredSize, final long checkpoint,
+          final String tmpPath, final int bufferSize, final long queueTime,
+          final List<Destination> destinations) {
+    this(id, redirectFrom, serverName, clientName, from, to, state,
+            progress, startTime, elapsed, expectedSize, transferredSize,
+            checkpoint, tmpPath, bufferSize, queueTime, destinations, 0, 0);
+  }
+
+  public AccessStatus(final String id, final String redirectFrom,
+          final String serverName, final String clientName,
+          final String from, final String to, final TaskState state,
+          final double progress, final long startTime,
+          final long elapsed, final long expectedSize,
+          final long transferredSize, final long checkpoint,
+          final String tmpPath, final int bufferSize, final long queueTime,
+          final List<Destination> destinations, final int subtasks,
+          final int failedSubtasks) {
     this.id = id;
     this.redirectFrom = redirectFrom;
     this.serverName = serverName;
@@ -148,6 +236,14 @@ public class AccessStatus {
     this.elapsed = elapsed;
     this.expectedSize = expectedSize;
     this.transferredSize = transferredSize;
+    this.checkpoint = checkpoint;
+    this.tmpPath = tmpPath;
+    this.bufferSize = bufferSize;
+    this.queueTime = queueTime;
+    this.destinations = destinations == null ? Collections.emptyList()
+            : Collections.unmodifiableList(new ArrayList<>(destinations));
+    this.subtasks = subtasks;
+    this.failedSubtasks = failedSubtasks;
   }
 
   public String getId() {
@@ -198,6 +294,57 @@ public class AccessStatus {
     return transferredSize;
   }
 
+  /**
+   * @return The committed offset of destination. The transfer can be resumed
+   * from this offset if the tmp path is kept
+   */
+  public long getCheckpoint() {
+    return checkpoint;
+  }
+
+  /**
+   * @return The tmp destination kept for resuming the transfer
+   */
+  public Optional<String> getTmpPath() {
+    return Optional.ofNullable(tmpPath);
+  }
+
+  /**
+   * @return The copy buffer size used by the task
+   */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * @return The time in millisecond spent in waiting for the scheduler
+   */
+  public long getQueueTime() {
+    return queueTime;
+  }
+
+  /**
+   * @return The progress of each destination if the task writes to multiple
+   * destinations. Otherwise, it is empty
+   */
+  public List<Destination> getDestinations() {
+    return destinations;
+  }
+
+  /**
+   * @return The number of subtasks if it is a batch task
+   */
+  public int getSubtasks() {
+    return subtasks;
+  }
+
+  /**
+   * @return The number of failed subtasks if it is a batch task
+   */
+  public int getFailedSubtasks() {
+    return failedSubtasks;
+  }
+
   public String formatStartTime() {
     return sdf.format(new Date(getStartTime()));
   }
@@ -230,6 +377,13 @@ public class AccessStatus {
     hash = 11 * hash + (int) (this.elapsed ^ (this.elapsed >>> 32));
     hash = 11 * hash + (int) (this.expectedSize ^ (this.expectedSize >>> 32));
     hash = 11 * hash + (int) (this.transferredSize ^ (this.transferredSize >>> 32));
+    hash = 11 * hash + (int) (this.checkpoint ^ (this.checkpoint >>> 32));
+    hash = 11 * hash + Objects.hashCode(this.tmpPath);
+    hash = 11 * hash + this.bufferSize;
+    hash = 11 * hash + (int) (this.queueTime ^ (this.queueTime >>> 32));
+    hash = 11 * hash + Objects.hashCode(this.destinations);
+    hash = 11 * hash + this.subtasks;
+    hash = 11 * hash + this.failedSubtasks;
     return hash;
   }
 
@@ -247,6 +401,13 @@ public class AccessStatus {
     private long elapsed;
     private long expectedSize;
     private long transferredSize;
+    private long checkpoint;
+    private String tmpPath;
+    private int bufferSize;
+    private long queueTime;
+    private List<Destination> destinations;
+    private int subtasks;
+    private int failedSubtasks;
 
     private Builder() {
     }
@@ -264,6 +425,13 @@ public class AccessStatus {
       state = status.getState();
       progress = status.getProgress();
       id = status.getId();
+      checkpoint = status.getCheckpoint();
+      tmpPath = status.getTmpPath().orElse(null);
+      bufferSize = status.getBufferSize();
+      queueTime = status.getQueueTime();
+      destinations = status.getDestinations();
+      subtasks = status.getSubtasks();
+      failedSubtasks = status.getFailedSubtasks();
     }
 
     public Builder setId(final String v) {
@@ -350,6 +518,55 @@ public class AccessStatus {
       return this;
     }
 
+    public Builder setCheckpoint(final long v) {
+      if (isValid(v)) {
+        checkpoint = v;
+      }
+      return this;
+    }
+
+    public Builder setTmpPath(final String v) {
+      if (isValid(v)) {
+        tmpPath = v;
+      }
+      return this;
+    }
+
+    public Builder setBufferSize(final int v) {
+      if (isValid(v)) {
+        bufferSize = v;
+      }
+      return this;
+    }
+
+    public Builder setQueueTime(final long v) {
+      if (isValid(v)) {
+        queueTime = v;
+      }
+      return this;
+    }
+
+    public Builder setDestinations(final List<Destination> v) {
+      if (isValid(v)) {
+        destinations = v;
+      }
+      return this;
+    }
+
+    public Builder setSubtasks(final int v) {
+      if (isValid(v)) {
+        subtasks = v;
+      }
+      return this;
+    }
+
+    public Builder setFailedSubtasks(final int v) {
+      if (isValid(v)) {
+        failedSubtasks = v;
+      }
+      return this;
+    }
+
     public AccessStatus build() {
       checkNull(id, "id");
       checkNull(redirectFrom, "redirectFrom");
@@ -365,7 +582,111 @@ public class AccessStatus {
       checkNull(transferredSize, "transferredSize");
       return new AccessStatus(id, redirectFrom, serverName, clientName,
               from, to, state, progress, startTime, elapsed, expectedSize,
-              transferredSize);
+              transferredSize, checkpoint, tmpPath, bufferSize, queueTime,
+              destinations, subtasks, failedSubtasks);
+    }
+  }
+
+  /**
+   * The progress of a destination of the fan-out task.
+   */
+  public static final class Destination {
+
+    public static void write(final JsonWriter writer, final Destination d) throws IOException {
+      writer.beginObject()
+              .name(Field.TO.getDescription()).value(d.getTo())
+              .name(Field.STATE.getDescription()).value(d.getState().name())
+              .name(Field.TRANSFERRED_SIZE.getDescription()).value(d.getTransferredSize())
+              .endObject();
+    }
+
+    public static Destination read(final JsonReader reader) throws IOException {
+      String to = null;
+      TaskState state = null;
+      long transferredSize = 0;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (name.equalsIgnoreCase(Field.TO.getDescription())) {
+          to = reader.nextString();
+        } else if (name.equalsIgnoreCase(Field.STATE.getDescription())) {
+          state = TaskState.valueOf(reader.nextString());
+        } else if (name.equalsIgnoreCase(Field.TRANSFERRED_SIZE.getDescription())) {
+          transferredSize = reader.nextLong();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      return new Destination(to, state, transferredSize);
+    }
+
+    /**
+     * Encodes the destinations to a line-based string. Each line is
+     * composed of state, transferred size and uri.
+     *
+     * @param destinations The destinations to encode
+     * @return The encoded string
+     */
+    public static String format(final List<Destination> destinations) {
+      StringBuilder str = new StringBuilder();
+      destinations.forEach(d -> str.append(d.getState().name())
+              .append(" ")
+              .append(d.getTransferredSize())
+              .append(" ")
+              .append(d.getTo())
+              .append("\n"));
+      return str.toString();
+    }
+
+    public static List<Destination> parse(final String value) {
+      List<Destination> destinations = new ArrayList<>();
+      for (String line : value.split("\n")) {
+        String[] args = line.split(" ", 3);
+        if (args.length == 3) {
+          destinations.add(new Destination(args[2],
+                  TaskState.valueOf(args[0]), Long.valueOf(args[1])));
+        }
+      }
+      return destinations;
+    }
+    private final String to;
+    private final TaskState state;
+    private final long transferredSize;
+
+    public Destination(final String to, final TaskState state,
+            final long transferredSize) {
+      this.to = to;
+      this.state = state;
+      this.transferredSize = transferredSize;
+    }
+
+    public String getTo() {
+      return to;
+    }
+
+    public TaskState getState() {
+      return state;
+    }
+
+    public long getTransferredSize() {
+      return transferredSize;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (obj instanceof Destination) {
+        Destination other = (Destination) obj;
+        return Objects.equals(to, other.getTo())
+                && state == other.getState()
+                && transferredSize == other.getTransferredSize();
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(to, state, transferredSize);
     }
   }
 }
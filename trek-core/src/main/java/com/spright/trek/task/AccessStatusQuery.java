@@ -479,6 +479,41 @@ public class AccessStatusQuery implements ListQuery<Field, AccessStatus> {
                   ? Long.compare(v1.getTransferredSize(), v2.getTransferredSize())
                   : Long.compare(v2.getTransferredSize(), v1.getTransferredSize()));
           break;
+        case CHECKPOINT:
+          comparators.add((v1, v2) -> v.getAsc()
+                  ? Long.compare(v1.getCheckpoint(), v2.getCheckpoint())
+                  : Long.compare(v2.getCheckpoint(), v1.getCheckpoint()));
+          break;
+        case TMP_PATH:
+          comparators.add((v1, v2) -> v.getAsc()
+                  ? v1.getTmpPath().orElse("").compareTo(v2.getTmpPath().orElse(""))
+                  : v2.getTmpPath().orElse("").compareTo(v1.getTmpPath().orElse("")));
+          break;
+        case BUFFER_SIZE:
+          comparators.add((v1, v2) -> v.getAsc()
+                  ? Integer.compare(v1.getBufferSize(), v2.getBufferSize())
+                  : Integer.compare(v2.getBufferSize(), v1.getBufferSize()));
+          break;
+        case QUEUE_TIME:
+          comparators.add((v1, v2) -> v.getAsc()
+                  ? Long.compare(v1.getQueueTime(), v2.getQueueTime())
+                  : Long.compare(v2.getQueueTime(), v1.getQueueTime()));
+          break;
+        case DESTINATIONS:
+          comparators.add((v1, v2) -> v.getAsc()
+                  ? Integer.compare(v1.getDestinations().size(), v2.getDestinations().size())
+                  : Integer.compare(v2.getDestinations().size(), v1.getDestinations().size()));
+          break;
+        case SUBTASKS:
+          comparators.add((v1, v2) -> v.getAsc()
+                  ? Integer.compare(v1.getSubtasks(), v2.getSubtasks())
+                  : Integer.compare(v2.getSubtasks(), v1.getSubtasks()));
+          break;
+        case FAILED_SUBTASKS:
+          comparators.add((v1, v2) -> v.getAsc()
+                  ? Integer.compare(v1.getFailedSubtasks(), v2.getFailedSubtasks())
+                  : Integer.compare(v2.getFailedSubtasks(), v1.getFailedSubtasks()));
+          break;
         default:
           throw new RuntimeException("No suitable comparator for " + k);
       }
@@ -1,12 +1,22 @@
 package com.spright.trek.task;
 
-public interface AccessTask {
+import java.util.concurrent.CompletableFuture;
 
-  AccessTaskRequest getRequest();
+public interface AccessTask {
 
   AccessStatus getStatus();
 
   void abort() throws Exception;
 
   void waitCompletion() throws Exception;
+
+  /**
+   * The future is completed by the status of task after the task is done, or
+   * completed exceptionally by the error which {@link #waitCompletion()}
+   * throws. The callbacks are run by the thread finishing the task if they
+   * are registered before the completion.
+   *
+   * @return The completion of task
+   */
+  CompletableFuture<AccessStatus> getCompletion();
 }
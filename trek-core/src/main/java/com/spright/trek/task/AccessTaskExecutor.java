@@ -9,5 +9,14 @@ public interface AccessTaskExecutor extends AutoCloseable {
 
   AccessTask submit(final AccessTaskRequest request, final TimeUnit unit, final long timeout);
 
+  /**
+   * Runs the requests as the subtasks of a parent task. The status of parent
+   * task aggregates the subtasks.
+   *
+   * @param request The batch request
+   * @return The parent task
+   */
+  BatchTask submit(final BatchTaskRequest request);
+
   Optional<AccessTask> find(final String id);
 }
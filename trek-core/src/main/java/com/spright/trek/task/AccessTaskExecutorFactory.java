@@ -1,21 +1,49 @@
 package com.spright.trek.task;
 
 import com.spright.trek.DConstants;
+import com.spright.trek.datasystem.OutputChannel;
+import com.spright.trek.datasystem.RangeReader;
+import com.spright.trek.datasystem.RangeWriter;
 import com.spright.trek.exception.TaskIOException;
+import com.spright.trek.query.CloseableIterator;
+import com.spright.trek.task.BandwidthThrottle.Throttle;
+import com.spright.trek.task.BufferPolicy.CopyBuffer;
 import com.spright.trek.utils.TrekUtils;
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -24,24 +52,74 @@ public class AccessTaskExecutorFactory {
 
   private static final Log LOG = LogFactory.getLog(AccessTaskExecutorFactory.class);
 
-  public static AccessTaskExecutor newInstance(final Configuration config, final AccessTaskLogger logger) {
-    return new DefaultExecutor(logger,
-            config.getInt(DConstants.ACCESS_HANDLER_NUMBER,
-                    DConstants.DEFAULT_ACCESS_HANDLER_NUMBER));
+  public static AccessTaskExecutor newInstance(final Configuration config,
+          final AccessTaskLogger logger) throws Exception {
+    return new DefaultExecutor(config, logger,
+            AccessTaskSchedulerFactory.newInstance(config));
   }
 
   private static class DefaultExecutor implements AccessTaskExecutor {
 
-    private static final int BUFFER_SIZE = 4 * 1024;
+    private static final long CHANNEL_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int CHANNEL_MAX_IDLE_ROUNDS = 16;
     private final AccessTaskLogger logger;
-    private final Semaphore available;
-    private final ExecutorService service;
-    private final Map<String, AccessTask> tasks = new TreeMap<>();
+    private final AccessTaskScheduler scheduler;
+    private final ExecutorService readerService;
+    private final ExecutorService batchService;
+    private final ScheduledExecutorService progressService
+            = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, TrackedTask> tasks = new TreeMap<>();
+    private final boolean enablePipeline;
+    private final int pipelineBufferNumber;
+    private final int pipelineBufferSize;
+    private final BufferPolicy bufferPolicy;
+    private final BandwidthThrottle bandwidthThrottle;
+    private final long segmentThreshold;
+    private final int segmentNumber;
+    private final boolean enableResume;
+    private final long checkpointInterval;
+    private final int batchParallelism;
 
-    DefaultExecutor(final AccessTaskLogger logger, final int threadNumber) {
+    DefaultExecutor(final Configuration config, final AccessTaskLogger logger,
+            final AccessTaskScheduler scheduler) {
       this.logger = logger;
-      this.available = new Semaphore(threadNumber, true);
-      this.service = Executors.newFixedThreadPool(threadNumber);
+      this.scheduler = scheduler;
+      //the stages and batch tasks are rejected rather than queued since they
+      //may wait for each other
+      this.readerService = new ThreadPoolExecutor(0,
+              Math.max(1, config.getInt(DConstants.ACCESS_WORKER_NUMBER,
+                      DConstants.DEFAULT_ACCESS_WORKER_NUMBER)),
+              60L, TimeUnit.SECONDS, new SynchronousQueue<>());
+      //the batch drivers don't take the workers which their subtasks need
+      this.batchService = new ThreadPoolExecutor(0,
+              Math.max(1, config.getInt(DConstants.ACCESS_BATCH_NUMBER,
+                      DConstants.DEFAULT_ACCESS_BATCH_NUMBER)),
+              60L, TimeUnit.SECONDS, new SynchronousQueue<>());
+      this.enablePipeline = config.getBoolean(DConstants.ACCESS_PIPELINE_ENABLE,
+              DConstants.DEFAULT_ACCESS_PIPELINE_ENABLE);
+      this.pipelineBufferNumber = Math.max(2, config.getInt(
+              DConstants.ACCESS_PIPELINE_BUFFER_NUMBER,
+              DConstants.DEFAULT_ACCESS_PIPELINE_BUFFER_NUMBER));
+      this.pipelineBufferSize = config.getInt(
+              DConstants.ACCESS_PIPELINE_BUFFER_SIZE,
+              DConstants.DEFAULT_ACCESS_PIPELINE_BUFFER_SIZE);
+      this.bufferPolicy = new BufferPolicy(config);
+      this.bandwidthThrottle = new BandwidthThrottle(config);
+      this.segmentThreshold = config.getLong(DConstants.ACCESS_SEGMENT_THRESHOLD,
+              DConstants.DEFAULT_ACCESS_SEGMENT_THRESHOLD);
+      this.segmentNumber = config.getInt(DConstants.ACCESS_SEGMENT_NUMBER,
+              DConstants.DEFAULT_ACCESS_SEGMENT_NUMBER);
+      this.enableResume = config.getBoolean(DConstants.ACCESS_RESUME_ENABLE,
+              DConstants.DEFAULT_ACCESS_RESUME_ENABLE);
+      this.checkpointInterval = config.getLong(DConstants.ACCESS_CHECKPOINT_INTERVAL,
+              DConstants.DEFAULT_ACCESS_CHECKPOINT_INTERVAL);
+      this.batchParallelism = config.getInt(DConstants.ACCESS_BATCH_PARALLELISM,
+              DConstants.DEFAULT_ACCESS_BATCH_PARALLELISM);
+      final long progressInterval = Math.max(1, config.getLong(
+              DConstants.ACCESS_PROGRESS_INTERVAL,
+              DConstants.DEFAULT_ACCESS_PROGRESS_INTERVAL));
+      progressService.scheduleWithFixedDelay(this::publishProgress,
+              progressInterval, progressInterval, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -53,81 +131,1024 @@ public class AccessTaskExecutorFactory {
 
     @Override
     public AccessTask submit(final AccessTaskRequest request, final TimeUnit unit, final long timeout) {
-      AccessTaskImpl task = new AccessTaskImpl(request);
+      return submit(request, unit, timeout, null);
+    }
+
+    @Override
+    public BatchTask submit(final BatchTaskRequest request) {
+      BatchTaskImpl task = new BatchTaskImpl(request, request.getParallelism() > 0
+              ? request.getParallelism() : batchParallelism);
+      synchronized (tasks) {
+        tasks.put(task.getId(), task);
+      }
       try {
-        if (!available.tryAcquire(timeout, unit)) {
-          task.done(new TaskIOException("No available thread"), TaskState.FAILED);
-          return task;
+        batchService.execute(task::run);
+      } catch (RejectedExecutionException e) {
+        task.reject(new TaskIOException("Too many running batch tasks", e));
+      }
+      return task;
+    }
+
+    private AccessTaskImpl submit(final AccessTaskRequest request, final TimeUnit unit,
+            final long timeout, final BatchTaskImpl parent) {
+      AccessTaskImpl task = new AccessTaskImpl(request,
+              enableResume && request.getOutputs().size() == 1
+              && request.getOutput().getTmpPath().isPresent(),
+              bandwidthThrottle.newThrottle(request), parent);
+      synchronized (tasks) {
+        tasks.put(task.getStatus().getId(), task);
+      }
+      if (parent != null) {
+        parent.register(task);
+      }
+      try {
+        if (!scheduler.submit(request, () -> run(task), timeout, unit)) {
+          remove(task);
+          task.done(new TaskIOException("The task queue is full"), TaskState.FAILED);
+          publish(task, true);
         }
       } catch (InterruptedException e) {
+        remove(task);
         task.done(e, TaskState.FAILED);
-        return task;
+        publish(task, true);
+      }
+      return task;
+    }
+
+    /**
+     * Runs the stage by the reader service if there is a free worker thread.
+     * The caller falls back to the serial transfer if the stage is rejected,
+     * so the busy workers don't fail a transfer.
+     *
+     * @return False if all worker threads are busy
+     */
+    private boolean tryFork(final Stage<?> stage) {
+      try {
+        readerService.execute(stage);
+        return true;
+      } catch (RejectedExecutionException e) {
+        LOG.debug("No available worker thread, the stage is run serially");
+        return false;
       }
+    }
+
+    /**
+     * Logs the snapshots of running tasks. It replaces the per-buffer logging
+     * so that the cost of status is independent of the transferred bytes.
+     */
+    private void publishProgress() {
+      List<TrackedTask> running;
       synchronized (tasks) {
-        tasks.put(task.getStatus().getId(), task);
+        running = new ArrayList<>(tasks.values());
+      }
+      running.forEach(task -> publish(task, false));
+    }
+
+    /**
+     * Logs the status of task. The terminal status is logged exactly once,
+     * and no progress is logged after it. The subtask is logged only if it
+     * doesn't succeed, since the parent task has the aggregated status.
+     *
+     * @param task The task to log
+     * @param terminal True if the task is completed
+     */
+    private void publish(final TrackedTask task, final boolean terminal) {
+      synchronized (task) {
+        if (task.isPublished()) {
+          return;
+        }
+        AccessStatus status = task.getStatus();
+        if (task.isSubtask()
+                && (!terminal || status.getState() == TaskState.SUCCEED)) {
+          return;
+        }
+        if (terminal) {
+          task.setPublished();
+        } else if (status.getState() != TaskState.RUNNING) {
+          return;
+        }
+        TrekUtils.closeWithLog(() -> logger.add(status), LOG);
+      }
+    }
+
+    private void remove(final AccessTaskImpl task) {
+      synchronized (tasks) {
+        tasks.remove(task.getStatus().getId());
+      }
+    }
+
+    private void run(final AccessTaskImpl task) {
+      final AccessTaskRequest request = task.getRequest();
+      try {
+        task.setState(TaskState.RUNNING);
+        if (task.isAbort()) {
+          task.done(null, TaskState.ABORT);
+          return;
+        }
+        if (request.getOutputs().size() > 1) {
+          task.done(null, transferByFanOut(task, request.getInput().getInputStream()));
+          return;
+        }
+        Optional<FileChannel> src = request.getInput().getFileChannel();
+        Optional<WritableByteChannel> dst = src.isPresent()
+                ? request.getOutput().getWritableChannel()
+                : Optional.empty();
+        Optional<RangeReader> reader = Optional.empty();
+        Optional<RangeWriter> writer = Optional.empty();
+        final long offset = request.getInput().getOffset();
+        final long size = request.getInput().getInfo().getSize();
+        if (segmentNumber > 1 && size - offset >= segmentThreshold) {
+          reader = request.getInput().getRangeReader();
+          writer = reader.isPresent()
+                  ? request.getOutput().getRangeWriter()
+                  : Optional.empty();
+        }
+        if (reader.isPresent() && writer.isPresent()) {
+          task.done(null, transferBySegment(task, reader.get(), writer.get(), offset, size));
+        } else if (src.isPresent() && dst.isPresent()) {
+          task.done(null, transfer(task, src.get(), dst.get()));
+        } else if (enablePipeline) {
+          task.done(null, transferByPipeline(task, request.getInput().getInputStream(),
+                  request.getOutput().getOutputStream()));
+        } else {
+          task.done(null, transfer(task, request.getInput().getInputStream(),
+                  request.getOutput().getOutputStream()));
+        }
+      } catch (IOException e) {
+        task.done(e, TaskState.FAILED);
+      } finally {
+        publish(task, true);
+        remove(task);
+      }
+    }
+
+    /**
+     * Moves data by the heap buffer. It is the fallback if either side
+     * doesn't support the channel.
+     */
+    private TaskState transfer(final AccessTaskImpl task, final InputStream input,
+            final OutputStream output) throws IOException {
+      CopyBuffer buf = newBuffer(task);
+      int rval;
+      while ((rval = input.read(buf.get())) != -1) {
+        output.write(buf.get(), 0, rval);
+        task.addBytes(rval);
+        if (task.isAbort()) {
+          return TaskState.ABORT;
+        }
+        task.throttle(rval);
+        checkpoint(task, output);
+        if (buf.update(rval)) {
+          task.setBufferSize(buf.size());
+        }
+      }
+      return TaskState.SUCCEED;
+    }
+
+    /**
+     * Moves data by {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+     * so that the kernel can copy the data without passing through the heap.
+     * The position of source is advanced for sharing it with the input stream.
+     * The transfer fails if the channels make no progress for
+     * {@link #CHANNEL_MAX_IDLE_ROUNDS} rounds.
+     */
+    private TaskState transfer(final AccessTaskImpl task, final FileChannel src,
+            final WritableByteChannel dst) throws IOException {
+      long position = src.position();
+      long size = src.size();
+      //the small chunk keeps the throttled transfer smooth
+      final long chunkSize = task.isThrottled()
+              ? Math.min(CHANNEL_CHUNK_SIZE, newBuffer(task).size())
+              : CHANNEL_CHUNK_SIZE;
+      task.setBufferSize((int) chunkSize);
+      int idleRounds = 0;
+      while (position < size) {
+        if (task.isAbort()) {
+          return TaskState.ABORT;
+        }
+        long rval = src.transferTo(position,
+                Math.min(chunkSize, size - position), dst);
+        if (rval <= 0) {
+          //the source may be truncated
+          final long currentSize = src.size();
+          if (currentSize == size && ++idleRounds >= CHANNEL_MAX_IDLE_ROUNDS) {
+            throw new TaskIOException("No progress of transfer at " + position
+                    + " of " + size + " after " + idleRounds + " rounds");
+          }
+          size = currentSize;
+          continue;
+        }
+        idleRounds = 0;
+        position += rval;
+        src.position(position);
+        task.addBytes(rval);
+        if (task.isAbort()) {
+          return TaskState.ABORT;
+        }
+        task.throttle(rval);
+        checkpoint(task, () -> {
+          if (dst instanceof FileChannel) {
+            ((FileChannel) dst).force(false);
+          }
+        });
       }
-      service.execute(() -> {
-        InputStream input = request.getInput().getInputStream();
-        OutputStream output = request.getOutput().getOutputStream();
-        byte[] buf = new byte[BUFFER_SIZE];
-        int rval;
-        int dealtBytes = 0;
+      return TaskState.SUCCEED;
+    }
+
+    /**
+     * Moves data by two stages so that the latency of source and sink can be
+     * overlapped. The reader stage fills the free buffers and the writer
+     * stage, which is run by the task thread, drains the filled buffers. The
+     * in-flight bytes are bounded by the number of buffers. The reader stage
+     * is finished before return, so the input isn't used after the task.
+     */
+    private TaskState transferByPipeline(final AccessTaskImpl task,
+            final InputStream input, final OutputStream output) throws IOException {
+      final BlockingQueue<Slice> free = new ArrayBlockingQueue<>(pipelineBufferNumber);
+      //The extra room is for the end marker
+      final BlockingQueue<Slice> filled = new ArrayBlockingQueue<>(pipelineBufferNumber + 1);
+      final AtomicReference<IOException> readError = new AtomicReference<>();
+      final AtomicBoolean stopped = new AtomicBoolean(false);
+      final CountDownLatch readerDone = new CountDownLatch(1);
+      //the slices are recycled, so they don't grow
+      final int sliceSize = pipelineBufferSize > 0
+              ? pipelineBufferSize : newBuffer(task).size();
+      task.setBufferSize(sliceSize);
+      for (int i = 0; i != pipelineBufferNumber; ++i) {
+        free.add(new Slice(sliceSize));
+      }
+      Stage<?> reader = new Stage<>(() -> {
         try {
-          task.setState(TaskState.RUNNING);
-          while ((rval = input.read(buf)) != -1) {
-            output.write(buf, 0, rval);
-            task.addBytes(rval);
-            if (task.isAbort()) {
-              task.done(null, TaskState.ABORT);
-              return;
+          while (!stopped.get()) {
+            Slice slice = free.take();
+            boolean eof = slice.fill(input);
+            if (slice.getLength() != 0) {
+              filled.put(slice);
             }
-            dealtBytes += rval;
-            if (dealtBytes >= buf.length) {
-              logger.add(task.getStatus());
-              dealtBytes -= buf.length;
+            if (eof) {
+              break;
             }
           }
-          task.done(null, TaskState.SUCCEED);
         } catch (IOException e) {
-          task.done(e, TaskState.FAILED);
+          readError.set(e);
+        } catch (InterruptedException e) {
+          readError.set(new TaskIOException("The reader stage is interrupted"));
         } finally {
-          TrekUtils.closeWithLog(() -> logger.add(task.getStatus()), LOG);
-          synchronized (tasks) {
-            tasks.remove(task.getStatus().getId());
-          }
-          available.release();
+          filled.offer(Slice.END);
+          readerDone.countDown();
         }
       });
-      return task;
+      if (!tryFork(reader)) {
+        return transfer(task, input, output);
+      }
+      boolean ended = false;
+      try {
+        while (true) {
+          Slice slice = filled.take();
+          if (slice == Slice.END) {
+            ended = true;
+            if (readError.get() != null) {
+              throw readError.get();
+            }
+            return TaskState.SUCCEED;
+          }
+          output.write(slice.getBuffer(), 0, slice.getLength());
+          task.addBytes(slice.getLength());
+          if (task.isAbort()) {
+            return TaskState.ABORT;
+          }
+          task.throttle(slice.getLength());
+          checkpoint(task, output);
+          free.put(slice);
+        }
+      } catch (InterruptedException e) {
+        throw new TaskIOException("The writer stage is interrupted");
+      } finally {
+        stopped.set(true);
+        if (!ended) {
+          //the interrupt wakes up the reader waiting for the buffers, but it
+          //can't break a blocked read
+          reader.cancel(true);
+          TrekUtils.closeWithLog(input, LOG);
+        }
+        awaitUninterruptibly(readerDone);
+      }
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          latch.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Reads the source once and writes the data to all destinations. Each
+     * destination is drained by its own writer, and a slice is recycled after
+     * all writers have dealt with it, so the slowest destination decides the
+     * pace. The transferred size of task counts a slice once after all
+     * destinations have dealt with it, and each destination counts its own
+     * written bytes.
+     */
+    private TaskState transferByFanOut(final AccessTaskImpl task,
+            final InputStream input) throws IOException {
+      final List<Target> targets = task.getTargets();
+      final boolean allOrNothing
+              = task.getRequest().getFanOutMode() == AccessTaskRequest.FanOutMode.ALL_OR_NOTHING;
+      final BlockingQueue<Slice> free = new ArrayBlockingQueue<>(pipelineBufferNumber);
+      final int sliceSize = pipelineBufferSize > 0
+              ? pipelineBufferSize : newBuffer(task).size();
+      task.setBufferSize(sliceSize);
+      for (int i = 0; i != pipelineBufferNumber; ++i) {
+        free.add(new Slice(sliceSize));
+      }
+      final AtomicBoolean stopped = new AtomicBoolean(false);
+      final List<BlockingQueue<Slice>> queues = new ArrayList<>(targets.size());
+      final List<Stage<?>> writers = new ArrayList<>(targets.size());
+      for (Target target : targets) {
+        //The extra room is for the end marker
+        final BlockingQueue<Slice> filled = new ArrayBlockingQueue<>(pipelineBufferNumber + 1);
+        final OutputStream output = target.getOutput().getOutputStream();
+        final Runnable stage = () -> {
+          try {
+            Slice slice;
+            while ((slice = filled.take()) != Slice.END) {
+              if (!target.isFailed()) {
+                try {
+                  output.write(slice.getBuffer(), 0, slice.getLength());
+                  target.addBytes(slice.getLength());
+                } catch (IOException | RuntimeException e) {
+                  target.fail(e);
+                  if (allOrNothing) {
+                    stopped.set(true);
+                  }
+                }
+              }
+              if (slice.release()) {
+                task.addBytes(slice.getLength());
+                free.put(slice);
+              }
+            }
+          } catch (InterruptedException e) {
+            target.fail(new TaskIOException("The writer stage is interrupted"));
+          }
+        };
+        Stage<?> writer = new Stage<>(stage);
+        if (!tryFork(writer)) {
+          //release the started writers
+          queues.forEach(q -> q.offer(Slice.END));
+          writers.forEach(Stage::awaitExit);
+          return transferByFanOutSerially(task, input, allOrNothing);
+        }
+        writers.add(writer);
+        queues.add(filled);
+      }
+      boolean aborted = false;
+      try {
+        while (!stopped.get()) {
+          if (task.isAbort()) {
+            aborted = true;
+            return TaskState.ABORT;
+          }
+          Slice slice = free.take();
+          boolean eof = slice.fill(input);
+          if (slice.getLength() != 0) {
+            slice.retain(targets.size());
+            for (BlockingQueue<Slice> filled : queues) {
+              filled.put(slice);
+            }
+            task.throttle(slice.getLength());
+          } else {
+            free.put(slice);
+          }
+          if (eof) {
+            break;
+          }
+        }
+      } catch (InterruptedException e) {
+        aborted = true;
+        throw new TaskIOException("The reader stage is interrupted");
+      } catch (IOException e) {
+        aborted = true;
+        throw e;
+      } finally {
+        for (BlockingQueue<Slice> filled : queues) {
+          filled.offer(Slice.END);
+        }
+        if (aborted) {
+          writers.forEach(f -> f.cancel(true));
+        }
+        //the outputs must not be used after the task
+        writers.forEach(Stage::awaitExit);
+      }
+      checkTargets(targets, allOrNothing);
+      return TaskState.SUCCEED;
+    }
+
+    /**
+     * Writes each buffer to all destinations in turn by the task thread. It
+     * is the fallback of fan-out if the worker threads are busy.
+     */
+    private TaskState transferByFanOutSerially(final AccessTaskImpl task,
+            final InputStream input, final boolean allOrNothing) throws IOException {
+      final List<Target> targets = task.getTargets();
+      final List<OutputStream> outputs = new ArrayList<>(targets.size());
+      for (Target target : targets) {
+        outputs.add(target.getOutput().getOutputStream());
+      }
+      CopyBuffer buf = newBuffer(task);
+      int rval;
+      while ((rval = input.read(buf.get())) != -1) {
+        for (int i = 0; i != targets.size(); ++i) {
+          Target target = targets.get(i);
+          if (target.isFailed()) {
+            continue;
+          }
+          try {
+            outputs.get(i).write(buf.get(), 0, rval);
+            target.addBytes(rval);
+          } catch (IOException | RuntimeException e) {
+            target.fail(e);
+          }
+        }
+        if ((allOrNothing && targets.stream().anyMatch(Target::isFailed))
+                || targets.stream().allMatch(Target::isFailed)) {
+          break;
+        }
+        task.addBytes(rval);
+        if (task.isAbort()) {
+          return TaskState.ABORT;
+        }
+        task.throttle(rval);
+        if (buf.update(rval)) {
+          task.setBufferSize(buf.size());
+        }
+      }
+      checkTargets(targets, allOrNothing);
+      return TaskState.SUCCEED;
+    }
+
+    /**
+     * @throws IOException If all destinations fail, or any destination fails
+     * in all-or-nothing mode
+     */
+    private static void checkTargets(final List<Target> targets,
+            final boolean allOrNothing) throws IOException {
+      Optional<Exception> error = targets.stream()
+              .filter(Target::isFailed)
+              .map(Target::getError)
+              .findFirst();
+      if (error.isPresent()
+              && (allOrNothing || targets.stream().allMatch(Target::isFailed))) {
+        if (error.get() instanceof IOException) {
+          throw (IOException) error.get();
+        }
+        throw new TaskIOException("Failed to write data", error.get());
+      }
+    }
+
+    /**
+     * Flushes the output and records the committed offset if the task has
+     * transferred enough data since last checkpoint.
+     */
+    private void checkpoint(final AccessTaskImpl task, final Flushable output)
+            throws IOException {
+      if (!task.isResumable()
+              || task.getCurrentSize() - task.getCheckpoint() < checkpointInterval) {
+        return;
+      }
+      final long committed = task.getCurrentSize();
+      output.flush();
+      task.setCheckpoint(committed);
+      //the checkpoint is necessary for resuming, so it is logged immediately
+      publish(task, false);
+    }
+
+    /**
+     * Splits the source into byte ranges and copies them concurrently. The
+     * range size is aligned by the writer so that the destination is able to
+     * assemble the ranges. The progress is aggregated by the task. The ranges
+     * are not contiguous, so no checkpoint is made.
+     */
+    private TaskState transferBySegment(final AccessTaskImpl task,
+            final RangeReader reader, final RangeWriter writer,
+            final long start, final long size) throws IOException {
+      final long alignment = Math.max(1, writer.getAlignment());
+      long segmentSize = (size - start + segmentNumber - 1) / segmentNumber;
+      segmentSize = ((segmentSize + alignment - 1) / alignment) * alignment;
+      final AtomicBoolean stopped = new AtomicBoolean(false);
+      final List<Stage<TaskState>> futures = new ArrayList<>(segmentNumber);
+      try {
+        for (long offset = start; offset < size; offset += segmentSize) {
+          final long position = offset;
+          final long length = Math.min(segmentSize, size - offset);
+          Stage<TaskState> range = new Stage<>(
+                  () -> copyRange(task, reader, writer, position, length, stopped));
+          if (!tryFork(range)) {
+            //the range is copied by the task thread
+            range.run();
+          }
+          futures.add(range);
+        }
+        TaskState state = TaskState.SUCCEED;
+        for (Future<TaskState> f : futures) {
+          if (f.get() == TaskState.ABORT) {
+            state = TaskState.ABORT;
+          }
+        }
+        return state;
+      } catch (InterruptedException e) {
+        throw new TaskIOException("The segmented transfer is interrupted");
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new TaskIOException("Failed to copy the range", e.getCause());
+      } finally {
+        stopped.set(true);
+        futures.forEach(f -> f.cancel(true));
+        //the ranges must not be written after the output is closed
+        futures.forEach(Stage::awaitExit);
+      }
+    }
+
+    private TaskState copyRange(final AccessTaskImpl task,
+            final RangeReader reader, final RangeWriter writer,
+            final long offset, final long length,
+            final AtomicBoolean stopped) throws IOException {
+      CopyBuffer buf = newBuffer(task);
+      long remaining = length;
+      try (InputStream input = reader.open(offset, length);
+              OutputStream output = writer.create(offset, length)) {
+        while (remaining > 0) {
+          if (stopped.get()) {
+            return TaskState.ABORT;
+          }
+          int rval = input.read(buf.get(), 0, (int) Math.min(buf.size(), remaining));
+          if (rval == -1) {
+            throw new TaskIOException("The range " + offset + "+" + length
+                    + " is ended early, remaining:" + remaining);
+          }
+          output.write(buf.get(), 0, rval);
+          remaining -= rval;
+          task.addBytes(rval);
+          if (task.isAbort()) {
+            stopped.set(true);
+            return TaskState.ABORT;
+          }
+          task.throttle(rval);
+          if (buf.update(rval)) {
+            task.setBufferSize(buf.size());
+          }
+        }
+      }
+      return TaskState.SUCCEED;
+    }
+
+    private CopyBuffer newBuffer(final AccessTaskImpl task) {
+      CopyBuffer buf = bufferPolicy.newBuffer(
+              task.getRequest().getInput().getInfo().getUriRequest().getScheme(),
+              task.getRequest().getOutput().getRequest().getScheme());
+      task.setBufferSize(buf.size());
+      return buf;
     }
 
     @Override
     public void close() throws Exception {
-      service.shutdownNow();
-      service.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+      progressService.shutdownNow();
+      progressService.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+      batchService.shutdownNow();
+      batchService.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+      scheduler.close();
+      readerService.shutdownNow();
+      readerService.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+      //release the tasks which are never run
+      List<AccessTaskImpl> pending;
+      synchronized (tasks) {
+        pending = tasks.values().stream()
+                .filter(v -> v instanceof AccessTaskImpl)
+                .map(v -> (AccessTaskImpl) v)
+                .collect(Collectors.toList());
+        tasks.clear();
+      }
+      pending.stream()
+              .filter(v -> v.getStatus().getState() == TaskState.PENDING)
+              .forEach(v -> {
+                v.done(new TaskIOException("The executor is closed"), TaskState.FAILED);
+                publish(v, true);
+              });
     }
 
     @Override
     public AccessTask submit(AccessTaskRequest request) {
       return submit(request, TimeUnit.MILLISECONDS, 0);
     }
+
+    /**
+     * Runs the subtasks with bounded parallelism. The subtasks are queued by
+     * the scheduler like other tasks, and the parent task is driven by a
+     * thread of batch service.
+     */
+    private final class BatchTaskImpl extends TrackedTask implements BatchTask {
+
+      private final String id;
+      private final long startTime = System.currentTimeMillis();
+      private final CountDownLatch latch = new CountDownLatch(1);
+      private final BatchTaskRequest request;
+      private final int parallelism;
+      private final Semaphore permits;
+      private final Set<AccessTaskImpl> running = ConcurrentHashMap.newKeySet();
+      private final AtomicLong doneSize = new AtomicLong(0);
+      private final AtomicLong expectedSize = new AtomicLong(0);
+      private final AtomicInteger subtasks = new AtomicInteger(0);
+      private final AtomicInteger failedSubtasks = new AtomicInteger(0);
+      private volatile TaskState state = TaskState.PENDING;
+      private volatile boolean abort = false;
+      private volatile long endTime = 0;
+      private volatile Exception ex = null;
+
+      BatchTaskImpl(final BatchTaskRequest request, final int parallelism) {
+        this.id = AccessTaskImpl.createId(startTime);
+        this.request = request;
+        this.parallelism = Math.max(1, parallelism);
+        this.permits = new Semaphore(this.parallelism);
+      }
+
+      String getId() {
+        return id;
+      }
+
+      void run() {
+        state = TaskState.RUNNING;
+        try (CloseableIterator<AccessTaskRequest> iter = request.getRequests()) {
+          while (!abort) {
+            permits.acquire();
+            if (!iter.hasNext()) {
+              permits.release();
+              break;
+            }
+            AccessTaskRequest child;
+            try {
+              child = iter.next();
+            } catch (RuntimeException e) {
+              LOG.error("Failed to create the subtask of " + id, e);
+              subtasks.incrementAndGet();
+              failedSubtasks.incrementAndGet();
+              permits.release();
+              continue;
+            }
+            subtasks.incrementAndGet();
+            expectedSize.addAndGet(child.getInput().getInfo().getSize());
+            //wait for the room of queue rather than fail the subtask
+            submit(child, TimeUnit.MILLISECONDS, Long.MAX_VALUE, this);
+          }
+          //wait for all subtasks
+          permits.acquire(parallelism);
+        } catch (Exception e) {
+          LOG.error("Failed to run the batch task " + id, e);
+          ex = e;
+          abort = true;
+          running.forEach(AccessTaskImpl::cancel);
+        } finally {
+          finish();
+        }
+      }
+
+      /**
+       * Fails the task which can't be run.
+       */
+      void reject(final Exception e) {
+        ex = e;
+        finish();
+      }
+
+      private void finish() {
+        endTime = System.currentTimeMillis();
+        //the subtasks are aborted with the batch, so the abort goes first
+        if (ex != null) {
+          state = TaskState.FAILED;
+        } else if (abort) {
+          state = TaskState.ABORT;
+        } else if (failedSubtasks.get() != 0) {
+          state = TaskState.FAILED;
+        } else {
+          state = TaskState.SUCCEED;
+        }
+        latch.countDown();
+        notifyCompletion(ex);
+        publish(this, true);
+        synchronized (tasks) {
+          tasks.remove(id);
+        }
+      }
+
+      void register(final AccessTaskImpl child) {
+        running.add(child);
+      }
+
+      /**
+       * Collects the result of subtask and releases its permit.
+       */
+      void complete(final AccessTaskImpl child) {
+        if (running.remove(child)) {
+          AccessStatus status = child.getStatus();
+          doneSize.addAndGet(status.getTransferredSize());
+          //the subtask aborted by the batch isn't a failure
+          if (status.getState() != TaskState.SUCCEED
+                  && !(abort && status.getState() == TaskState.ABORT)) {
+            failedSubtasks.incrementAndGet();
+          }
+          permits.release();
+        }
+      }
+
+      @Override
+      boolean isSubtask() {
+        return false;
+      }
+
+      @Override
+      public BatchTaskRequest getRequest() {
+        return request;
+      }
+
+      @Override
+      public AccessStatus getStatus() {
+        long transferredSize = doneSize.get();
+        for (AccessTaskImpl child : running) {
+          transferredSize += child.getCurrentSize();
+        }
+        final long expected = expectedSize.get();
+        final TaskState current = state;
+        double progress;
+        if (expected != 0) {
+          progress = (double) transferredSize / (double) expected;
+        } else {
+          progress = current == TaskState.SUCCEED ? 1.0 : 0;
+        }
+        return AccessStatus.newBuilder()
+                .setId(id)
+                .setRedirectFrom(request.getRedirectFrom())
+                .setServerName(request.getServerName())
+                .setClientName(request.getClientName())
+                .setFrom(request.getFrom())
+                .setTo(request.getTo())
+                .setTaskState(current)
+                .setProgress(progress)
+                .setStartTime(startTime)
+                .setElapsed(endTime == 0 ? System.currentTimeMillis() - startTime
+                        : endTime - startTime)
+                .setExpectedSize(expected)
+                .setTransferredSize(transferredSize)
+                .setSubtasks(subtasks.get())
+                .setFailedSubtasks(failedSubtasks.get())
+                .build();
+      }
+
+      @Override
+      public void abort() throws Exception {
+        abort = true;
+        running.forEach(AccessTaskImpl::cancel);
+        waitCompletion();
+      }
+
+      @Override
+      public void waitCompletion() throws Exception {
+        latch.await();
+        if (ex != null) {
+          throw ex;
+        }
+      }
+    }
   }
 
-  private static class AccessTaskImpl implements AccessTask {
+  /**
+   * The base of tasks tracked by the executor.
+   */
+  private abstract static class TrackedTask implements AccessTask {
+
+    /**
+     * Guarded by the task itself.
+     */
+    private boolean published = false;
+    private final CompletableFuture<AccessStatus> completion = new CompletableFuture<>();
+
+    @Override
+    public CompletableFuture<AccessStatus> getCompletion() {
+      return completion;
+    }
+
+    /**
+     * Completes the future after the task is done.
+     *
+     * @param e The error of task, or null if the task has no error
+     */
+    void notifyCompletion(final Exception e) {
+      if (e != null) {
+        completion.completeExceptionally(e);
+      } else {
+        completion.complete(getStatus());
+      }
+    }
+
+    boolean isPublished() {
+      return published;
+    }
+
+    void setPublished() {
+      published = true;
+    }
+
+    /**
+     * @return True if the task is a part of batch task
+     */
+    abstract boolean isSubtask();
+  }
+
+  /**
+   * A stage of transfer run by the worker thread. Unlike a plain future, it
+   * can wait for the stage to exit after it is cancelled.
+   */
+  private static final class Stage<T> extends FutureTask<T> {
+
+    private final CountDownLatch exit = new CountDownLatch(1);
+
+    Stage(final Callable<T> stage) {
+      super(stage);
+    }
+
+    Stage(final Runnable stage) {
+      super(stage, null);
+    }
+
+    @Override
+    public void run() {
+      try {
+        super.run();
+      } finally {
+        exit.countDown();
+      }
+    }
+
+    /**
+     * Waits for the stage to exit. The stage cancelled before running exits
+     * immediately since the worker still calls {@link #run()}.
+     */
+    void awaitExit() {
+      DefaultExecutor.awaitUninterruptibly(exit);
+    }
+  }
+
+  /**
+   * The buffer shared by the reader stage and writer stage.
+   */
+  private static final class Slice {
+
+    /**
+     * Marks the end of data.
+     */
+    private static final Slice END = new Slice(0);
+    private final byte[] buffer;
+    private final AtomicInteger refs = new AtomicInteger(0);
+    private int length = 0;
+
+    Slice(final int capacity) {
+      buffer = new byte[capacity];
+    }
+
+    /**
+     * Sets the number of consumers which share this slice.
+     */
+    void retain(final int consumers) {
+      refs.set(consumers);
+    }
+
+    /**
+     * @return True if all consumers have released this slice
+     */
+    boolean release() {
+      return refs.decrementAndGet() == 0;
+    }
+
+    /**
+     * Reads data until the buffer is full or the input reaches the end.
+     *
+     * @param input The input to read
+     * @return True if the input reaches the end
+     * @throws IOException If failed to read data
+     */
+    boolean fill(final InputStream input) throws IOException {
+      length = 0;
+      while (length < buffer.length) {
+        int rval = input.read(buffer, length, buffer.length - length);
+        if (rval == -1) {
+          return true;
+        }
+        length += rval;
+      }
+      return false;
+    }
+
+    byte[] getBuffer() {
+      return buffer;
+    }
+
+    int getLength() {
+      return length;
+    }
+  }
+
+  /**
+   * A destination of task.
+   */
+  private static final class Target {
+
+    private final OutputChannel output;
+    private final AtomicLong writtenSize = new AtomicLong(0);
+    private final AtomicReference<Exception> error = new AtomicReference<>();
+    private volatile TaskState state = null;
+
+    Target(final OutputChannel output) {
+      this.output = output;
+    }
+
+    OutputChannel getOutput() {
+      return output;
+    }
+
+    void addBytes(final long bytes) {
+      writtenSize.addAndGet(bytes);
+    }
+
+    /**
+     * Keeps the first error.
+     */
+    void fail(final Exception e) {
+      error.compareAndSet(null, e);
+    }
+
+    boolean isFailed() {
+      return error.get() != null;
+    }
+
+    Exception getError() {
+      return error.get();
+    }
+
+    void setState(final TaskState v) {
+      state = v;
+    }
+
+    AccessStatus.Destination toDestination(final TaskState taskState) {
+      return new AccessStatus.Destination(output.getRequest().toString(),
+              state != null ? state : (isFailed() ? TaskState.FAILED : taskState),
+              writtenSize.get());
+    }
+  }
+
+  private static class AccessTaskImpl extends TrackedTask {
 
     private final String id;
     private final CountDownLatch latch = new CountDownLatch(1);
-    private final AtomicLong currentSize = new AtomicLong(0);
+    private final AtomicLong currentSize;
     private final long startTime = System.currentTimeMillis();
     private volatile boolean abort = false;
     private volatile TaskState state = TaskState.PENDING;
     private volatile long endTime = 0;
     private volatile Exception ex = null;
     private final AccessTaskRequest request;
+    private final List<Target> targets;
+    private final boolean resumable;
+    private final Throttle throttle;
+    /**
+     * The bytes which have been flushed to the destination.
+     */
+    private volatile long checkpoint;
+    private volatile boolean suspended = false;
+    private volatile int bufferSize = 0;
+    private volatile long queueTime = 0;
+    private final DefaultExecutor.BatchTaskImpl parent;
 
-    AccessTaskImpl(final AccessTaskRequest request) {
+    AccessTaskImpl(final AccessTaskRequest request, final boolean resumable,
+            final Throttle throttle, final DefaultExecutor.BatchTaskImpl parent) {
       this.id = createId(startTime);
+      this.parent = parent;
       this.request = request;
+      this.targets = request.getOutputs().stream()
+              .map(Target::new)
+              .collect(Collectors.toList());
+      this.resumable = resumable;
+      this.throttle = throttle;
+      this.checkpoint = request.getInput().getOffset();
+      this.currentSize = new AtomicLong(checkpoint);
     }
 
     private static String createId(final long t) {
@@ -138,19 +1159,111 @@ public class AccessTaskExecutorFactory {
       return abort;
     }
 
+    List<Target> getTargets() {
+      return targets;
+    }
+
+    @Override
+    boolean isSubtask() {
+      return parent != null;
+    }
+
+    /**
+     * Stops the task without waiting.
+     */
+    void cancel() {
+      abort = true;
+    }
+
+    boolean isThrottled() {
+      return throttle.isLimited();
+    }
+
+    /**
+     * Blocks the caller if the task is faster than the bandwidth limits.
+     */
+    void throttle(final long bytes) throws IOException {
+      try {
+        throttle.acquire(bytes);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new TaskIOException("The task is interrupted while throttling", e);
+      }
+    }
+
+    boolean isResumable() {
+      return resumable;
+    }
+
+    long getCurrentSize() {
+      return currentSize.get();
+    }
+
+    long getCheckpoint() {
+      return checkpoint;
+    }
+
+    void setCheckpoint(final long v) {
+      checkpoint = v;
+    }
+
+    void setBufferSize(final int v) {
+      bufferSize = v;
+    }
+
     void done(final Exception e, final TaskState state) {
       endTime = System.currentTimeMillis();
       ex = e;
-      //Do we need recover change if we are failed to close input??
-      ex = TrekUtils.closeWithLog(request.getOutput(), LOG).orElse(ex);
-      ex = TrekUtils.closeWithLog(request.getInput(), LOG).orElse(ex);
-      if (ex != null) {
-        //We recover output data if any error has happened
-        ex = TrekUtils.closeWithLog(() -> request.getOutput().recover(), LOG)
-                .orElse(ex);
+      //Keep the tmp data for resuming the failed task
+      suspended = e != null && resumable && checkpoint > 0;
+      if (suspended) {
+        ex = TrekUtils.closeWithLog(() -> request.getOutput().suspend(), LOG).orElse(ex);
+        ex = TrekUtils.closeWithLog(request.getInput(), LOG).orElse(ex);
+      } else {
+        closeTargets(e);
       }
+      throttle.release();
       setState(state);
       latch.countDown();
+      notifyCompletion(ex);
+      if (parent != null) {
+        parent.complete(this);
+      }
+    }
+
+    /**
+     * Closes all destinations and recovers the failed ones. All destinations
+     * are recovered if the source fails, all destinations fail, or any
+     * destination fails in the all-or-nothing mode.
+     */
+    private void closeTargets(final Exception e) {
+      for (Target target : targets) {
+        if (e != null) {
+          target.fail(e);
+        }
+        //Do we need recover change if we are failed to close input??
+        TrekUtils.closeWithLog(target.getOutput(), LOG).ifPresent(target::fail);
+      }
+      Optional<Exception> inputError = TrekUtils.closeWithLog(request.getInput(), LOG);
+      final boolean recoverAll = inputError.isPresent()
+              || targets.stream().allMatch(Target::isFailed)
+              || (request.getFanOutMode() == AccessTaskRequest.FanOutMode.ALL_OR_NOTHING
+              && targets.stream().anyMatch(Target::isFailed));
+      for (Target target : targets) {
+        if (target.isFailed() || recoverAll) {
+          //We recover output data if any error has happened
+          TrekUtils.closeWithLog(() -> target.getOutput().recover(), LOG)
+                  .ifPresent(target::fail);
+          target.setState(TaskState.FAILED);
+        }
+      }
+      if (recoverAll) {
+        ex = inputError.orElse(targets.stream()
+                .map(Target::getError)
+                .filter(v -> v != null)
+                .findFirst()
+                .orElse(null));
+      }
     }
 
     void addBytes(final long bytes) {
@@ -158,6 +1271,9 @@ public class AccessTaskExecutorFactory {
     }
 
     void setState(TaskState s) {
+      if (state == TaskState.PENDING && s == TaskState.RUNNING) {
+        queueTime = System.currentTimeMillis() - startTime;
+      }
       state = s;
     }
 
@@ -184,7 +1300,7 @@ public class AccessTaskExecutorFactory {
               .setRedirectFrom(request.getRedirectFrom())
               .setServerName(request.getServerName())
               .setClientName(request.getClientName())
-              .setFrom(request.getInput().getInfo().toString())
+              .setFrom(request.getInput().getInfo().getUriRequest().toString())
               .setTo(request.getOutput().getRequest().toString())
               .setTaskState(state)
               .setProgress((double) transferredSize / (double) expectedSize)
@@ -193,11 +1309,22 @@ public class AccessTaskExecutorFactory {
                       : endTime - startTime)
               .setExpectedSize(expectedSize)
               .setTransferredSize(transferredSize)
+              .setCheckpoint(checkpoint)
+              .setBufferSize(bufferSize)
+              .setDestinations(targets.size() > 1
+                      ? targets.stream()
+                      .map(v -> v.toDestination(state))
+                      .collect(Collectors.toList())
+                      : null)
+              .setQueueTime(state == TaskState.PENDING
+                      ? System.currentTimeMillis() - startTime : queueTime)
+              .setTmpPath(state == TaskState.RUNNING || suspended
+                      ? request.getOutput().getTmpPath().orElse(null)
+                      : null)
               .build();
     }
 
-    @Override
-    public AccessTaskRequest getRequest() {
+    AccessTaskRequest getRequest() {
       return request;
     }
   }
@@ -174,7 +174,32 @@ public class AccessTaskLogTable extends AtomicCloseable implements AccessTaskLog
                     Bytes.toBytes(status.getExpectedSize()))
             .addColumn(DConstants.TASK_FAMILY,
                     DConstants.TASK_TRANSFERRED_SIZE_QUALIFIER,
-                    Bytes.toBytes(status.getTransferredSize()));
+                    Bytes.toBytes(status.getTransferredSize()))
+            .addColumn(DConstants.TASK_FAMILY,
+                    DConstants.TASK_CHECKPOINT_QUALIFIER,
+                    Bytes.toBytes(status.getCheckpoint()))
+            .addColumn(DConstants.TASK_FAMILY,
+                    DConstants.TASK_BUFFER_SIZE_QUALIFIER,
+                    Bytes.toBytes(status.getBufferSize()))
+            .addColumn(DConstants.TASK_FAMILY,
+                    DConstants.TASK_QUEUE_TIME_QUALIFIER,
+                    Bytes.toBytes(status.getQueueTime()));
+    status.getTmpPath().ifPresent(v -> put.addColumn(DConstants.TASK_FAMILY,
+            DConstants.TASK_TMP_PATH_QUALIFIER,
+            Bytes.toBytes(v)));
+    if (status.getSubtasks() != 0) {
+      put.addColumn(DConstants.TASK_FAMILY,
+              DConstants.TASK_SUBTASKS_QUALIFIER,
+              Bytes.toBytes(status.getSubtasks()))
+              .addColumn(DConstants.TASK_FAMILY,
+                      DConstants.TASK_FAILED_SUBTASKS_QUALIFIER,
+                      Bytes.toBytes(status.getFailedSubtasks()));
+    }
+    if (!status.getDestinations().isEmpty()) {
+      put.addColumn(DConstants.TASK_FAMILY,
+              DConstants.TASK_DESTINATIONS_QUALIFIER,
+              Bytes.toBytes(AccessStatus.Destination.format(status.getDestinations())));
+    }
     return put;
   }
 
@@ -329,6 +354,7 @@ public class AccessTaskLogTable extends AtomicCloseable implements AccessTaskLog
                 .get()
                 .getAsc());
       }
+      query.getId().ifPresent(v -> HBaseUtils.setRowRange(scan, filters, v));
       scan.setCaching(DConstants.SCANNER_CACHING);
       if (!filters.getFilters().isEmpty()) {
         scan.setFilter(filters);
@@ -437,6 +463,42 @@ public class AccessTaskLogTable extends AtomicCloseable implements AccessTaskLog
             DConstants.TASK_TRANSFERRED_SIZE_QUALIFIER))
             .map(v -> Bytes.toLong(v))
             .orElseThrow(() -> getCellException("transferredSize"));
+    //the logs written by older version have no checkpoint
+    long checkpoint = HBaseUtils.getAndCheckLong(result.getValue(
+            DConstants.TASK_FAMILY,
+            DConstants.TASK_CHECKPOINT_QUALIFIER))
+            .map(v -> Bytes.toLong(v))
+            .orElse(0L);
+    String tmpPath = HBaseUtils.getAndCheckString(result.getValue(
+            DConstants.TASK_FAMILY,
+            DConstants.TASK_TMP_PATH_QUALIFIER))
+            .map(v -> Bytes.toString(v))
+            .orElse(null);
+    int bufferSize = HBaseUtils.getAndCheckInt(result.getValue(
+            DConstants.TASK_FAMILY,
+            DConstants.TASK_BUFFER_SIZE_QUALIFIER))
+            .map(v -> Bytes.toInt(v))
+            .orElse(0);
+    long queueTime = HBaseUtils.getAndCheckLong(result.getValue(
+            DConstants.TASK_FAMILY,
+            DConstants.TASK_QUEUE_TIME_QUALIFIER))
+            .map(v -> Bytes.toLong(v))
+            .orElse(0L);
+    List<AccessStatus.Destination> destinations = HBaseUtils.getAndCheckString(result.getValue(
+            DConstants.TASK_FAMILY,
+            DConstants.TASK_DESTINATIONS_QUALIFIER))
+            .map(v -> AccessStatus.Destination.parse(Bytes.toString(v)))
+            .orElse(null);
+    int subtasks = HBaseUtils.getAndCheckInt(result.getValue(
+            DConstants.TASK_FAMILY,
+            DConstants.TASK_SUBTASKS_QUALIFIER))
+            .map(v -> Bytes.toInt(v))
+            .orElse(0);
+    int failedSubtasks = HBaseUtils.getAndCheckInt(result.getValue(
+            DConstants.TASK_FAMILY,
+            DConstants.TASK_FAILED_SUBTASKS_QUALIFIER))
+            .map(v -> Bytes.toInt(v))
+            .orElse(0);
     return AccessStatus.newBuilder()
             .setId(id)
             .setRedirectFrom(redirectFrom)
@@ -450,6 +512,13 @@ public class AccessTaskLogTable extends AtomicCloseable implements AccessTaskLog
             .setElapsed(elapsed)
             .setExpectedSize(expectedSize)
             .setTransferredSize(transferredSize)
+            .setCheckpoint(checkpoint)
+            .setTmpPath(tmpPath)
+            .setBufferSize(bufferSize)
+            .setQueueTime(queueTime)
+            .setDestinations(destinations)
+            .setSubtasks(subtasks)
+            .setFailedSubtasks(failedSubtasks)
             .build();
   }
 
@@ -469,6 +538,30 @@ public class AccessTaskLogTable extends AtomicCloseable implements AccessTaskLog
     }
   }
 
+  /**
+   * Puts the claim column if it is absent. The column isn't written by
+   * {@link #add(AccessStatus)}, so the buffered status doesn't erase it.
+   */
+  @Override
+  public boolean claim(final String id) throws IOException {
+    final byte[] row = Bytes.toBytes(id);
+    try (Table table = conn.get().getTable(tableName)) {
+      return table.checkAndPut(row, DConstants.TASK_FAMILY,
+              DConstants.TASK_CLAIM_QUALIFIER, null,
+              new Put(row).addColumn(DConstants.TASK_FAMILY,
+                      DConstants.TASK_CLAIM_QUALIFIER,
+                      Bytes.toBytes(TrekUtils.getHostname())));
+    }
+  }
+
+  @Override
+  public void unclaim(final String id) throws IOException {
+    try (Table table = conn.get().getTable(tableName)) {
+      table.delete(new Delete(Bytes.toBytes(id))
+              .addColumns(DConstants.TASK_FAMILY, DConstants.TASK_CLAIM_QUALIFIER));
+    }
+  }
+
   @Override
   public CloseableIterator<AccessStatus> list() throws IOException {
     return list(AccessStatusQuery.QUERY_ALL);
@@ -17,6 +17,24 @@ public interface AccessTaskLogger extends AutoCloseable {
 
   Optional<AccessStatus> find(final String id) throws IOException;
 
+  /**
+   * Claims the checkpoint of a task for a resumption, so concurrent requests
+   * can't resume the same checkpoint.
+   *
+   * @param id The task id
+   * @return False if the task is claimed already
+   * @throws IOException If failed to claim
+   */
+  boolean claim(final String id) throws IOException;
+
+  /**
+   * Releases the claim if the resumption isn't submitted.
+   *
+   * @param id The task id
+   * @throws IOException If failed to release
+   */
+  void unclaim(final String id) throws IOException;
+
   CloseableIterator<AccessStatus> list(final AccessStatusQuery query) throws IOException;
 
   CloseableIterator<AccessStatus> list() throws IOException;
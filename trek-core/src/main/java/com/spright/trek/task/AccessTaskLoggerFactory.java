@@ -6,7 +6,9 @@ import com.spright.trek.DConstants;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
@@ -33,6 +35,7 @@ public final class AccessTaskLoggerFactory {
   private static class InMemoryLogger implements AccessTaskLogger {
 
     private final Map<String, AccessStatusWrap> statusMap = new TreeMap<>();
+    private final Set<String> claims = new TreeSet<>();
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private final int ttl;
     private boolean closed = false;
@@ -68,6 +71,7 @@ public final class AccessTaskLoggerFactory {
         });
         statusMap.clear();
         statusMap.putAll(validMap);
+        claims.retainAll(validMap.keySet());
       } finally {
         lock.writeLock().unlock();
       }
@@ -102,6 +106,7 @@ public final class AccessTaskLoggerFactory {
       closed = true;
       try {
         statusMap.clear();
+        claims.clear();
       } finally {
         lock.writeLock().unlock();
       }
@@ -117,6 +122,26 @@ public final class AccessTaskLoggerFactory {
       }
     }
 
+    @Override
+    public boolean claim(final String id) throws IOException {
+      lock.writeLock().lock();
+      try {
+        return claims.add(id);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    @Override
+    public void unclaim(final String id) throws IOException {
+      lock.writeLock().lock();
+      try {
+        claims.remove(id);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
     @Override
     public CloseableIterator<AccessStatus> list() throws IOException {
       return list(AccessStatusQuery.QUERY_ALL);
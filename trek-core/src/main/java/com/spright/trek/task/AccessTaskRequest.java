@@ -3,33 +3,102 @@ package com.spright.trek.task;
 import com.spright.trek.datasystem.InputChannel;
 import com.spright.trek.datasystem.OutputChannel;
 import com.spright.trek.utils.BaseBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 public final class AccessTaskRequest {
 
   public static Builder newBuilder() {
     return new AccessTaskRequest.Builder();
   }
+
+  /**
+   * Decides how the failure of a destination affects the others.
+   */
+  public enum FanOutMode {
+    /**
+     * All destinations are recovered if any destination fails.
+     */
+    ALL_OR_NOTHING,
+    /**
+     * Only the failed destinations are recovered. The task succeeds if any
+     * destination succeeds.
+     */
+    BEST_EFFORT;
+
+    public static FanOutMode find(final String value) {
+      for (FanOutMode mode : FanOutMode.values()) {
+        if (mode.name().replaceAll("_", "").equalsIgnoreCase(value)) {
+          return mode;
+        }
+      }
+      return ALL_OR_NOTHING;
+    }
+  }
   private final InputChannel input;
-  private final OutputChannel output;
+  private final List<OutputChannel> outputs;
   private final String serverName;
   private final String clientName;
   private final String redirectFrom;
+  private final int priority;
+  private final long bandwidth;
+  private final FanOutMode fanOutMode;
 
   public AccessTaskRequest(final InputChannel input, final OutputChannel output,
           final String serverName, final String clientName, final String redirectFrom) {
+    this(input, output, serverName, clientName, redirectFrom, 0);
+  }
+
+  public AccessTaskRequest(final InputChannel input, final OutputChannel output,
+          final String serverName, final String clientName, final String redirectFrom,
+          final int priority) {
+    this(input, output, serverName, clientName, redirectFrom, priority, -1);
+  }
+
+  public AccessTaskRequest(final InputChannel input, final OutputChannel output,
+          final String serverName, final String clientName, final String redirectFrom,
+          final int priority, final long bandwidth) {
+    this(input, output == null ? Collections.emptyList() : Arrays.asList(output),
+            serverName, clientName, redirectFrom, priority, bandwidth,
+            FanOutMode.ALL_OR_NOTHING);
+  }
+
+  public AccessTaskRequest(final InputChannel input, final List<OutputChannel> outputs,
+          final String serverName, final String clientName, final String redirectFrom,
+          final int priority, final long bandwidth, final FanOutMode fanOutMode) {
     this.input = input;
-    this.output = output;
+    this.outputs = Collections.unmodifiableList(new ArrayList<>(outputs));
     this.serverName = serverName;
     this.clientName = clientName;
     this.redirectFrom = redirectFrom == null ? serverName : redirectFrom;
+    this.priority = priority;
+    this.bandwidth = bandwidth;
+    this.fanOutMode = fanOutMode;
   }
 
   public InputChannel getInput() {
     return input;
   }
 
+  /**
+   * @return The first destination
+   */
   public OutputChannel getOutput() {
-    return output;
+    return outputs.isEmpty() ? null : outputs.get(0);
+  }
+
+  /**
+   * @return All destinations. The data is read once and written to all of
+   * them
+   */
+  public List<OutputChannel> getOutputs() {
+    return outputs;
+  }
+
+  public FanOutMode getFanOutMode() {
+    return fanOutMode;
   }
 
   public String getServerName() {
@@ -44,13 +113,31 @@ public final class AccessTaskRequest {
     return redirectFrom;
   }
 
+  /**
+   * @return The priority of task. The task with higher priority is run first
+   */
+  public int getPriority() {
+    return priority;
+  }
+
+  /**
+   * @return The max bytes per second of task. A non-positive value means the
+   * limit is decided by the configuration
+   */
+  public long getBandwidth() {
+    return bandwidth;
+  }
+
   public static class Builder extends BaseBuilder {
 
     private InputChannel input;
-    private OutputChannel output;
+    private final List<OutputChannel> outputs = new ArrayList<>();
     private String serverName;
     private String clientName;
     private String redirectFrom;
+    private int priority;
+    private long bandwidth = -1;
+    private FanOutMode fanOutMode = FanOutMode.ALL_OR_NOTHING;
 
     private Builder() {
     }
@@ -64,7 +151,22 @@ public final class AccessTaskRequest {
 
     public Builder setOutput(final OutputChannel v) {
       if (isValid(v)) {
-        output = v;
+        outputs.clear();
+        outputs.add(v);
+      }
+      return this;
+    }
+
+    public Builder addOutput(final OutputChannel v) {
+      if (isValid(v)) {
+        outputs.add(v);
+      }
+      return this;
+    }
+
+    public Builder setFanOutMode(final FanOutMode v) {
+      if (isValid(v)) {
+        fanOutMode = v;
       }
       return this;
     }
@@ -90,9 +192,23 @@ public final class AccessTaskRequest {
       return this;
     }
 
+    public Builder setPriority(final int v) {
+      if (isValid(v)) {
+        priority = v;
+      }
+      return this;
+    }
+
+    public Builder setBandwidth(final long v) {
+      if (isValid(v)) {
+        bandwidth = v;
+      }
+      return this;
+    }
+
     public AccessTaskRequest build() {
-      return new AccessTaskRequest(input, output, serverName,
-              clientName, redirectFrom);
+      return new AccessTaskRequest(input, outputs, serverName,
+              clientName, redirectFrom, priority, bandwidth, fanOutMode);
     }
   }
 }
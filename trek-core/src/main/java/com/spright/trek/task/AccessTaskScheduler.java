@@ -0,0 +1,32 @@
+package com.spright.trek.task;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides the order of queued tasks and runs them by its own threads.
+ */
+public interface AccessTaskScheduler extends AutoCloseable {
+
+  /**
+   * Queues the job of task. The caller is blocked if the queue is full.
+   *
+   * @param request The task request used to order the job
+   * @param job The job to run
+   * @param timeout The max time to wait for the room of queue
+   * @param unit The unit of timeout
+   * @return False if the queue is still full after the timeout
+   * @throws InterruptedException If the caller is interrupted
+   */
+  boolean submit(final AccessTaskRequest request, final Runnable job,
+          final long timeout, final TimeUnit unit) throws InterruptedException;
+
+  /**
+   * @return The number of queued jobs
+   */
+  int getQueueSize();
+
+  /**
+   * @return The number of running jobs
+   */
+  int getRunningNumber();
+}
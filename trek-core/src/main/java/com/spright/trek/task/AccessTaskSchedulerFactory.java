@@ -0,0 +1,243 @@
+package com.spright.trek.task;
+
+import com.spright.trek.DConstants;
+import com.spright.trek.datasystem.Protocol;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+
+public final class AccessTaskSchedulerFactory {
+
+  private static final Log LOG = LogFactory.getLog(AccessTaskSchedulerFactory.class);
+
+  /**
+   * Creates the scheduler. The class specified by
+   * {@link DConstants#ACCESS_SCHEDULER_CLASS} must have a constructor with a
+   * {@link Configuration} argument.
+   *
+   * @param conf The configuration
+   * @return A scheduler
+   * @throws Exception If failed to create the custom scheduler
+   */
+  public static AccessTaskScheduler newInstance(final Configuration conf) throws Exception {
+    Class<? extends AccessTaskScheduler> clz = conf.getClass(
+            DConstants.ACCESS_SCHEDULER_CLASS, null, AccessTaskScheduler.class);
+    if (clz != null) {
+      return clz.getConstructor(Configuration.class).newInstance(conf);
+    }
+    if (conf.getBoolean(DConstants.ACCESS_SCHEDULER_FAIR_ENABLE,
+            DConstants.DEFAULT_ACCESS_SCHEDULER_FAIR_ENABLE)) {
+      return new FairScheduler(conf);
+    }
+    return new FifoScheduler(conf);
+  }
+
+  /**
+   * Runs the jobs in order of priority and submission.
+   */
+  private static class FifoScheduler extends QueuedScheduler {
+
+    FifoScheduler(final Configuration conf) {
+      super(conf);
+    }
+
+    @Override
+    protected double tag(final AccessTaskRequest request) {
+      return 0;
+    }
+
+    @Override
+    protected void dequeue(final double tag) {
+    }
+  }
+
+  /**
+   * Start-time fair queuing. Each client is a flow, and each job is tagged by
+   * the virtual finish time of its client, so a heavy client can't starve
+   * others. The cost of job is inversely proportional to the weight of client
+   * and the weight of source protocol. The weights are configured by
+   * {@link DConstants#ACCESS_SCHEDULER_CLIENT_WEIGHT}.[client] and
+   * {@link DConstants#ACCESS_SCHEDULER_PROTOCOL_WEIGHT}.[protocol]. The jobs
+   * with higher priority are always run first.
+   */
+  private static class FairScheduler extends QueuedScheduler {
+
+    private final Configuration conf;
+    private final Map<String, Double> clientTags = new HashMap<>();
+    private double virtualTime = 0;
+
+    FairScheduler(final Configuration conf) {
+      super(conf);
+      this.conf = conf;
+    }
+
+    @Override
+    protected double tag(final AccessTaskRequest request) {
+      final String client = request.getClientName();
+      final Protocol protocol = request.getInput().getInfo().getUriRequest().getScheme();
+      final double weight = conf.getFloat(DConstants.ACCESS_SCHEDULER_CLIENT_WEIGHT
+              + "." + client, 1.0f)
+              * conf.getFloat(DConstants.ACCESS_SCHEDULER_PROTOCOL_WEIGHT
+                      + "." + protocol.name().toLowerCase(), 1.0f);
+      final Double lastTag = clientTags.get(client);
+      final double start = lastTag == null ? virtualTime : Math.max(virtualTime, lastTag);
+      final double tag = start + 1.0 / Math.max(weight, Float.MIN_VALUE);
+      clientTags.put(client, tag);
+      return tag;
+    }
+
+    @Override
+    protected void dequeue(final double tag) {
+      if (getQueueSize() == 0) {
+        //all flows are idle, so the history is useless
+        virtualTime = 0;
+        clientTags.clear();
+      } else {
+        virtualTime = Math.max(virtualTime, tag);
+      }
+    }
+  }
+
+  /**
+   * A bounded priority queue drained by a fixed number of threads. The
+   * subclass decides the tag of job, and the job with smaller tag is run
+   * first if the priorities are equal.
+   */
+  private abstract static class QueuedScheduler implements AccessTaskScheduler {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final PriorityQueue<Job> queue = new PriorityQueue<>(
+            Comparator.comparingInt((Job j) -> -j.priority)
+            .thenComparingDouble(j -> j.tag)
+            .thenComparingLong(j -> j.sequence));
+    private final ExecutorService workers;
+    private final int capacity;
+    private final AtomicInteger running = new AtomicInteger(0);
+    private long sequence = 0;
+    private volatile boolean closed = false;
+
+    QueuedScheduler(final Configuration conf) {
+      final int threadNumber = conf.getInt(DConstants.ACCESS_HANDLER_NUMBER,
+              DConstants.DEFAULT_ACCESS_HANDLER_NUMBER);
+      capacity = Math.max(1, conf.getInt(DConstants.ACCESS_SCHEDULER_QUEUE_SIZE,
+              DConstants.DEFAULT_ACCESS_SCHEDULER_QUEUE_SIZE));
+      workers = Executors.newFixedThreadPool(threadNumber);
+      for (int i = 0; i != threadNumber; ++i) {
+        workers.execute(this::work);
+      }
+    }
+
+    /**
+     * Computes the tag of new job. It is called with the lock held.
+     */
+    protected abstract double tag(final AccessTaskRequest request);
+
+    /**
+     * Notifies the job is taken from queue. It is called with the lock held.
+     */
+    protected abstract void dequeue(final double tag);
+
+    private void work() {
+      while (!closed) {
+        Job job;
+        lock.lock();
+        try {
+          while (queue.isEmpty()) {
+            notEmpty.await();
+          }
+          job = queue.poll();
+          dequeue(job.tag);
+          notFull.signal();
+        } catch (InterruptedException e) {
+          return;
+        } finally {
+          lock.unlock();
+        }
+        running.incrementAndGet();
+        try {
+          job.runnable.run();
+        } catch (Throwable e) {
+          LOG.error("Failed to run the job", e);
+        } finally {
+          running.decrementAndGet();
+        }
+      }
+    }
+
+    @Override
+    public boolean submit(final AccessTaskRequest request, final Runnable job,
+            final long timeout, final TimeUnit unit) throws InterruptedException {
+      long nanos = unit.toNanos(timeout);
+      lock.lock();
+      try {
+        while (queue.size() >= capacity) {
+          if (closed || nanos <= 0) {
+            return false;
+          }
+          nanos = notFull.awaitNanos(nanos);
+        }
+        if (closed) {
+          return false;
+        }
+        queue.add(new Job(job, request.getPriority(), tag(request), sequence++));
+        notEmpty.signal();
+        return true;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public int getQueueSize() {
+      lock.lock();
+      try {
+        return queue.size();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public int getRunningNumber() {
+      return running.get();
+    }
+
+    @Override
+    public void close() throws Exception {
+      closed = true;
+      workers.shutdownNow();
+      workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+  }
+
+  private static final class Job {
+
+    private final Runnable runnable;
+    private final int priority;
+    private final double tag;
+    private final long sequence;
+
+    Job(final Runnable runnable, final int priority, final double tag,
+            final long sequence) {
+      this.runnable = runnable;
+      this.priority = priority;
+      this.tag = tag;
+      this.sequence = sequence;
+    }
+  }
+
+  private AccessTaskSchedulerFactory() {
+  }
+}
@@ -0,0 +1,226 @@
+package com.spright.trek.task;
+
+import com.spright.trek.DConstants;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Limits the transfer rate by the hierarchical token buckets. A task is
+ * limited by the global bucket, the buckets of remote hosts, the bucket of
+ * client and its own bucket. The limit (bytes per second) of each level is
+ * decided by the following order, and a non-positive value means unlimited.
+ * 1) trek.access.bandwidth.[host|client].[name]
+ * 2) trek.access.bandwidth.[global|host|client|task]
+ * The task limit can be overridden by the request. The buckets of hosts and
+ * clients are dropped after all their tasks are done and the bucket is full
+ * again, so they don't accumulate with the remote peers.
+ */
+public final class BandwidthThrottle {
+
+  private static final Throttle UNLIMITED = new Throttle(new TokenBucket[0]);
+  private final Configuration config;
+  private final long burstNanos;
+  private final Optional<TokenBucket> global;
+  private final Map<String, TokenBucket> hosts = new ConcurrentHashMap<>();
+  private final Map<String, TokenBucket> clients = new ConcurrentHashMap<>();
+
+  public BandwidthThrottle(final Configuration config) {
+    this.config = config;
+    this.burstNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getLong(
+            DConstants.ACCESS_BANDWIDTH_BURST_TIME,
+            DConstants.DEFAULT_ACCESS_BANDWIDTH_BURST_TIME)));
+    this.global = newBucket(config.getLong(DConstants.ACCESS_BANDWIDTH_GLOBAL,
+            DConstants.DEFAULT_ACCESS_BANDWIDTH));
+  }
+
+  private Optional<TokenBucket> newBucket(final long bytesPerSecond) {
+    if (bytesPerSecond <= 0) {
+      return Optional.empty();
+    }
+    return Optional.of(new TokenBucket(bytesPerSecond, burstNanos));
+  }
+
+  /**
+   * Finds the shared bucket of a name and retains it for a task. The unlimited
+   * names aren't cached.
+   */
+  private Optional<TokenBucket> retainBucket(final Map<String, TokenBucket> buckets,
+          final String key, final String name) {
+    return Optional.ofNullable(buckets.compute(name, (k, v) -> {
+      TokenBucket bucket = v != null ? v
+              : newBucket(config.getLong(key + "." + name,
+                      config.getLong(key, DConstants.DEFAULT_ACCESS_BANDWIDTH))).orElse(null);
+      if (bucket != null) {
+        bucket.retain();
+      }
+      return bucket;
+    }));
+  }
+
+  /**
+   * Drops the buckets which have no task and no debt. A new bucket starts
+   * full, so nothing is lost by dropping them.
+   */
+  private static void prune(final Map<String, TokenBucket> buckets, final long now) {
+    buckets.keySet().forEach(name
+            -> buckets.computeIfPresent(name, (k, v) -> v.isIdle(now) ? null : v));
+  }
+
+  /**
+   * @return The number of cached buckets of hosts and clients
+   */
+  int getBucketCount() {
+    return hosts.size() + clients.size();
+  }
+
+  /**
+   * Builds the throttle for a task. The shared buckets are created once and
+   * reused by all tasks.
+   *
+   * @param request The task request
+   * @return The throttle of task
+   */
+  public Throttle newThrottle(final AccessTaskRequest request) {
+    final long now = System.nanoTime();
+    prune(hosts, now);
+    prune(clients, now);
+    List<TokenBucket> buckets = new ArrayList<>(5);
+    global.ifPresent(buckets::add);
+    Set<String> remoteHosts = new TreeSet<>();
+    request.getInput().getInfo().getUriRequest().getAccountInfo().getHost()
+            .ifPresent(remoteHosts::add);
+    request.getOutputs().forEach(output
+            -> output.getRequest().getAccountInfo().getHost().ifPresent(remoteHosts::add));
+    remoteHosts.forEach(host
+            -> retainBucket(hosts, DConstants.ACCESS_BANDWIDTH_HOST, host)
+            .ifPresent(buckets::add));
+    Optional.ofNullable(request.getClientName()).ifPresent(client
+            -> retainBucket(clients, DConstants.ACCESS_BANDWIDTH_CLIENT, client)
+            .ifPresent(buckets::add));
+    newBucket(request.getBandwidth() > 0 ? request.getBandwidth()
+            : config.getLong(DConstants.ACCESS_BANDWIDTH_TASK,
+                    DConstants.DEFAULT_ACCESS_BANDWIDTH))
+            .ifPresent(buckets::add);
+    if (buckets.isEmpty()) {
+      return UNLIMITED;
+    }
+    return new Throttle(buckets.toArray(new TokenBucket[buckets.size()]));
+  }
+
+  /**
+   * Charges the transferred bytes to all buckets of a task. It is thread-safe,
+   * so the ranges of a segmented task can share it.
+   */
+  public static final class Throttle {
+
+    private final TokenBucket[] buckets;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    private Throttle(final TokenBucket[] buckets) {
+      this.buckets = buckets;
+    }
+
+    /**
+     * Releases the buckets after the task is done, so the idle shared buckets
+     * can be dropped. It is idempotent.
+     */
+    public void release() {
+      if (released.compareAndSet(false, true)) {
+        for (TokenBucket bucket : buckets) {
+          bucket.release();
+        }
+      }
+    }
+
+    /**
+     * @return False if there is no limit
+     */
+    public boolean isLimited() {
+      return buckets.length != 0;
+    }
+
+    /**
+     * Charges the bytes and sleeps until the slowest bucket allows them.
+     *
+     * @param bytes The transferred bytes
+     * @return The nanoseconds of sleep
+     * @throws InterruptedException If the sleep is interrupted
+     */
+    public long acquire(final long bytes) throws InterruptedException {
+      if (buckets.length == 0 || bytes <= 0) {
+        return 0;
+      }
+      final long now = System.nanoTime();
+      long wait = 0;
+      for (TokenBucket bucket : buckets) {
+        wait = Math.max(wait, bucket.reserve(bytes, now));
+      }
+      if (wait > 0) {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      }
+      return wait;
+    }
+  }
+
+  /**
+   * A lock-free token bucket implemented by the generic cell rate algorithm.
+   * The bucket stores only the theoretical arrival time, so the bytes are
+   * charged by a single CAS. The caller is allowed to be ahead of the rate by
+   * the burst time.
+   */
+  static final class TokenBucket {
+
+    private final double nanosPerByte;
+    private final long burstNanos;
+    private final AtomicLong arrival = new AtomicLong(System.nanoTime());
+    private final AtomicInteger users = new AtomicInteger(0);
+
+    TokenBucket(final long bytesPerSecond, final long burstNanos) {
+      this.nanosPerByte = (double) TimeUnit.SECONDS.toNanos(1) / (double) bytesPerSecond;
+      this.burstNanos = burstNanos;
+    }
+
+    void retain() {
+      users.incrementAndGet();
+    }
+
+    void release() {
+      users.decrementAndGet();
+    }
+
+    /**
+     * @param now The current time in nanoseconds
+     * @return True if no task uses the bucket and all charged bytes are paid
+     */
+    boolean isIdle(final long now) {
+      return users.get() == 0 && arrival.get() - now <= 0;
+    }
+
+    /**
+     * @param bytes The bytes to charge
+     * @param now The current time in nanoseconds
+     * @return The nanoseconds to wait for the charged bytes
+     */
+    long reserve(final long bytes, final long now) {
+      final long cost = (long) (bytes * nanosPerByte);
+      while (true) {
+        final long current = arrival.get();
+        //compare by difference since the nano time may overflow
+        final long next = (current - now > 0 ? current : now) + cost;
+        if (arrival.compareAndSet(current, next)) {
+          return Math.max(0, next - now - burstNanos);
+        }
+      }
+    }
+  }
+}
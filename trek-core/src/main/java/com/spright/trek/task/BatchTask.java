@@ -0,0 +1,9 @@
+package com.spright.trek.task;
+
+/**
+ * The parent task of a {@link BatchTaskRequest}.
+ */
+public interface BatchTask extends AccessTask {
+
+  BatchTaskRequest getRequest();
+}
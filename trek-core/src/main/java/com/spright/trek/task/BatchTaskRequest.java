@@ -0,0 +1,148 @@
+package com.spright.trek.task;
+
+import com.spright.trek.query.CloseableIterator;
+import com.spright.trek.utils.BaseBuilder;
+
+/**
+ * Copies many data by a parent task. The subtask requests are created lazily
+ * so that the channels are opened only if the subtask is able to run.
+ */
+public final class BatchTaskRequest {
+
+  public static Builder newBuilder() {
+    return new BatchTaskRequest.Builder();
+  }
+  private final CloseableIterator<AccessTaskRequest> requests;
+  private final String from;
+  private final String to;
+  private final String serverName;
+  private final String clientName;
+  private final String redirectFrom;
+  private final int parallelism;
+
+  public BatchTaskRequest(final CloseableIterator<AccessTaskRequest> requests,
+          final String from, final String to, final String serverName,
+          final String clientName, final String redirectFrom,
+          final int parallelism) {
+    this.requests = requests;
+    this.from = from;
+    this.to = to;
+    this.serverName = serverName;
+    this.clientName = clientName;
+    this.redirectFrom = redirectFrom == null ? serverName : redirectFrom;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * @return The subtask requests. The iterator may throw a
+   * {@link java.io.UncheckedIOException} if failed to create the request
+   */
+  public CloseableIterator<AccessTaskRequest> getRequests() {
+    return requests;
+  }
+
+  /**
+   * @return The source pattern
+   */
+  public String getFrom() {
+    return from;
+  }
+
+  /**
+   * @return The destination directory
+   */
+  public String getTo() {
+    return to;
+  }
+
+  public String getServerName() {
+    return serverName;
+  }
+
+  public String getClientName() {
+    return clientName;
+  }
+
+  public String getRedirectFrom() {
+    return redirectFrom;
+  }
+
+  /**
+   * @return The max number of running subtasks. A non-positive value means
+   * the parallelism is decided by the configuration
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public static class Builder extends BaseBuilder {
+
+    private CloseableIterator<AccessTaskRequest> requests;
+    private String from;
+    private String to;
+    private String serverName;
+    private String clientName;
+    private String redirectFrom;
+    private int parallelism = -1;
+
+    private Builder() {
+    }
+
+    public Builder setRequests(final CloseableIterator<AccessTaskRequest> v) {
+      if (isValid(v)) {
+        requests = v;
+      }
+      return this;
+    }
+
+    public Builder setFrom(final String v) {
+      if (isValid(v)) {
+        from = v;
+      }
+      return this;
+    }
+
+    public Builder setTo(final String v) {
+      if (isValid(v)) {
+        to = v;
+      }
+      return this;
+    }
+
+    public Builder setServerName(final String v) {
+      if (isValid(v)) {
+        serverName = v;
+      }
+      return this;
+    }
+
+    public Builder setClientName(final String v) {
+      if (isValid(v)) {
+        clientName = v;
+      }
+      return this;
+    }
+
+    public Builder setRedirectFrom(final String v) {
+      if (isValid(v)) {
+        redirectFrom = v;
+      }
+      return this;
+    }
+
+    public Builder setParallelism(final int v) {
+      if (isValid(v)) {
+        parallelism = v;
+      }
+      return this;
+    }
+
+    public BatchTaskRequest build() {
+      checkNull(requests, "requests");
+      checkNull(from, "from");
+      checkNull(to, "to");
+      return new BatchTaskRequest(requests, from, to, serverName,
+              clientName, redirectFrom, parallelism);
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.spright.trek.task;
+
+import com.spright.trek.DConstants;
+import com.spright.trek.datasystem.Protocol;
+import java.util.EnumSet;
+import java.util.Set;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Chooses the copy buffer size for the pair of source and destination
+ * protocol. The size is decided by the following order.
+ * 1) trek.access.buffer.size.[from].[to]
+ * 2) trek.access.buffer.size
+ * 3) the built-in size of protocol pair
+ */
+public final class BufferPolicy {
+
+  /**
+   * The protocols which are able to move large data per call.
+   */
+  private static final Set<Protocol> BULK_PROTOCOLS = EnumSet.of(
+          Protocol.FILE, Protocol.HDFS, Protocol.HBASE, Protocol.LOCAL);
+  private final Configuration config;
+  private final int maxSize;
+  private final boolean adaptive;
+
+  public BufferPolicy(final Configuration config) {
+    this.config = config;
+    this.maxSize = config.getInt(DConstants.ACCESS_BUFFER_MAX_SIZE,
+            DConstants.DEFAULT_ACCESS_BUFFER_MAX_SIZE);
+    this.adaptive = config.getBoolean(DConstants.ACCESS_BUFFER_ADAPTIVE_ENABLE,
+            DConstants.DEFAULT_ACCESS_BUFFER_ADAPTIVE_ENABLE);
+  }
+
+  /**
+   * @param from The source protocol
+   * @param to The destination protocol
+   * @return The initial buffer size
+   */
+  public int getSize(final Protocol from, final Protocol to) {
+    final int builtIn = BULK_PROTOCOLS.contains(from) && BULK_PROTOCOLS.contains(to)
+            ? DConstants.DEFAULT_ACCESS_BULK_BUFFER_SIZE
+            : DConstants.DEFAULT_ACCESS_BUFFER_SIZE;
+    final int size = config.getInt(DConstants.ACCESS_BUFFER_SIZE
+            + "." + from.name().toLowerCase()
+            + "." + to.name().toLowerCase(),
+            config.getInt(DConstants.ACCESS_BUFFER_SIZE, builtIn));
+    return Math.max(1, Math.min(size, maxSize));
+  }
+
+  public CopyBuffer newBuffer(final Protocol from, final Protocol to) {
+    return new CopyBuffer(getSize(from, to), maxSize, adaptive);
+  }
+
+  /**
+   * The buffer grows if the source keeps filling most of the buffer and the
+   * throughput doesn't drop after growing. It is not thread-safe.
+   */
+  public static final class CopyBuffer {
+
+    /**
+     * The number of large reads to observe before growing the buffer.
+     */
+    private static final int GROW_WINDOW = 16;
+    /**
+     * The buffer is shrunk back if the throughput drops below this ratio.
+     */
+    private static final double DEGRADE_RATIO = 0.9;
+    private final int maxSize;
+    private final boolean adaptive;
+    private byte[] buffer;
+    private boolean frozen = false;
+    private boolean grown = false;
+    private int previousSize;
+    private int fullReads = 0;
+    private long windowBytes = 0;
+    private long windowStart = System.nanoTime();
+    private double lastThroughput = 0;
+
+    CopyBuffer(final int size, final int maxSize, final boolean adaptive) {
+      this.buffer = new byte[size];
+      this.maxSize = maxSize;
+      this.adaptive = adaptive;
+    }
+
+    public byte[] get() {
+      return buffer;
+    }
+
+    public int size() {
+      return buffer.length;
+    }
+
+    /**
+     * Observes the read result, and resizes the buffer if necessary. The
+     * buffer returned by {@link #get()} may be changed after this call.
+     *
+     * @param readBytes The bytes read by last call
+     * @return True if the buffer is resized
+     */
+    public boolean update(final int readBytes) {
+      if (!adaptive || frozen) {
+        return false;
+      }
+      if (readBytes < buffer.length / 2) {
+        //the source can't fill the buffer, so a larger one doesn't help
+        resetWindow();
+        return false;
+      }
+      windowBytes += readBytes;
+      if (++fullReads < GROW_WINDOW) {
+        return false;
+      }
+      final double throughput = (double) windowBytes
+              / (double) Math.max(1, System.nanoTime() - windowStart);
+      resetWindow();
+      if (grown && throughput < lastThroughput * DEGRADE_RATIO) {
+        //the larger buffer makes thing worse
+        frozen = true;
+        buffer = new byte[previousSize];
+        return true;
+      }
+      lastThroughput = throughput;
+      if (buffer.length >= maxSize) {
+        frozen = true;
+        return false;
+      }
+      previousSize = buffer.length;
+      buffer = new byte[Math.min(maxSize, buffer.length * 2)];
+      grown = true;
+      return true;
+    }
+
+    private void resetWindow() {
+      fullReads = 0;
+      windowBytes = 0;
+      windowStart = System.nanoTime();
+    }
+  }
+}
@@ -73,6 +73,11 @@ public final class RestrictedListMap<
    * True if there are one running check thread.
    */
   private final AtomicBoolean hasCheckThread = new AtomicBoolean(false);
+  /**
+   * The slots of elements which are being built. It is guarded by the write
+   * lock.
+   */
+  private int reserved = 0;
 
   /**
    * Constructs a {@link RestrictedListMap} with specified size, builder and
@@ -160,53 +165,133 @@ public final class RestrictedListMap<
   }
 
   /**
-   * Gets the free element, otherwise a new elemenet will return.
+   * Gets the free element, otherwise a new elemenet will return. If the map
+   * is full, the element idle for the longest time is closed to make room.
+   * The slot of new element is reserved under the lock, and the element is
+   * built outside the lock since the build may do network I/O.
    *
    * @param name Name
    * @param builder Value builder
    * @return A element
-   * @throws IOException If there are no enough room to save new element
+   * @throws IOException If all elements are busy
    */
   public V get(final N name, final ValueBuilder<V> builder)
           throws IOException {
     checkClose();
+    V free;
+    while ((free = claimFree(name)) != null) {
+      //the check may do network I/O, so it is done outside the lock
+      if (free.isAlive()) {
+        invokeCheckThread();
+        return free;
+      }
+      //the broken element is removed by next check
+      closeWithLog(free);
+    }
+    V evicted = null;
+    lock.writeLock().lock();
+    try {
+      if (checkTimeoutElements() + reserved >= maxSize) {
+        evicted = claimIdlest();
+        if (evicted == null) {
+          throw new IOException(
+                  "No available resource, max size is " + maxSize);
+        }
+      }
+      ++reserved;
+    } finally {
+      lock.writeLock().unlock();
+      if (evicted != null) {
+        closeWithLog(evicted);
+      }
+    }
+    V newOne = null;
+    try {
+      newOne = builder.build();
+      newOne.checkFreeAndSetBusy();
+    } finally {
+      lock.writeLock().lock();
+      try {
+        --reserved;
+        if (newOne != null) {
+          elements.add(new Pair<>(name, newOne));
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+    invokeCheckThread();
+    return newOne;
+  }
+
+  /**
+   * @return The free element of name. It is set busy
+   */
+  private V claimFree(final N name) {
     lock.readLock().lock();
     try {
       for (int i = 0; i != elements.size(); ++i) {
         Pair<N, V> e = elements.get(i);
         if (e.getKey().compareTo(name) == 0
                 && e.getValue().checkFreeAndSetBusy()) {
-          invokeCheckThread();
           return e.getValue();
         }
       }
+      return null;
     } finally {
       lock.readLock().unlock();
     }
-    lock.writeLock().lock();
-    try {
-      if (elements.size() > maxSize) {
-        throw new IOException(
-                "No available resource, max size is " + maxSize);
+  }
+
+  /**
+   * Removes the free element which is idle for the longest time. It must be
+   * called with the write lock.
+   *
+   * @return The removed element. It is set busy, and it should be closed by
+   * the caller
+   */
+  private V claimIdlest() {
+    int index = -1;
+    for (int i = 0; i != elements.size(); ++i) {
+      V v = elements.get(i).getValue();
+      if (v.isFree() && (index == -1
+              || v.getFreeTime() < elements.get(index).getValue().getFreeTime())) {
+        index = i;
       }
-      V newOne = builder.build();
-      elements.add(new Pair<>(name, newOne));
-      newOne.checkFreeAndSetBusy();
-      invokeCheckThread();
-      return newOne;
-    } finally {
-      lock.writeLock().unlock();
+    }
+    if (index == -1 || !elements.get(index).getValue().checkFreeAndSetBusy()) {
+      return null;
+    }
+    return elements.remove(index).getValue();
+  }
+
+  private static void closeWithLog(final Value value) {
+    try {
+      value.close();
+    } catch (Exception ex) {
+      LOG.error("Failed to close object", ex);
     }
   }
 
   @Override
   public void internalClose() throws IOException {
-    service.shutdown();
+    service.shutdownNow();
     try {
       service.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
     } catch (InterruptedException e) {
       throw new IOException(e);
     }
+    lock.writeLock().lock();
+    try {
+      //the busy elements are released by their users
+      elements.stream()
+              .map(Pair::getValue)
+              .filter(v -> v.checkFreeAndSetBusy())
+              .forEach(RestrictedListMap::closeWithLog);
+      elements.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
   }
 
   /**
@@ -238,7 +323,7 @@ public final class RestrictedListMap<
     /**
      * Current time.
      */
-    private long currentTime = System.currentTimeMillis();
+    private volatile long currentTime = System.currentTimeMillis();
     /**
      * Using flag.
      */
@@ -268,11 +353,26 @@ public final class RestrictedListMap<
      * will happen.
      */
     public final void free() {
+      //update the time first, otherwise the checker may see a stale time
+      currentTime = System.currentTimeMillis();
       if (!status.compareAndSet(Status.BUSY, Status.FREE)) {
         throw new RuntimeException("Expect to change status from"
                 + " busy to free");
       }
-      currentTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return True if the value is free now
+     */
+    final boolean isFree() {
+      return status.get() == Status.FREE;
+    }
+
+    /**
+     * @return The time the value was freed
+     */
+    final long getFreeTime() {
+      return currentTime;
     }
 
     /**
@@ -290,6 +390,16 @@ public final class RestrictedListMap<
               && ((System.currentTimeMillis() - currentTime) >= idlePeriod);
     }
 
+    /**
+     * Checks the element before it is reused. The element is closed if it is
+     * not alive.
+     *
+     * @return True if the element is able to be reused
+     */
+    protected boolean isAlive() {
+      return true;
+    }
+
     /**
      * Releases the resource within object.
      *
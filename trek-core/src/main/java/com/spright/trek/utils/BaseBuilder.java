@@ -82,4 +82,13 @@ public abstract class BaseBuilder {
       throwError(obj, name);
     }
   }
+
+  /**
+   * Checks the value which is allowed to be empty.
+   */
+  protected static void checkNotNull(final Object obj, final String name) {
+    if (obj == null) {
+      throwError(obj, name);
+    }
+  }
 }
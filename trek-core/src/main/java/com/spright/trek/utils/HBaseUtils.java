@@ -1,10 +1,82 @@
 package com.spright.trek.utils;
 
+import java.util.Arrays;
 import java.util.Optional;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 
 public final class HBaseUtils {
 
+  /**
+   * The characters which end the literal prefix of wildcard. The wildcard is
+   * converted to a regex without escape, so the regex metacharacters aren't
+   * literal either.
+   */
+  private static final String NON_LITERAL = "*?\\.[]{}()+^$|";
+
+  /**
+   * @param wildcard The wildcard name
+   * @return The leading characters which every matched name must start with
+   */
+  public static String getLiteralPrefix(final String wildcard) {
+    for (int i = 0; i != wildcard.length(); ++i) {
+      if (NON_LITERAL.indexOf(wildcard.charAt(i)) != -1) {
+        return wildcard.substring(0, i);
+      }
+    }
+    return wildcard;
+  }
+
+  /**
+   * @param prefix The row prefix
+   * @return The smallest row which is greater than all rows starting with the
+   * prefix, or an empty array if there is no such row
+   */
+  public static byte[] getStopRow(final byte[] prefix) {
+    for (int i = prefix.length - 1; i >= 0; --i) {
+      if (prefix[i] != (byte) 0xFF) {
+        byte[] stop = Arrays.copyOf(prefix, i + 1);
+        ++stop[i];
+        return stop;
+      }
+    }
+    return HConstants.EMPTY_END_ROW;
+  }
+
+  /**
+   * Narrows the scan to the rows starting with the literal prefix of wildcard
+   * so that only the regions which may have the matched rows are read. The
+   * regex of wildcard is still needed as the residual filter. It should be
+   * called after the scan direction is set.
+   *
+   * @param scan The scan
+   * @param filters The filters of scan. A {@link PrefixFilter} is added to
+   * stop the reversed scan early
+   * @param wildcard The wildcard row name
+   * @return False if the wildcard has no literal prefix
+   */
+  public static boolean setRowRange(final Scan scan, final FilterList filters,
+          final String wildcard) {
+    final byte[] prefix = Bytes.toBytes(getLiteralPrefix(wildcard));
+    if (prefix.length == 0) {
+      return false;
+    }
+    final byte[] stop = getStopRow(prefix);
+    if (scan.isReversed()) {
+      //the start row is inclusive in reversed scan, and the prefix filter
+      //ends the scan after the prefix is passed
+      scan.setStartRow(stop);
+    } else {
+      scan.setStartRow(prefix);
+      scan.setStopRow(stop);
+    }
+    filters.addFilter(new PrefixFilter(prefix));
+    return true;
+  }
+
   public static Optional<byte[]> getAndCheckInt(final byte[] buf) {
     return getAndCheck(buf, Bytes.SIZEOF_INT);
   }
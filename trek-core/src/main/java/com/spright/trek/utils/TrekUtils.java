@@ -88,7 +88,14 @@ public class TrekUtils {
   }
 
   public static List<DataOwner> findOwners(FileSystem fs, final FileStatus status) throws IOException {
-    BlockLocation[] blks = fs.getFileBlockLocations(status, 0, status.getLen());
+    return findOwners(fs.getFileBlockLocations(status, 0, status.getLen()));
+  }
+
+  /**
+   * @param blks The block locations of a file
+   * @return The hosts ordered by the number of blocks they have
+   */
+  public static List<DataOwner> findOwners(final BlockLocation[] blks) throws IOException {
     Map<String, AtomicInteger> hostCount = new TreeMap();
     if (blks != null) {
       for (BlockLocation blk : blks) {
@@ -0,0 +1,162 @@
+package com.spright.trek.web;
+
+import com.spright.trek.datasystem.DataSystem;
+import com.spright.trek.datasystem.InputChannel;
+import com.spright.trek.datasystem.OutputChannel;
+import com.spright.trek.datasystem.request.DataInfo;
+import com.spright.trek.datasystem.request.DataInfoQuery;
+import com.spright.trek.datasystem.request.DataType;
+import com.spright.trek.datasystem.request.ReadDataRequest;
+import com.spright.trek.datasystem.request.UriRequest;
+import com.spright.trek.datasystem.request.WriteDataRequest;
+import com.spright.trek.mapping.Mapping;
+import com.spright.trek.query.CloseableIterator;
+import com.spright.trek.task.AccessTaskRequest;
+import com.spright.trek.utils.TrekUtils;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Expands the source of batch access into the subtask requests. The name of
+ * source is a wildcard pattern, and the sub-directories are walked in
+ * depth-first order if the recursion is enabled. The relative path of data is
+ * kept under the destination directory. The channels of subtask are opened
+ * only when the request is taken, so the number of opened channels is bounded
+ * by the parallelism of batch task.
+ */
+final class BatchRequestIterator implements CloseableIterator<AccessTaskRequest> {
+
+  private static final Log LOG = LogFactory.getLog(BatchRequestIterator.class);
+  private static final String ANY_NAME = "*";
+  private final Configuration config;
+  private final Mapping mapping;
+  private final String to;
+  private final boolean keep;
+  private final boolean recursive;
+  private final Supplier<AccessTaskRequest.Builder> template;
+  private final Deque<Level> levels = new LinkedList<>();
+  private DataInfo nextInfo;
+  private String nextRelative;
+
+  /**
+   * @param config The configuration
+   * @param mapping The account mapping
+   * @param from The source. The name is a wildcard pattern
+   * @param to The destination directory
+   * @param keep False if the source should be deleted after copy
+   * @param recursive True if the sub-directories should be copied
+   * @param template Creates the builder filled with the common settings
+   * @throws Exception If failed to list the source
+   */
+  BatchRequestIterator(final Configuration config, final Mapping mapping,
+          final UriRequest from, final String to, final boolean keep,
+          final boolean recursive, final Supplier<AccessTaskRequest.Builder> template)
+          throws Exception {
+    this.config = config;
+    this.mapping = mapping;
+    this.to = to.endsWith("/") ? to : to + "/";
+    this.keep = keep;
+    this.recursive = recursive;
+    this.template = template;
+    levels.push(new Level(list(from), ""));
+  }
+
+  private CloseableIterator<DataInfo> list(final UriRequest request) throws Exception {
+    DataInfoQuery query = DataInfoQuery.newBuilder()
+            .setUriRequest(request)
+            .setTypes(recursive ? Arrays.asList(DataType.FILE, DataType.DIRECTORY)
+                    : Arrays.asList(DataType.FILE))
+            .setLimit(Integer.MAX_VALUE)
+            .setKeep(true)
+            .build();
+    return DataSystem.getInstance(query, config).list(query);
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (nextInfo == null && !levels.isEmpty()) {
+      Level level = levels.peek();
+      if (!level.infos.hasNext()) {
+        TrekUtils.closeWithLog(levels.pop().infos, LOG);
+        continue;
+      }
+      DataInfo info = level.infos.next();
+      final String name = info.getUriRequest().getPath().getName();
+      if (info.getType() == DataType.DIRECTORY) {
+        try {
+          levels.push(new Level(list(info.getUriRequest().appendName(ANY_NAME)),
+                  level.relative + name + "/"));
+        } catch (Exception e) {
+          throw new UncheckedIOException(toIOException(e));
+        }
+      } else {
+        nextInfo = info;
+        nextRelative = level.relative;
+      }
+    }
+    return nextInfo != null;
+  }
+
+  @Override
+  public AccessTaskRequest next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    final DataInfo info = nextInfo;
+    final String relative = nextRelative;
+    nextInfo = null;
+    nextRelative = null;
+    InputChannel input = null;
+    OutputChannel output = null;
+    try {
+      ReadDataRequest readRequest = new ReadDataRequest(info.getUriRequest(), keep);
+      WriteDataRequest writeRequest = new WriteDataRequest(
+              UriRequest.parse(to + relative + info.getUriRequest().getPath().getName(),
+                      mapping, null), -1, info.getSize(), null, 0, true);
+      input = DataSystem.getInstance(readRequest, config).open(readRequest);
+      output = DataSystem.getInstance(writeRequest, config).create(writeRequest);
+      return template.get()
+              .setInput(input)
+              .setOutput(output)
+              .build();
+    } catch (Exception e) {
+      TrekUtils.closeWithLog(input, LOG);
+      if (output != null) {
+        final OutputChannel created = output;
+        TrekUtils.closeWithLog(created, LOG);
+        TrekUtils.closeWithLog(() -> created.recover(), LOG);
+      }
+      throw new UncheckedIOException(toIOException(e));
+    }
+  }
+
+  private static IOException toIOException(final Exception e) {
+    return e instanceof IOException ? (IOException) e : new IOException(e);
+  }
+
+  @Override
+  public void close() throws IOException {
+    while (!levels.isEmpty()) {
+      TrekUtils.closeWithLog(levels.pop().infos, LOG);
+    }
+  }
+
+  private static final class Level {
+
+    private final CloseableIterator<DataInfo> infos;
+    private final String relative;
+
+    Level(final CloseableIterator<DataInfo> infos, final String relative) {
+      this.infos = infos;
+      this.relative = relative;
+    }
+  }
+}
@@ -3,12 +3,22 @@ package com.spright.trek.web;
 import com.google.gson.stream.JsonWriter;
 import com.spright.trek.exception.IOExceptionWithErrorCode;
 import com.spright.trek.io.json.JsonIO;
+import com.spright.trek.query.CloseableIterator;
 import com.spright.trek.task.AccessStatus;
+import com.spright.trek.utils.TrekUtils;
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.GZIPOutputStream;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import static org.apache.hadoop.fs.FileSystem.LOG;
 
@@ -19,6 +29,38 @@ public final class MethodHandler {
 
     JsonResult internalHandle(final WebServer server, final HttpExchange he) throws Exception;
   }
+
+  @FunctionalInterface
+  public interface ElementWriter<T> {
+
+    void write(final JsonWriter writer, final T element) throws IOException;
+  }
+
+  /**
+   * The framing of the streamed elements.
+   */
+  public enum Framing {
+    /**
+     * All elements are in a json array.
+     */
+    ARRAY,
+    /**
+     * A element per line.
+     */
+    NDJSON;
+
+    public static Framing parse(final String value) {
+      if (value == null) {
+        return ARRAY;
+      }
+      for (Framing f : Framing.values()) {
+        if (f.name().equalsIgnoreCase(value)) {
+          return f;
+        }
+      }
+      return ARRAY;
+    }
+  }
   private static final HttpStatusCode DEFAULT_CODE = HttpStatusCode.INTERNAL_SERVER_ERROR;
   private final Worker worker;
 
@@ -34,13 +76,56 @@ public final class MethodHandler {
       LOG.error("Error on uri:" + he.getRequestURI(), e);
       result = handleError(server, e);
     }
+    if (result != null && result.isPending()) {
+      respondOnCompletion(server, he, result);
+      return;
+    }
+    respond(he, result);
+  }
+
+  /**
+   * Responds the status of task after the task is done. The handler thread
+   * is released without waiting for the task.
+   */
+  private static void respondOnCompletion(final WebServer server, final HttpExchange he,
+          final JsonResult pending) {
+    pending.getCompletion().whenComplete((status, error) -> {
+      try {
+        if (error != null) {
+          Throwable cause = error instanceof CompletionException && error.getCause() != null
+                  ? error.getCause() : error;
+          LOG.error("Error on uri:" + he.getRequestURI(), cause);
+          respond(he, handleError(server, cause instanceof Exception
+                  ? (Exception) cause : new IOException(cause)));
+        } else if (pending.needResponse()) {
+          respond(he, new JsonResult(status, pending.isGzip()));
+        }
+      } catch (IOException | RuntimeException e) {
+        LOG.error("Failed to respond uri:" + he.getRequestURI(), e);
+        he.close();
+      }
+    });
+  }
+
+  /**
+   * @param result The result to respond, or null if the response has been
+   * written by the data system
+   */
+  private static void respond(final HttpExchange he, final JsonResult result) throws IOException {
+    if (result == null) {
+      return;
+    }
     Headers headers = he.getResponseHeaders();
     headers.set("Content-Type", "application/json;charset=utf-8");
     headers.set("content-disposition", "filename=\""
             + (System.currentTimeMillis() + ".json") + "\"");
-    if (result.getJson().isGzip()) {
+    if (result.isGzip()) {
       headers.set("Accept-Encoding", "gzip");
     }
+    if (result.isStreaming()) {
+      stream(he, result);
+      return;
+    }
     he.sendResponseHeaders(result.getCode().get(), result.getJson().getSize());
     OutputStream output = he.getResponseBody();
     try (InputStream input = result.getJson().getRawInputStream()) {
@@ -53,14 +138,81 @@ public final class MethodHandler {
     he.close();
   }
 
+  /**
+   * Writes the elements by chunked transfer encoding. The status can't be
+   * changed after the headers are sent, so a failure truncates the response.
+   */
+  private static void stream(final HttpExchange he, final JsonResult result) throws IOException {
+    try {
+      he.sendResponseHeaders(result.getCode().get(), 0);
+      try (OutputStream output = result.isGzip()
+              ? new GZIPOutputStream(he.getResponseBody(), true)
+              : he.getResponseBody()) {
+        result.getStreamer().stream(output);
+      }
+    } catch (IOException | RuntimeException e) {
+      LOG.error("Failed to stream the response of uri:" + he.getRequestURI(), e);
+    } finally {
+      result.getStreamer().close();
+      he.close();
+    }
+  }
+
+  private static <T> void stream(final OutputStream output, final CloseableIterator<T> iter,
+          final ElementWriter<T> elementWriter, final Framing framing,
+          final int flushInterval) throws IOException {
+    Writer raw = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    JsonWriter writer = new JsonWriter(raw);
+    if (framing == Framing.ARRAY) {
+      writer.beginArray();
+    } else {
+      //the lenient writer accepts multiple top-level values
+      writer.setLenient(true);
+    }
+    int count = 0;
+    try {
+      while (iter.hasNext()) {
+        elementWriter.write(writer, iter.next());
+        if (framing == Framing.NDJSON) {
+          raw.write('\n');
+        }
+        if (++count % flushInterval == 0) {
+          writer.flush();
+        }
+      }
+    } catch (UncheckedIOException e) {
+      //the streamed listing fails after the first page
+      throw e.getCause();
+    }
+    if (framing == Framing.ARRAY) {
+      writer.endArray();
+    }
+    writer.flush();
+  }
+
   private static JsonResult handleError(final WebServer server, final Exception e) throws IOException {
     return new JsonResult(e, server.enableGzip());
   }
 
+  /**
+   * Writes the elements to the response body.
+   */
+  private interface Streamer extends AutoCloseable {
+
+    void stream(final OutputStream output) throws IOException;
+
+    @Override
+    void close();
+  }
+
   public static class JsonResult {
 
     private final HttpStatusCode code;
     private final JsonIO json;
+    private final Streamer streamer;
+    private final CompletableFuture<AccessStatus> completion;
+    private final boolean needResponse;
+    private final boolean gzip;
 
     JsonResult(final AccessStatus info, final boolean gzip) throws IOException {
       json = new JsonIO(Integer.MAX_VALUE, 1024, gzip);
@@ -68,6 +220,10 @@ public final class MethodHandler {
         AccessStatus.write(writer, info);
       }
       code = HttpStatusCode.OK;
+      streamer = null;
+      completion = null;
+      needResponse = true;
+      this.gzip = gzip;
     }
 
     JsonResult(final Exception e, final boolean gzip) throws IOException {
@@ -82,12 +238,94 @@ public final class MethodHandler {
       code = (e instanceof IOExceptionWithErrorCode)
               ? ((IOExceptionWithErrorCode) e).getHttpStatus()
               : DEFAULT_CODE;
+      streamer = null;
+      completion = null;
+      needResponse = true;
+      this.gzip = gzip;
     }
 
     JsonResult(final HttpStatusCode code,
             final JsonIO json) {
       this.code = code;
       this.json = json;
+      this.streamer = null;
+      this.completion = null;
+      this.needResponse = true;
+      this.gzip = json.isGzip();
+    }
+
+    /**
+     * Responds the status of task after the task is done.
+     *
+     * @param completion The completion of task
+     * @param needResponse False if the response is written by the data system
+     * @param gzip True if the response is compressed
+     */
+    JsonResult(final CompletableFuture<AccessStatus> completion,
+            final boolean needResponse, final boolean gzip) {
+      this.code = HttpStatusCode.OK;
+      this.json = null;
+      this.streamer = null;
+      this.completion = completion;
+      this.needResponse = needResponse;
+      this.gzip = gzip;
+    }
+
+    /**
+     * Streams the elements without knowing the response length. The iterator
+     * is closed after the response is written.
+     *
+     * @param <T> The element type
+     * @param iter The elements
+     * @param elementWriter Writes a element
+     * @param framing The framing of elements
+     * @param flushInterval The number of elements to write before flushing
+     * the response
+     * @param gzip True if the response is compressed
+     */
+    <T> JsonResult(final CloseableIterator<T> iter, final ElementWriter<T> elementWriter,
+            final Framing framing, final int flushInterval, final boolean gzip) {
+      this.code = HttpStatusCode.OK;
+      this.json = null;
+      this.completion = null;
+      this.needResponse = true;
+      this.gzip = gzip;
+      this.streamer = new Streamer() {
+        @Override
+        public void stream(final OutputStream output) throws IOException {
+          MethodHandler.stream(output, iter, elementWriter, framing,
+                  Math.max(1, flushInterval));
+        }
+
+        @Override
+        public void close() {
+          TrekUtils.closeWithLog(iter, LOG);
+        }
+      };
+    }
+
+    boolean isPending() {
+      return completion != null;
+    }
+
+    boolean needResponse() {
+      return needResponse;
+    }
+
+    CompletableFuture<AccessStatus> getCompletion() {
+      return completion;
+    }
+
+    boolean isStreaming() {
+      return streamer != null;
+    }
+
+    boolean isGzip() {
+      return gzip;
+    }
+
+    Streamer getStreamer() {
+      return streamer;
     }
 
     HttpStatusCode getCode() {
@@ -5,13 +5,17 @@ import com.spright.trek.DConstants;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 import com.spright.trek.io.AtomicCloseable;
+import com.spright.trek.io.BufferPool;
+import com.spright.trek.io.SpillFiles;
 import com.spright.trek.datasystem.request.DataInfo;
 import com.spright.trek.datasystem.DataSystem;
+import com.spright.trek.datasystem.HttpDataSystem;
 import com.spright.trek.datasystem.InputChannel;
 import com.spright.trek.datasystem.OutputChannel;
 import com.spright.trek.datasystem.Protocol;
 import com.spright.trek.datasystem.request.DataInfoQuery;
 import com.spright.trek.datasystem.request.ReadDataRequest;
+import com.spright.trek.datasystem.request.UriRequest;
 import com.spright.trek.datasystem.request.WriteDataRequest;
 import com.spright.trek.exception.UriParseIOException;
 import com.spright.trek.io.json.JsonIO;
@@ -19,8 +23,12 @@ import com.spright.trek.mapping.AccountInfo;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -31,6 +39,8 @@ import com.spright.trek.mapping.AccountInfoQuery;
 import com.spright.trek.mapping.Mapping;
 import com.spright.trek.mapping.MappingFactory;
 import com.spright.trek.query.CloseableIterator;
+import com.spright.trek.query.QueryUtils;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import com.spright.trek.task.AccessStatus;
@@ -41,6 +51,7 @@ import com.spright.trek.task.AccessTaskRequest;
 import com.spright.trek.task.AccessTaskExecutor;
 import com.spright.trek.task.AccessTaskExecutorFactory;
 import com.spright.trek.task.AccessTaskLoggerFactory;
+import com.spright.trek.task.BatchTaskRequest;
 import com.spright.trek.web.MethodHandler.JsonResult;
 
 public class WebServer extends AtomicCloseable {
@@ -58,6 +69,10 @@ public class WebServer extends AtomicCloseable {
   private final boolean enableGzip;
   private final int jsonCapacity;
   private final int operationBatch;
+  private final int streamFlushInterval;
+  private final int maxPriority;
+  private final ExecutorService transferHandlers;
+  private final ExecutorService metadataHandlers;
 
   public WebServer(final Configuration conf) throws Exception {
     int threads = conf.getInt(DConstants.RESTFUL_SERVER_CONNECTION_NUMBER,
@@ -67,6 +82,9 @@ public class WebServer extends AtomicCloseable {
             conf.getInt(DConstants.RESTFUL_SERVER_BINDING_PORT, DConstants.DEFAULT_RESTFUL_SERVER_BINDING_PORT)),
             threads);
     config = conf;
+    //the shared chunks and spill files must be configured before any buffer is created
+    BufferPool.getInstance(conf);
+    SpillFiles.getInstance(conf);
     taskLogger = AccessTaskLoggerFactory.instance(conf);
     executor = AccessTaskExecutorFactory.newInstance(conf, taskLogger);
     mapping = MappingFactory.newInstance(conf);
@@ -74,14 +92,32 @@ public class WebServer extends AtomicCloseable {
             DConstants.DEFAULT_JSON_BUFFER_LIMIT);
     operationBatch = config.getInt(DConstants.OPERATION_BATCH_LIMIT,
             DConstants.DEFAULT_OPERATION_BATCH_LIMIT);
+    streamFlushInterval = conf.getInt(DConstants.RESTFUL_STREAM_FLUSH_INTERVAL,
+            DConstants.DEFAULT_RESTFUL_STREAM_FLUSH_INTERVAL);
+    maxPriority = conf.getInt(DConstants.ACCESS_PRIORITY_MAX,
+            DConstants.DEFAULT_ACCESS_PRIORITY_MAX);
     enableGzip = conf.getBoolean(DConstants.ENABLE_GZIP_RESPONSE, DConstants.DEFAULT_ENABLE_GZIP_RESPONSE);
+    transferHandlers = Executors.newFixedThreadPool(threads);
+    metadataHandlers = Executors.newFixedThreadPool(conf.getInt(
+            DConstants.RESTFUL_SERVER_METADATA_HANDLER_NUMBER,
+            DConstants.DEFAULT_RESTFUL_SERVER_METADATA_HANDLER_NUMBER));
+    //The dispatcher thread of server only routes the exchanges, so the
+    //metadata calls never queue behind the transfers.
     server.createContext("/trek", (HttpExchange he) -> {
       URI uri = he.getRequestURI();
       LOG.info("accept uri:" + uri);
       MethodHandler handler = newMethodHandler(uri.getPath());
-      handler.handle(this, he);
+      ExecutorService handlers = uri.getPath().contains("/data/access")
+              ? transferHandlers : metadataHandlers;
+      handlers.execute(() -> {
+        try {
+          handler.handle(this, he);
+        } catch (IOException | RuntimeException e) {
+          LOG.error("Failed to handle uri:" + uri, e);
+          he.close();
+        }
+      });
     });
-    server.setExecutor(Executors.newFixedThreadPool(threads));
     server.start();
   }
 
@@ -113,6 +149,14 @@ public class WebServer extends AtomicCloseable {
     return operationBatch;
   }
 
+  public int getStreamFlushInterval() {
+    return streamFlushInterval;
+  }
+
+  public int getMaxPriority() {
+    return maxPriority;
+  }
+
   public Configuration getConfiguration() {
     return config;
   }
@@ -125,6 +169,8 @@ public class WebServer extends AtomicCloseable {
   protected void internalClose() throws IOException {
     DataSystem.closeAll();
     server.stop(0);
+    transferHandlers.shutdownNow();
+    metadataHandlers.shutdownNow();
   }
 
   private static MethodHandler newMethodHandler(final String path) {
@@ -141,96 +187,171 @@ public class WebServer extends AtomicCloseable {
       };
     } else if (path.contains("/mapping/list")) {
       worker = (WebServer server, HttpExchange he) -> {
-        AccountInfoQuery query = AccountInfoQuery.parse(parseQuery(he.getRequestURI().getQuery()));
-        JsonIO json = new JsonIO(server.getJsonCapacity(), server.enableGzip());
-        try (CloseableIterator<AccountInfo> iter = server.getMapping().list(query);
-                JsonWriter writer = json.getWriter()) {
-          while (iter.hasNext()) {
-            AccountInfo.write(writer, iter.next());
-          }
-        }
-        return new JsonResult(HttpStatusCode.OK, json);
+        Map<String, String> rawQuery = parseQuery(he.getRequestURI().getQuery());
+        AccountInfoQuery query = AccountInfoQuery.parse(rawQuery);
+        return newStreamResult(server, rawQuery,
+                server.getMapping().list(query), AccountInfo::write);
       };
     } else if (path.contains("/data/access")) {
       worker = (WebServer server, HttpExchange he) -> {
         InputChannel iChannel = null;
         OutputChannel oChannel = null;
+        List<OutputChannel> fanOutChannels = new ArrayList<>();
         boolean allDone = false;
+        boolean resume = false;
+        String claimed = null;
         try {
           boolean needReturnJSON = true;
           Map<String, String> rawQuery = parseQuery(he.getRequestURI().getQuery());
+          //The map keeps the last value of duplicate keys, but the first
+          //destination is the primary
+          List<String> tos = parseQueryValues(he.getRequestURI().getQuery(), DConstants.URI_DATA_TO);
+          if (!tos.isEmpty()) {
+            rawQuery.put(DConstants.URI_DATA_TO, tos.get(0));
+          }
           Optional<String> redirectFrom = Optional.ofNullable(rawQuery.get(DConstants.URI_DATA_REDIRECT_FROM));
           boolean async = Optional.ofNullable(rawQuery.get(DConstants.URI_DATA_ASYNC))
                   .map(v -> Boolean.valueOf(v))
                   .orElse(DConstants.DEFAULT_URI_DATA_ASYNC);
-          ReadDataRequest readRequest = ReadDataRequest.parse(rawQuery, server.getMapping());
-          LOG.info("get \"FROM\" request:" + readRequest.toString());
-          if (readRequest.getScheme() == Protocol.LOCAL) {
-            readRequest.attach(he);
-          }
-          DataSystem fromDS = DataSystem.getInstance(readRequest, server.getConfiguration());
-          iChannel = fromDS.open(readRequest);
-          System.out.println("read from " + fromDS.getScheme() + ":" + iChannel.getInfo().getSize());
-          WriteDataRequest writeRequest = WriteDataRequest.parse(rawQuery, server.getMapping(), iChannel.getInfo());
-          LOG.info("get \"TO\" request:" + writeRequest.toString());
-          if (readRequest.getScheme() == Protocol.LOCAL
-                  && writeRequest.getScheme() == Protocol.LOCAL) {
-            throw new UriParseIOException("Unsupport to transfer data from \"LOCAL\" to \"LOCAL\"");
+          resume = rawQuery.containsKey(DConstants.URI_DATA_RESUME);
+          if (!resume && QueryUtils.parseBoolean(rawQuery.get(DConstants.URI_DATA_ENABLE_WILDCARD),
+                  DConstants.DEFAULT_URI_DATA_ENABLE_WILDCARD)) {
+            AccessTask task = submitBatch(server, he, rawQuery, async);
+            allDone = true;
+            if (!async) {
+              return new JsonResult(task.getCompletion(), true, server.enableGzip());
+            }
+            return new JsonResult(task.getStatus(), server.enableGzip());
           }
-          DataSystem toDS = DataSystem.getInstance(writeRequest, server.getConfiguration());
-          if (writeRequest.getScheme() == Protocol.LOCAL) {
-            needReturnJSON = false;
-            async = false;
-            writeRequest.attach(he);
+          if (resume) {
+            AccessStatus previous = findResumableTask(server,
+                    rawQuery.get(DConstants.URI_DATA_RESUME));
+            claimed = previous.getId();
+            WriteDataRequest writeRequest = new WriteDataRequest(
+                    UriRequest.parse(previous.getTo(), server.getMapping(), null),
+                    -1, previous.getExpectedSize(),
+                    previous.getTmpPath().orElse(null), previous.getCheckpoint());
+            LOG.info("resume \"TO\" request:" + writeRequest.toString()
+                    + " from " + previous.getCheckpoint());
+            oChannel = DataSystem.getInstance(writeRequest, server.getConfiguration())
+                    .create(writeRequest);
+            //The destination decides the offset since it may keep more data
+            ReadDataRequest readRequest = new ReadDataRequest(
+                    UriRequest.parse(previous.getFrom(), server.getMapping(), null),
+                    DConstants.DEFAULT_URI_DATA_KEEP, oChannel.getOffset());
+            LOG.info("resume \"FROM\" request:" + readRequest.toString()
+                    + " from " + readRequest.getOffset());
+            iChannel = DataSystem.getInstance(readRequest, server.getConfiguration())
+                    .open(readRequest);
+          } else {
+            ReadDataRequest readRequest = ReadDataRequest.parse(rawQuery, server.getMapping());
+            LOG.info("get \"FROM\" request:" + readRequest.toString());
+            if (readRequest.getScheme() == Protocol.LOCAL) {
+              readRequest.attach(he);
+            }
+            DataSystem fromDS = DataSystem.getInstance(readRequest, server.getConfiguration());
+            iChannel = fromDS.open(readRequest);
+            System.out.println("read from " + fromDS.getScheme() + ":" + iChannel.getInfo().getSize());
+            WriteDataRequest writeRequest = WriteDataRequest.parse(rawQuery, server.getMapping(), iChannel.getInfo());
+            LOG.info("get \"TO\" request:" + writeRequest.toString());
+            if (readRequest.getScheme() == Protocol.LOCAL
+                    && writeRequest.getScheme() == Protocol.LOCAL) {
+              throw new UriParseIOException("Unsupport to transfer data from \"LOCAL\" to \"LOCAL\"");
+            }
+            DataSystem toDS = DataSystem.getInstance(writeRequest, server.getConfiguration());
+            if (writeRequest.getScheme() == Protocol.LOCAL) {
+              needReturnJSON = false;
+              async = false;
+              writeRequest.attach(he);
+            }
+            oChannel = toDS.create(writeRequest);
+            //The other destinations share the source
+            Set<String> others = new LinkedHashSet<>(tos);
+            others.remove(rawQuery.get(DConstants.URI_DATA_TO));
+            for (String to : others) {
+              Map<String, String> fanOutQuery = new TreeMap<>(rawQuery);
+              fanOutQuery.put(DConstants.URI_DATA_TO, to);
+              WriteDataRequest fanOutRequest = WriteDataRequest.parse(fanOutQuery,
+                      server.getMapping(), iChannel.getInfo());
+              LOG.info("get \"TO\" request:" + fanOutRequest.toString());
+              if (fanOutRequest.getScheme() == Protocol.LOCAL
+                      || writeRequest.getScheme() == Protocol.LOCAL) {
+                throw new UriParseIOException("Unsupport to write data to \"LOCAL\" with multiple destinations");
+              }
+              fanOutChannels.add(DataSystem.getInstance(fanOutRequest, server.getConfiguration())
+                      .create(fanOutRequest));
+            }
           }
-          oChannel = toDS.create(writeRequest);
-          AccessTaskRequest request = AccessTaskRequest.newBuilder()
+          AccessTaskRequest.Builder builder = AccessTaskRequest.newBuilder()
                   .setInput(iChannel)
                   .setOutput(oChannel)
+                  .setFanOutMode(AccessTaskRequest.FanOutMode.find(
+                          rawQuery.get(DConstants.URI_DATA_FAN_OUT_MODE)))
                   .setServerName(TrekUtils.getHostname())
                   .setClientName(he.getRemoteAddress().getAddress().getHostAddress())
                   .setRedirectFrom(redirectFrom.orElse(TrekUtils.getHostname()))
-                  .build();
+                  //The sync request is interactive, so it is run first by default
+                  .setPriority(QueryUtils.getPriority(rawQuery, async, server.getMaxPriority()))
+                  .setBandwidth(QueryUtils.parsePositiveValue(
+                          rawQuery.get(DConstants.URI_DATA_BANDWIDTH), -1L));
+          fanOutChannels.forEach(builder::addOutput);
+          AccessTaskRequest request = builder.build();
           AccessTask task = server.getTaskExecutor().submit(request);
-          if (!async) {
-            task.waitCompletion();
-          }
-          AccessStatus status = task.getStatus();
           allDone = true;
-          if (needReturnJSON) {
-            return new JsonResult(status, server.enableGzip());
+          if (!async) {
+            return new JsonResult(task.getCompletion(), needReturnJSON, server.enableGzip());
+          } else if (needReturnJSON) {
+            return new JsonResult(task.getStatus(), server.enableGzip());
           } else {
             return null;
           }
         } finally {
           if (!allDone) {
             TrekUtils.closeWithLog(iChannel, LOG);
-            TrekUtils.closeWithLog(oChannel, LOG);
+            if (resume && oChannel != null) {
+              //keep the tmp data for next resume
+              final OutputChannel output = oChannel;
+              TrekUtils.closeWithLog(() -> output.suspend(), LOG);
+            } else {
+              TrekUtils.closeWithLog(oChannel, LOG);
+            }
+            if (claimed != null) {
+              final String id = claimed;
+              TrekUtils.closeWithLog(() -> server.getLogger().unclaim(id), LOG);
+            }
+            fanOutChannels.forEach(v -> TrekUtils.closeWithLog(v, LOG));
           }
         }
       };
     } else if (path.contains("/data/list")) {
       worker = (WebServer server, HttpExchange he) -> {
-        DataInfoQuery dataInfoQuery = DataInfoQuery.parse(parseQuery(he.getRequestURI().getQuery()), server.getMapping());
+        Map<String, String> rawQuery = parseQuery(he.getRequestURI().getQuery());
+        DataInfoQuery dataInfoQuery = DataInfoQuery.parse(rawQuery, server.getMapping());
         DataSystem fromDS = DataSystem.getInstance(dataInfoQuery, server.getConfiguration());
+        return newStreamResult(server, rawQuery,
+                fromDS.list(dataInfoQuery), DataInfo::write);
+      };
+    } else if (path.contains("/task/list")) {
+      worker = (WebServer server, HttpExchange he) -> {
+        Map<String, String> rawQuery = parseQuery(he.getRequestURI().getQuery());
+        AccessStatusQuery query = AccessStatusQuery.parse(rawQuery);
+        return newStreamResult(server, rawQuery,
+                server.getLogger().list(query), AccessStatus::write);
+      };
+    } else if (path.contains("/buffer/status")) {
+      worker = (WebServer server, HttpExchange he) -> {
         JsonIO json = new JsonIO(server.getJsonCapacity(), server.enableGzip());
-        try (CloseableIterator<DataInfo> iter = fromDS.list(dataInfoQuery);
-                JsonWriter writer = json.getWriter()) {
-          while (iter.hasNext()) {
-            DataInfo.write(writer, iter.next());
-          }
+        try (JsonWriter writer = json.getWriter()) {
+          BufferPool.write(writer, BufferPool.getInstance(server.getConfiguration()));
         }
         return new JsonResult(HttpStatusCode.OK, json);
       };
-    } else if (path.contains("/task/list")) {
+    } else if (path.contains("/http/status")) {
       worker = (WebServer server, HttpExchange he) -> {
         JsonIO json = new JsonIO(server.getJsonCapacity(), server.enableGzip());
-        AccessStatusQuery query = AccessStatusQuery.parse(parseQuery(he.getRequestURI().getQuery()));
-        try (CloseableIterator<AccessStatus> iter = server.getLogger().list(query);
-                JsonWriter writer = json.getWriter()) {
-          while (iter.hasNext()) {
-            AccessStatus.write(writer, iter.next());
-          }
+        try (JsonWriter writer = json.getWriter()) {
+          HttpDataSystem.write(writer, (HttpDataSystem) DataSystem.getInstance(
+                  Protocol.HTTP, server.getConfiguration()));
         }
         return new JsonResult(HttpStatusCode.OK, json);
       };
@@ -242,6 +363,118 @@ public class WebServer extends AtomicCloseable {
     return new MethodHandler(worker);
   }
 
+  /**
+   * Streams the listed elements. The framing is decided by the
+   * {@link DConstants#URI_LIST_FORMAT} query.
+   */
+  private static <T> JsonResult newStreamResult(final WebServer server,
+          final Map<String, String> rawQuery, final CloseableIterator<T> iter,
+          final MethodHandler.ElementWriter<T> elementWriter) {
+    return new JsonResult(iter, elementWriter,
+            MethodHandler.Framing.parse(rawQuery.get(DConstants.URI_LIST_FORMAT)),
+            server.getStreamFlushInterval(), server.enableGzip());
+  }
+
+  /**
+   * Copies all data matched by the source to the destination directory by a
+   * batch task. The subtasks are run with bounded parallelism.
+   */
+  private static AccessTask submitBatch(final WebServer server, final HttpExchange he,
+          final Map<String, String> rawQuery, final boolean async) throws Exception {
+    //the directory is equal to copy all data in it
+    UriRequest from = UriRequest.parseFrom(rawQuery, server.getMapping(), "*");
+    String to = Optional.ofNullable(rawQuery.get(DConstants.URI_DATA_TO))
+            .orElseThrow(() -> new UriParseIOException("No found of \""
+                    + DConstants.URI_DATA_TO + "\" query"));
+    if (from.getScheme() == Protocol.LOCAL
+            || to.toUpperCase().startsWith(Protocol.LOCAL.name())) {
+      throw new UriParseIOException("Unsupport to transfer \"LOCAL\" data by batch");
+    }
+    final String serverName = TrekUtils.getHostname();
+    final String clientName = he.getRemoteAddress().getAddress().getHostAddress();
+    final String redirectFrom = rawQuery.getOrDefault(DConstants.URI_DATA_REDIRECT_FROM, serverName);
+    final int priority = QueryUtils.getPriority(rawQuery, async, server.getMaxPriority());
+    final long bandwidth = QueryUtils.parsePositiveValue(
+            rawQuery.get(DConstants.URI_DATA_BANDWIDTH), -1L);
+    LOG.info("get batch request from " + from + " to " + to);
+    BatchRequestIterator requests = new BatchRequestIterator(server.getConfiguration(),
+            server.getMapping(), from, to,
+            QueryUtils.parseBoolean(rawQuery.get(DConstants.URI_DATA_KEEP),
+                    DConstants.DEFAULT_URI_DATA_KEEP),
+            QueryUtils.parseBoolean(rawQuery.get(DConstants.URI_DATA_RECURSIVE),
+                    DConstants.DEFAULT_URI_DATA_RECURSIVE),
+            () -> AccessTaskRequest.newBuilder()
+            .setServerName(serverName)
+            .setClientName(clientName)
+            .setRedirectFrom(redirectFrom)
+            .setPriority(priority)
+            .setBandwidth(bandwidth));
+    return server.getTaskExecutor().submit(BatchTaskRequest.newBuilder()
+            .setRequests(requests)
+            .setFrom(from.toString())
+            .setTo(to)
+            .setServerName(serverName)
+            .setClientName(clientName)
+            .setRedirectFrom(redirectFrom)
+            .setParallelism(QueryUtils.parsePositiveValue(
+                    rawQuery.get(DConstants.URI_DATA_PARALLELISM), -1))
+            .build());
+  }
+
+  /**
+   * Finds and claims the task which is able to be resumed. The task in running
+   * state is resumable only if it is a leftover of this server. The claim is
+   * kept after the resumption is submitted, so a checkpoint is resumed once.
+   */
+  private static AccessStatus findResumableTask(final WebServer server,
+          final String id) throws IOException {
+    AccessStatus previous = server.getLogger().find(id)
+            .orElseThrow(() -> new UriParseIOException("No found of task:" + id));
+    if (server.getTaskExecutor().find(id).isPresent()) {
+      throw new UriParseIOException("The task:" + id + " is running");
+    }
+    switch (previous.getState()) {
+      case FAILED:
+        break;
+      case RUNNING:
+      case PENDING:
+        if (previous.getServerName().equals(TrekUtils.getHostname())) {
+          break;
+        }
+        throw new UriParseIOException("The task:" + id
+                + " is running on " + previous.getServerName());
+      default:
+        throw new UriParseIOException("The task:" + id
+                + " is " + previous.getState().getDescription());
+    }
+    if (previous.getFrom().startsWith(Protocol.LOCAL.name().toLowerCase())
+            || previous.getTo().startsWith(Protocol.LOCAL.name().toLowerCase())) {
+      throw new UriParseIOException("Unsupport to resume the \"LOCAL\" data");
+    }
+    if (!server.getLogger().claim(id)) {
+      throw new UriParseIOException("The task:" + id + " is resumed already");
+    }
+    return previous;
+  }
+
+  /**
+   * @return All values of the key. The order is the same as the query
+   */
+  private static List<String> parseQueryValues(final String rawQuery,
+          final String key) throws UriParseIOException {
+    List<String> values = new ArrayList<>();
+    if (rawQuery == null || rawQuery.length() == 0) {
+      return values;
+    }
+    for (String q1 : rawQuery.split("&")) {
+      int index = q1.indexOf("=");
+      if (index > 0 && q1.substring(0, index).equalsIgnoreCase(key)) {
+        values.add(TrekUtils.decode(q1.substring(index + 1)));
+      }
+    }
+    return values;
+  }
+
   private static Map<String, String> parseQuery(final String rawQuery) throws UriParseIOException {
     Map<String, String> query = new TreeMap<>();
     if (rawQuery == null || rawQuery.length() == 0) {
@@ -0,0 +1,125 @@
+package com.spright.trek.datasystem;
+
+import com.spright.trek.datasystem.request.DataInfo;
+import com.spright.trek.datasystem.request.DataInfoQuery;
+import com.spright.trek.datasystem.request.DataPath;
+import com.spright.trek.datasystem.request.DataType;
+import com.spright.trek.datasystem.request.UriRequest;
+import com.spright.trek.mapping.AccountInfo;
+import com.spright.trek.query.CloseableIterator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class FileDataSystemTest {
+
+  private Path root;
+
+  public FileDataSystemTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory(getClass().getSimpleName());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    File[] files = root.toFile().listFiles();
+    if (files != null) {
+      for (File f : files) {
+        f.delete();
+      }
+    }
+    root.toFile().delete();
+  }
+
+  /**
+   * A directory stream which deletes the entry named "gone" after it is
+   * listed.
+   */
+  private static DirectoryStream<Path> newStream(final Path dir,
+          final AtomicBoolean closed) throws IOException {
+    final DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+    return new DirectoryStream<Path>() {
+      @Override
+      public Iterator<Path> iterator() {
+        final Iterator<Path> iter = stream.iterator();
+        return new Iterator<Path>() {
+          @Override
+          public boolean hasNext() {
+            return iter.hasNext();
+          }
+
+          @Override
+          public Path next() {
+            Path p = iter.next();
+            if (p.getFileName().toString().equals("gone")) {
+              p.toFile().delete();
+            }
+            return p;
+          }
+        };
+      }
+
+      @Override
+      public void close() throws IOException {
+        closed.set(true);
+        stream.close();
+      }
+    };
+  }
+
+  /**
+   * Test of list method, of class FileDataSystem.
+   */
+  @Test
+  public void testList() throws Exception {
+    System.out.println("list");
+    Files.write(root.resolve("a"), new byte[5]);
+    Files.write(root.resolve("gone"), new byte[7]);
+    Files.createDirectory(root.resolve("b"));
+    DataInfoQuery query = DataInfoQuery.newBuilder()
+            .setUriRequest(new UriRequest(Protocol.FILE, AccountInfo.newBuilder().build(),
+                    new DataPath(root.toString(), "*")))
+            .build();
+    AtomicBoolean closed = new AtomicBoolean(false);
+    Map<String, DataInfo> infos = new TreeMap<>();
+    try (CloseableIterator<DataInfo> iter = FileDataSystem.list(query, newStream(root, closed))) {
+      while (iter.hasNext()) {
+        DataInfo info = iter.next();
+        infos.put(info.getUriRequest().getPath().getName(), info);
+      }
+      assertFalse(closed.get());
+    }
+    assertTrue(closed.get());
+    assertEquals(2, infos.size());
+    assertEquals(DataType.FILE, infos.get("a").getType());
+    assertEquals(5, infos.get("a").getSize());
+    assertEquals(DataType.DIRECTORY, infos.get("b").getType());
+    assertEquals(0, infos.get("b").getSize());
+    assertFalse(infos.containsKey("gone"));
+  }
+}
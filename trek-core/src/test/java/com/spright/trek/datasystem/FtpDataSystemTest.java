@@ -0,0 +1,60 @@
+package com.spright.trek.datasystem;
+
+import com.spright.trek.mapping.AccountInfo;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class FtpDataSystemTest {
+
+  public FtpDataSystemTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() {
+  }
+
+  @After
+  public void tearDown() {
+  }
+
+  private static AccountInfo createAccount(final String domain, final String user,
+          final String password) {
+    return AccountInfo.newBuilder()
+            .setDomain(domain)
+            .setUser(user)
+            .setPassword(password)
+            .build();
+  }
+
+  /**
+   * Test of getPoolKey method, of class FtpDataSystem.
+   */
+  @Test
+  public void testGetPoolKey() throws Exception {
+    System.out.println("getPoolKey");
+    final String server = "127.0.0.1:21";
+    String key = FtpDataSystem.getPoolKey(server, createAccount("d", "user", "pwd"));
+    assertEquals(key, FtpDataSystem.getPoolKey(server, createAccount("d", "user", "pwd")));
+    assertFalse(key.contains("pwd"));
+    assertFalse(key.equals(FtpDataSystem.getPoolKey(server, createAccount("d", "user", "other"))));
+    assertFalse(key.equals(FtpDataSystem.getPoolKey(server, createAccount("e", "user", "pwd"))));
+    assertFalse(key.equals(FtpDataSystem.getPoolKey("127.0.0.1:2121",
+            createAccount("d", "user", "pwd"))));
+    //the boundary of values is kept
+    assertFalse(FtpDataSystem.getPoolKey(server, createAccount("d", "ab", "c"))
+            .equals(FtpDataSystem.getPoolKey(server, createAccount("d", "a", "bc"))));
+  }
+}
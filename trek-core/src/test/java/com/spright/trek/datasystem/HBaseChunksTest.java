@@ -0,0 +1,221 @@
+package com.spright.trek.datasystem;
+
+import com.spright.trek.DConstants;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class HBaseChunksTest {
+
+  private static final TableName TABLE_NAME = TableName.valueOf("chunk");
+  private static final byte[] ROW = Bytes.toBytes("data");
+  private static ExecutorService executor;
+  /**
+   * The cells of row. The key is qualifier.
+   */
+  private final NavigableMap<byte[], Cell> cells = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+  private final Map<String, Integer> calls = new TreeMap<>();
+
+  public HBaseChunksTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    executor.shutdownNow();
+  }
+
+  @Before
+  public void setUp() {
+  }
+
+  @After
+  public void tearDown() {
+  }
+
+  private synchronized void count(final String method) {
+    calls.merge(method, 1, Integer::sum);
+  }
+
+  /**
+   * A table which keeps the latest cells of a single row in memory.
+   */
+  private Table newTable() {
+    return (Table) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{Table.class}, (proxy, method, args) -> {
+              count(method.getName());
+              switch (method.getName()) {
+                case "put":
+                  for (Cell cell : ((Put) args[0]).getFamilyCellMap()
+                          .get(DConstants.HDS_TABLE_FAMILY)) {
+                    //copy the value since the stream reuses the buffer
+                    cells.put(CellUtil.cloneQualifier(cell), CellUtil.createCell(ROW,
+                            CellUtil.cloneFamily(cell), CellUtil.cloneQualifier(cell),
+                            cell.getTimestamp(), cell.getTypeByte(), CellUtil.cloneValue(cell)));
+                  }
+                  return null;
+                case "delete":
+                  for (Cell cell : ((Delete) args[0]).getFamilyCellMap()
+                          .get(DConstants.HDS_TABLE_FAMILY)) {
+                    cells.remove(CellUtil.cloneQualifier(cell));
+                  }
+                  return null;
+                case "get":
+                  Get get = (Get) args[0];
+                  byte[] qualifier = get.getFamilyMap().get(DConstants.HDS_TABLE_FAMILY).first();
+                  Cell cell = cells.get(qualifier);
+                  if (cell == null || cell.getTimestamp() != get.getTimeRange().getMin()) {
+                    return Result.create(new Cell[0]);
+                  }
+                  return Result.create(new Cell[]{cell});
+                case "close":
+                  return null;
+                default:
+                  throw new UnsupportedOperationException(method.getName());
+              }
+            });
+  }
+
+  private Connection newConnection() {
+    return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+              if (method.getName().equals("getTable")) {
+                return newTable();
+              }
+              throw new UnsupportedOperationException(method.getName());
+            });
+  }
+
+  private static byte[] read(final InputStream input) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buf = new byte[7];
+    int rval;
+    while ((rval = input.read(buf)) != -1) {
+      output.write(buf, 0, rval);
+    }
+    return output.toByteArray();
+  }
+
+  /**
+   * Test of ChunkOutputStream and ChunkInputStream, of class HBaseChunks.
+   */
+  @Test
+  public void testChunkStream() throws Exception {
+    System.out.println("chunkStream");
+    final int chunkSize = 10;
+    final long ts = 123;
+    byte[] data = new byte[95];
+    for (int i = 0; i != data.length; ++i) {
+      data[i] = (byte) i;
+    }
+    final long id = HBaseChunks.newId();
+    HBaseChunks.ChunkOutputStream output = new HBaseChunks.ChunkOutputStream(
+            newTable(), ROW, ts, id, chunkSize);
+    output.write(data, 0, 33);
+    output.write(data[33]);
+    output.write(data, 34, data.length - 34);
+    //the filled chunks are put before close
+    assertEquals(9, output.getChunkCount());
+    output.close();
+    assertEquals(10, output.getChunkCount());
+    assertEquals(data.length, output.getSize());
+    assertEquals(1, (int) calls.get("close"));
+    try (InputStream input = new HBaseChunks.ChunkInputStream(newConnection(),
+            TABLE_NAME, ROW, ts, id, output.getChunkCount(), chunkSize, 0, 2, executor)) {
+      assertEquals(Bytes.toStringBinary(data), Bytes.toStringBinary(read(input)));
+    }
+    try (InputStream input = new HBaseChunks.ChunkInputStream(newConnection(),
+            TABLE_NAME, ROW, ts, id, output.getChunkCount(), chunkSize, 47, 0, executor)) {
+      assertEquals(47, input.read());
+      assertEquals(data.length - 48, read(input).length);
+    }
+    //the chunks of other version are rejected
+    try (InputStream input = new HBaseChunks.ChunkInputStream(newConnection(),
+            TABLE_NAME, ROW, ts + 1, id, output.getChunkCount(), chunkSize, 0, 2, executor)) {
+      input.read();
+      fail("The chunk of other version should be rejected");
+    } catch (IOException e) {
+    }
+  }
+
+  /**
+   * Test of overwriting the committed chunks and recovering the failed upload,
+   * of class HBaseChunks.
+   */
+  @Test
+  public void testOverwriteAndRecover() throws Exception {
+    System.out.println("overwriteAndRecover");
+    final int chunkSize = 10;
+    final long ts = 123;
+    byte[] committed = new byte[35];
+    for (int i = 0; i != committed.length; ++i) {
+      committed[i] = (byte) i;
+    }
+    final long committedId = HBaseChunks.newId();
+    try (HBaseChunks.ChunkOutputStream output = new HBaseChunks.ChunkOutputStream(
+            newTable(), ROW, ts, committedId, chunkSize)) {
+      output.write(committed, 0, committed.length);
+    }
+    //the overwrite with same time is failed after writing some chunks
+    final long failedId = HBaseChunks.newId();
+    HBaseChunks.ChunkOutputStream failed = new HBaseChunks.ChunkOutputStream(
+            newTable(), ROW, ts, failedId, chunkSize);
+    failed.write(new byte[chunkSize * 2 + 1]);
+    assertEquals(2, failed.getChunkCount());
+    Table table = newTable();
+    table.delete(HBaseChunks.newDelete(ROW, failed.getId(), failed.getChunkCount()));
+    assertEquals(4, cells.size());
+    try (InputStream input = new HBaseChunks.ChunkInputStream(newConnection(),
+            TABLE_NAME, ROW, ts, committedId, 4, chunkSize, 0, 2, executor)) {
+      assertEquals(Bytes.toStringBinary(committed), Bytes.toStringBinary(read(input)));
+    }
+    assertNull(HBaseChunks.newDelete(ROW, failedId, 0));
+  }
+
+  /**
+   * Test of createCell method, of class HBaseChunks.
+   */
+  @Test
+  public void testCreateCell() {
+    System.out.println("createCell");
+    byte[] value = Bytes.toBytes("0123456789");
+    ByteBuffer[] values = new ByteBuffer[]{
+      ByteBuffer.wrap(value, 0, 4), ByteBuffer.allocate(0), ByteBuffer.wrap(value, 4, 6)};
+    Cell cell = HBaseChunks.createCell(ROW, DConstants.HDS_DATA_CONTENT_QUALIFIER, 5, values);
+    assertEquals(HBaseChunks.createCell(ROW, DConstants.HDS_DATA_CONTENT_QUALIFIER,
+            5, value, 0, value.length), cell);
+    assertEquals(Bytes.toString(value), Bytes.toString(CellUtil.cloneValue(cell)));
+    //the views aren't consumed
+    assertEquals(4, values[0].remaining());
+  }
+}
@@ -0,0 +1,109 @@
+package com.spright.trek.datasystem;
+
+import com.spright.trek.DConstants;
+import com.spright.trek.datasystem.request.DataType;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class HBaseDataSystemTest {
+
+  private static final TableName TABLE_NAME = TableName.valueOf("trek", "data");
+  private static final byte[] ROW = Bytes.toBytes("row");
+  private File root;
+
+  public HBaseDataSystemTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    root = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = root.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        f.delete();
+      }
+    }
+    root.delete();
+  }
+
+  private static Result createResult(final long size, final long ts, final String link) {
+    List<Cell> cells = new ArrayList<>();
+    cells.add(new KeyValue(ROW, DConstants.HDS_TABLE_FAMILY,
+            DConstants.HDS_DATA_SIZE_QUALIFIER, Bytes.toBytes(size)));
+    cells.add(new KeyValue(ROW, DConstants.HDS_TABLE_FAMILY,
+            DConstants.HDS_DATA_UPLOAD_TIME_QUALIFIER, Bytes.toBytes(ts)));
+    if (link != null) {
+      cells.add(new KeyValue(ROW, DConstants.HDS_TABLE_FAMILY,
+              DConstants.HDS_DATA_LINK_QUALIFIER, Bytes.toBytes(link)));
+    }
+    Collections.sort(cells, KeyValue.COMPARATOR);
+    return Result.create(cells);
+  }
+
+  /**
+   * Test of Record#valueOf without the owners, of class HBaseDataSystem.
+   */
+  @Test
+  public void testRecordWithoutOwner() throws Exception {
+    System.out.println("recordWithoutOwner");
+    HBaseDataSystem ds = Mockito.mock(HBaseDataSystem.class);
+    HBaseDataSystem.Record record = HBaseDataSystem.Record.valueOf(ds, TABLE_NAME,
+            createResult(10, 123, null), null);
+    assertEquals("row", record.getUriRequest().getPath().getName());
+    assertEquals(DataType.FILE, record.getType());
+    assertEquals(10, record.getSize());
+    assertEquals(123, record.getUploadTime());
+    assertFalse(record.isChunked());
+    assertTrue(record.getDataOwners().isEmpty());
+  }
+
+  /**
+   * Test of Record#valueOf with the linked file, of class HBaseDataSystem.
+   */
+  @Test
+  public void testRecordWithLink() throws Exception {
+    System.out.println("recordWithLink");
+    File file = new File(root, "link");
+    Files.write(file.toPath(), new byte[10]);
+    Configuration conf = new Configuration(false);
+    LocalityResolver resolver = new LocalityResolver(conf, FileSystem.getLocal(conf));
+    HBaseDataSystem ds = Mockito.mock(HBaseDataSystem.class);
+    HBaseDataSystem.Record record = HBaseDataSystem.Record.valueOf(ds, TABLE_NAME,
+            createResult(10, 123, new Path(file.toURI()).toString()), resolver.newSession());
+    assertEquals(10, record.getSize());
+    //the owners are resolved lazily from the blocks of linked file
+    assertEquals(1, record.getDataOwners().size());
+  }
+}
@@ -0,0 +1,208 @@
+package com.spright.trek.datasystem;
+
+import com.spright.trek.DConstants;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class HBaseIngesterTest {
+
+  private static final TableName TABLE_NAME = TableName.valueOf("ingest");
+  private final List<Mutation> mutated = Collections.synchronizedList(new ArrayList<>());
+  private final List<Mutation> flushed = Collections.synchronizedList(new ArrayList<>());
+  private volatile int flushCount = 0;
+
+  public HBaseIngesterTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() {
+  }
+
+  @After
+  public void tearDown() {
+  }
+
+  /**
+   * The mutator fails the puts of row "bad".
+   */
+  private BufferedMutator newMutator() {
+    return (BufferedMutator) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{BufferedMutator.class}, (proxy, method, args) -> {
+              switch (method.getName()) {
+                case "mutate":
+                  mutated.addAll((List<Mutation>) args[0]);
+                  return null;
+                case "flush":
+                  ++flushCount;
+                  List<Throwable> causes = new ArrayList<>();
+                  List<Row> rows = new ArrayList<>();
+                  List<String> hosts = new ArrayList<>();
+                  synchronized (mutated) {
+                    for (Mutation m : mutated) {
+                      if (Bytes.toString(m.getRow()).equals("bad")) {
+                        causes.add(new IOException("bad row"));
+                        rows.add(m);
+                        hosts.add("host");
+                      } else {
+                        flushed.add(m);
+                      }
+                    }
+                    mutated.clear();
+                  }
+                  if (!causes.isEmpty()) {
+                    throw new RetriesExhaustedWithDetailsException(causes, rows, hosts);
+                  }
+                  return null;
+                case "close":
+                  return null;
+                default:
+                  throw new UnsupportedOperationException(method.getName());
+              }
+            });
+  }
+
+  private Connection newConnection() {
+    Table table = (Table) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{Table.class}, (proxy, method, args) -> {
+              switch (method.getName()) {
+                case "get":
+                  Result[] results = new Result[((List<?>) args[0]).size()];
+                  Arrays.fill(results, Result.EMPTY_RESULT);
+                  return results;
+                case "close":
+                  return null;
+                default:
+                  throw new UnsupportedOperationException(method.getName());
+              }
+            });
+    return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+              switch (method.getName()) {
+                case "getTable":
+                  return table;
+                case "getBufferedMutator":
+                  return newMutator();
+                default:
+                  throw new UnsupportedOperationException(method.getName());
+              }
+            });
+  }
+
+  private static Put newPut(final String row) {
+    return new Put(Bytes.toBytes(row)).addColumn(DConstants.HDS_TABLE_FAMILY,
+            DConstants.HDS_DATA_CONTENT_QUALIFIER, Bytes.toBytes(row));
+  }
+
+  /**
+   * Test of write method, of class HBaseIngester.
+   */
+  @Test
+  public void testWrite() throws Exception {
+    System.out.println("write");
+    Configuration conf = new Configuration(false);
+    conf.setLong(DConstants.HDS_INGEST_FLUSH_INTERVAL, 50);
+    ExecutorService executor = Executors.newFixedThreadPool(10);
+    try (HBaseIngester ingester = new HBaseIngester(conf, newConnection(), null)) {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i != 10; ++i) {
+        final String row = "row" + i;
+        futures.add(executor.submit(() -> {
+          ingester.write(TABLE_NAME, newPut(row));
+          return null;
+        }));
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+      assertEquals(10, flushed.size());
+      //the concurrent puts are flushed together
+      assertEquals(true, flushCount < 10);
+      try {
+        ingester.write(TABLE_NAME, newPut("bad"));
+        fail("The failed put should be reported");
+      } catch (IOException e) {
+        assertEquals("bad row", e.getMessage());
+      }
+      ingester.write(TABLE_NAME, newPut("good"));
+      assertEquals(11, flushed.size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Test of flushing the puts once all registered writers are waiting, of
+   * class HBaseIngester.
+   */
+  @Test
+  public void testFlushWhenAllWaiting() throws Exception {
+    System.out.println("flushWhenAllWaiting");
+    Configuration conf = new Configuration(false);
+    //the timer never fires during the test
+    conf.setLong(DConstants.HDS_INGEST_FLUSH_INTERVAL, 60 * 1000);
+    final int writers = 4;
+    final int puts = 5;
+    ExecutorService executor = Executors.newFixedThreadPool(writers);
+    try (HBaseIngester ingester = new HBaseIngester(conf, newConnection(), null)) {
+      List<Future<?>> futures = new ArrayList<>();
+      final long start = System.currentTimeMillis();
+      for (int i = 0; i != writers; ++i) {
+        final String prefix = "row" + i + "-";
+        ingester.register();
+        futures.add(executor.submit(() -> {
+          try {
+            for (int j = 0; j != puts; ++j) {
+              ingester.write(TABLE_NAME, newPut(prefix + j));
+            }
+          } finally {
+            ingester.unregister();
+          }
+          return null;
+        }));
+      }
+      for (Future<?> f : futures) {
+        f.get(10, TimeUnit.SECONDS);
+      }
+      assertEquals(writers * puts, flushed.size());
+      //each put doesn't wait for the flush interval
+      assertTrue(System.currentTimeMillis() - start < 10 * 1000);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
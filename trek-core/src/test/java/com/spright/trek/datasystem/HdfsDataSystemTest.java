@@ -0,0 +1,103 @@
+package com.spright.trek.datasystem;
+
+import com.spright.trek.DConstants;
+import com.spright.trek.datasystem.request.DataInfo;
+import com.spright.trek.datasystem.request.DataInfoQuery;
+import com.spright.trek.datasystem.request.DataPath;
+import com.spright.trek.datasystem.request.DataType;
+import com.spright.trek.datasystem.request.UriRequest;
+import com.spright.trek.mapping.AccountInfo;
+import com.spright.trek.query.CloseableIterator;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class HdfsDataSystemTest {
+
+  private File root;
+
+  public HdfsDataSystemTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    root = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+    Files.write(new File(root, "a").toPath(), new byte[5]);
+    assertTrue(new File(root, "b").mkdir());
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = root.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        f.delete();
+      }
+    }
+    root.delete();
+  }
+
+  private Map<String, DataInfo> list(final boolean needOwner) throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setBoolean(DConstants.ENABLE_SINGLE_MODE, true);
+    HdfsDataSystem ds = new HdfsDataSystem(conf);
+    DataInfoQuery query = DataInfoQuery.newBuilder()
+            .setUriRequest(new UriRequest(Protocol.HDFS, AccountInfo.newBuilder().build(),
+                    new DataPath(root.getAbsolutePath(), "*")))
+            .setNeedOwner(needOwner)
+            .build();
+    Map<String, DataInfo> infos = new TreeMap<>();
+    try (CloseableIterator<DataInfo> iter = ds.internalList(query)) {
+      while (iter.hasNext()) {
+        DataInfo info = iter.next();
+        infos.put(info.getUriRequest().getPath().getName(), info);
+      }
+    }
+    assertEquals(2, infos.size());
+    assertEquals(DataType.FILE, infos.get("a").getType());
+    assertEquals(5, infos.get("a").getSize());
+    assertEquals(DataType.DIRECTORY, infos.get("b").getType());
+    assertEquals(0, infos.get("b").getSize());
+    return infos;
+  }
+
+  /**
+   * Test of internalList method with owners, of class HdfsDataSystem.
+   */
+  @Test
+  public void testListWithOwner() throws Exception {
+    System.out.println("listWithOwner");
+    Map<String, DataInfo> infos = list(true);
+    assertEquals(1, infos.get("a").getDataOwners().size());
+    //the directory has no block
+    assertTrue(infos.get("b").getDataOwners().isEmpty());
+  }
+
+  /**
+   * Test of internalList method without owners, of class HdfsDataSystem.
+   */
+  @Test
+  public void testListWithoutOwner() throws Exception {
+    System.out.println("listWithoutOwner");
+    Map<String, DataInfo> infos = list(false);
+    assertTrue(infos.get("a").getDataOwners().isEmpty());
+    assertTrue(infos.get("b").getDataOwners().isEmpty());
+  }
+}
@@ -0,0 +1,63 @@
+package com.spright.trek.datasystem;
+
+import com.spright.trek.DConstants;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class HdsLayoutTest {
+
+  public HdsLayoutTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() {
+  }
+
+  @After
+  public void tearDown() {
+  }
+
+  /**
+   * Test of getPath method, of class HdsLayout.
+   */
+  @Test
+  public void testGetPath() {
+    System.out.println("getPath");
+    final long ts = System.currentTimeMillis();
+    final String month = new SimpleDateFormat("yyyyMM").format(new Date(ts));
+    Configuration conf = new Configuration(false);
+    conf.set(DConstants.HDS_ROOT_PATH, "/trek");
+    HdsLayout layout = new HdsLayout(conf);
+    String shard = layout.getShard("data");
+    assertEquals(2, shard.length());
+    assertEquals(shard, layout.getShard("data"));
+    assertEquals(new Path("/trek/catalog/" + month + "/" + shard + "/data"),
+            layout.getPath("catalog", "data", ts));
+
+    conf.setInt(DConstants.HDS_LAYOUT_SHARD_NUMBER, 1000);
+    assertEquals(3, new HdsLayout(conf).getShard("data").length());
+
+    conf.setInt(DConstants.HDS_LAYOUT_SHARD_NUMBER, 0);
+    conf.setBoolean(DConstants.HDS_LAYOUT_DATE_PARTITION, false);
+    layout = new HdsLayout(conf);
+    assertNull(layout.getShard("data"));
+    assertEquals(new Path("/trek/catalog/data"), layout.getPath("catalog", "data", ts));
+  }
+}
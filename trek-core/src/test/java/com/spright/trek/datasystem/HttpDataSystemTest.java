@@ -0,0 +1,247 @@
+package com.spright.trek.datasystem;
+
+import com.spright.trek.DConstants;
+import com.spright.trek.datasystem.request.ReadDataRequest;
+import com.spright.trek.datasystem.request.UriRequest;
+import com.spright.trek.datasystem.request.WriteDataRequest;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class HttpDataSystemTest {
+
+  private static final Configuration CONFIG = new Configuration(false);
+  private HttpServer server;
+  private final Map<String, String> received = new ConcurrentHashMap<>();
+  private volatile byte[] content = new byte[0];
+  private volatile String etag = "\"v0\"";
+  private volatile boolean supportHead = true;
+
+  public HttpDataSystemTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+    CONFIG.setBoolean(DConstants.ENABLE_SINGLE_MODE, true);
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/upload", he -> {
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      try (InputStream input = he.getRequestBody()) {
+        byte[] buf = new byte[1024];
+        int rval;
+        while ((rval = input.read(buf)) != -1) {
+          body.write(buf, 0, rval);
+        }
+      }
+      String length = he.getRequestHeaders().getFirst("Content-Length");
+      String encoding = he.getRequestHeaders().getFirst("Transfer-Encoding");
+      received.put("length", length == null ? "" : length);
+      received.put("encoding", encoding == null ? "" : encoding);
+      received.put("body", body.toString("UTF-8"));
+      received.put("port", String.valueOf(he.getRemoteAddress().getPort()));
+      he.sendResponseHeaders(200, -1);
+      he.close();
+    });
+    server.createContext("/download", he -> {
+      if (!supportHead && he.getRequestMethod().equals("HEAD")) {
+        he.sendResponseHeaders(405, -1);
+        he.close();
+        return;
+      }
+      byte[] data = content;
+      he.getResponseHeaders().add("ETag", etag);
+      he.getResponseHeaders().add("Accept-Ranges", "bytes");
+      String range = he.getRequestHeaders().getFirst("Range");
+      String ifRange = he.getRequestHeaders().getFirst("If-Range");
+      int start = 0;
+      int end = data.length - 1;
+      boolean partial = range != null && (ifRange == null || ifRange.equals(etag));
+      if (partial) {
+        String[] bounds = range.substring("bytes=".length()).split("-", -1);
+        start = Integer.valueOf(bounds[0]);
+        end = bounds[1].isEmpty() ? end : Integer.valueOf(bounds[1]);
+        he.getResponseHeaders().add("Content-Range",
+                "bytes " + start + "-" + end + "/" + data.length);
+      }
+      final int length = end - start + 1;
+      if (he.getRequestMethod().equals("HEAD")) {
+        he.getResponseHeaders().add("Content-Length", String.valueOf(length));
+        he.sendResponseHeaders(200, -1);
+      } else {
+        he.sendResponseHeaders(partial ? 206 : 200, length);
+        try (OutputStream output = he.getResponseBody()) {
+          output.write(data, start, length);
+        }
+      }
+      he.close();
+    });
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  private String upload(final long expectedSize, final byte[] data) throws Exception {
+    return upload(new HttpDataSystem(CONFIG), expectedSize, data);
+  }
+
+  private String upload(final DataSystem ds, final long expectedSize,
+          final byte[] data) throws Exception {
+    UriRequest uri = UriRequest.parse("http://127.0.0.1:"
+            + server.getAddress().getPort() + "/upload/data", null, null);
+    WriteDataRequest request = new WriteDataRequest(uri, -1, expectedSize);
+    try (OutputChannel output = ds.internalCreate(request)) {
+      OutputStream stream = output.getOutputStream();
+      stream.write(data);
+    }
+    return received.get("body");
+  }
+
+  /**
+   * Test of fixed-length streaming, of class HttpDataSystem.
+   */
+  @Test
+  public void testFixedLength() throws Exception {
+    System.out.println("fixedLength");
+    byte[] data = new byte[12345];
+    String body = upload(data.length, data);
+    assertEquals(String.valueOf(body.getBytes("UTF-8").length), received.get("length"));
+    assertEquals("", received.get("encoding"));
+    assertTrue(body.contains("Content-length: " + data.length));
+  }
+
+  /**
+   * Test of chunked streaming, of class HttpDataSystem.
+   */
+  @Test
+  public void testChunked() throws Exception {
+    System.out.println("chunked");
+    byte[] data = new byte[12345];
+    String body = upload(-1, data);
+    assertEquals("chunked", received.get("encoding").toLowerCase());
+    assertTrue(!body.contains("Content-length"));
+  }
+
+  /**
+   * Test of connection reuse, of class HttpDataSystem.
+   */
+  @Test
+  public void testKeepAlive() throws Exception {
+    System.out.println("keepAlive");
+    HttpDataSystem ds = new HttpDataSystem(CONFIG);
+    byte[] data = new byte[123];
+    upload(ds, data.length, data);
+    String port = received.get("port");
+    upload(ds, data.length, data);
+    //the second upload is sent by the same socket
+    assertEquals(port, received.get("port"));
+    assertEquals(2, ds.getReusedCount());
+    assertEquals(0, ds.getDiscardedCount());
+    StringWriter status = new StringWriter();
+    try (JsonWriter writer = new JsonWriter(status)) {
+      HttpDataSystem.write(writer, ds);
+    }
+    assertTrue(status.toString().contains("\"reused\":2"));
+  }
+
+  /**
+   * Test of ranged read, of class HttpDataSystem.
+   */
+  @Test
+  public void testRangeReader() throws Exception {
+    System.out.println("rangeReader");
+    byte[] data = new byte[10000];
+    for (int i = 0; i != data.length; ++i) {
+      data[i] = (byte) i;
+    }
+    content = data;
+    etag = "\"v1\"";
+    UriRequest uri = UriRequest.parse("http://127.0.0.1:"
+            + server.getAddress().getPort() + "/download/data", null, null);
+    HttpDataSystem ds = new HttpDataSystem(CONFIG);
+    try (InputChannel input = ds.internalOpen(new ReadDataRequest(uri, true))) {
+      assertEquals(data.length, input.getInfo().getSize());
+      RangeReader reader = input.getRangeReader().get();
+      try (InputStream range = reader.open(100, 50)) {
+        for (int i = 100; i != 150; ++i) {
+          assertEquals(data[i] & 0xff, range.read());
+        }
+        assertEquals(-1, range.read());
+      }
+      //the segment of another version is rejected
+      etag = "\"v2\"";
+      try {
+        reader.open(200, 50).close();
+        fail("The data has been changed");
+      } catch (IOException e) {
+      }
+    }
+    etag = "\"v1\"";
+    try (InputChannel input = ds.internalOpen(new ReadDataRequest(uri, true, 9000))) {
+      assertEquals(9000, input.getOffset());
+      InputStream stream = input.getInputStream();
+      for (int i = 9000; i != data.length; ++i) {
+        assertEquals(data[i] & 0xff, stream.read());
+      }
+      assertEquals(-1, stream.read());
+    }
+  }
+
+  /**
+   * Test of ranged read without HEAD, of class HttpDataSystem.
+   */
+  @Test
+  public void testRangeReaderWithoutHead() throws Exception {
+    System.out.println("rangeReaderWithoutHead");
+    byte[] data = new byte[10000];
+    for (int i = 0; i != data.length; ++i) {
+      data[i] = (byte) i;
+    }
+    content = data;
+    supportHead = false;
+    UriRequest uri = UriRequest.parse("http://127.0.0.1:"
+            + server.getAddress().getPort() + "/download/data", null, null);
+    Configuration config = new Configuration(CONFIG);
+    config.setInt(DConstants.HTTP_MAX_PER_HOST, 1);
+    config.setLong(DConstants.HTTP_WAIT_TIME, 500);
+    HttpDataSystem ds = new HttpDataSystem(config);
+    try (InputChannel input = ds.internalOpen(new ReadDataRequest(uri, true))) {
+      assertEquals(data.length, input.getInfo().getSize());
+      //the body of GET doesn't hold the only permit of host
+      RangeReader reader = input.getRangeReader().get();
+      try (InputStream range = reader.open(100, 50)) {
+        for (int i = 100; i != 150; ++i) {
+          assertEquals(data[i] & 0xff, range.read());
+        }
+        assertEquals(-1, range.read());
+      }
+    }
+    assertEquals(0, ds.getWaitedCount());
+  }
+}
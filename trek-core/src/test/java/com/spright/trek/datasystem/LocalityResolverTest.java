@@ -0,0 +1,112 @@
+package com.spright.trek.datasystem;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class LocalityResolverTest {
+
+  private static final TableName TABLE = TableName.valueOf("trek", "catalog");
+  private static final byte[] SPLIT = Bytes.toBytes("m");
+
+  public LocalityResolverTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() {
+  }
+
+  @After
+  public void tearDown() {
+  }
+
+  /**
+   * The first region is assigned to host-0, and the second is unassigned.
+   */
+  private static Connection createConnection(final long loadTime) throws Exception {
+    List<HRegionLocation> locs = Arrays.asList(
+            new HRegionLocation(new HRegionInfo(TABLE, HConstants.EMPTY_START_ROW, SPLIT),
+                    ServerName.valueOf("host-0", 16020, 1L)),
+            new HRegionLocation(new HRegionInfo(TABLE, SPLIT, HConstants.EMPTY_END_ROW),
+                    null));
+    RegionLocator locator = Mockito.mock(RegionLocator.class);
+    Mockito.when(locator.getAllRegionLocations()).thenAnswer(invocation -> {
+      TimeUnit.MILLISECONDS.sleep(loadTime);
+      return locs;
+    });
+    Connection conn = Mockito.mock(Connection.class);
+    Mockito.when(conn.getRegionLocator(TABLE)).thenReturn(locator);
+    return conn;
+  }
+
+  /**
+   * Test of findOwners method, of class LocalityResolver.
+   */
+  @Test
+  public void testFindOwners() throws Exception {
+    System.out.println("findOwners");
+    Connection conn = createConnection(0);
+    LocalityResolver resolver = new LocalityResolver(new Configuration(false), null);
+    assertEquals("host-0", resolver.findOwners(conn, TABLE, Bytes.toBytes("a"))
+            .get(0).getHostname());
+    //the unassigned region doesn't cause the reload
+    for (String row : Arrays.asList("n", "x", "z")) {
+      assertTrue(resolver.findOwners(conn, TABLE, Bytes.toBytes(row)).isEmpty());
+    }
+    Mockito.verify(conn, Mockito.times(1)).getRegionLocator(TABLE);
+    resolver.invalidate(TABLE);
+    assertEquals(1, resolver.findOwners(conn, TABLE, Bytes.toBytes("b")).size());
+    Mockito.verify(conn, Mockito.times(2)).getRegionLocator(TABLE);
+  }
+
+  /**
+   * Test of concurrent loads, of class LocalityResolver.
+   */
+  @Test
+  public void testConcurrentLoads() throws Exception {
+    System.out.println("concurrentLoads");
+    Connection conn = createConnection(300);
+    LocalityResolver resolver = new LocalityResolver(new Configuration(false), null);
+    ExecutorService service = Executors.newFixedThreadPool(4);
+    try {
+      Future<?>[] futures = new Future<?>[4];
+      for (int i = 0; i != futures.length; ++i) {
+        futures[i] = service.submit(() -> resolver.findOwners(conn, TABLE, Bytes.toBytes("a")));
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    } finally {
+      service.shutdownNow();
+    }
+    Mockito.verify(conn, Mockito.times(1)).getRegionLocator(TABLE);
+  }
+}
@@ -0,0 +1,133 @@
+package com.spright.trek.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ChunkedBufferTest {
+
+  public ChunkedBufferTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() {
+  }
+
+  @After
+  public void tearDown() {
+  }
+
+  private static byte[] newData(final int size) {
+    byte[] data = new byte[size];
+    for (int i = 0; i != data.length; ++i) {
+      data[i] = (byte) i;
+    }
+    return data;
+  }
+
+  /**
+   * Test of getInputStream method, of class ChunkedBuffer.
+   *
+   * @throws java.io.IOException
+   */
+  @Test
+  public void testGetInputStream() throws IOException {
+    System.out.println("getInputStream");
+    BufferPool pool = new BufferPool(16, 1024, false);
+    byte[] data = newData(100);
+    ChunkedBuffer buffer = new ChunkedBuffer(pool, 100);
+    buffer.write(data, 0, 50);
+    buffer.write(data[50]);
+    buffer.write(data, 51, 49);
+    assertEquals(100, buffer.getLength());
+    assertEquals(false, buffer.ensureCapacity(1));
+    assertEquals(7, buffer.getByteBuffers().length);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (InputStream input = buffer.getInputStream()) {
+      assertEquals(100, input.available());
+      int rval;
+      byte[] buf = new byte[30];
+      while ((rval = input.read(buf)) != -1) {
+        output.write(buf, 0, rval);
+      }
+    }
+    assertArrayEquals(data, output.toByteArray());
+    //the chunks are returned after closing the input
+    assertEquals(7, pool.getPooledCount());
+    buffer = new ChunkedBuffer(pool, 100);
+    buffer.write(1);
+    assertEquals(6, pool.getPooledCount());
+    buffer.close();
+    assertEquals(7, pool.getPooledCount());
+  }
+
+  /**
+   * Test of writeTo method, of class ChunkedBuffer.
+   *
+   * @throws java.io.IOException
+   */
+  @Test
+  public void testWriteTo() throws IOException {
+    System.out.println("writeTo");
+    byte[] data = newData(100);
+    for (boolean direct : new boolean[]{false, true}) {
+      try (ChunkedBuffer buffer = new ChunkedBuffer(new BufferPool(16, 0, direct), 100)) {
+        buffer.write(data, 0, data.length);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        buffer.writeTo(output);
+        assertArrayEquals(data, output.toByteArray());
+        File file = File.createTempFile(getClass().getName(), null);
+        try {
+          try (FileOutputStream fileOutput = new FileOutputStream(file)) {
+            buffer.writeTo(fileOutput);
+          }
+          assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+        } finally {
+          file.delete();
+        }
+      }
+    }
+  }
+
+  /**
+   * Test of ensureCapacity method, of class ChunkedBuffer.
+   *
+   * @throws java.io.IOException
+   */
+  @Test
+  public void testEnsureCapacity() throws IOException {
+    System.out.println("ensureCapacity");
+    BufferPool pool = new BufferPool(16, 1024, false, 48);
+    byte[] data = newData(40);
+    try (ChunkedBuffer buffer = new ChunkedBuffer(pool, 100)) {
+      assertEquals(true, buffer.ensureCapacity(40));
+      assertEquals(48, pool.getReservedBytes());
+      buffer.write(data, 0, data.length);
+      assertEquals(40, pool.getUsedBytes());
+      assertEquals(3, buffer.getByteBuffers().length);
+      //the budget is exhausted
+      assertEquals(false, buffer.ensureCapacity(10));
+      assertEquals(true, buffer.isWithinLimit(10));
+      assertEquals(true, buffer.ensureCapacity(8));
+    }
+    assertEquals(0, pool.getReservedBytes());
+    assertEquals(0, pool.getUsedBytes());
+  }
+}
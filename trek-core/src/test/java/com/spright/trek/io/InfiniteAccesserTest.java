@@ -60,4 +60,32 @@ public class InfiniteAccesserTest {
       assertEquals(180, count);
     }
   }
+
+  /**
+   * Test of getSize method with a exhausted budget, of class InfiniteAccesser.
+   *
+   * @throws java.io.IOException
+   */
+  @Test
+  public void testSpillByBudget() throws IOException {
+    System.out.println("spillByBudget");
+    BufferPool pool = new BufferPool(16, 1024, false, 64);
+    InfiniteAccesser instance = new InfiniteAccesser(120, 100,
+            new InfiniteAccesser.FileIOFactory(), pool);
+    try (OutputStream output = instance.getOutputStream()) {
+      output.write(new byte[60]);
+      assertEquals(true, instance.isInMemory());
+      output.write(new byte[10]);
+      assertEquals(false, instance.isInMemory());
+      assertEquals(70, pool.getSpilledBytes());
+      assertEquals(0, pool.getReservedBytes());
+    }
+    try (InputStream input = instance.getInputStream()) {
+      int count = 0;
+      while (input.read() != -1) {
+        ++count;
+      }
+      assertEquals(70, count);
+    }
+  }
 }
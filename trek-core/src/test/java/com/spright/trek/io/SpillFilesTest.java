@@ -0,0 +1,136 @@
+package com.spright.trek.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SpillFilesTest {
+
+  private File root;
+
+  public SpillFilesTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+  }
+
+  @After
+  public void tearDown() {
+    File[] dirs = root.listFiles();
+    if (dirs != null) {
+      for (File dir : dirs) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+          for (File f : files) {
+            f.delete();
+          }
+        }
+        dir.delete();
+      }
+    }
+    root.delete();
+  }
+
+  /**
+   * Test of create method, of class SpillFiles.
+   *
+   * @throws java.io.IOException
+   */
+  @Test
+  public void testCreate() throws IOException {
+    System.out.println("create");
+    File[] dirs = new File[]{new File(root, "0"), new File(root, "1")};
+    try (SpillFiles spill = new SpillFiles(dirs, 0, 0)) {
+      InfiniteAccesser.FileIOFactory factory = new InfiniteAccesser.FileIOFactory(spill);
+      InfiniteAccesser instance = new InfiniteAccesser(10, 10, factory);
+      try (OutputStream output = instance.getOutputStream()) {
+        output.write(new byte[5]);
+        //no file is created if the data is in memory
+        assertNull(factory.getFile());
+        output.write(new byte[10]);
+        assertNotNull(factory.getFile());
+      }
+      assertEquals(dirs[0], factory.getFile().getParentFile());
+      assertEquals(1, spill.getActiveCount());
+      assertEquals(dirs[1], spill.create().getParentFile());
+      try (InputStream input = instance.getInputStream()) {
+        assertEquals(0, input.read());
+      }
+      assertEquals(false, factory.getFile().exists());
+      assertEquals(1, spill.getActiveCount());
+    }
+  }
+
+  /**
+   * Test of clean method, of class SpillFiles.
+   *
+   * @throws java.io.IOException
+   */
+  @Test
+  public void testClean() throws IOException {
+    System.out.println("clean");
+    File dir = new File(root, "0");
+    try (SpillFiles spill = new SpillFiles(new File[]{dir}, 1000, 0)) {
+      File active = spill.create();
+      File orphan = spill.create();
+      spill.delete(orphan);
+      assertEquals(true, orphan.createNewFile());
+      File other = new File(dir, "other");
+      assertEquals(true, other.createNewFile());
+      final long old = System.currentTimeMillis() - 2000;
+      assertEquals(true, active.setLastModified(old));
+      assertEquals(true, orphan.setLastModified(old));
+      assertEquals(true, other.setLastModified(old));
+      assertEquals(1, spill.clean());
+      assertEquals(true, active.exists());
+      assertEquals(false, orphan.exists());
+      assertEquals(true, other.exists());
+    }
+  }
+
+  /**
+   * Test of clean method with the spill file which is never deleted, of class
+   * SpillFiles.
+   *
+   * @throws java.lang.Exception
+   */
+  @Test
+  public void testCleanLeakedFile() throws Exception {
+    System.out.println("cleanLeakedFile");
+    File dir = new File(root, "0");
+    try (SpillFiles spill = new SpillFiles(new File[]{dir}, 200, 0)) {
+      File leaked = spill.create();
+      File removed = spill.create();
+      TimeUnit.MILLISECONDS.sleep(400);
+      File active = spill.create();
+      final long old = System.currentTimeMillis() - 2000;
+      assertEquals(true, leaked.setLastModified(old));
+      assertEquals(true, active.setLastModified(old));
+      assertEquals(true, removed.delete());
+      assertEquals(3, spill.getActiveCount());
+      assertEquals(1, spill.clean());
+      assertEquals(false, leaked.exists());
+      assertEquals(true, active.exists());
+      assertEquals(1, spill.getActiveCount());
+    }
+  }
+}
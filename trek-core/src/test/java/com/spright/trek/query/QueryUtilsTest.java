@@ -4,6 +4,8 @@ import com.spright.trek.DConstants;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -44,6 +46,21 @@ public class QueryUtilsTest {
     assertEquals(QueryUtils.parseEmptyString("asd").isPresent(), true);
   }
 
+  /**
+   * Test of getPriority method, of class QueryUtils.
+   */
+  @Test
+  public void testGetPriority() {
+    System.out.println("getPriority");
+    Map<String, String> rawQuery = new HashMap<>();
+    assertEquals(DConstants.DEFAULT_URI_DATA_PRIORITY, QueryUtils.getPriority(rawQuery, true, 5));
+    assertEquals(DConstants.DEFAULT_URI_DATA_SYNC_PRIORITY, QueryUtils.getPriority(rawQuery, false, 5));
+    rawQuery.put(DConstants.URI_DATA_PRIORITY, "3");
+    assertEquals(3, QueryUtils.getPriority(rawQuery, true, 5));
+    rawQuery.put(DConstants.URI_DATA_PRIORITY, String.valueOf(Integer.MAX_VALUE));
+    assertEquals(5, QueryUtils.getPriority(rawQuery, true, 5));
+  }
+
   /**
    * Test of parseBoolean method, of class BaseQuery.
    */
@@ -0,0 +1,718 @@
+package com.spright.trek.task;
+
+import com.spright.trek.DConstants;
+import com.spright.trek.datasystem.InputChannel;
+import com.spright.trek.datasystem.OutputChannel;
+import com.spright.trek.datasystem.RangeReader;
+import com.spright.trek.datasystem.RangeWriter;
+import com.spright.trek.datasystem.request.DataInfo;
+import com.spright.trek.datasystem.request.UriRequest;
+import com.spright.trek.datasystem.request.WriteDataRequest;
+import com.spright.trek.query.CloseableIterator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class AccessTaskExecutorFactoryTest {
+
+  private static final int DATA_SIZE = 100 * 1024;
+  private final List<AccessStatus> logs = new ArrayList<>();
+  private final AccessTaskLogger logger = new AccessTaskLogger() {
+    @Override
+    public boolean supportOrder(final AccessStatusQuery query) {
+      return false;
+    }
+
+    @Override
+    public boolean supportFilter(final AccessStatusQuery query) {
+      return false;
+    }
+
+    @Override
+    public void add(final AccessStatus status) throws IOException {
+      synchronized (logs) {
+        logs.add(status);
+      }
+    }
+
+    @Override
+    public Optional<AccessStatus> find(final String id) throws IOException {
+      return Optional.empty();
+    }
+
+    @Override
+    public boolean claim(final String id) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void unclaim(final String id) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CloseableIterator<AccessStatus> list(final AccessStatusQuery query) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CloseableIterator<AccessStatus> list() throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+  private final byte[] data = new byte[DATA_SIZE];
+  private File file;
+
+  public AccessTaskExecutorFactoryTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    new Random().nextBytes(data);
+    file = File.createTempFile("trek-executor", ".tmp");
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.write(data);
+    }
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  private static DataInfo createInfo(final long size) throws Exception {
+    DataInfo info = Mockito.mock(DataInfo.class);
+    Mockito.when(info.getUriRequest())
+            .thenReturn(UriRequest.parse("ftp://127.0.0.1/tmp/data", null, null));
+    Mockito.when(info.getSize()).thenReturn(size);
+    return info;
+  }
+
+  private static AccessTaskRequest createRequest(final InputChannel input,
+          final OutputChannel output) {
+    return AccessTaskRequest.newBuilder()
+            .setInput(input)
+            .setOutput(output)
+            .setServerName("server")
+            .setRedirectFrom("server")
+            .setClientName("client")
+            .build();
+  }
+
+  private static AccessStatus waitCompletion(final AccessTask task) throws Exception {
+    try {
+      return task.getCompletion().get(30, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      return task.getStatus();
+    }
+  }
+
+  /**
+   * Test of the channel transfer of executor.
+   */
+  @Test
+  public void testTransferByChannel() throws Exception {
+    System.out.println("transferByChannel");
+    Configuration config = new Configuration(false);
+    try (AccessTaskExecutor executor = AccessTaskExecutorFactory.newInstance(config, logger);
+            FileChannel src = new RandomAccessFile(file, "r").getChannel()) {
+      ByteArrayOutputStream sink = new ByteArrayOutputStream();
+      AccessStatus status = waitCompletion(executor.submit(createRequest(
+              new TestInput(createInfo(DATA_SIZE), src),
+              new TestOutput(sink, Channels.newChannel(sink)))));
+      assertEquals(TaskState.SUCCEED, status.getState());
+      assertEquals(DATA_SIZE, status.getTransferredSize());
+      assertArrayEquals(data, sink.toByteArray());
+    }
+    //the sink which accepts nothing mustn't hang the task
+    try (AccessTaskExecutor executor = AccessTaskExecutorFactory.newInstance(config, logger);
+            FileChannel src = new RandomAccessFile(file, "r").getChannel()) {
+      WritableByteChannel stuck = new WritableByteChannel() {
+        @Override
+        public int write(final ByteBuffer src) {
+          return 0;
+        }
+
+        @Override
+        public boolean isOpen() {
+          return true;
+        }
+
+        @Override
+        public void close() {
+        }
+      };
+      AccessStatus status = waitCompletion(executor.submit(createRequest(
+              new TestInput(createInfo(DATA_SIZE), src),
+              new TestOutput(new ByteArrayOutputStream(), stuck))));
+      assertEquals(TaskState.FAILED, status.getState());
+      assertEquals(0, status.getTransferredSize());
+    }
+  }
+
+  /**
+   * Test of the pipeline transfer of executor.
+   */
+  @Test
+  public void testTransferByPipeline() throws Exception {
+    System.out.println("transferByPipeline");
+    Configuration config = new Configuration(false);
+    config.setBoolean(DConstants.ACCESS_PIPELINE_ENABLE, true);
+    config.setInt(DConstants.ACCESS_PIPELINE_BUFFER_SIZE, 1024);
+    try (AccessTaskExecutor executor = AccessTaskExecutorFactory.newInstance(config, logger)) {
+      ByteArrayOutputStream sink = new ByteArrayOutputStream();
+      AccessStatus status = waitCompletion(executor.submit(createRequest(
+              new TestInput(createInfo(DATA_SIZE), new ByteArrayInputStream(data)),
+              new TestOutput(sink, null))));
+      assertEquals(TaskState.SUCCEED, status.getState());
+      assertEquals(DATA_SIZE, status.getTransferredSize());
+      assertArrayEquals(data, sink.toByteArray());
+
+      //the reader blocked by the input must be finished before the task
+      BlockingInputStream input = new BlockingInputStream(data);
+      OutputStream broken = new OutputStream() {
+        @Override
+        public void write(final int b) throws IOException {
+          throw new IOException("broken sink");
+        }
+      };
+      status = waitCompletion(executor.submit(createRequest(
+              new TestInput(createInfo(DATA_SIZE), input),
+              new TestOutput(broken, null))));
+      assertEquals(TaskState.FAILED, status.getState());
+      assertEquals(true, input.isClosed());
+      assertEquals(0, input.getReadingCount());
+    }
+  }
+
+  /**
+   * Test of the serial fallback of executor if all worker threads are busy.
+   */
+  @Test
+  public void testTransferWithoutWorker() throws Exception {
+    System.out.println("transferWithoutWorker");
+    Configuration config = new Configuration(false);
+    config.setBoolean(DConstants.ACCESS_PIPELINE_ENABLE, true);
+    config.setInt(DConstants.ACCESS_PIPELINE_BUFFER_SIZE, 1024);
+    config.setInt(DConstants.ACCESS_WORKER_NUMBER, 1);
+    try (AccessTaskExecutor executor = AccessTaskExecutorFactory.newInstance(config, logger)) {
+      //the reader of first task occupies the only worker
+      CountDownLatch gate = new CountDownLatch(1);
+      CountDownLatch reading = new CountDownLatch(1);
+      InputStream blocked = new InputStream() {
+        @Override
+        public int read() throws IOException {
+          reading.countDown();
+          try {
+            gate.await();
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          }
+          return -1;
+        }
+      };
+      AccessTask first = executor.submit(createRequest(
+              new TestInput(createInfo(0), blocked),
+              new TestOutput(new ByteArrayOutputStream(), null)));
+      assertTrue(reading.await(10, TimeUnit.SECONDS));
+      ByteArrayOutputStream sink = new ByteArrayOutputStream();
+      AccessStatus status = waitCompletion(executor.submit(createRequest(
+              new TestInput(createInfo(DATA_SIZE), new ByteArrayInputStream(data)),
+              new TestOutput(sink, null))));
+      assertEquals(TaskState.SUCCEED, status.getState());
+      assertArrayEquals(data, sink.toByteArray());
+      gate.countDown();
+      assertEquals(TaskState.SUCCEED, waitCompletion(first).getState());
+    }
+  }
+
+  /**
+   * Test of the segmented transfer of executor.
+   */
+  @Test
+  public void testTransferBySegment() throws Exception {
+    System.out.println("transferBySegment");
+    Configuration config = new Configuration(false);
+    config.setInt(DConstants.ACCESS_SEGMENT_NUMBER, 2);
+    config.setLong(DConstants.ACCESS_SEGMENT_THRESHOLD, 1);
+    final AtomicInteger writing = new AtomicInteger(0);
+    final CountDownLatch started = new CountDownLatch(2);
+    //the first range fails after both ranges are started, and the second
+    //range ignores the interrupt
+    RangeReader reader = (offset, length) -> {
+      if (offset == 0) {
+        return new InputStream() {
+          @Override
+          public int read() throws IOException {
+            try {
+              started.await();
+            } catch (InterruptedException e) {
+            }
+            throw new IOException("broken range");
+          }
+        };
+      }
+      return new ByteArrayInputStream(data, (int) offset, (int) length) {
+        @Override
+        public synchronized int read(final byte[] b, final int off, final int len) {
+          long deadline = System.currentTimeMillis() + 20;
+          while (System.currentTimeMillis() < deadline) {
+            try {
+              TimeUnit.MILLISECONDS.sleep(deadline - System.currentTimeMillis());
+            } catch (InterruptedException e) {
+            }
+          }
+          return super.read(b, off, len);
+        }
+      };
+    };
+    RangeWriter writer = (offset, length) -> {
+      writing.incrementAndGet();
+      started.countDown();
+      return new ByteArrayOutputStream() {
+        @Override
+        public void close() {
+          writing.decrementAndGet();
+        }
+      };
+    };
+    try (AccessTaskExecutor executor = AccessTaskExecutorFactory.newInstance(config, logger)) {
+      AccessStatus status = waitCompletion(executor.submit(createRequest(
+              new TestInput(createInfo(DATA_SIZE), new ByteArrayInputStream(data)) {
+        @Override
+        public Optional<RangeReader> getRangeReader() {
+          return Optional.of(reader);
+        }
+      }, new TestOutput(new ByteArrayOutputStream(), null) {
+        @Override
+        public Optional<RangeWriter> getRangeWriter() {
+          return Optional.of(writer);
+        }
+      })));
+      assertEquals(TaskState.FAILED, status.getState());
+      //the cancelled range is finished before the task
+      assertEquals(0, writing.get());
+    }
+  }
+
+  /**
+   * Test of the fan-out transfer of executor.
+   */
+  @Test
+  public void testTransferByFanOut() throws Exception {
+    System.out.println("transferByFanOut");
+    Configuration config = new Configuration(false);
+    config.setInt(DConstants.ACCESS_PIPELINE_BUFFER_SIZE, 1024);
+    final AtomicInteger writing = new AtomicInteger(0);
+    final CountDownLatch started = new CountDownLatch(1);
+    //the source fails after a writer is blocked, and the writer ignores the
+    //interrupt
+    InputStream input = new InputStream() {
+      private boolean consumed = false;
+
+      @Override
+      public int read() throws IOException {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (consumed) {
+          try {
+            started.await();
+          } catch (InterruptedException e) {
+          }
+          throw new IOException("broken source");
+        }
+        consumed = true;
+        return len;
+      }
+    };
+    OutputStream slow = new OutputStream() {
+      @Override
+      public void write(final int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(final byte[] b, final int off, final int len) {
+        writing.incrementAndGet();
+        started.countDown();
+        long deadline = System.currentTimeMillis() + 200;
+        while (System.currentTimeMillis() < deadline) {
+          try {
+            TimeUnit.MILLISECONDS.sleep(deadline - System.currentTimeMillis());
+          } catch (InterruptedException e) {
+          }
+        }
+        writing.decrementAndGet();
+      }
+    };
+    try (AccessTaskExecutor executor = AccessTaskExecutorFactory.newInstance(config, logger)) {
+      AccessStatus status = waitCompletion(executor.submit(AccessTaskRequest.newBuilder()
+              .setInput(new TestInput(createInfo(DATA_SIZE), input))
+              .addOutput(new TestOutput(slow, null))
+              .addOutput(new TestOutput(new ByteArrayOutputStream(), null))
+              .setServerName("server")
+              .setRedirectFrom("server")
+              .setClientName("client")
+              .build()));
+      assertEquals(TaskState.FAILED, status.getState());
+      //the cancelled writer is finished before the task
+      assertEquals(0, writing.get());
+    }
+  }
+
+  /**
+   * Test of the progress publisher of executor.
+   */
+  @Test
+  public void testPublishProgress() throws Exception {
+    System.out.println("publishProgress");
+    Configuration config = new Configuration(false);
+    config.setBoolean(DConstants.ACCESS_PIPELINE_ENABLE, false);
+    config.setInt(DConstants.ACCESS_BUFFER_SIZE, 1024);
+    config.setInt(DConstants.ACCESS_BUFFER_MAX_SIZE, 1024);
+    config.setLong(DConstants.ACCESS_PROGRESS_INTERVAL, 20);
+    try (AccessTaskExecutor executor = AccessTaskExecutorFactory.newInstance(config, logger)) {
+      final int readCount = 10;
+      AccessTask task = executor.submit(createRequest(
+              new TestInput(createInfo(1024 * readCount), newSlowInput(readCount)),
+              new TestOutput(new ByteArrayOutputStream(), null)));
+      AccessStatus status = waitCompletion(task);
+      assertEquals(TaskState.SUCCEED, status.getState());
+      //no progress is published after the terminal status
+      TimeUnit.MILLISECONDS.sleep(100);
+      List<AccessStatus> published;
+      synchronized (logs) {
+        published = new ArrayList<>(logs);
+      }
+      assertTrue(published.size() >= 2);
+      for (int i = 0; i != published.size() - 1; ++i) {
+        assertEquals(status.getId(), published.get(i).getId());
+        assertEquals(TaskState.RUNNING, published.get(i).getState());
+      }
+      AccessStatus last = published.get(published.size() - 1);
+      assertEquals(status.getId(), last.getId());
+      assertEquals(TaskState.SUCCEED, last.getState());
+      assertEquals(1024 * readCount, last.getTransferredSize());
+    }
+  }
+
+  /**
+   * Test of the abort of batch task.
+   */
+  @Test
+  public void testAbortBatch() throws Exception {
+    System.out.println("abortBatch");
+    Configuration config = new Configuration(false);
+    config.setBoolean(DConstants.ACCESS_PIPELINE_ENABLE, false);
+    config.setInt(DConstants.ACCESS_BUFFER_SIZE, 1024);
+    config.setInt(DConstants.ACCESS_BUFFER_MAX_SIZE, 1024);
+    try (AccessTaskExecutor executor = AccessTaskExecutorFactory.newInstance(config, logger)) {
+      final int readCount = 50;
+      List<AccessTaskRequest> requests = new ArrayList<>();
+      for (int i = 0; i != 3; ++i) {
+        requests.add(createRequest(
+                new TestInput(createInfo(1024 * readCount), newSlowInput(readCount)),
+                new TestOutput(new ByteArrayOutputStream(), null)));
+      }
+      final Iterator<AccessTaskRequest> iter = requests.iterator();
+      AccessTask task = executor.submit(BatchTaskRequest.newBuilder()
+              .setRequests(new CloseableIterator<AccessTaskRequest>() {
+                @Override
+                public boolean hasNext() {
+                  return iter.hasNext();
+                }
+
+                @Override
+                public AccessTaskRequest next() {
+                  return iter.next();
+                }
+
+                @Override
+                public void close() {
+                }
+              })
+              .setFrom("ftp://127.0.0.1/tmp/*")
+              .setTo("file:///tmp/")
+              .setServerName("server")
+              .setRedirectFrom("server")
+              .setClientName("client")
+              .setParallelism(3)
+              .build());
+      TimeUnit.MILLISECONDS.sleep(100);
+      task.abort();
+      AccessStatus status = task.getStatus();
+      assertEquals(TaskState.ABORT, status.getState());
+      assertEquals(0, status.getFailedSubtasks());
+    }
+  }
+
+  /**
+   * Test of the batch task if all worker threads are busy.
+   */
+  @Test
+  public void testBatchWithoutWorker() throws Exception {
+    System.out.println("batchWithoutWorker");
+    Configuration config = new Configuration(false);
+    config.setBoolean(DConstants.ACCESS_PIPELINE_ENABLE, true);
+    config.setInt(DConstants.ACCESS_PIPELINE_BUFFER_SIZE, 1024);
+    config.setInt(DConstants.ACCESS_WORKER_NUMBER, 1);
+    try (AccessTaskExecutor executor = AccessTaskExecutorFactory.newInstance(config, logger)) {
+      //the reader of first task occupies the only worker
+      CountDownLatch gate = new CountDownLatch(1);
+      CountDownLatch reading = new CountDownLatch(1);
+      InputStream blocked = new InputStream() {
+        @Override
+        public int read() throws IOException {
+          reading.countDown();
+          try {
+            gate.await();
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          }
+          return -1;
+        }
+      };
+      AccessTask first = executor.submit(createRequest(
+              new TestInput(createInfo(0), blocked),
+              new TestOutput(new ByteArrayOutputStream(), null)));
+      assertTrue(reading.await(10, TimeUnit.SECONDS));
+      ByteArrayOutputStream sink = new ByteArrayOutputStream();
+      final Iterator<AccessTaskRequest> iter = Collections.singletonList(createRequest(
+              new TestInput(createInfo(DATA_SIZE), new ByteArrayInputStream(data)),
+              new TestOutput(sink, null))).iterator();
+      BatchTaskRequest request = BatchTaskRequest.newBuilder()
+              .setRequests(new CloseableIterator<AccessTaskRequest>() {
+                @Override
+                public boolean hasNext() {
+                  return iter.hasNext();
+                }
+
+                @Override
+                public AccessTaskRequest next() {
+                  return iter.next();
+                }
+
+                @Override
+                public void close() {
+                }
+              })
+              .setFrom("ftp://127.0.0.1/tmp/*")
+              .setTo("file:///tmp/")
+              .setServerName("server")
+              .setRedirectFrom("server")
+              .setClientName("client")
+              .build();
+      BatchTask task = executor.submit(request);
+      assertSame(request, task.getRequest());
+      task.waitCompletion();
+      AccessStatus status = task.getStatus();
+      assertEquals(TaskState.SUCCEED, status.getState());
+      assertEquals(1, status.getSubtasks());
+      assertArrayEquals(data, sink.toByteArray());
+      gate.countDown();
+      assertEquals(TaskState.SUCCEED, waitCompletion(first).getState());
+    }
+  }
+
+  /**
+   * @return The stream which returns 1024 bytes per 30 milliseconds
+   */
+  private InputStream newSlowInput(final int readCount) {
+    return new ByteArrayInputStream(data, 0, 1024 * readCount) {
+      @Override
+      public synchronized int read(final byte[] b, final int off, final int len) {
+        try {
+          TimeUnit.MILLISECONDS.sleep(30);
+        } catch (InterruptedException e) {
+          return -1;
+        }
+        return super.read(b, off, Math.min(len, 1024));
+      }
+    };
+  }
+
+  /**
+   * Returns the data once, and then blocks the reads until it is closed.
+   */
+  private static class BlockingInputStream extends InputStream {
+
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private final AtomicInteger reading = new AtomicInteger(0);
+    private final byte[] data;
+    private boolean consumed = false;
+
+    BlockingInputStream(final byte[] data) {
+      this.data = data;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : (b[0] & 0xff);
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      reading.incrementAndGet();
+      try {
+        if (!consumed) {
+          consumed = true;
+          int size = Math.min(len, data.length);
+          System.arraycopy(data, 0, b, off, size);
+          return size;
+        }
+        //like the socket read, it ignores the interrupt and the broken read
+        //takes a while to return
+        long deadline = 0;
+        while (deadline == 0 || System.currentTimeMillis() < deadline) {
+          try {
+            if (deadline == 0) {
+              closed.await();
+              deadline = System.currentTimeMillis() + 100;
+            } else {
+              TimeUnit.MILLISECONDS.sleep(deadline - System.currentTimeMillis());
+            }
+          } catch (InterruptedException e) {
+          }
+        }
+        throw new IOException("The stream is closed");
+      } finally {
+        reading.decrementAndGet();
+      }
+    }
+
+    boolean isClosed() {
+      return closed.getCount() == 0;
+    }
+
+    int getReadingCount() {
+      return reading.get();
+    }
+
+    @Override
+    public void close() {
+      closed.countDown();
+    }
+  }
+
+  private static class TestInput implements InputChannel {
+
+    private final DataInfo info;
+    private final InputStream input;
+    private final FileChannel channel;
+
+    TestInput(final DataInfo info, final InputStream input) {
+      this.info = info;
+      this.input = input;
+      this.channel = null;
+    }
+
+    TestInput(final DataInfo info, final FileChannel channel) {
+      this.info = info;
+      this.input = Channels.newInputStream(channel);
+      this.channel = channel;
+    }
+
+    @Override
+    public DataInfo getInfo() {
+      return info;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return input;
+    }
+
+    @Override
+    public Optional<FileChannel> getFileChannel() {
+      return Optional.ofNullable(channel);
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+  }
+
+  private static class TestOutput implements OutputChannel {
+
+    private final WriteDataRequest request;
+    private final OutputStream output;
+    private final WritableByteChannel channel;
+
+    TestOutput(final OutputStream output, final WritableByteChannel channel) throws Exception {
+      this.request = new WriteDataRequest(
+              UriRequest.parse("file:///tmp/data", null, null), -1, 0);
+      this.output = output;
+      this.channel = channel;
+    }
+
+    @Override
+    public WriteDataRequest getRequest() {
+      return request;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return output;
+    }
+
+    @Override
+    public Optional<WritableByteChannel> getWritableChannel() {
+      return Optional.ofNullable(channel);
+    }
+
+    @Override
+    public void recover() throws IOException {
+    }
+
+    @Override
+    public void close() throws IOException {
+      output.close();
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.spright.trek.task;
+
+import com.spright.trek.DConstants;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class AccessTaskLoggerFactoryTest {
+
+  public AccessTaskLoggerFactoryTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() {
+  }
+
+  @After
+  public void tearDown() {
+  }
+
+  /**
+   * Test of claim method of the in-memory logger, of class
+   * AccessTaskLoggerFactory.
+   */
+  @Test
+  public void testClaim() throws Exception {
+    System.out.println("claim");
+    Configuration conf = new Configuration(false);
+    conf.setBoolean(DConstants.ENABLE_SINGLE_MODE, true);
+    try (AccessTaskLogger logger = AccessTaskLoggerFactory.instance(conf)) {
+      assertTrue(logger.claim("a"));
+      //the checkpoint is resumed once
+      assertFalse(logger.claim("a"));
+      assertTrue(logger.claim("b"));
+      logger.unclaim("a");
+      assertTrue(logger.claim("a"));
+    }
+  }
+}
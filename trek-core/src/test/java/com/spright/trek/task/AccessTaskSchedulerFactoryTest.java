@@ -0,0 +1,99 @@
+package com.spright.trek.task;
+
+import com.spright.trek.DConstants;
+import com.spright.trek.datasystem.InputChannel;
+import com.spright.trek.datasystem.request.DataInfo;
+import com.spright.trek.datasystem.request.UriRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class AccessTaskSchedulerFactoryTest {
+
+  public AccessTaskSchedulerFactoryTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() {
+  }
+
+  @After
+  public void tearDown() {
+  }
+
+  private static AccessTaskRequest createRequest(final String client,
+          final int priority) throws Exception {
+    UriRequest uri = UriRequest.parse("ftp://127.0.0.1/tmp/data", null, null);
+    DataInfo info = Mockito.mock(DataInfo.class);
+    Mockito.when(info.getUriRequest()).thenReturn(uri);
+    InputChannel input = Mockito.mock(InputChannel.class);
+    Mockito.when(input.getInfo()).thenReturn(info);
+    return AccessTaskRequest.newBuilder()
+            .setInput(input)
+            .setServerName("server")
+            .setClientName(client)
+            .setPriority(priority)
+            .build();
+  }
+
+  /**
+   * Test of fair queuing, of class AccessTaskSchedulerFactory.
+   */
+  @Test
+  public void testFairScheduler() throws Exception {
+    System.out.println("fairScheduler");
+    Configuration config = new Configuration(false);
+    config.setInt(DConstants.ACCESS_HANDLER_NUMBER, 1);
+    config.setInt(DConstants.ACCESS_SCHEDULER_QUEUE_SIZE, 5);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch blocker = new CountDownLatch(1);
+    CountDownLatch running = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(5);
+    try (AccessTaskScheduler scheduler = AccessTaskSchedulerFactory.newInstance(config)) {
+      assertEquals(true, scheduler.submit(createRequest("blocker", 0), () -> {
+        running.countDown();
+        try {
+          blocker.await();
+        } catch (InterruptedException e) {
+        }
+      }, 0, TimeUnit.SECONDS));
+      running.await();
+      for (String name : Arrays.asList("a0", "a1", "a2", "b0")) {
+        assertEquals(true, scheduler.submit(createRequest(name.substring(0, 1), 0), () -> {
+          order.add(name);
+          done.countDown();
+        }, 0, TimeUnit.SECONDS));
+      }
+      assertEquals(true, scheduler.submit(createRequest("c", 1), () -> {
+        order.add("c0");
+        done.countDown();
+      }, 0, TimeUnit.SECONDS));
+      assertEquals(5, scheduler.getQueueSize());
+      assertEquals(false, scheduler.submit(createRequest("d", 0), () -> {
+      }, 0, TimeUnit.SECONDS));
+      blocker.countDown();
+      done.await();
+      //the higher priority is first, and then client b is not starved by a
+      assertEquals(Arrays.asList("c0", "a0", "b0", "a1", "a2"), order);
+    }
+  }
+}
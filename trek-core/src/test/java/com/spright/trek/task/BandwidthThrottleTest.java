@@ -0,0 +1,126 @@
+package com.spright.trek.task;
+
+import com.spright.trek.DConstants;
+import com.spright.trek.datasystem.InputChannel;
+import com.spright.trek.datasystem.OutputChannel;
+import com.spright.trek.datasystem.request.DataInfo;
+import com.spright.trek.datasystem.request.UriRequest;
+import com.spright.trek.datasystem.request.WriteDataRequest;
+import com.spright.trek.task.BandwidthThrottle.Throttle;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class BandwidthThrottleTest {
+
+  public BandwidthThrottleTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() {
+  }
+
+  @After
+  public void tearDown() {
+  }
+
+  private static AccessTaskRequest createRequest(final long bandwidth) throws Exception {
+    return createRequest(bandwidth, "client");
+  }
+
+  private static AccessTaskRequest createRequest(final long bandwidth,
+          final String client) throws Exception {
+    DataInfo info = Mockito.mock(DataInfo.class);
+    Mockito.when(info.getUriRequest())
+            .thenReturn(UriRequest.parse("ftp://127.0.0.1/tmp/data", null, null));
+    InputChannel input = Mockito.mock(InputChannel.class);
+    Mockito.when(input.getInfo()).thenReturn(info);
+    OutputChannel output = Mockito.mock(OutputChannel.class);
+    Mockito.when(output.getRequest())
+            .thenReturn(new WriteDataRequest(UriRequest.parse("file:///tmp/data", null, null),
+                    -1, 0));
+    return AccessTaskRequest.newBuilder()
+            .setInput(input)
+            .setOutput(output)
+            .setClientName(client)
+            .setBandwidth(bandwidth)
+            .build();
+  }
+
+  /**
+   * Test of newThrottle method, of class BandwidthThrottle.
+   */
+  @Test
+  public void testNewThrottle() throws Exception {
+    System.out.println("newThrottle");
+    Configuration config = new Configuration(false);
+    BandwidthThrottle throttle = new BandwidthThrottle(config);
+    assertEquals(false, throttle.newThrottle(createRequest(-1)).isLimited());
+    assertEquals(true, throttle.newThrottle(createRequest(1024)).isLimited());
+    config.setLong(DConstants.ACCESS_BANDWIDTH_HOST + ".127.0.0.1", 1024);
+    throttle = new BandwidthThrottle(config);
+    assertEquals(true, throttle.newThrottle(createRequest(-1)).isLimited());
+  }
+
+  /**
+   * Test of dropping the idle buckets, of class BandwidthThrottle.
+   */
+  @Test
+  public void testPrune() throws Exception {
+    System.out.println("prune");
+    Configuration config = new Configuration(false);
+    config.setLong(DConstants.ACCESS_BANDWIDTH_HOST, 1024 * 1024);
+    config.setLong(DConstants.ACCESS_BANDWIDTH_CLIENT, 1024 * 1024);
+    BandwidthThrottle throttle = new BandwidthThrottle(config);
+    Throttle first = throttle.newThrottle(createRequest(-1, "a"));
+    Throttle second = throttle.newThrottle(createRequest(-1, "b"));
+    //the host bucket is shared
+    assertEquals(3, throttle.getBucketCount());
+    first.release();
+    first.release();
+    Throttle third = throttle.newThrottle(createRequest(-1, "b"));
+    //the bucket of client "a" is dropped
+    assertEquals(2, throttle.getBucketCount());
+    second.release();
+    third.release();
+    throttle.newThrottle(createRequest(-1, "c"));
+    assertEquals(2, throttle.getBucketCount());
+  }
+
+  /**
+   * Test of acquire method, of class Throttle.
+   */
+  @Test
+  public void testAcquire() throws Exception {
+    System.out.println("acquire");
+    Configuration config = new Configuration(false);
+    config.setLong(DConstants.ACCESS_BANDWIDTH_BURST_TIME, 0);
+    config.setLong(DConstants.ACCESS_BANDWIDTH_CLIENT, 10 * 1024 * 1024);
+    BandwidthThrottle throttle = new BandwidthThrottle(config);
+    //the tasks of same client share the bucket
+    Throttle t0 = throttle.newThrottle(createRequest(-1));
+    Throttle t1 = throttle.newThrottle(createRequest(-1));
+    long start = System.nanoTime();
+    for (int i = 0; i != 2; ++i) {
+      t0.acquire(1024 * 1024);
+      t1.acquire(1024 * 1024);
+    }
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue("elapsed:" + elapsed, elapsed >= 350);
+  }
+}
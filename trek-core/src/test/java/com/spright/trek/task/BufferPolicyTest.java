@@ -0,0 +1,85 @@
+package com.spright.trek.task;
+
+import com.spright.trek.DConstants;
+import com.spright.trek.datasystem.Protocol;
+import com.spright.trek.task.BufferPolicy.CopyBuffer;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BufferPolicyTest {
+
+  public BufferPolicyTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() {
+  }
+
+  @After
+  public void tearDown() {
+  }
+
+  /**
+   * Test of getSize method, of class BufferPolicy.
+   */
+  @Test
+  public void testGetSize() {
+    System.out.println("getSize");
+    Configuration config = new Configuration(false);
+    BufferPolicy policy = new BufferPolicy(config);
+    assertEquals(DConstants.DEFAULT_ACCESS_BULK_BUFFER_SIZE,
+            policy.getSize(Protocol.HDFS, Protocol.LOCAL));
+    assertEquals(DConstants.DEFAULT_ACCESS_BUFFER_SIZE,
+            policy.getSize(Protocol.FTP, Protocol.HDFS));
+    config.setInt(DConstants.ACCESS_BUFFER_SIZE, 1024);
+    config.setInt(DConstants.ACCESS_BUFFER_SIZE + ".ftp.hdfs", 2048);
+    policy = new BufferPolicy(config);
+    assertEquals(1024, policy.getSize(Protocol.HDFS, Protocol.LOCAL));
+    assertEquals(2048, policy.getSize(Protocol.FTP, Protocol.HDFS));
+    config.setInt(DConstants.ACCESS_BUFFER_MAX_SIZE, 512);
+    policy = new BufferPolicy(config);
+    assertEquals(512, policy.getSize(Protocol.FTP, Protocol.HDFS));
+  }
+
+  /**
+   * Test of update method, of class CopyBuffer.
+   */
+  @Test
+  public void testUpdate() {
+    System.out.println("update");
+    Configuration config = new Configuration(false);
+    config.setInt(DConstants.ACCESS_BUFFER_SIZE, 1024);
+    config.setInt(DConstants.ACCESS_BUFFER_MAX_SIZE, 2048);
+    CopyBuffer buf = new BufferPolicy(config).newBuffer(Protocol.FILE, Protocol.FILE);
+    for (int i = 0; i != 100; ++i) {
+      assertEquals(false, buf.update(10));
+    }
+    assertEquals(1024, buf.size());
+    boolean resized = false;
+    for (int i = 0; i != 100 && !resized; ++i) {
+      resized = buf.update(buf.size());
+    }
+    assertEquals(true, resized);
+    assertEquals(2048, buf.size());
+    assertEquals(2048, buf.get().length);
+    config.setBoolean(DConstants.ACCESS_BUFFER_ADAPTIVE_ENABLE, false);
+    buf = new BufferPolicy(config).newBuffer(Protocol.FILE, Protocol.FILE);
+    for (int i = 0; i != 100; ++i) {
+      assertEquals(false, buf.update(buf.size()));
+    }
+    assertEquals(1024, buf.size());
+  }
+}
@@ -1,6 +1,10 @@
 package com.spright.trek.thread;
 
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -8,6 +12,7 @@ import static org.junit.Assert.assertEquals;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import static org.junit.Assert.fail;
 import static org.junit.Assert.assertEquals;
 
 public class RestrictedListMapTest {
@@ -64,9 +69,136 @@ public class RestrictedListMapTest {
     assertEquals(0, instance.size());
   }
 
+  /**
+   * Test of health check, of class RestrictedListMap.
+   */
+  @Test
+  public void testDeadValue() throws Exception {
+    System.out.println("deadValue");
+    try (RestrictedListMap<String, ValueImpl> instance = new RestrictedListMap<>(2, 3)) {
+      ValueImpl result_0 = instance.get("aaa", () -> new ValueImpl(60 * 1000, "aaa"));
+      ValueImpl result_1 = instance.get("aaa", () -> new ValueImpl(60 * 1000, "bbb"));
+      try {
+        instance.get("aaa", () -> new ValueImpl(60 * 1000, "ccc"));
+        fail("The max size is 2");
+      } catch (IOException e) {
+      }
+      result_0.setAlive(false);
+      result_0.free();
+      ValueImpl result_2 = instance.get("aaa", () -> new ValueImpl(60 * 1000, "ddd"));
+      assertEquals("ddd", result_2.getMessage());
+      assertEquals(true, result_0.isClean());
+      assertEquals(2, instance.size());
+      result_1.free();
+      result_2.free();
+      instance.close();
+      assertEquals(true, result_1.isClean());
+      assertEquals(true, result_2.isClean());
+    }
+  }
+
+  /**
+   * Test of eviction, of class RestrictedListMap.
+   */
+  @Test
+  public void testEvictIdleValue() throws Exception {
+    System.out.println("evictIdleValue");
+    try (RestrictedListMap<String, ValueImpl> instance = new RestrictedListMap<>(2, 3)) {
+      ValueImpl result_0 = instance.get("aaa", () -> new ValueImpl(60 * 1000, "aaa"));
+      ValueImpl result_1 = instance.get("bbb", () -> new ValueImpl(60 * 1000, "bbb"));
+      result_0.free();
+      TimeUnit.MILLISECONDS.sleep(10);
+      result_1.free();
+      //the value idle for the longest time is evicted
+      ValueImpl result_2 = instance.get("ccc", () -> new ValueImpl(60 * 1000, "ccc"));
+      assertEquals("ccc", result_2.getMessage());
+      assertEquals(true, result_0.isClean());
+      assertEquals(false, result_1.isClean());
+      assertEquals(2, instance.size());
+      ValueImpl result_3 = instance.get("ddd", () -> new ValueImpl(60 * 1000, "ddd"));
+      assertEquals(true, result_1.isClean());
+      try {
+        instance.get("eee", () -> new ValueImpl(60 * 1000, "eee"));
+        fail("All values are busy");
+      } catch (IOException e) {
+      }
+      result_2.free();
+      result_3.free();
+    }
+  }
+
+  /**
+   * Test of health check, of class RestrictedListMap.
+   */
+  @Test
+  public void testAliveCheckWithoutLock() throws Exception {
+    System.out.println("aliveCheckWithoutLock");
+    ExecutorService service = Executors.newSingleThreadExecutor();
+    try (RestrictedListMap<String, ValueImpl> instance = new RestrictedListMap<>(2, 3)) {
+      ValueImpl result_0 = instance.get("aaa", () -> new ValueImpl(60 * 1000, "aaa"));
+      CountDownLatch gate = new CountDownLatch(1);
+      result_0.setAliveGate(gate);
+      result_0.free();
+      Future<ValueImpl> reused = service.submit(
+              () -> instance.get("aaa", () -> new ValueImpl(60 * 1000, "bbb")));
+      TimeUnit.MILLISECONDS.sleep(100);
+      //the slow check doesn't block other operations
+      ValueImpl result_1 = instance.get("ccc", () -> new ValueImpl(60 * 1000, "ccc"));
+      assertEquals(2, instance.size());
+      assertEquals(false, reused.isDone());
+      gate.countDown();
+      assertEquals("aaa", reused.get(10, TimeUnit.SECONDS).getMessage());
+      result_0.free();
+      result_1.free();
+    } finally {
+      service.shutdownNow();
+    }
+  }
+
+  /**
+   * Test of building value outside the lock, of class RestrictedListMap.
+   */
+  @Test
+  public void testBuildWithoutLock() throws Exception {
+    System.out.println("buildWithoutLock");
+    ExecutorService service = Executors.newSingleThreadExecutor();
+    try (RestrictedListMap<String, ValueImpl> instance = new RestrictedListMap<>(2, 3)) {
+      CountDownLatch gate = new CountDownLatch(1);
+      Future<ValueImpl> slow = service.submit(() -> instance.get("aaa", () -> {
+        try {
+          gate.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        return new ValueImpl(60 * 1000, "aaa");
+      }));
+      TimeUnit.MILLISECONDS.sleep(100);
+      //the slow build doesn't block other names
+      ValueImpl result_0 = instance.get("bbb", () -> new ValueImpl(60 * 1000, "bbb"));
+      assertEquals(1, instance.size());
+      //the slot of slow build is reserved
+      try {
+        instance.get("ccc", () -> new ValueImpl(60 * 1000, "ccc"));
+        fail("The reserved slot should not be taken");
+      } catch (IOException e) {
+      }
+      assertEquals(false, slow.isDone());
+      gate.countDown();
+      ValueImpl result_1 = slow.get(10, TimeUnit.SECONDS);
+      assertEquals("aaa", result_1.getMessage());
+      assertEquals(2, instance.size());
+      result_0.free();
+      result_1.free();
+    } finally {
+      service.shutdownNow();
+    }
+  }
+
   private static class ValueImpl extends RestrictedListMap.Value {
 
     private boolean isClean = false;
+    private boolean alive = true;
+    private volatile CountDownLatch aliveGate;
     private final String msg;
 
     public ValueImpl(long idleTime, final String m) {
@@ -82,6 +214,26 @@ public class RestrictedListMapTest {
       return isClean;
     }
 
+    public void setAlive(final boolean v) {
+      alive = v;
+    }
+
+    public void setAliveGate(final CountDownLatch v) {
+      aliveGate = v;
+    }
+
+    @Override
+    protected boolean isAlive() {
+      if (aliveGate != null) {
+        try {
+          aliveGate.await();
+        } catch (InterruptedException e) {
+          return false;
+        }
+      }
+      return alive;
+    }
+
     @Override
     protected void clean() throws IOException {
       isClean = true;
@@ -1,6 +1,8 @@
 package com.spright.trek.utils;
 
 import java.util.Optional;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -85,4 +87,39 @@ public class HBaseUtilsTest {
     assertEquals(false, HBaseUtils.getAndCheckInt(buf).isPresent());
   }
 
+  /**
+   * Test of getLiteralPrefix method, of class HBaseUtils.
+   */
+  @Test
+  public void testGetLiteralPrefix() {
+    System.out.println("getLiteralPrefix");
+    assertEquals("report-2024", HBaseUtils.getLiteralPrefix("report-2024*"));
+    assertEquals("a", HBaseUtils.getLiteralPrefix("a?c*"));
+    assertEquals("a", HBaseUtils.getLiteralPrefix("a.b*"));
+    assertEquals("", HBaseUtils.getLiteralPrefix("*.csv"));
+    assertEquals("abc", HBaseUtils.getLiteralPrefix("abc"));
+  }
+
+  /**
+   * Test of setRowRange method, of class HBaseUtils.
+   */
+  @Test
+  public void testSetRowRange() {
+    System.out.println("setRowRange");
+    Scan scan = new Scan();
+    FilterList filters = new FilterList();
+    assertEquals(true, HBaseUtils.setRowRange(scan, filters, "ab*"));
+    assertEquals("ab", Bytes.toString(scan.getStartRow()));
+    assertEquals("ac", Bytes.toString(scan.getStopRow()));
+    assertEquals(1, filters.getFilters().size());
+    Scan reversed = new Scan();
+    reversed.setReversed(true);
+    assertEquals(true, HBaseUtils.setRowRange(reversed, new FilterList(), "ab*"));
+    assertEquals("ac", Bytes.toString(reversed.getStartRow()));
+    assertEquals(0, reversed.getStopRow().length);
+    assertEquals(false, HBaseUtils.setRowRange(new Scan(), new FilterList(), "*b"));
+    assertEquals(0, HBaseUtils.getStopRow(new byte[]{(byte) 0xFF}).length);
+    assertEquals(0, Bytes.compareTo(new byte[]{2},
+            HBaseUtils.getStopRow(new byte[]{1, (byte) 0xFF})));
+  }
 }
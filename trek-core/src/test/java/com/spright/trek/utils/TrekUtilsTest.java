@@ -1,9 +1,12 @@
 package com.spright.trek.utils;
 
+import com.spright.trek.datasystem.request.DataOwner;
 import com.spright.trek.query.RangeNumber;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
+import org.apache.hadoop.fs.BlockLocation;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -64,4 +67,20 @@ public class TrekUtilsTest {
     assertEquals(result.isPresent(), true);
   }
 
+  /**
+   * Test of findOwners method, of class TrekUtils.
+   */
+  @Test
+  public void testFindOwners() throws IOException {
+    System.out.println("findOwners");
+    BlockLocation[] blks = new BlockLocation[]{
+      new BlockLocation(null, new String[]{"h0", "h1"}, 0, 10),
+      new BlockLocation(null, new String[]{"h1", "h2"}, 10, 10)
+    };
+    List<DataOwner> owners = TrekUtils.findOwners(blks);
+    assertEquals(3, owners.size());
+    assertEquals("h1", owners.get(0).getHostname());
+    assertEquals(0.5, owners.get(0).getRatio(), 0);
+    assertEquals(0, TrekUtils.findOwners(new BlockLocation[0]).size());
+  }
 }
@@ -4,6 +4,7 @@ import com.google.gson.stream.JsonReader;
 import com.spright.trek.task.AccessStatus;
 import com.spright.trek.task.TaskState;
 import com.spright.trek.DConstants;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -17,6 +18,10 @@ import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.ParseException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -144,6 +149,231 @@ public class AccessTest {
     }
   }
 
+  @Test
+  public void testSegmentedFileToFile() throws MalformedURLException, Exception, ParseException {
+    System.out.println("test segmented file to file");
+    Configuration config = new Configuration(CONFIG);
+    config.setLong(DConstants.ACCESS_SEGMENT_THRESHOLD, 1024 * 1024);
+    config.setInt(DConstants.ACCESS_SEGMENT_NUMBER, 4);
+    try (WebServer server = new WebServer(config)) {
+      long fileSize = 5 * 1024 * 1024 + 123;
+      File inputFile = File.createTempFile("LocalToFileTest", null);
+      try (OutputStream output = new FileOutputStream(inputFile)) {
+        for (long i = 0; i != fileSize; ++i) {
+          output.write((int) (i % 251));
+        }
+      }
+      String tmpOutput = creatTempPath();
+      String request = "http://127.0.0.1:"
+              + DConstants.DEFAULT_RESTFUL_SERVER_BINDING_PORT
+              + "/trek/v1/data/access?from=file:///"
+              + toUnixPath(inputFile.getAbsolutePath())
+              + "&to=file:///"
+              + tmpOutput;
+      URL url = new URL(request);
+      HttpURLConnection httpConn = (HttpURLConnection) url.openConnection();
+      httpConn.setDoOutput(true);
+      httpConn.setDoInput(true);
+      httpConn.setRequestMethod("POST");
+      httpConn.setRequestProperty("Content-Type",
+              "multipart/form-data; boundary=" + BOUNDARY);
+      httpConn.connect();
+      assertEquals(HttpURLConnection.HTTP_OK, httpConn.getResponseCode());
+      try (JsonReader reader = new JsonReader(new InputStreamReader(httpConn.getInputStream()))) {
+        AccessStatus status = AccessStatus.read(reader);
+        assertEquals(fileSize, status.getTransferredSize());
+        assertEquals(1.0, status.getProgress(), 0);
+        assertEquals(TaskState.SUCCEED, status.getState());
+      }
+      httpConn.disconnect();
+      File output = new File("/" + tmpOutput);
+      assertEquals(fileSize, output.length());
+      try (InputStream input = new BufferedInputStream(new FileInputStream(output))) {
+        for (long i = 0; i != fileSize; ++i) {
+          assertEquals(i % 251, input.read());
+        }
+      }
+      inputFile.delete();
+      output.delete();
+    }
+  }
+
+  @Test
+  public void testFanOutFileToFile() throws MalformedURLException, Exception, ParseException {
+    System.out.println("test fan-out file to file");
+    try (WebServer server = new WebServer(CONFIG)) {
+      long fileSize = 1024 * 1024 + 123;
+      File inputFile = File.createTempFile("LocalToFileTest", null);
+      try (OutputStream output = new FileOutputStream(inputFile)) {
+        for (long i = 0; i != fileSize; ++i) {
+          output.write((int) (i % 251));
+        }
+      }
+      String tmpOutput0 = creatTempPath();
+      String tmpOutput1 = creatTempPath();
+      String request = "http://127.0.0.1:"
+              + DConstants.DEFAULT_RESTFUL_SERVER_BINDING_PORT
+              + "/trek/v1/data/access?from=file:///"
+              + toUnixPath(inputFile.getAbsolutePath())
+              + "&to=file:///"
+              + tmpOutput0
+              + "&to=file:///"
+              + tmpOutput1;
+      URL url = new URL(request);
+      HttpURLConnection httpConn = (HttpURLConnection) url.openConnection();
+      httpConn.setDoOutput(true);
+      httpConn.setDoInput(true);
+      httpConn.setRequestMethod("POST");
+      httpConn.setRequestProperty("Content-Type",
+              "multipart/form-data; boundary=" + BOUNDARY);
+      httpConn.connect();
+      assertEquals(HttpURLConnection.HTTP_OK, httpConn.getResponseCode());
+      try (JsonReader reader = new JsonReader(new InputStreamReader(httpConn.getInputStream()))) {
+        AccessStatus status = AccessStatus.read(reader);
+        assertEquals(fileSize, status.getTransferredSize());
+        assertEquals(TaskState.SUCCEED, status.getState());
+        assertEquals(2, status.getDestinations().size());
+        for (AccessStatus.Destination d : status.getDestinations()) {
+          assertEquals(fileSize, d.getTransferredSize());
+          assertEquals(TaskState.SUCCEED, d.getState());
+        }
+      }
+      httpConn.disconnect();
+      for (String tmpOutput : Arrays.asList(tmpOutput0, tmpOutput1)) {
+        File output = new File("/" + tmpOutput);
+        assertEquals(fileSize, output.length());
+        try (InputStream input = new BufferedInputStream(new FileInputStream(output))) {
+          for (long i = 0; i != fileSize; ++i) {
+            assertEquals(i % 251, input.read());
+          }
+        }
+        output.delete();
+      }
+      inputFile.delete();
+    }
+  }
+
+  @Test
+  public void testBatchFileToFile() throws MalformedURLException, Exception, ParseException {
+    System.out.println("test batch file to file");
+    try (WebServer server = new WebServer(CONFIG)) {
+      final int fileSize = 12345;
+      File inputDir = Files.createTempDirectory("LocalToFileTest").toFile();
+      File subDir = new File(inputDir, "sub");
+      assertEquals(true, subDir.mkdir());
+      List<String> names = Arrays.asList("a", "b", "c", "sub/d", "sub/e");
+      for (String name : names) {
+        try (OutputStream output = new FileOutputStream(new File(inputDir, name))) {
+          for (int i = 0; i != fileSize; ++i) {
+            output.write(i % 251);
+          }
+        }
+      }
+      File outputDir = Files.createTempDirectory("LocalToFileTest").toFile();
+      String request = "http://127.0.0.1:"
+              + DConstants.DEFAULT_RESTFUL_SERVER_BINDING_PORT
+              + "/trek/v1/data/access?from=file:///"
+              + toUnixPath(inputDir.getAbsolutePath()) + "/"
+              + "&to=file:///"
+              + toUnixPath(outputDir.getAbsolutePath()) + "/"
+              + "&enablewildcard=true&recursive=true&parallelism=2";
+      URL url = new URL(request);
+      HttpURLConnection httpConn = (HttpURLConnection) url.openConnection();
+      httpConn.setDoInput(true);
+      httpConn.setRequestMethod("POST");
+      httpConn.connect();
+      if (httpConn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+        printErrorMessage(httpConn);
+      }
+      assertEquals(HttpURLConnection.HTTP_OK, httpConn.getResponseCode());
+      try (JsonReader reader = new JsonReader(new InputStreamReader(httpConn.getInputStream()))) {
+        AccessStatus status = AccessStatus.read(reader);
+        assertEquals(TaskState.SUCCEED, status.getState());
+        assertEquals(names.size(), status.getSubtasks());
+        assertEquals(0, status.getFailedSubtasks());
+        assertEquals(fileSize * names.size(), status.getTransferredSize());
+      }
+      httpConn.disconnect();
+      for (String name : names) {
+        File output = new File(outputDir, name);
+        assertEquals(fileSize, output.length());
+        try (InputStream input = new BufferedInputStream(new FileInputStream(output))) {
+          for (int i = 0; i != fileSize; ++i) {
+            assertEquals(i % 251, input.read());
+          }
+        }
+      }
+      FileUtils.deleteDirectory(inputDir);
+      FileUtils.deleteDirectory(outputDir);
+    }
+  }
+
+  @Test
+  public void testResumeFileToFile() throws MalformedURLException, Exception, ParseException {
+    System.out.println("test resume file to file");
+    Configuration config = new Configuration(CONFIG);
+    config.setInt(DConstants.ACCESS_LOG_TTL_IN_SECOND, 60);
+    try (WebServer server = new WebServer(config)) {
+      final int fileSize = 1024 * 1024;
+      final int checkpoint = 300 * 1024;
+      File inputFile = File.createTempFile("LocalToFileTest", null);
+      File tmpFile = File.createTempFile("LocalToFileTest", null);
+      try (OutputStream input = new FileOutputStream(inputFile);
+              OutputStream tmp = new FileOutputStream(tmpFile)) {
+        for (int i = 0; i != fileSize; ++i) {
+          input.write(i % 251);
+          //the bytes after checkpoint are dirty
+          tmp.write(i < checkpoint ? i % 251 : 0);
+        }
+      }
+      String tmpOutput = creatTempPath();
+      server.getLogger().add(AccessStatus.newBuilder()
+              .setId("resume-test")
+              .setRedirectFrom("localhost")
+              .setServerName("localhost")
+              .setClientName("localhost")
+              .setFrom("file:///" + toUnixPath(inputFile.getAbsolutePath()))
+              .setTo("file:///" + tmpOutput)
+              .setTaskState(TaskState.FAILED)
+              .setProgress(0.5)
+              .setStartTime(System.currentTimeMillis())
+              .setElapsed(0)
+              .setExpectedSize(fileSize)
+              .setTransferredSize(checkpoint * 2)
+              .setCheckpoint(checkpoint)
+              .setTmpPath(tmpFile.getAbsolutePath())
+              .build());
+      String request = "http://127.0.0.1:"
+              + DConstants.DEFAULT_RESTFUL_SERVER_BINDING_PORT
+              + "/trek/v1/data/access?resume=resume-test";
+      URL url = new URL(request);
+      HttpURLConnection httpConn = (HttpURLConnection) url.openConnection();
+      httpConn.setDoInput(true);
+      httpConn.setRequestMethod("POST");
+      httpConn.connect();
+      if (httpConn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+        printErrorMessage(httpConn);
+      }
+      assertEquals(HttpURLConnection.HTTP_OK, httpConn.getResponseCode());
+      try (JsonReader reader = new JsonReader(new InputStreamReader(httpConn.getInputStream()))) {
+        AccessStatus status = AccessStatus.read(reader);
+        assertEquals(fileSize, status.getTransferredSize());
+        assertEquals(TaskState.SUCCEED, status.getState());
+      }
+      httpConn.disconnect();
+      File output = new File("/" + tmpOutput);
+      assertEquals(fileSize, output.length());
+      assertEquals(false, tmpFile.exists());
+      try (InputStream input = new BufferedInputStream(new FileInputStream(output))) {
+        for (int i = 0; i != fileSize; ++i) {
+          assertEquals(i % 251, input.read());
+        }
+      }
+      inputFile.delete();
+      output.delete();
+    }
+  }
+
   @Test
   public void testFileToLocal() throws MalformedURLException, Exception {
     System.out.println("test file to local");
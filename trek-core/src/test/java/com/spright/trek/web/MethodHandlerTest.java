@@ -0,0 +1,136 @@
+package com.spright.trek.web;
+
+import com.google.gson.stream.JsonWriter;
+import com.spright.trek.query.IteratorUtils;
+import com.spright.trek.task.AccessStatus;
+import com.spright.trek.task.TaskState;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MethodHandlerTest {
+
+  private HttpServer server;
+  private final CompletableFuture<AccessStatus> completion = new CompletableFuture<>();
+
+  public MethodHandlerTest() {
+  }
+
+  @BeforeClass
+  public static void setUpClass() {
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    for (MethodHandler.Framing framing : MethodHandler.Framing.values()) {
+      MethodHandler handler = new MethodHandler((s, he) -> new MethodHandler.JsonResult(
+              IteratorUtils.wrap(Arrays.asList(1, 2, 3).iterator()),
+              (JsonWriter writer, Integer v) -> writer.beginObject().name("v").value(v).endObject(),
+              framing, 2, false));
+      server.createContext("/" + framing.name(), he -> handler.handle(null, he));
+    }
+    MethodHandler pending = new MethodHandler((s, he)
+            -> new MethodHandler.JsonResult(completion, true, false));
+    server.createContext("/pending", he -> pending.handle(null, he));
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  private String get(final String path) throws IOException {
+    return get(path, true);
+  }
+
+  private String get(final String path, final boolean chunked) throws IOException {
+    HttpURLConnection conn = (HttpURLConnection) new URL("http://127.0.0.1:"
+            + server.getAddress().getPort() + path).openConnection();
+    try {
+      assertEquals(200, conn.getResponseCode());
+      if (chunked) {
+        assertEquals("chunked", conn.getHeaderField("Transfer-Encoding"));
+      }
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      try (InputStream input = conn.getInputStream()) {
+        byte[] buf = new byte[1024];
+        int rval;
+        while ((rval = input.read(buf)) != -1) {
+          body.write(buf, 0, rval);
+        }
+      }
+      return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    } finally {
+      conn.disconnect();
+    }
+  }
+
+  /**
+   * Test of handle method with a streaming result, of class MethodHandler.
+   *
+   * @throws java.io.IOException
+   */
+  @Test
+  public void testStream() throws IOException {
+    System.out.println("stream");
+    assertEquals("[{\"v\":1},{\"v\":2},{\"v\":3}]", get("/ARRAY"));
+    assertEquals("{\"v\":1}\n{\"v\":2}\n{\"v\":3}\n", get("/NDJSON"));
+  }
+
+  /**
+   * Test of handle method with a pending result, of class MethodHandler.
+   *
+   * @throws java.lang.Exception
+   */
+  @Test
+  public void testRespondOnCompletion() throws Exception {
+    System.out.println("respondOnCompletion");
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<String> response = executor.submit(() -> get("/pending", false));
+      //the pending task doesn't hold the handler thread
+      assertEquals("[{\"v\":1},{\"v\":2},{\"v\":3}]", get("/ARRAY"));
+      assertEquals(false, response.isDone());
+      completion.complete(AccessStatus.newBuilder()
+              .setClientName("client_name")
+              .setElapsed(12)
+              .setExpectedSize(12)
+              .setFrom("from")
+              .setId("pending_id")
+              .setProgress(1.0)
+              .setRedirectFrom("redirect_from")
+              .setServerName("server_name")
+              .setStartTime(13)
+              .setTaskState(TaskState.SUCCEED)
+              .setTo("to")
+              .setTransferredSize(12)
+              .build());
+      assertTrue(response.get().contains("pending_id"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}